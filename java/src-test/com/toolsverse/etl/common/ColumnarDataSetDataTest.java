@@ -0,0 +1,191 @@
+/*
+ * ColumnarDataSetDataTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+
+import org.junit.Test;
+
+/**
+ * ColumnarDataSetDataTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class ColumnarDataSetDataTest
+{
+    private DataSet getDataSet()
+    {
+        DataSet dataSet = new DataSet();
+        dataSet.setColumnar(true);
+        
+        FieldDef fieldDef = new FieldDef();
+        fieldDef.setName("id");
+        fieldDef.setSqlDataType(Types.INTEGER);
+        dataSet.addField(fieldDef);
+        
+        fieldDef = new FieldDef();
+        fieldDef.setName("name");
+        fieldDef.setSqlDataType(Types.VARCHAR);
+        dataSet.addField(fieldDef);
+        
+        fieldDef = new FieldDef();
+        fieldDef.setName("amount");
+        fieldDef.setSqlDataType(Types.DOUBLE);
+        dataSet.addField(fieldDef);
+        
+        for (int i = 0; i < 100; i++)
+        {
+            DataSetRecord record = new DataSetRecord();
+            
+            record.add(i % 10 == 0 ? null : Integer.valueOf(i));
+            record.add("name" + (i % 3));
+            record.add(Double.valueOf(i * 1.5));
+            
+            dataSet.addRecord(record);
+        }
+        
+        return dataSet;
+    }
+    
+    @Test
+    public void testAddAndGet()
+    {
+        DataSet dataSet = getDataSet();
+        
+        assertTrue(dataSet.getData() instanceof ColumnarDataSetData);
+        assertTrue(dataSet.getRecordCount() == 100);
+        
+        for (int i = 0; i < 100; i++)
+        {
+            DataSetRecord record = dataSet.getRecord(i);
+            
+            assertTrue(record.size() == 3);
+            
+            if (i % 10 == 0)
+                assertNull(record.get(0));
+            else
+                assertTrue(Integer.valueOf(i).equals(record.get(0)));
+            
+            assertTrue(("name" + (i % 3)).equals(record.get(1)));
+            assertTrue(Double.valueOf(i * 1.5).equals(record.get(2)));
+        }
+    }
+    
+    @Test
+    public void testDeleteAndSort()
+    {
+        DataSet dataSet = getDataSet();
+        
+        dataSet.deleteRecord(0);
+        
+        assertTrue(dataSet.getRecordCount() == 99);
+        assertTrue(Integer.valueOf(1).equals(dataSet.getFieldValue(0, 0)));
+        
+        dataSet.sortByString("id desc");
+        
+        assertTrue(Integer.valueOf(99).equals(dataSet.getFieldValue(0, 0)));
+        assertTrue(Double.valueOf(99 * 1.5).equals(dataSet.getFieldValue(0, 2)));
+        
+        dataSet.getData().clear();
+        
+        assertTrue(dataSet.isEmpty());
+    }
+    
+    @Test
+    public void testLastRecord()
+    {
+        DataSet dataSet = getDataSet();
+        
+        DataSetRecord record = new DataSetRecord();
+        record.add(Integer.valueOf(100));
+        record.add("name");
+        record.add(Double.valueOf(1));
+        
+        dataSet.addRecord(record);
+        
+        // the added record is copied, changes are made using the stored one
+        DataSetRecord last = dataSet.getLastRecord();
+        
+        assertTrue(last != record);
+        
+        last.set(1, "changed");
+        
+        assertTrue("changed".equals(dataSet.getFieldValue(100, 1)));
+        
+        dataSet.getData().clear();
+        
+        assertNull(dataSet.getLastRecord());
+    }
+    
+    @Test
+    public void testRecordView()
+    {
+        DataSet dataSet = getDataSet();
+        
+        DataSetRecord record = dataSet.getRecord(5);
+        
+        record.set(0, new BigDecimal(55));
+        record.set(1, null);
+        record.addVersion(2, Double.valueOf(1));
+        
+        record = dataSet.getRecord(5);
+        
+        assertTrue(new BigDecimal(55).equals(record.get(0)));
+        assertNull(record.get(1));
+        assertTrue(record.getNumberOfVersions(2) == 2);
+        assertTrue(Integer.valueOf(6).equals(dataSet.getFieldValue(6, 0)));
+        
+        record.deleteCol(0);
+        
+        assertTrue(record.size() == 2);
+        assertTrue(dataSet.getRecord(5).size() == 2);
+        assertTrue(Integer.valueOf(7).equals(dataSet.getFieldValue(7, 0)));
+    }
+    
+    @Test
+    public void testSet()
+    {
+        DataSet dataSet = getDataSet();
+        
+        DataSetRecord view = dataSet.getRecord(3);
+        
+        DataSetRecord record = new DataSetRecord();
+        record.add(Integer.valueOf(33));
+        record.add("new");
+        
+        dataSet.getData().set(3, record);
+        
+        // the row is overwritten in place
+        assertTrue(Integer.valueOf(33).equals(view.get(0)));
+        assertTrue("new".equals(view.get(1)));
+        assertTrue(view.size() == 2);
+        
+        record.add(Double.valueOf(2));
+        
+        dataSet.getData().set(3, record);
+        
+        assertTrue(Double.valueOf(2).equals(view.get(2)));
+        
+        // cells of the overwritten row are cleared
+        dataSet.getData().set(3, new DataSetRecord());
+        dataSet.getRecord(3).add(Integer.valueOf(1));
+        dataSet.getRecord(3).add("x");
+        dataSet.getRecord(3).add(null);
+        
+        assertNull(dataSet.getFieldValue(3, 2));
+        assertTrue(dataSet.getRecordCount() == 100);
+        assertTrue(Integer.valueOf(4).equals(dataSet.getFieldValue(4, 0)));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * FingerprintSetTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * FingerprintSetTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class FingerprintSetTest
+{
+    private void testSet(FingerprintSet set)
+        throws Exception
+    {
+        try
+        {
+            assertTrue(set.add(new Object[] {"1", "23"}, 2));
+            assertTrue(set.add(new Object[] {"12", "3"}, 2));
+            assertFalse(set.add(new Object[] {"1", "23"}, 2));
+            
+            assertTrue(set.add(new Object[] {null, ""}, 2));
+            assertTrue(set.add(new Object[] {"", null}, 2));
+            assertFalse(set.add(new Object[] {null, ""}, 2));
+            
+            assertTrue(set.add(new Object[] {1, "a"}, 2));
+            assertFalse(set.add(new Object[] {1L, "a"}, 2));
+            assertTrue(set.add(new Object[] {"1", "a"}, 2));
+            
+            assertTrue(set.add(new Object[] {new Date(1000)}, 1));
+            assertTrue(set.add(new Object[] {new Timestamp(1000)}, 1));
+            assertFalse(set.add(new Object[] {new Date(1000)}, 1));
+            
+            assertTrue(set.add(new Object[] {new byte[] {1, 2}}, 1));
+            assertFalse(set.add(new Object[] {new byte[] {1, 2}}, 1));
+            
+            // only first values are used
+            assertFalse(set.add(new Object[] {"12", "3", "4"}, 2));
+            
+            assertEquals(9, set.size());
+            
+            for (int i = 0; i < 100000; i++)
+                assertTrue(set.add(new Object[] {i, "value" + i}, 2));
+            
+            for (int i = 0; i < 100000; i++)
+                assertFalse(set.add(new Object[] {i, "value" + i}, 2));
+            
+            assertEquals(100009, set.size());
+        }
+        finally
+        {
+            set.close();
+        }
+        
+        assertEquals(0, set.size());
+        assertTrue(set.add(new Object[] {"1", "23"}, 2));
+        
+        set.close();
+    }
+    
+    @Test
+    public void testFingerprints()
+        throws Exception
+    {
+        testSet(new FingerprintSet());
+    }
+    
+    @Test
+    public void testVerify()
+        throws Exception
+    {
+        testSet(new FingerprintSet(true, null));
+    }
+}
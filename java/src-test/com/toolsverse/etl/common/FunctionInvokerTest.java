@@ -0,0 +1,145 @@
+/*
+ * FunctionInvokerTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * FunctionInvokerTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class FunctionInvokerTest
+{
+    public static class TestFunctions implements Function
+    {
+        public String[] getAfterFunctions()
+        {
+            return null;
+        }
+        
+        public String[] getBeforeFunctions()
+        {
+            return new String[] {"before"};
+        }
+        
+        public String[] getExcludeFunctions()
+        {
+            return null;
+        }
+        
+        public String[] getRuntimeFunctions()
+        {
+            return new String[] {"runtime"};
+        }
+        
+        public String before(FunctionContext context)
+        {
+            return "before";
+        }
+        
+        public String runtime(FunctionContext context)
+        {
+            return "runtime" + context.getRow();
+        }
+    }
+    
+    private static class TestContext extends FunctionContext
+    {
+    }
+    
+    private Variable getVariable(String function)
+    {
+        Variable var = new Variable();
+        var.setName("test");
+        var.setFunctionClassName(TestFunctions.class.getName());
+        var.setFunction(function);
+        
+        return var;
+    }
+    
+    @Test
+    public void testCache()
+    {
+        Variable var = getVariable("runtime");
+        
+        FunctionInvoker invoker = FunctionInvoker.getInvoker(var,
+                FunctionContext.class);
+        
+        assertSame(invoker, FunctionInvoker.getInvoker(var,
+                FunctionContext.class));
+        
+        // the other context class
+        assertNotSame(invoker, FunctionInvoker.getInvoker(var,
+                TestContext.class));
+        
+        invoker = FunctionInvoker.getInvoker(var, FunctionContext.class);
+        
+        // the function has changed
+        var.setFunction("before");
+        
+        assertNotSame(invoker, FunctionInvoker.getInvoker(var,
+                FunctionContext.class));
+        
+        // the cache belongs to the variable
+        assertNotSame(FunctionInvoker.getInvoker(var, FunctionContext.class),
+                FunctionInvoker.getInvoker(getVariable("before"),
+                        FunctionContext.class));
+    }
+    
+    @Test
+    public void testExecute()
+        throws Exception
+    {
+        FunctionContext context = new FunctionContext();
+        context.setRow(5);
+        
+        Variable var = getVariable("runtime");
+        
+        context.setScope(Variable.EXECUTE_RUNTIME);
+        assertEquals("runtime5", context.execute(var));
+        
+        context.setRow(6);
+        assertEquals("runtime6", context.execute(var));
+        
+        context.setScope(Variable.EXECUTE_BEFORE);
+        assertEquals("", context.execute(var));
+        
+        // the scope set for the variable wins
+        var.addScope(Variable.EXECUTE_BEFORE);
+        assertEquals("runtime6", context.execute(var));
+        
+        var = getVariable("before");
+        
+        assertEquals("before", context.execute(var));
+        
+        context.setScope(Variable.EXECUTE_RUNTIME);
+        assertEquals("", context.execute(var));
+    }
+    
+    @Test
+    public void testScope()
+    {
+        FunctionInvoker invoker = FunctionInvoker.getInvoker(
+                getVariable("runtime"), FunctionContext.class);
+        
+        assertTrue(invoker.belongsTo(Variable.EXECUTE_RUNTIME));
+        assertFalse(invoker.belongsTo(Variable.EXECUTE_BEFORE));
+        assertFalse(invoker.belongsTo(Variable.EXECUTE_AFTER));
+        assertTrue(invoker.belongsTo(Variable.EXECUTE_AS_CONFIGURED));
+    }
+}
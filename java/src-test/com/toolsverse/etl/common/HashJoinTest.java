@@ -0,0 +1,117 @@
+/*
+ * HashJoinTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Types;
+
+import org.junit.Test;
+
+/**
+ * HashJoinTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class HashJoinTest
+{
+    private DataSet getDataSet(String valueName, int rows, int step)
+    {
+        DataSet dataSet = new DataSet();
+        
+        FieldDef fieldDef = new FieldDef();
+        fieldDef.setName("id");
+        fieldDef.setSqlDataType(Types.INTEGER);
+        dataSet.addField(fieldDef);
+        
+        fieldDef = new FieldDef();
+        fieldDef.setName(valueName);
+        fieldDef.setSqlDataType(Types.VARCHAR);
+        dataSet.addField(fieldDef);
+        
+        for (int i = 0; i < rows; i++)
+        {
+            DataSetRecord record = new DataSetRecord();
+            
+            record.add(Integer.valueOf((i * step) % 100));
+            record.add(valueName + i);
+            
+            dataSet.addRecord(record);
+        }
+        
+        return dataSet;
+    }
+    
+    private int[] match(DataSet drivingDataSet, DataSet dataSetToJoin,
+            int maxRows)
+        throws Exception
+    {
+        RecordKeyBuilder drivingKeyBuilder = new RecordKeyBuilder(
+                drivingDataSet, CommonEtlUtils.getKeyFields("id",
+                        drivingDataSet.getFields()), false, true);
+        
+        RecordKeyBuilder keyBuilder = new RecordKeyBuilder(dataSetToJoin,
+                CommonEtlUtils.getKeyFields("id", dataSetToJoin.getFields()),
+                false, true);
+        
+        return new HashJoin(drivingDataSet, dataSetToJoin, drivingKeyBuilder,
+                keyBuilder, maxRows, null).match();
+    }
+    
+    @Test
+    public void testJoin()
+        throws Exception
+    {
+        DataSet drivingDataSet = getDataSet("first", 200, 3);
+        DataSet dataSetToJoin = getDataSet("second", 60, 2);
+        
+        DataSet dataSet = CommonEtlUtils.join(drivingDataSet, dataSetToJoin,
+                "id", false, null, null, 7, null);
+        
+        assertTrue(dataSet.getFieldCount() == 3);
+        
+        for (int row = 0; row < dataSet.getRecordCount(); row++)
+        {
+            DataSetRecord record = dataSet.getRecord(row);
+            
+            int id = ((Integer)record.get(0)).intValue();
+            
+            assertTrue(id % 2 == 0);
+            assertTrue(("second" + (id / 2 + (id < 20 ? 50 : 0)))
+                    .equals(record.get(2)));
+        }
+        
+        dataSet = CommonEtlUtils.join(drivingDataSet, dataSetToJoin, "id",
+                true, null, "first", 7, null);
+        
+        assertTrue(dataSet.getRecordCount() == drivingDataSet.getRecordCount());
+        assertTrue(dataSet.getFieldCount() == 2);
+        assertNull(dataSet.getRecord(1).get(1));
+    }
+    
+    @Test
+    public void testPartitions()
+        throws Exception
+    {
+        DataSet drivingDataSet = getDataSet("first", 500, 7);
+        DataSet dataSetToJoin = getDataSet("second", 150, 3);
+        
+        int[] expected = match(drivingDataSet, dataSetToJoin, 0);
+        
+        assertArrayEquals(expected, match(drivingDataSet, dataSetToJoin, 10));
+        
+        expected = match(dataSetToJoin, drivingDataSet, 0);
+        
+        assertArrayEquals(expected, match(dataSetToJoin, drivingDataSet, 10));
+    }
+}
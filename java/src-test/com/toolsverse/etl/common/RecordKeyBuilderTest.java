@@ -0,0 +1,161 @@
+/*
+ * RecordKeyBuilderTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+
+import org.junit.Test;
+
+/**
+ * RecordKeyBuilderTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class RecordKeyBuilderTest
+{
+    private DataSet getDataSet()
+    {
+        DataSet dataSet = new DataSet();
+        
+        FieldDef fieldDef = new FieldDef();
+        fieldDef.setName("first");
+        fieldDef.setSqlDataType(Types.VARCHAR);
+        dataSet.addField(fieldDef);
+        
+        fieldDef = new FieldDef();
+        fieldDef.setName("second");
+        fieldDef.setSqlDataType(Types.VARCHAR);
+        dataSet.addField(fieldDef);
+        
+        return dataSet;
+    }
+    
+    private DataSetRecord getRecord(Object first, Object second)
+    {
+        DataSetRecord record = new DataSetRecord();
+        
+        record.add(first);
+        record.add(second);
+        
+        return record;
+    }
+    
+    @Test
+    public void testKeys()
+    {
+        DataSet dataSet = getDataSet();
+        
+        RecordKeyBuilder builder = new RecordKeyBuilder(dataSet,
+                CommonEtlUtils.getKeyFields("first,second",
+                        dataSet.getFields()), false, true);
+        
+        assertFalse(builder.getKey(getRecord("ab", "c")).equals(
+                builder.getKey(getRecord("a", "bc"))));
+        
+        assertTrue(builder.getKey(getRecord(" ab", "c ")).equals(
+                builder.getKey(getRecord("ab", "c"))));
+        
+        assertTrue(builder.getKey(getRecord("", null)).equals(
+                builder.getKey(getRecord(null, " "))));
+        
+        assertTrue(builder.getKey(getRecord(Integer.valueOf(1), "x")).equals(
+                builder.getKey(getRecord(new BigDecimal("1.00"), "x"))));
+        
+        assertTrue(builder.getKey(getRecord(Double.valueOf(1.5), "x"))
+                .hashCode() == builder.getKey(
+                getRecord(new BigDecimal("1.50"), "x")).hashCode());
+        
+        // text source vs database source
+        assertTrue(builder.getKey(getRecord("1", "x")).equals(
+                builder.getKey(getRecord(Integer.valueOf(1), "x"))));
+        
+        assertTrue(builder.getKey(getRecord(" 2.5", "x")).equals(
+                builder.getKey(getRecord(new BigDecimal("2.50"), "x"))));
+        
+        assertTrue(builder.getKey(getRecord("1.0", "x")).equals(
+                builder.getKey(getRecord(new BigDecimal("1.0"), "x"))));
+        
+        assertTrue(builder.getKey(getRecord("1.0", "x")).equals(
+                builder.getKey(getRecord("1", "x"))));
+        
+        // leading zeros are significant
+        assertFalse(builder.getKey(getRecord("007", "x")).equals(
+                builder.getKey(getRecord(Integer.valueOf(7), "x"))));
+        
+        assertFalse(builder.getKey(getRecord("ab", "c")).equals(
+                builder.getKey(getRecord("AB", "c"))));
+        
+        builder = new RecordKeyBuilder(dataSet, CommonEtlUtils.getKeyFields(
+                "first", dataSet.getFields()), true, true);
+        
+        assertTrue(builder.getKey(getRecord("ab", "c")).equals(
+                builder.getKey(getRecord("AB", "d"))));
+        
+        builder = new RecordKeyBuilder(dataSet, CommonEtlUtils.getKeyFields(
+                null, dataSet.getFields()), true, true);
+        
+        assertTrue(builder.isEmpty());
+        assertNull(builder.getKey(getRecord("ab", "c")));
+    }
+    
+    @Test
+    public void testGetRecord()
+    {
+        DataSet dataSet = getDataSet();
+        dataSet.setKeyFields("first");
+        
+        dataSet.addRecord(getRecord(Integer.valueOf(1), "a"));
+        dataSet.addRecord(getRecord(Integer.valueOf(2), "b"));
+        
+        assertEquals("b", dataSet.getRecord("2").get(1));
+        assertEquals("a", dataSet.getRecord(" 1 ").get(1));
+        assertNull(dataSet.getRecord("3"));
+        
+        dataSet = getDataSet();
+        dataSet.setKeyFields("first,second");
+        
+        dataSet.addRecord(getRecord("a", "bc"));
+        dataSet.addRecord(getRecord(Integer.valueOf(10), "x"));
+        dataSet.addRecord(getRecord(null, "y"));
+        
+        assertEquals("bc", dataSet.getRecord("abc").get(1));
+        assertEquals("x", dataSet.getRecord("10x").get(1));
+        assertEquals("y", dataSet.getRecord("nully").get(1));
+        assertNull(dataSet.getRecord("10y"));
+        assertNull(dataSet.getRecord("a"));
+    }
+    
+    @Test
+    public void testSplit()
+    {
+        DataSet dataSet = getDataSet();
+        dataSet.setName("test");
+        
+        dataSet.addRecord(getRecord("ab", "c"));
+        dataSet.addRecord(getRecord("a", "bc"));
+        dataSet.addRecord(getRecord("ab", "c"));
+        
+        LinkedHashMap<String, DataSet> dataSets = CommonEtlUtils.split(
+                dataSet, "first,second");
+        
+        assertEquals(2, dataSets.size());
+        assertEquals(2, dataSets.get("abc").getRecordCount());
+        assertEquals(1, dataSets.get("abc_1").getRecordCount());
+        assertEquals("bc", dataSets.get("abc_1").getRecord(0).get(1));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * RecordSorterTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.toolsverse.etl.common.DataSetData.SortType;
+import com.toolsverse.util.TypedKeyValue;
+
+/**
+ * RecordSorterTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class RecordSorterTest
+{
+    private DataSetRecord[] getRecords(int size)
+    {
+        DataSetRecord[] records = new DataSetRecord[size];
+        
+        for (int i = 0; i < size; i++)
+        {
+            DataSetRecord record = new DataSetRecord();
+            
+            record.add(i % 2 == 0 ? "key" + (i * 7919) % 1000 : null);
+            record.add(Integer.valueOf(i));
+            
+            records[i] = record;
+        }
+        
+        return records;
+    }
+    
+    @Test
+    public void testParallelSort()
+    {
+        List<TypedKeyValue<Integer, SortType>> orderBy = new ArrayList<TypedKeyValue<Integer, SortType>>();
+        orderBy.add(new TypedKeyValue<Integer, SortType>(0, SortType.DESC));
+        
+        RecordComparator comparator = new RecordComparator(orderBy, null);
+        
+        DataSetRecord[] records = getRecords(RecordSorter.PARALLEL_THRESHOLD
+                * 2 + 3);
+        
+        RecordSorter.sort(records, comparator, 4);
+        
+        for (int i = 1; i < records.length; i++)
+        {
+            int ret = comparator.compare(records[i - 1], records[i]);
+            
+            assertTrue(ret <= 0);
+            
+            if (ret == 0)
+                assertTrue((Integer)records[i - 1].get(1) < (Integer)records[i]
+                        .get(1));
+        }
+        
+        assertTrue(records[records.length - 1].get(0) == null);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * SpillableDataSetDataTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.toolsverse.etl.common.DataSetData.SortType;
+import com.toolsverse.util.TypedKeyValue;
+
+/**
+ * SpillableDataSetDataTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class SpillableDataSetDataTest
+{
+    private DataSetRecord getRecord(int i)
+    {
+        DataSetRecord record = new DataSetRecord();
+        
+        record.add(Integer.valueOf(i));
+        record.add("value" + i);
+        record.add(i % 5 == 0 ? null : new BigDecimal(i + ".5"));
+        record.add(new Timestamp(1000L * i));
+        record.add(Long.valueOf(i * 1000000000L));
+        
+        return record;
+    }
+    
+    @Test
+    public void testAddAndGet()
+    {
+        SpillableDataSetData data = new SpillableDataSetData(10, null);
+        
+        for (int i = 0; i < 100; i++)
+            data.add(getRecord(i));
+        
+        assertTrue(data.size() == 100);
+        assertTrue(data.getSpilledCount() == 90);
+        
+        for (int i = 0; i < 100; i++)
+        {
+            DataSetRecord record = data.get(i);
+            
+            assertTrue(Integer.valueOf(i).equals(record.get(0)));
+            assertTrue(("value" + i).equals(record.get(1)));
+            
+            if (i % 5 == 0)
+                assertNull(record.get(2));
+            else
+                assertTrue(new BigDecimal(i + ".5").equals(record.get(2)));
+            
+            assertTrue(new Timestamp(1000L * i).equals(record.get(3)));
+            assertTrue(Long.valueOf(i * 1000000000L).equals(record.get(4)));
+        }
+        
+        data.clear();
+        
+        assertTrue(data.isEmpty());
+        assertTrue(data.getSpilledCount() == 0);
+    }
+    
+    @Test
+    public void testInsertDeleteAndSet()
+    {
+        SpillableDataSetData data = new SpillableDataSetData(3, null);
+        
+        for (int i = 0; i < 6; i++)
+            data.add(getRecord(i));
+        
+        data.add(1, getRecord(10));
+        data.add(5, getRecord(11));
+        
+        assertTrue(data.size() == 8);
+        
+        DataSetRecord record = data.get(6);
+        record.set(1, new byte[] {1, 2});
+        record.addVersion(0, "abc");
+        data.set(6, record);
+        
+        assertTrue(Integer.valueOf(10).equals(data.delete(1).get(0)));
+        assertTrue(Integer.valueOf(5).equals(data.delete(6).get(0)));
+        
+        int[] expected = {0, 1, 2, 3, 11, 4};
+        
+        assertTrue(data.size() == expected.length);
+        
+        for (int i = 0; i < expected.length; i++)
+            assertTrue(Integer.valueOf(expected[i]).equals(data.get(i).get(0)));
+        
+        record = data.get(5);
+        
+        assertArrayEquals(new byte[] {1, 2}, (byte[])record.get(1));
+        assertTrue(record.getNumberOfVersions(0) == 2);
+        assertTrue("abc".equals(record.getVersion(0, 1)));
+        
+        data.clear();
+    }
+    
+    @Test
+    public void testChangesAndCompact()
+    {
+        File folder = new File(System.getProperty("java.io.tmpdir"), "spill"
+                + System.currentTimeMillis());
+        
+        SpillableDataSetData data = new SpillableDataSetData(10,
+                folder.getAbsolutePath());
+        
+        try
+        {
+            for (int i = 0; i < 5000; i++)
+                data.add(getRecord(i));
+            
+            data.get(0);
+            
+            assertTrue(folder.listFiles().length == 1);
+            
+            long length = folder.listFiles()[0].length();
+            
+            // changes made to the spilled records are written back
+            for (int round = 0; round < 3; round++)
+                for (int i = 0; i < 5000; i++)
+                    data.get(i).set(1, "changed" + round + "_" + i);
+            
+            data.get(2000).addVersion(0, "abc");
+            
+            for (int i = 0; i < 5000; i++)
+                assertTrue(("changed2_" + i).equals(data.get(i).get(1)));
+            
+            assertTrue(data.get(2000).getNumberOfVersions(0) == 2);
+            
+            // replaced records are removed from the file
+            assertTrue(folder.listFiles().length == 1);
+            assertTrue(folder.listFiles()[0].length() < 3 * length);
+            
+            while (data.getSpilledCount() > 0)
+                data.delete(data.size() - 1);
+            
+            assertTrue(data.size() == 10);
+            assertTrue(folder.listFiles().length == 0);
+        }
+        finally
+        {
+            data.clear();
+            
+            folder.delete();
+        }
+    }
+    
+    @Test
+    public void testSort()
+    {
+        SpillableDataSetData data = new SpillableDataSetData(7, null);
+        
+        for (int i = 0; i < 50; i++)
+            data.add(getRecord((i * 17) % 50));
+        
+        List<TypedKeyValue<Integer, SortType>> orderBy = new ArrayList<TypedKeyValue<Integer, SortType>>();
+        orderBy.add(new TypedKeyValue<Integer, SortType>(0, SortType.DESC));
+        
+        data.sort(orderBy);
+        
+        assertTrue(data.size() == 50);
+        
+        for (int i = 0; i < 50; i++)
+        {
+            DataSetRecord record = data.get(i);
+            
+            assertTrue(Integer.valueOf(49 - i).equals(record.get(0)));
+            assertTrue(("value" + (49 - i)).equals(record.get(1)));
+        }
+        
+        data.clear();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * PartitionedWriterTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.connector.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.sql.Types;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.toolsverse.config.SystemConfig;
+import com.toolsverse.etl.common.DataSet;
+import com.toolsverse.etl.common.DataSetRecord;
+import com.toolsverse.etl.common.FieldDef;
+import com.toolsverse.etl.connector.ConnectorResult;
+import com.toolsverse.etl.connector.DataSetConnector;
+import com.toolsverse.etl.connector.DataSetConnectorParams;
+import com.toolsverse.etl.connector.text.TextConnector;
+import com.toolsverse.etl.connector.text.TextConnectorParams;
+import com.toolsverse.etl.core.config.EtlConfig;
+import com.toolsverse.etl.core.engine.EtlFactory;
+import com.toolsverse.etl.driver.Driver;
+import com.toolsverse.etl.driver.GenericJdbcDriver;
+import com.toolsverse.resource.TestResource;
+import com.toolsverse.util.FileUtils;
+import com.toolsverse.util.Utils;
+
+/**
+ * PartitionedWriterTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class PartitionedWriterTest
+{
+    private static final int GROUPS = 7;
+    
+    private static final int ROWS = 1000;
+    
+    @BeforeClass
+    public static void setUp()
+    {
+        System.setProperty(
+                SystemConfig.HOME_PATH_PROPERTY,
+                SystemConfig.WORKING_PATH
+                        + TestResource.TEST_HOME_PATH.getValue());
+        
+        SystemConfig.instance().setSystemProperty(
+                SystemConfig.DEPLOYMENT_PROPERTY, SystemConfig.TEST_DEPLOYMENT);
+        
+        Utils.callAnyMethod(SystemConfig.instance(), "init");
+    }
+    
+    @AfterClass
+    public static void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteFilesInFolder(SystemConfig.instance()
+                .getDataFolderName(), "split_*");
+    }
+    
+    private DataSet getDataSet()
+    {
+        DataSet dataSet = new DataSet();
+        dataSet.setName("split");
+        
+        FieldDef fieldDef = new FieldDef();
+        fieldDef.setName("ID");
+        fieldDef.setSqlDataType(Types.INTEGER);
+        dataSet.addField(fieldDef);
+        
+        fieldDef = new FieldDef();
+        fieldDef.setName("GRP");
+        fieldDef.setSqlDataType(Types.VARCHAR);
+        dataSet.addField(fieldDef);
+        
+        for (int i = 0; i < ROWS; i++)
+        {
+            DataSetRecord record = new DataSetRecord();
+            
+            record.add(i);
+            record.add("g" + (i % GROUPS));
+            
+            dataSet.addRecord(record);
+        }
+        
+        return dataSet;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void split(int threads, int maxOpenFiles)
+        throws Exception
+    {
+        FileUtils.deleteFilesInFolder(SystemConfig.instance()
+                .getDataFolderName(), "split_*");
+        
+        EtlConfig config = new EtlConfig();
+        config.init();
+        
+        Driver driver = new EtlFactory().getDriver(
+                GenericJdbcDriver.class.getName(), null, null);
+        
+        TextConnectorParams params = new TextConnectorParams(config, true, -1,
+                "|", false);
+        params.setFileName("split");
+        params.setFirstRowData(false);
+        params.setSplitBy("GRP");
+        params.setSplitThreads(threads);
+        params.setMaxOpenFiles(maxOpenFiles);
+        
+        TextConnector connector = new TextConnector();
+        
+        ConnectorRequest request = new ConnectorRequest(driver, -1,
+                (DataSetConnector<DataSetConnectorParams, ?>)(Object)connector,
+                null, params, "split", null);
+        
+        ConnectorResult result = new ConnectorServiceImpl().persistDataSet(
+                request, getDataSet());
+        
+        assertEquals(ConnectorResult.OK_CODE, result.getRetCode());
+        
+        for (int group = 0; group < GROUPS; group++)
+        {
+            TextConnectorParams readParams = new TextConnectorParams(config,
+                    true, -1, "|", false);
+            readParams.setFileName("split_g" + group);
+            readParams.setFirstRowData(false);
+            
+            DataSet dataSet = new DataSet();
+            dataSet.setName("split_g" + group);
+            
+            connector.populate(readParams, dataSet, driver);
+            
+            assertNotNull(dataSet.getFieldDef("GRP"));
+            assertEquals((ROWS - group + GROUPS - 1) / GROUPS,
+                    dataSet.getRecordCount());
+            
+            for (int row = 0; row < dataSet.getRecordCount(); row++)
+            {
+                assertEquals("g" + group, dataSet.getFieldValue(row, 1));
+                assertEquals(row * GROUPS + group, Utils.str2Int(
+                        Utils.makeString(dataSet.getFieldValue(row, 0)), -1));
+            }
+        }
+    }
+    
+    @Test
+    public void testEvict()
+        throws Exception
+    {
+        split(1, 2);
+        split(2, 2);
+    }
+    
+    @Test
+    public void testSplit()
+        throws Exception
+    {
+        split(1, 100);
+        split(3, 100);
+    }
+}
@@ -7,11 +7,15 @@
 
 package com.toolsverse.etl.connector.text;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.sql.Types;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -20,6 +24,7 @@ import org.junit.Test;
 import com.toolsverse.config.SystemConfig;
 import com.toolsverse.etl.common.DataSet;
 import com.toolsverse.etl.common.DataSetGenerator;
+import com.toolsverse.etl.common.DataSetRecord;
 import com.toolsverse.etl.connector.xml.XmlConnector;
 import com.toolsverse.etl.connector.xml.XmlConnectorParams;
 import com.toolsverse.etl.core.config.EtlConfig;
@@ -395,6 +400,168 @@ public class TextConnectorTest
         assertTrue(sourceDataSet.equals(destDataSet));
     }
     
+    @Test
+    public void testParallel()
+        throws Exception
+    {
+        FileUtils.deleteFilesInFolder(SystemConfig.instance()
+                .getDataFolderName(), "test.*");
+        
+        EtlConfig config = new EtlConfig();
+        config.init();
+        
+        EtlFactory etlFactory = new EtlFactory();
+        
+        Driver driver = etlFactory.getDriver(GenericJdbcDriver.class.getName(),
+                null, null);
+        
+        assertNotNull(driver);
+        
+        DataSet sourceDataSet = DataSetGenerator.getTestDataSet();
+        assertNotNull(sourceDataSet);
+        
+        sourceDataSet.setName("test");
+        
+        int count = sourceDataSet.getRecordCount();
+        
+        for (int i = 0; i < 2000; i++)
+        {
+            DataSetRecord source = sourceDataSet.getRecord(i % count);
+            DataSetRecord record = new DataSetRecord();
+            
+            record.add(count + i + 1);
+            
+            for (int col = 1; col < source.size(); col++)
+                record.add(source.get(col));
+            
+            sourceDataSet.addRecord(record);
+        }
+        
+        TextConnector textConnector = new TextConnector();
+        
+        TextConnectorParams params = new TextConnectorParams(config, false,
+                config.getLogStep(), ";", true);
+        params.setFirstRowData(false);
+        
+        textConnector.persist(params, sourceDataSet, driver);
+        
+        params.setThreads(4);
+        params.setChunkSize(1024);
+        
+        DataSet destDataSet = new DataSet();
+        destDataSet.setName("test");
+        
+        textConnector.populate(params, destDataSet, driver);
+        
+        assertTrue(sourceDataSet.equals(destDataSet));
+        
+        params.setOrdered(false);
+        
+        destDataSet = new DataSet();
+        destDataSet.setName("test");
+        
+        textConnector.populate(params, destDataSet, driver);
+        
+        assertTrue(destDataSet.getRecordCount() == sourceDataSet
+                .getRecordCount());
+        
+        params.setOrdered(true);
+        params.setMaxRows(100);
+        
+        destDataSet = new DataSet();
+        destDataSet.setName("test");
+        
+        textConnector.populate(params, destDataSet, driver);
+        
+        assertTrue(destDataSet.getRecordCount() == 100);
+        assertTrue(sourceDataSet.getFieldValue(99, 0).toString()
+                .equals(destDataSet.getFieldValue(99, 0).toString()));
+        
+        // quoted values with line breaks are read sequentially
+        FileUtils.deleteFilesInFolder(SystemConfig.instance()
+                .getDataFolderName(), "test.*");
+        
+        int col = sourceDataSet.getFieldIndex(DataSetGenerator.FIELD2_NAME);
+        
+        for (int row = 0; row < sourceDataSet.getRecordCount(); row += 3)
+            sourceDataSet.getRecord(row).set(col, "first|line " + row);
+        
+        params = new TextConnectorParams(config, false, config.getLogStep(),
+                ";", true);
+        params.setFirstRowData(false);
+        params.setCharSeparator("\"");
+        
+        textConnector.persist(params, sourceDataSet, driver);
+        
+        // line breaks are removed when values are written
+        FileUtils.saveTextFile(params.getRealFileName(), FileUtils
+                .loadTextFile(params.getRealFileName()).replace("first|line",
+                        "first\nline"));
+        
+        for (int row = 0; row < sourceDataSet.getRecordCount(); row += 3)
+            sourceDataSet.getRecord(row).set(col, "first\nline " + row);
+        
+        params.setThreads(4);
+        params.setChunkSize(1024);
+        
+        destDataSet = new DataSet();
+        destDataSet.setName("test");
+        
+        textConnector.populate(params, destDataSet, driver);
+        
+        assertTrue(sourceDataSet.equals(destDataSet));
+    }
+    
+    @Test
+    public void testSampleRows()
+        throws Exception
+    {
+        EtlConfig config = new EtlConfig();
+        config.init();
+        
+        EtlFactory etlFactory = new EtlFactory();
+        
+        Driver driver = etlFactory.getDriver(GenericJdbcDriver.class.getName(),
+                null, null);
+        
+        StringBuilder text = new StringBuilder("id|name\n");
+        
+        for (int i = 0; i < 10; i++)
+            text.append(i).append("|name").append(i).append('\n');
+        
+        text.append("x|123\n|\n11|'12'\n");
+        
+        TextConnector textConnector = new TextConnector();
+        
+        TextConnectorParams params = new TextConnectorParams(config, false,
+                config.getLogStep(), "|", false);
+        params.setFirstRowData(false);
+        params.setCharSeparator("'");
+        params.setSampleRows(3);
+        params.setInputStream(new ByteArrayInputStream(text.toString()
+                .getBytes()));
+        
+        DataSet destDataSet = new DataSet();
+        destDataSet.setName("test");
+        
+        textConnector.populate(params, destDataSet, driver);
+        
+        assertEquals(13, destDataSet.getRecordCount());
+        assertEquals(Types.VARCHAR, destDataSet.getFieldDef(0)
+                .getSqlDataType());
+        assertEquals(Types.VARCHAR, destDataSet.getFieldDef(1)
+                .getSqlDataType());
+        
+        assertEquals(5, destDataSet.getFieldValue(5, 0));
+        assertEquals("name5", destDataSet.getFieldValue(5, 1));
+        assertEquals("x", destDataSet.getFieldValue(10, 0));
+        assertEquals("123", destDataSet.getFieldValue(10, 1));
+        assertNull(destDataSet.getFieldValue(11, 0));
+        assertNull(destDataSet.getFieldValue(11, 1));
+        assertEquals("11", destDataSet.getFieldValue(12, 0));
+        assertEquals("12", destDataSet.getFieldValue(12, 1));
+    }
+    
     @Test
     public void testXml2Text()
         throws Exception
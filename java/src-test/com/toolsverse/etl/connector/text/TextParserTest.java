@@ -0,0 +1,141 @@
+/*
+ * TextParserTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.connector.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.sql.Types;
+
+import org.junit.Test;
+
+/**
+ * TextParserTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class TextParserTest
+{
+    @Test
+    public void testDelimited()
+        throws Exception
+    {
+        TextParser parser = new TextParser(new StringReader(
+                "1|'abc'|x\r\n-25||'a|b'\r'it's'|'a''b'|''\n\n"), "|", "'",
+                null);
+        
+        assertTrue(parser.next());
+        assertEquals(3, parser.getFieldCount());
+        assertEquals(1, parser.getValue(0, Types.INTEGER, null));
+        assertEquals("abc", parser.getString(1));
+        assertTrue(parser.isQuoted(1));
+        assertFalse(parser.isQuoted(2));
+        assertEquals("x", parser.getString(2));
+        
+        assertTrue(parser.next());
+        assertEquals(3, parser.getFieldCount());
+        assertEquals(-25L, parser.getValue(0, Types.BIGINT, null));
+        assertTrue(parser.isEmpty(1));
+        assertNull(parser.getValue(1, Types.INTEGER, null));
+        assertEquals("a|b", parser.getString(2));
+        
+        assertTrue(parser.next());
+        assertEquals(3, parser.getFieldCount());
+        assertEquals("it's", parser.getString(0));
+        assertEquals("a'b", parser.getString(1));
+        assertTrue(parser.isEmpty(2));
+        assertTrue(parser.isQuoted(2));
+        
+        assertTrue(parser.next());
+        assertEquals(1, parser.getFieldCount());
+        assertTrue(parser.isEmpty(0));
+        
+        assertFalse(parser.next());
+    }
+    
+    @Test
+    public void testEmbeddedNewLine()
+        throws Exception
+    {
+        TextParser parser = new TextParser(new StringReader(
+                "\"line1\nline2\",\"a,b\"\n3"), ",", "\"", null);
+        
+        assertTrue(parser.next());
+        assertEquals(2, parser.getFieldCount());
+        assertEquals("line1\nline2", parser.getString(0));
+        assertEquals("a,b", parser.getString(1));
+        
+        assertTrue(parser.next());
+        assertEquals(1, parser.getFieldCount());
+        assertEquals(3, parser.getValue(0, Types.INTEGER, null));
+        
+        assertFalse(parser.next());
+        
+        parser = new TextParser(new StringReader("a::'b::c'::2.5\n"), "::",
+                "'", null);
+        
+        assertTrue(parser.next());
+        assertEquals(3, parser.getFieldCount());
+        assertEquals("a", parser.getString(0));
+        assertEquals("b::c", parser.getString(1));
+        assertEquals(2.5, ((Number)parser.getValue(2, Types.DOUBLE, null))
+                .doubleValue(), 0);
+        
+        assertFalse(parser.next());
+    }
+    
+    @Test
+    public void testFixedLength()
+        throws Exception
+    {
+        TextParser parser = new TextParser(new StringReader(
+                "123 'abc'   789\r\n12\r\n"), null, "'", new int[] {4, 8, 3});
+        
+        assertTrue(parser.next());
+        assertEquals(3, parser.getFieldCount());
+        assertEquals(123, parser.getValue(0, Types.INTEGER, null));
+        assertEquals("abc", parser.getString(1));
+        assertEquals("789", parser.getString(2));
+        
+        assertTrue(parser.next());
+        assertEquals(3, parser.getFieldCount());
+        assertEquals("12", parser.getString(0));
+        assertTrue(parser.isEmpty(1));
+        assertTrue(parser.isEmpty(2));
+        
+        assertFalse(parser.next());
+    }
+    
+    @Test
+    public void testLargeRecord()
+        throws Exception
+    {
+        StringBuilder text = new StringBuilder();
+        
+        for (int i = 0; i < 100000; i++)
+            text.append(i).append(',');
+        
+        text.append("end");
+        
+        TextParser parser = new TextParser(
+                new StringReader(text.toString()), ",", null, null);
+        
+        assertTrue(parser.next());
+        assertEquals(100001, parser.getFieldCount());
+        assertEquals(99999, parser.getValue(99999, Types.INTEGER, null));
+        assertEquals("end", parser.getString(100000));
+        
+        assertFalse(parser.next());
+    }
+}
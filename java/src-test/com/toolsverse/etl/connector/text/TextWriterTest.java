@@ -0,0 +1,83 @@
+/*
+ * TextWriterTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.connector.text;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * TextWriterTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class TextWriterTest
+{
+    @Test
+    public void testLargeText()
+        throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        
+        TextWriter writer = new TextWriter(output);
+        
+        StringBuilder expected = new StringBuilder();
+        
+        for (int i = 0; i < 100000; i++)
+        {
+            String value = "value\r\n" + i;
+            
+            writer.writeValue(value);
+            writer.write("|");
+            
+            expected.append("value").append(i).append('|');
+        }
+        
+        char[] chars = new char[TextWriter.BUFFER_SIZE * 2 + 1];
+        
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = (char)('a' + i % 26);
+        
+        writer.write(chars);
+        writer.write(chars, 1, 10);
+        
+        expected.append(chars).append(chars, 1, 10);
+        
+        writer.close();
+        
+        assertEquals(expected.toString(), new String(output.toByteArray()));
+    }
+    
+    @Test
+    public void testWriteValue()
+        throws Exception
+    {
+        StringWriter output = new StringWriter();
+        
+        TextWriter writer = new TextWriter(output);
+        
+        writer.writeValue("a\nb\r\nc");
+        writer.write(';');
+        writer.writeValue(null);
+        writer.write(';');
+        writer.writeValue("12\n345", 4);
+        writer.writeValue("ab", 4);
+        writer.writeValue(null, 2);
+        writer.write("\n");
+        
+        writer.close();
+        
+        assertEquals("abc;;1234ab    \n", output.toString());
+    }
+}
@@ -8,6 +8,7 @@
 package com.toolsverse.etl.connector.xml;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.FileInputStream;
@@ -133,6 +134,8 @@ public class XmlConnectorTest
         
         xmlConnector.persist(params, sourceDataSet, driver);
         
+        assertNull(params.getXml());
+        
         DataSet destDataSet = new DataSet();
         destDataSet.setName("test");
         
@@ -146,6 +149,47 @@ public class XmlConnectorTest
         assertTrue(sourceDataSet.equals(destDataSet));
     }
     
+    @Test
+    public void testConnectorDom()
+        throws Exception
+    {
+        FileUtils.deleteFilesInFolder(SystemConfig.instance()
+                .getDataFolderName(), "test.*");
+        
+        EtlConfig config = new EtlConfig();
+        config.init();
+        
+        EtlFactory etlFactory = new EtlFactory();
+        
+        Driver driver = etlFactory.getDriver(
+                "com.toolsverse.etl.driver.MockExtendedCallableDriver", null,
+                null);
+        
+        assertNotNull(driver);
+        
+        DataSet sourceDataSet = DataSetGenerator.getTestDataSet();
+        assertNotNull(sourceDataSet);
+        
+        sourceDataSet.setName("test");
+        
+        XmlConnector xmlConnector = new XmlConnector();
+        
+        XmlConnectorParams params = new XmlConnectorParams(config, false,
+                config.getLogStep());
+        params.setStreaming(false);
+        
+        xmlConnector.persist(params, sourceDataSet, driver);
+        
+        assertNotNull(params.getXml());
+        
+        DataSet destDataSet = new DataSet();
+        destDataSet.setName("test");
+        
+        xmlConnector.populate(params, destDataSet, driver);
+        
+        assertTrue(sourceDataSet.equals(destDataSet));
+    }
+    
     @Test
     public void testDateFormat()
         throws Exception
@@ -268,6 +312,14 @@ public class XmlConnectorTest
         xmlConnector.populate(params, destDataSet, driver);
         
         assertTrue(sourceDataSet.equals(destDataSet));
+        
+        destDataSet = new DataSet();
+        destDataSet.setName("test");
+        
+        params.setMaxRows(2);
+        xmlConnector.populate(params, destDataSet, driver);
+        
+        assertTrue(destDataSet.getRecordCount() == 2);
     }
     
     @Test
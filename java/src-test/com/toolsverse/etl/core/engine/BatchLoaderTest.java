@@ -0,0 +1,353 @@
+/*
+ * BatchLoaderTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.toolsverse.etl.common.DataSet;
+import com.toolsverse.etl.common.DataSetRecord;
+import com.toolsverse.etl.common.FieldDef;
+import com.toolsverse.etl.common.OnException;
+import com.toolsverse.etl.driver.Driver;
+import com.toolsverse.etl.driver.GenericJdbcDriver;
+
+/**
+ * BatchLoaderTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class BatchLoaderTest
+{
+    private static final String URL = "jdbc:derby:memory:batchload";
+    
+    private static final int ROWS = 100;
+    
+    private static Connection _connection;
+    
+    @BeforeClass
+    public static void setUp()
+        throws Exception
+    {
+        Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+        
+        _connection = DriverManager.getConnection(URL + ";create=true");
+        
+        Statement statement = _connection.createStatement();
+        statement
+                .execute("create table fact (id int primary key, name varchar(20))");
+        statement.close();
+    }
+    
+    @AfterClass
+    public static void tearDown()
+    {
+        try
+        {
+            _connection.close();
+        }
+        catch (Exception ex)
+        {
+        }
+        
+        try
+        {
+            DriverManager.getConnection(URL + ";drop=true");
+        }
+        catch (Exception ex)
+        {
+        }
+    }
+    
+    @Before
+    public void clean()
+        throws Exception
+    {
+        Statement statement = _connection.createStatement();
+        statement.execute("delete from fact");
+        statement.close();
+    }
+    
+    private int count(String sql)
+        throws Exception
+    {
+        Statement statement = _connection.createStatement();
+        
+        try
+        {
+            ResultSet rs = statement.executeQuery(sql);
+            
+            rs.next();
+            
+            return rs.getInt(1);
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+    
+    private Destination getDestination(String action, String key)
+    {
+        DataSet dataSet = new DataSet();
+        dataSet.setName("fact");
+        
+        FieldDef fieldDef = new FieldDef();
+        fieldDef.setName("ID");
+        fieldDef.setSqlDataType(Types.INTEGER);
+        dataSet.addField(fieldDef);
+        
+        fieldDef = new FieldDef();
+        fieldDef.setName("NAME");
+        fieldDef.setSqlDataType(Types.VARCHAR);
+        dataSet.addField(fieldDef);
+        
+        Destination destination = new Destination();
+        destination.setName("fact");
+        destination.setObjectName("fact");
+        destination.setDataSet(dataSet);
+        destination.setBatchSize(30);
+        destination.setLoadAction(action);
+        destination.setLoadKey(key);
+        
+        return destination;
+    }
+    
+    private static Object invoke(Object target, Method method, Object[] args)
+        throws Throwable
+    {
+        try
+        {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException ex)
+        {
+            throw ex.getTargetException();
+        }
+    }
+    
+    // the connection which doesn't report number of updated records and
+    // counts executed updates
+    private Connection getNoInfoConnection(final int[] updates)
+    {
+        return (Connection)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, new InvocationHandler()
+                {
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args)
+                        throws Throwable
+                    {
+                        Object result = BatchLoaderTest.invoke(_connection,
+                                method, args);
+                        
+                        if (!"prepareStatement".equals(method.getName()))
+                            return result;
+                        
+                        final PreparedStatement statement = (PreparedStatement)result;
+                        final boolean isUpdate = ((String)args[0])
+                                .startsWith("update");
+                        
+                        return Proxy.newProxyInstance(getClass()
+                                .getClassLoader(),
+                                new Class<?>[] {PreparedStatement.class},
+                                new InvocationHandler()
+                                {
+                                    public Object invoke(Object proxy,
+                                            Method method, Object[] args)
+                                        throws Throwable
+                                    {
+                                        Object result = BatchLoaderTest
+                                                .invoke(statement, method, args);
+                                        
+                                        if (!isUpdate)
+                                            return result;
+                                        
+                                        if ("executeUpdate".equals(method
+                                                .getName()))
+                                            updates[0]++;
+                                        
+                                        if (!"executeBatch".equals(method
+                                                .getName()))
+                                            return result;
+                                        
+                                        int[] counts = (int[])result;
+                                        
+                                        updates[0] += counts.length;
+                                        
+                                        Arrays.fill(counts,
+                                                Statement.SUCCESS_NO_INFO);
+                                        
+                                        return counts;
+                                    }
+                                });
+                    }
+                });
+    }
+    
+    private long load(Destination destination, String prefix, int duplicate)
+        throws Exception
+    {
+        return load(destination, prefix, duplicate, _connection);
+    }
+    
+    private long load(Destination destination, String prefix, int duplicate,
+            Connection connection)
+        throws Exception
+    {
+        Driver driver = new EtlFactory().getDriver(
+                GenericJdbcDriver.class.getName(), null, null);
+        
+        BatchLoader loader = new BatchLoader(destination, driver, connection);
+        
+        try
+        {
+            for (int i = 0; i < ROWS; i++)
+            {
+                DataSetRecord record = new DataSetRecord();
+                
+                record.add(i == duplicate ? 0 : i);
+                record.add(prefix + i);
+                
+                loader.addRecord(record);
+            }
+            
+            loader.flush();
+            
+            return loader.getRowCount();
+        }
+        finally
+        {
+            loader.close();
+        }
+    }
+    
+    @Test
+    public void testExecute()
+        throws Exception
+    {
+        assertEquals(ROWS, load(getDestination(Destination.LOAD_INSERT, null),
+                "name", -1));
+        
+        assertEquals(ROWS, count("select count(*) from fact"));
+        
+        load(getDestination(Destination.LOAD_UPDATE, "ID"), "new", -1);
+        
+        assertEquals(ROWS, count("select count(*) from fact"));
+        assertEquals(ROWS,
+                count("select count(*) from fact where name like 'new%'"));
+    }
+    
+    @Test
+    public void testFallbackToSingle()
+        throws Exception
+    {
+        Destination destination = getDestination(Destination.LOAD_INSERT,
+                null);
+        destination.setOnExceptionAction(OnException.ON_EXCEPTION_IGNORE);
+        
+        // the duplicate in the middle of the second batch fails it
+        load(destination, "name", 45);
+        
+        // all records except the duplicate are inserted one by one
+        assertEquals(ROWS - 1, count("select count(*) from fact"));
+        assertEquals(0, count("select count(*) from fact where id = 45"));
+        assertEquals(1, count("select count(*) from fact where id = 46"));
+        assertEquals(1, count("select count(*) from fact where id = 59"));
+    }
+    
+    @Test
+    public void testMergeNoUpdateCounts()
+        throws Exception
+    {
+        Statement statement = _connection.createStatement();
+        
+        for (int i = 0; i < ROWS; i += 2)
+            statement.execute("insert into fact values (" + i + ", 'name" + i
+                    + "')");
+        
+        statement.close();
+        
+        int[] updates = new int[1];
+        
+        load(getDestination(Destination.LOAD_MERGE, "ID"), "new", -1,
+                getNoInfoConnection(updates));
+        
+        // each record is updated once and missing records are inserted
+        assertEquals(ROWS, updates[0]);
+        assertEquals(ROWS, count("select count(*) from fact"));
+        assertEquals(ROWS,
+                count("select count(*) from fact where name like 'new%'"));
+    }
+    
+    @Test
+    public void testOnException()
+        throws Exception
+    {
+        Destination destination = getDestination(Destination.LOAD_INSERT,
+                null);
+        destination.setOnExceptionAction(OnException.ON_EXCEPTION_RAISE);
+        
+        boolean raised = false;
+        
+        try
+        {
+            load(destination, "name", 45);
+        }
+        catch (Exception ex)
+        {
+            raised = true;
+        }
+        
+        assertTrue(raised);
+        
+        // records after the failed one are not loaded
+        assertEquals(0, count("select count(*) from fact where id = 46"));
+        
+        clean();
+        
+        destination = getDestination(Destination.LOAD_INSERT, null);
+        destination.setOnExceptionAction(OnException.ON_EXCEPTION_IGNORE);
+        destination.setExceptionMask("no such exception");
+        
+        raised = false;
+        
+        // exception doesn't match the mask
+        try
+        {
+            load(destination, "name", 45);
+        }
+        catch (Exception ex)
+        {
+            raised = true;
+        }
+        
+        assertTrue(raised);
+        assertEquals(0, count("select count(*) from fact where id = 46"));
+    }
+}
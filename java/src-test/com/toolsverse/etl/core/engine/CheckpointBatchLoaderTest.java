@@ -0,0 +1,242 @@
+/*
+ * CheckpointBatchLoaderTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.toolsverse.etl.common.DataSet;
+import com.toolsverse.etl.common.DataSetRecord;
+import com.toolsverse.etl.common.FieldDef;
+import com.toolsverse.etl.core.connection.DefaultTransactionMonitor;
+import com.toolsverse.etl.driver.Driver;
+import com.toolsverse.etl.driver.GenericJdbcDriver;
+
+/**
+ * CheckpointBatchLoaderTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class CheckpointBatchLoaderTest
+{
+    private static final String URL = "jdbc:derby:memory:checkpointload";
+    
+    private static final int ROWS = 250;
+    
+    private static Connection _connection;
+    
+    @BeforeClass
+    public static void setUp()
+        throws Exception
+    {
+        Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+        
+        _connection = DriverManager.getConnection(URL + ";create=true");
+        
+        Statement statement = _connection.createStatement();
+        statement.execute("create table fact (id int, name varchar(20))");
+        statement.close();
+        
+        _connection.setAutoCommit(false);
+    }
+    
+    @AfterClass
+    public static void tearDown()
+    {
+        try
+        {
+            _connection.close();
+        }
+        catch (Exception ex)
+        {
+        }
+        
+        try
+        {
+            DriverManager.getConnection(URL + ";drop=true");
+        }
+        catch (Exception ex)
+        {
+        }
+    }
+    
+    private int count(String sql)
+        throws Exception
+    {
+        Statement statement = _connection.createStatement();
+        
+        try
+        {
+            ResultSet rs = statement.executeQuery(sql);
+            
+            rs.next();
+            
+            return rs.getInt(1);
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+    
+    private Destination getDestination(String table)
+    {
+        DataSet dataSet = new DataSet();
+        dataSet.setName(table);
+        
+        FieldDef fieldDef = new FieldDef();
+        fieldDef.setName("ID");
+        fieldDef.setSqlDataType(Types.INTEGER);
+        dataSet.addField(fieldDef);
+        
+        fieldDef = new FieldDef();
+        fieldDef.setName("NAME");
+        fieldDef.setSqlDataType(Types.VARCHAR);
+        dataSet.addField(fieldDef);
+        
+        Destination destination = new Destination();
+        destination.setName(table);
+        destination.setObjectName(table);
+        destination.setDataSet(dataSet);
+        destination.setBatchSize(50);
+        destination.setLoadAction(Destination.LOAD_INSERT);
+        destination.setCommitRows(100);
+        
+        return destination;
+    }
+    
+    private String getFileName()
+        throws Exception
+    {
+        File file = File.createTempFile("fact", ".checkpoint");
+        
+        file.delete();
+        
+        return file.getAbsolutePath();
+    }
+    
+    private void load(Destination destination, Checkpoint checkpoint)
+        throws Exception
+    {
+        Driver driver = new EtlFactory().getDriver(
+                GenericJdbcDriver.class.getName(), null, null);
+        
+        CheckpointBatchLoader loader = new CheckpointBatchLoader(destination,
+                driver, _connection, checkpoint);
+        
+        try
+        {
+            for (int i = 0; i < ROWS; i++)
+            {
+                DataSetRecord record = new DataSetRecord();
+                
+                record.add(i);
+                record.add("name" + i);
+                
+                loader.addRecord(record);
+            }
+            
+            loader.flush();
+        }
+        finally
+        {
+            loader.close();
+        }
+    }
+    
+    @Test
+    public void testCommitAndResume()
+        throws Exception
+    {
+        String fileName = getFileName();
+        
+        try
+        {
+            load(getDestination("fact"), new Checkpoint(fileName));
+            
+            // the tail after the last checkpoint is lost
+            _connection.rollback();
+            
+            assertEquals(200, count("select count(*) from fact"));
+            
+            Checkpoint checkpoint = Checkpoint.load(fileName);
+            
+            assertNotNull(checkpoint);
+            assertEquals(200, checkpoint.getPosition());
+            assertNotNull(checkpoint.getCommitted());
+            
+            load(getDestination("fact"), checkpoint);
+            
+            DefaultTransactionMonitor monitor = new DefaultTransactionMonitor();
+            monitor.addConnection(_connection);
+            monitor.addCheckpoint(fileName);
+            monitor.commit();
+            
+            assertEquals(ROWS, count("select count(*) from fact"));
+            assertEquals(ROWS, count("select count(distinct id) from fact"));
+            
+            assertFalse(new File(fileName).exists());
+        }
+        finally
+        {
+            new Checkpoint(fileName).delete();
+        }
+    }
+    
+    @Test
+    public void testSave()
+        throws Exception
+    {
+        String fileName = getFileName();
+        
+        try
+        {
+            assertNull(Checkpoint.load(fileName));
+            
+            Checkpoint checkpoint = new Checkpoint(fileName);
+            checkpoint.save(10);
+            checkpoint.save(20);
+            
+            assertTrue(new File(fileName).exists());
+            assertFalse(new File(fileName + ".tmp").exists());
+            
+            assertEquals(20, Checkpoint.load(fileName).getPosition());
+            
+            // process failed after the old checkpoint was deleted
+            new File(fileName).renameTo(new File(fileName + ".tmp"));
+            
+            assertEquals(20, Checkpoint.load(fileName).getPosition());
+            assertTrue(new File(fileName).exists());
+            
+            checkpoint.delete();
+            
+            assertNull(Checkpoint.load(fileName));
+        }
+        finally
+        {
+            new Checkpoint(fileName).delete();
+        }
+    }
+}
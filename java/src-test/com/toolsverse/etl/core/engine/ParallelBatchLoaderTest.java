@@ -0,0 +1,195 @@
+/*
+ * ParallelBatchLoaderTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.toolsverse.etl.common.DataSet;
+import com.toolsverse.etl.common.DataSetRecord;
+import com.toolsverse.etl.common.FieldDef;
+import com.toolsverse.etl.driver.Driver;
+import com.toolsverse.etl.driver.GenericJdbcDriver;
+
+/**
+ * ParallelBatchLoaderTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class ParallelBatchLoaderTest
+{
+    private static final String URL = "jdbc:derby:memory:parallelload";
+    
+    private static final int ROWS = 1000;
+    
+    private static List<Connection> _connections = new ArrayList<Connection>();
+    
+    @BeforeClass
+    public static void setUp()
+        throws Exception
+    {
+        Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+        
+        Connection connection = DriverManager.getConnection(URL
+                + ";create=true");
+        
+        Statement statement = connection.createStatement();
+        statement.execute("create table fact (id int, name varchar(20))");
+        statement.close();
+        
+        _connections.add(connection);
+        
+        for (int i = 1; i < 3; i++)
+            _connections.add(DriverManager.getConnection(URL));
+    }
+    
+    @AfterClass
+    public static void tearDown()
+    {
+        for (Connection connection : _connections)
+        {
+            try
+            {
+                connection.close();
+            }
+            catch (Exception ex)
+            {
+            }
+        }
+        
+        try
+        {
+            DriverManager.getConnection(URL + ";drop=true");
+        }
+        catch (Exception ex)
+        {
+        }
+    }
+    
+    private int count(String sql)
+        throws Exception
+    {
+        Statement statement = _connections.get(0).createStatement();
+        
+        try
+        {
+            ResultSet rs = statement.executeQuery(sql);
+            
+            rs.next();
+            
+            return rs.getInt(1);
+        }
+        finally
+        {
+            statement.close();
+        }
+    }
+    
+    private Destination getDestination(String table, String action, String key)
+    {
+        DataSet dataSet = new DataSet();
+        dataSet.setName(table);
+        
+        FieldDef fieldDef = new FieldDef();
+        fieldDef.setName("ID");
+        fieldDef.setSqlDataType(Types.INTEGER);
+        dataSet.addField(fieldDef);
+        
+        fieldDef = new FieldDef();
+        fieldDef.setName("NAME");
+        fieldDef.setSqlDataType(Types.VARCHAR);
+        dataSet.addField(fieldDef);
+        
+        Destination destination = new Destination();
+        destination.setName(table);
+        destination.setObjectName(table);
+        destination.setDataSet(dataSet);
+        destination.setBatchSize(50);
+        destination.setLoadAction(action);
+        destination.setLoadKey(key);
+        
+        return destination;
+    }
+    
+    private void load(Destination destination, String prefix)
+        throws Exception
+    {
+        Driver driver = new EtlFactory().getDriver(
+                GenericJdbcDriver.class.getName(), null, null);
+        
+        ParallelBatchLoader loader = new ParallelBatchLoader(destination,
+                driver, _connections);
+        
+        try
+        {
+            for (int i = 0; i < ROWS; i++)
+            {
+                DataSetRecord record = new DataSetRecord();
+                
+                record.add(i);
+                record.add(prefix + i);
+                
+                loader.addRecord(record);
+            }
+            
+            loader.flush();
+            
+            assertEquals(ROWS, loader.getRowCount());
+        }
+        finally
+        {
+            loader.close();
+        }
+    }
+    
+    @Test
+    public void testException()
+        throws Exception
+    {
+        try
+        {
+            load(getDestination("no_such_table", Destination.LOAD_INSERT,
+                    null), "name");
+            
+            assertTrue(false);
+        }
+        catch (Exception ex)
+        {
+        }
+    }
+    
+    @Test
+    public void testLoad()
+        throws Exception
+    {
+        load(getDestination("fact", Destination.LOAD_INSERT, null), "name");
+        
+        assertEquals(ROWS, count("select count(*) from fact"));
+        assertEquals(ROWS, count("select count(distinct id) from fact"));
+        
+        load(getDestination("fact", Destination.LOAD_UPDATE, "ID"), "new");
+        
+        assertEquals(ROWS, count("select count(*) from fact"));
+        assertEquals(ROWS, count("select count(*) from fact where name like 'new%'"));
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * PartitionedExtractTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.toolsverse.etl.common.DataSet;
+import com.toolsverse.etl.common.DataSetRecord;
+import com.toolsverse.etl.common.OnException;
+import com.toolsverse.etl.connector.AddRecordCallback;
+import com.toolsverse.etl.connector.sql.SqlConnectorParams;
+import com.toolsverse.etl.driver.Driver;
+import com.toolsverse.etl.driver.GenericJdbcDriver;
+
+/**
+ * PartitionedExtractTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class PartitionedExtractTest
+{
+    private static final String URL = "jdbc:derby:memory:partitioned";
+    
+    private static final int ROWS = 1000;
+    
+    private static List<Connection> _connections = new ArrayList<Connection>();
+    
+    @BeforeClass
+    public static void setUp()
+        throws Exception
+    {
+        Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+        
+        Connection connection = DriverManager.getConnection(URL
+                + ";create=true");
+        
+        Statement statement = connection.createStatement();
+        statement.execute("create table fact (id int, name varchar(20))");
+        statement.close();
+        
+        PreparedStatement insert = connection
+                .prepareStatement("insert into fact values (?, ?)");
+        
+        for (int i = 0; i < ROWS; i++)
+        {
+            insert.setInt(1, i);
+            insert.setString(2, "name" + i);
+            insert.executeUpdate();
+        }
+        
+        insert.setNull(1, java.sql.Types.INTEGER);
+        insert.setString(2, "null");
+        insert.executeUpdate();
+        insert.close();
+        
+        _connections.add(connection);
+        
+        for (int i = 1; i < 3; i++)
+            _connections.add(DriverManager.getConnection(URL));
+    }
+    
+    @AfterClass
+    public static void tearDown()
+    {
+        for (Connection connection : _connections)
+        {
+            try
+            {
+                connection.close();
+            }
+            catch (Exception ex)
+            {
+            }
+        }
+        
+        try
+        {
+            DriverManager.getConnection(URL + ";drop=true");
+        }
+        catch (Exception ex)
+        {
+        }
+    }
+    
+    private Source getSource(int partitions, String ranges)
+    {
+        Source source = new Source();
+        source.setName("fact");
+        source.setSql("select id, name from fact");
+        source.setPartitionBy("id");
+        source.setPartitions(partitions);
+        source.setPartitionRanges(ranges);
+        
+        return source;
+    }
+    
+    private DataSet populate(Source source, int maxRows,
+            final List<DataSetRecord> streamed)
+        throws Exception
+    {
+        List<String> sqls = PartitionedExtract.getPartitionSqls(source,
+                _connections.get(0), source.getSql(), null);
+        
+        assertEquals(3, sqls.size());
+        
+        Driver driver = new EtlFactory().getDriver(
+                GenericJdbcDriver.class.getName(), null, null);
+        
+        DataSet dataSet = new DataSet();
+        dataSet.setName(source.getName());
+        dataSet.setDriver(driver);
+        
+        SqlConnectorParams params = new SqlConnectorParams();
+        params.setSilent(true);
+        params.setMaxRows(maxRows);
+        
+        if (streamed != null)
+            params.setAddRecordCallback(new AddRecordCallback()
+            {
+                public void onAddRecord(DataSet dataSet, Driver driver,
+                        DataSetRecord record, int index)
+                    throws Exception
+                {
+                    if (record != null)
+                        streamed.add(record);
+                    
+                    dataSet.getData().clear();
+                }
+            });
+        
+        new PartitionedExtract(source, sqls, null).populate(params, dataSet,
+                driver, _connections);
+        
+        return dataSet;
+    }
+    
+    @Test
+    public void testBounds()
+    {
+        assertEquals(Arrays.asList("250", "500", "750"),
+                PartitionedExtract.getBounds(0, 999, 4));
+        assertEquals(Arrays.asList("1", "2"),
+                PartitionedExtract.getBounds(0L, 2L, 10));
+        assertEquals(Arrays.asList("0.25", "0.50", "0.75"),
+                PartitionedExtract.getBounds(0.0, 1.0, 4));
+        assertEquals(0, PartitionedExtract.getBounds(5, 5, 4).size());
+        assertEquals(0, PartitionedExtract.getBounds(0, 100, 1).size());
+        assertEquals(0, PartitionedExtract.getBounds("a", "z", 4).size());
+        assertEquals(0, PartitionedExtract.getBounds(null, null, 4).size());
+        
+        assertEquals(Arrays.asList("100", "'2012-01-01'"),
+                PartitionedExtract.getBounds(" 100;;'2012-01-01' "));
+        
+        assertEquals(
+                Arrays.asList(
+                        "select * from (select * from t) etl_partition where id < 10 or id is null",
+                        "select * from (select * from t) etl_partition where id >= 10 and id < 20",
+                        "select * from (select * from t) etl_partition where id >= 20"),
+                PartitionedExtract.getPartitionSqls("select * from t", "id",
+                        Arrays.asList("10", "20")));
+    }
+    
+    @Test
+    public void testException()
+        throws Exception
+    {
+        Source source = getSource(0, "100;900");
+        source.setPartitionBy("no_such_column");
+        
+        try
+        {
+            populate(source, -1, null);
+            
+            assertTrue(false);
+        }
+        catch (SQLException ex)
+        {
+        }
+        
+        // handled the same way as for the single cursor
+        source.setOnExceptionAction(OnException.ON_PARSE_EXCEPTION);
+        
+        assertEquals(0, populate(source, -1, null).getRecordCount());
+    }
+    
+    @Test
+    public void testMaxRows()
+        throws Exception
+    {
+        DataSet dataSet = populate(getSource(3, null), 10, null);
+        
+        assertEquals(10, dataSet.getRecordCount());
+    }
+    
+    @Test
+    public void testNotPartitioned()
+        throws Exception
+    {
+        Source source = getSource(1, null);
+        
+        assertNull(PartitionedExtract.getPartitionSqls(source,
+                _connections.get(0), source.getSql(), null));
+        
+        source.setPartitionBy(null);
+        source.setPartitions(3);
+        
+        assertNull(PartitionedExtract.getPartitionSqls(source,
+                _connections.get(0), source.getSql(), null));
+    }
+    
+    @Test
+    public void testPartitions()
+        throws Exception
+    {
+        DataSet dataSet = populate(getSource(3, null), -1, null);
+        
+        assertEquals(2, dataSet.getFieldCount());
+        assertEquals(ROWS + 1, dataSet.getRecordCount());
+        
+        Set<Object> ids = new HashSet<Object>();
+        
+        for (int row = 0; row < dataSet.getRecordCount(); row++)
+            ids.add(dataSet.getFieldValue(row, 0));
+        
+        assertEquals(ROWS + 1, ids.size());
+        assertTrue(ids.contains(null));
+        assertTrue(ids.contains(0));
+        assertTrue(ids.contains(ROWS - 1));
+    }
+    
+    @Test
+    public void testRanges()
+        throws Exception
+    {
+        List<DataSetRecord> streamed = new ArrayList<DataSetRecord>();
+        
+        DataSet dataSet = populate(getSource(0, "100;900"), -1, streamed);
+        
+        assertEquals(0, dataSet.getRecordCount());
+        assertEquals(ROWS + 1, streamed.size());
+    }
+}
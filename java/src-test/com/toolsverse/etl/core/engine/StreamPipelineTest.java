@@ -0,0 +1,149 @@
+/*
+ * StreamPipelineTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.toolsverse.etl.common.DataSet;
+import com.toolsverse.etl.common.DataSetRecord;
+import com.toolsverse.etl.connector.AddRecordCallback;
+import com.toolsverse.etl.driver.Driver;
+
+/**
+ * StreamPipelineTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class StreamPipelineTest
+{
+    private class CollectingCallback implements AddRecordCallback
+    {
+        List<Object> _values = new ArrayList<Object>();
+        
+        int _maxBatch = 0;
+        
+        int _failOn;
+        
+        int _calls = 0;
+        
+        public CollectingCallback(int failOn)
+        {
+            _failOn = failOn;
+        }
+        
+        public void onAddRecord(DataSet dataSet, Driver driver,
+                DataSetRecord record, int index)
+            throws Exception
+        {
+            _calls++;
+            
+            if (_calls == _failOn)
+                throw new Exception("loader failed");
+            
+            _maxBatch = Math.max(_maxBatch, dataSet.getRecordCount());
+            
+            for (int i = 0; i < dataSet.getRecordCount(); i++)
+                _values.add(dataSet.getRecord(i).get(0));
+        }
+    }
+    
+    private Destination getDestination()
+    {
+        Destination destination = new Destination();
+        destination.setName("test");
+        destination.setPipeline(true);
+        destination.setPipelineSize(2);
+        destination.setBatchSize(3);
+        
+        return destination;
+    }
+    
+    @Test
+    public void testException()
+        throws Exception
+    {
+        CollectingCallback callback = new CollectingCallback(1);
+        
+        StreamPipeline pipeline = new StreamPipeline(getDestination(),
+                callback);
+        
+        DataSet dataSet = new DataSet();
+        
+        Exception ex = null;
+        
+        try
+        {
+            for (int i = 0; i < 1000; i++)
+            {
+                DataSetRecord record = new DataSetRecord();
+                record.add(i);
+                
+                pipeline.onAddRecord(dataSet, null, record, i);
+            }
+            
+            pipeline.finish();
+        }
+        catch (Exception e)
+        {
+            ex = e;
+        }
+        finally
+        {
+            pipeline.terminate();
+        }
+        
+        assertNotNull(ex);
+        
+        assertTrue("loader failed".equals(ex.getMessage()));
+    }
+    
+    @Test
+    public void testPipeline()
+        throws Exception
+    {
+        CollectingCallback callback = new CollectingCallback(-1);
+        
+        StreamPipeline pipeline = new StreamPipeline(getDestination(),
+                callback);
+        
+        DataSet dataSet = new DataSet();
+        
+        try
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                DataSetRecord record = new DataSetRecord();
+                record.add(i);
+                
+                pipeline.onAddRecord(dataSet, null, record, i);
+            }
+            
+            pipeline.finish();
+        }
+        finally
+        {
+            pipeline.terminate();
+        }
+        
+        assertTrue(callback._values.size() == 100);
+        
+        for (int i = 0; i < 100; i++)
+            assertTrue(callback._values.get(i).equals(i));
+        
+        assertTrue(callback._maxBatch <= 3);
+    }
+}
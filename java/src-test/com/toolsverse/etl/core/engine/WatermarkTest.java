@@ -0,0 +1,377 @@
+/*
+ * WatermarkTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.toolsverse.config.SystemConfig;
+import com.toolsverse.etl.common.Alias;
+import com.toolsverse.etl.common.Variable;
+import com.toolsverse.etl.core.config.EtlConfig;
+import com.toolsverse.etl.core.connection.DefaultTransactionMonitor;
+import com.toolsverse.etl.resource.EtlResource;
+import com.toolsverse.resource.TestResource;
+import com.toolsverse.util.FileUtils;
+import com.toolsverse.util.ListHashMap;
+import com.toolsverse.util.Utils;
+
+/**
+ * WatermarkTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class WatermarkTest
+{
+    private static final String URL = "jdbc:derby:memory:watermark";
+    
+    private static Connection _connection;
+    
+    @BeforeClass
+    public static void setUp()
+        throws Exception
+    {
+        System.setProperty(
+                SystemConfig.HOME_PATH_PROPERTY,
+                SystemConfig.WORKING_PATH
+                        + TestResource.TEST_HOME_PATH.getValue());
+        
+        SystemConfig.instance().setSystemProperty(
+                SystemConfig.DEPLOYMENT_PROPERTY, SystemConfig.TEST_DEPLOYMENT);
+        
+        Utils.callAnyMethod(SystemConfig.instance(), "init");
+        
+        Class.forName("org.apache.derby.jdbc.EmbeddedDriver");
+        
+        _connection = DriverManager.getConnection(URL + ";create=true");
+        
+        Statement statement = _connection.createStatement();
+        statement.execute("create table orders (id int, name varchar(20))");
+        statement.close();
+        
+        insert(1, 5);
+    }
+    
+    @AfterClass
+    public static void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteFilesInFolder(SystemConfig.instance()
+                .getDataFolderName(), "watermark*.*");
+        
+        try
+        {
+            _connection.close();
+        }
+        catch (Exception ex)
+        {
+        }
+        
+        try
+        {
+            DriverManager.getConnection(URL + ";drop=true");
+        }
+        catch (Exception ex)
+        {
+        }
+    }
+    
+    private static void insert(int from, int to)
+        throws Exception
+    {
+        Statement statement = _connection.createStatement();
+        
+        for (int i = from; i <= to; i++)
+            statement.execute("insert into orders values (" + i + ", 'name"
+                    + i + "')");
+        
+        statement.close();
+    }
+    
+    private EtlConfig getConfig()
+        throws Exception
+    {
+        Alias alias = new Alias();
+        alias.setName("watermark");
+        alias.setUrl(URL);
+        alias.setJdbcDriverClass(TestResource.TEST_ALIAS_DRIVER.getValue());
+        alias.setUserId(TestResource.TEST_USER.getValue());
+        alias.setPassword(TestResource.TEST_PASSWORD.getValue());
+        
+        EtlConfig config = new EtlConfig();
+        config.init();
+        
+        config.addConnection(null, alias, null,
+                EtlConfig.SOURCE_CONNECTION_NAME);
+        
+        return config;
+    }
+    
+    private Scenario getScenario()
+    {
+        Scenario scenario = new Scenario();
+        scenario.setName("watermark");
+        scenario.setDriver(TestResource.TEST_ALIAS_DRIVER_CLASS_NAME
+                .getValue());
+        
+        Variable var = new Variable();
+        var.setName("ID");
+        var.setValue("0");
+        
+        scenario.addVariable(var);
+        
+        Source source = new Source();
+        source.setName("orders");
+        source.setConnectionName(EtlConfig.SOURCE_CONNECTION_NAME);
+        source.setSql("select id, name from orders where id > {ID} order by id");
+        source.setUsing("ID");
+        source.setWatermark("id");
+        source.setWatermarkOverlap(1);
+        
+        ListHashMap<String, Source> sources = new ListHashMap<String, Source>();
+        sources.put(source.getName().toUpperCase(), source);
+        
+        scenario.setSources(sources);
+        
+        return scenario;
+    }
+    
+    private int extract(EtlConfig config, Scenario scenario, boolean commit)
+        throws Exception
+    {
+        DefaultTransactionMonitor transactionMonitor = new DefaultTransactionMonitor(
+                config.getConnectionFactory());
+        
+        Source source = scenario.getSources().get("ORDERS");
+        
+        new Extractor(transactionMonitor).extract(config, scenario, source,
+                null, null);
+        
+        if (commit)
+            transactionMonitor.commit();
+        else
+            transactionMonitor.rollback(null);
+        
+        return source.getDataSet().getRecordCount();
+    }
+    
+    @Test
+    public void testConvert()
+        throws Exception
+    {
+        String fileName = SystemConfig.instance().getDataFolderName()
+                + "watermark_convert.watermark";
+        
+        // numbers of different types are compared by value
+        Watermark watermark = new Watermark(fileName);
+        watermark.add(Integer.valueOf(7), Types.INTEGER);
+        watermark.add(Long.valueOf(5), Types.BIGINT);
+        watermark.add("6", Types.VARCHAR);
+        
+        assertEquals(new BigDecimal(7), watermark.getNewValue());
+        
+        // timestamp stored as string is converted to the timestamp
+        watermark = new Watermark(fileName);
+        watermark.add(Timestamp.valueOf("2012-01-01 10:00:00"),
+                Types.TIMESTAMP);
+        watermark.add("2012-01-01 09:00:00", Types.VARCHAR);
+        
+        assertEquals(Timestamp.valueOf("2012-01-01 10:00:00").getTime(),
+                ((java.util.Date)watermark.getNewValue()).getTime());
+        
+        watermark.add("2012-01-01 11:00:00", Types.VARCHAR);
+        
+        assertEquals(Timestamp.valueOf("2012-01-01 11:00:00").getTime(),
+                ((java.util.Date)watermark.getNewValue()).getTime());
+        
+        try
+        {
+            watermark.add("abc", Types.VARCHAR);
+            
+            fail("Value which is not a timestamp must be reported");
+        }
+        catch (Exception ex)
+        {
+            assertTrue(ex.getMessage().indexOf("abc") >= 0);
+        }
+        
+        // the numeric column cannot move the timestamp watermark
+        try
+        {
+            watermark.add(Integer.valueOf(1), Types.INTEGER);
+            watermark.getNewValue();
+            
+            fail("Watermarks of different types must be reported");
+        }
+        catch (Exception ex)
+        {
+            assertTrue(ex.getMessage().indexOf(
+                    EtlResource.WATERMARK_TYPE_MSG.getValue()) >= 0);
+        }
+    }
+    
+    @Test
+    public void testExtract()
+        throws Exception
+    {
+        EtlConfig config = getConfig();
+        
+        try
+        {
+            Scenario scenario = getScenario();
+            
+            String fileName = Watermark.getFileName(scenario, scenario
+                    .getSources().get("ORDERS"));
+            
+            // the declared value is used for the first extract
+            assertEquals(5, extract(config, scenario, true));
+            assertEquals(new BigDecimal(5), Watermark.load(fileName)
+                    .getValue());
+            
+            insert(6, 7);
+            
+            // rows which were extracted by rolled back process are extracted
+            // again
+            assertEquals(3, extract(config, scenario, false));
+            assertEquals(new BigDecimal(5), Watermark.load(fileName)
+                    .getValue());
+            
+            assertEquals(3, extract(config, scenario, true));
+            assertEquals(new BigDecimal(7), Watermark.load(fileName)
+                    .getValue());
+            
+            // the scenario variable is not modified
+            assertEquals("0", scenario.getVariables().get("ID").getValue());
+        }
+        finally
+        {
+            config.getConnectionFactory().releaseConnections();
+        }
+    }
+    
+    @Test
+    public void testMissingColumn()
+        throws Exception
+    {
+        EtlConfig config = getConfig();
+        
+        try
+        {
+            Scenario scenario = getScenario();
+            scenario.setName("watermark_column");
+            
+            Source source = scenario.getSources().get("ORDERS");
+            source.setWatermark("updated");
+            source.setWatermarkVar("ID");
+            
+            try
+            {
+                extract(config, scenario, true);
+                
+                fail("Misspelled watermark column must be reported");
+            }
+            catch (Exception ex)
+            {
+                assertTrue(ex.getMessage().indexOf("updated") >= 0);
+            }
+            
+            assertFalse(new File(Watermark.getFileName(scenario, source))
+                    .exists());
+        }
+        finally
+        {
+            config.getConnectionFactory().releaseConnections();
+        }
+    }
+    
+    @Test
+    public void testTimestamp()
+        throws Exception
+    {
+        String fileName = SystemConfig.instance().getDataFolderName()
+                + "watermark_timestamp.watermark";
+        
+        Watermark watermark = Watermark.load(fileName);
+        
+        assertNull(watermark.getValue());
+        assertNull(watermark.getVarValue(60));
+        assertFalse(watermark.save());
+        
+        watermark.add(Timestamp.valueOf("2012-01-01 10:00:00.500"),
+                Types.TIMESTAMP);
+        watermark.add(Timestamp.valueOf("2012-01-01 09:00:00"), Types.TIMESTAMP);
+        watermark.add(null, Types.TIMESTAMP);
+        
+        assertTrue(watermark.save());
+        assertFalse(new File(fileName).exists());
+        
+        DefaultTransactionMonitor transactionMonitor = new DefaultTransactionMonitor();
+        transactionMonitor.addPendingFile(fileName,
+                watermark.getPendingFileName());
+        transactionMonitor.commit();
+        
+        assertTrue(new File(fileName).exists());
+        assertFalse(new File(watermark.getPendingFileName()).exists());
+        
+        watermark = Watermark.load(fileName);
+        
+        assertEquals("2012-01-01 09:59:00", watermark.getVarValue(60));
+        
+        // the watermark never moves back
+        watermark.add(Timestamp.valueOf("2012-01-01 09:59:30"), Types.TIMESTAMP);
+        
+        assertFalse(watermark.save());
+    }
+    
+    @Test
+    public void testUndeclaredVariable()
+        throws Exception
+    {
+        EtlConfig config = getConfig();
+        
+        try
+        {
+            Scenario scenario = getScenario();
+            scenario.setName("watermark_var");
+            scenario.setVariables(new ListHashMap<String, Variable>());
+            
+            try
+            {
+                extract(config, scenario, true);
+                
+                fail("Undeclared watermark variable must be reported");
+            }
+            catch (Exception ex)
+            {
+                assertTrue(ex.getMessage().indexOf("id") >= 0);
+            }
+        }
+        finally
+        {
+            config.getConnectionFactory().releaseConnections();
+        }
+    }
+}
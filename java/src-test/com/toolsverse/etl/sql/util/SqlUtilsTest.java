@@ -7,12 +7,17 @@
 
 package com.toolsverse.etl.sql.util;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.HashMap;
 import java.util.Map;
@@ -782,6 +787,25 @@ public class SqlUtilsTest
         assertTrue(typeAndValue.getValue() instanceof java.util.Date);
         assertTrue(date.equals(typeAndValue.getValue()));
         
+        typeAndValue = SqlUtils.getTypeAndValue("01/01/2001", params,
+                Types.DATE);
+        assertTrue(typeAndValue.getKey() == Types.DATE);
+        assertTrue(date.equals(typeAndValue.getValue()));
+        
+        typeAndValue = SqlUtils.getTypeAndValue("01:01:01", params, Types.DATE);
+        assertTrue(typeAndValue.getKey() == Types.TIME);
+        
+        params.put(SqlUtils.DATE_TIME_FORMAT_PROP, "dd/MM/yyyy HH:mm:ss");
+        date = Utils.str2Date("01/02/2020 10:20:30", null,
+                "dd/MM/yyyy HH:mm:ss");
+        typeAndValue = SqlUtils.getTypeAndValue("01/02/2020 10:20:30", params,
+                Types.DATE);
+        assertTrue(typeAndValue.getKey() == Types.TIMESTAMP);
+        assertTrue(date.equals(typeAndValue.getValue()));
+        
+        typeAndValue = SqlUtils.getTypeAndValue("abc", params, Types.TIME);
+        assertTrue(typeAndValue.getKey() == Types.VARCHAR);
+        
         params = new HashMap<String, String>();
         params.put(SqlUtils.CHAR_SEPARATOR_PROP, "\"");
         
@@ -1120,6 +1144,47 @@ public class SqlUtilsTest
         
     }
     
+    @Test
+    public void testSetValue()
+        throws Exception
+    {
+        final Object[] bound = new Object[1];
+        
+        PreparedStatement statement = (PreparedStatement)Proxy
+                .newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] {PreparedStatement.class},
+                        new InvocationHandler()
+                        {
+                            public Object invoke(Object proxy, Method method,
+                                    Object[] args)
+                            {
+                                if ("setTimestamp".equals(method.getName()))
+                                    bound[0] = args[1];
+                                
+                                return null;
+                            }
+                        });
+        
+        Timestamp timestamp = Timestamp.valueOf("2012-01-01 10:00:00.123456789");
+        
+        // nanoseconds are not lost
+        SqlUtils.setValue(statement, timestamp, Types.TIMESTAMP, 1);
+        
+        assertEquals(timestamp, bound[0]);
+        
+        bound[0] = null;
+        
+        SqlUtils.setBindVar(statement, timestamp, Types.TIMESTAMP, 1);
+        
+        assertEquals(timestamp, bound[0]);
+        
+        java.util.Date date = new java.util.Date(timestamp.getTime());
+        
+        SqlUtils.setValue(statement, date, Types.TIMESTAMP, 1);
+        
+        assertEquals(new Timestamp(date.getTime()), bound[0]);
+    }
+    
     @Test
     public void testStorageValue2Value()
     {
@@ -0,0 +1,150 @@
+/*
+ * DateFormatCacheTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * DateFormatCacheTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class DateFormatCacheTest
+{
+    @Test
+    public void testFormats()
+        throws Exception
+    {
+        // lenient and strict formats for the same pattern are not shared
+        assertNotNull(DateFormatCache.parse("2012-02-31", "yyyy-MM-dd"));
+        
+        try
+        {
+            DateFormatCache.parseStrict("2012-02-31", "yyyy-MM-dd");
+            
+            assertTrue(false);
+        }
+        catch (ParseException ex)
+        {
+        }
+        
+        // the strict format did not change the lenient one
+        assertNotNull(DateFormatCache.parse("2012-02-31", "yyyy-MM-dd"));
+        assertNotNull(DateFormatCache.parseStrict("2012-02-29", "yyyy-MM-dd"));
+    }
+    
+    @Test
+    public void testParallel()
+        throws Exception
+    {
+        final String pattern = "yyyy-MM-dd HH:mm:ss";
+        
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        
+        try
+        {
+            Future<?>[] futures = new Future<?>[4];
+            
+            for (int i = 0; i < futures.length; i++)
+            {
+                final int day = i + 1;
+                
+                futures[i] = executor.submit(new Callable<Object>()
+                {
+                    public Object call()
+                        throws Exception
+                    {
+                        String text = "2012-01-0" + day + " 10:20:30";
+                        
+                        for (int j = 0; j < 10000; j++)
+                        {
+                            Date date = DateFormatCache.parse(text, pattern);
+                            
+                            assertEquals(text,
+                                    DateFormatCache.format(date, pattern));
+                        }
+                        
+                        return null;
+                    }
+                });
+            }
+            
+            for (Future<?> future : futures)
+                future.get();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testParse()
+        throws Exception
+    {
+        assertNull(DateFormatCache.parse(null, "yyyy-MM-dd"));
+        assertNull(DateFormatCache.parse("", "yyyy-MM-dd"));
+        assertNull(DateFormatCache.parse("abc", "yyyy-MM-dd"));
+        assertNull(DateFormatCache.parse("2012/01/01", "yyyy-MM-dd"));
+        
+        Date date = DateFormatCache.parse(" 2012-01-31", "yyyy-MM-dd");
+        assertNotNull(date);
+        assertEquals("2012-01-31", DateFormatCache.format(date, "yyyy-MM-dd"));
+        
+        // the rest of the text is ignored
+        date = DateFormatCache.parse("2012-01-31 10:20:30", "yyyy-MM-dd");
+        assertNotNull(date);
+        assertEquals("2012-01-31", DateFormatCache.format(date, "yyyy-MM-dd"));
+        assertNotNull(DateFormatCache.parse("2012-01-31 ", "yyyy-MM-dd"));
+        assertNotNull(Utils.str2Date("2012-01-31 10:20:30", null, "yyyy-MM-dd"));
+        
+        // the time would be lost
+        assertNull(DateFormatCache.parseWhole("2012-01-31 10:20:30",
+                "yyyy-MM-dd"));
+        assertNull(DateFormatCache.parseWhole("abc", "yyyy-MM-dd"));
+        assertNotNull(DateFormatCache.parseWhole("2012-01-31 10:20:30",
+                "yyyy-MM-dd HH:mm:ss"));
+        
+        assertTrue(DateFormatCache.isPossibleDate("Jan 31, 2012",
+                "MMM dd, yyyy"));
+        assertFalse(DateFormatCache.isPossibleDate("abc", "HH:mm:ss"));
+        assertFalse(DateFormatCache.isPossibleDate("  ", "HH:mm:ss"));
+        assertTrue(DateFormatCache.isPossibleDate("10:20", "HH:mm:ss"));
+        assertTrue(DateFormatCache.isPossibleDate("abc", "'at' HH:mm:ss"));
+        
+        assertEquals("", DateFormatCache.format(null, "yyyy-MM-dd"));
+        
+        try
+        {
+            DateUtil.parse("2012-02-31", "yyyy-MM-dd");
+            
+            assertTrue(false);
+        }
+        catch (ParseException ex)
+        {
+        }
+        
+        assertNotNull(Utils.str2Date("2012-02-31", null, "yyyy-MM-dd"));
+    }
+}
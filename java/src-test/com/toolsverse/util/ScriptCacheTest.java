@@ -0,0 +1,66 @@
+/*
+ * ScriptCacheTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.util;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import javax.script.Bindings;
+
+import org.junit.Test;
+
+/**
+ * ScriptCacheTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class ScriptCacheTest
+{
+    @Test
+    public void testEval()
+        throws Exception
+    {
+        String code = "var value;value=fieldValue * 2;";
+        
+        assertNotNull(ScriptCache.getCompiledScript(code, "JavaScript"));
+        
+        assertTrue(ScriptCache.getCompiledScript(code, "JavaScript") == ScriptCache
+                .getCompiledScript(code, "JavaScript"));
+        
+        for (int i = 0; i < 10; i++)
+        {
+            Bindings bindings = ScriptCache.getBindings(code, "JavaScript");
+            
+            assertTrue(bindings.isEmpty());
+            
+            bindings.put("fieldValue", i);
+            
+            Object value = ScriptCache.eval(code, "JavaScript", bindings);
+            
+            assertTrue(((Number)value).intValue() == i * 2);
+        }
+        
+        code = "var value;if (fieldValue > 0) value = fieldValue;value;";
+        
+        Bindings bindings = ScriptCache.getBindings(code, "JavaScript");
+        bindings.put("fieldValue", 5);
+        
+        assertTrue(((Number)ScriptCache.eval(code, "JavaScript", bindings))
+                .intValue() == 5);
+        
+        bindings = ScriptCache.getBindings(code, "JavaScript");
+        bindings.put("fieldValue", 0);
+        
+        Object value = ScriptCache.eval(code, "JavaScript", bindings);
+        
+        assertTrue(!(value instanceof Number));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * XslCacheTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+
+/**
+ * XslCacheTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class XslCacheTest
+{
+    private static void writeXsl(File file, String element)
+        throws Exception
+    {
+        FileWriter writer = new FileWriter(file);
+        
+        try
+        {
+            writer.write("<xsl:stylesheet version=\"1.0\" "
+                    + "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                    + "<xsl:output method=\"xml\" omit-xml-declaration=\"yes\"/>"
+                    + "<xsl:template match=\"/\"><" + element
+                    + "><xsl:value-of select=\"/a\"/></" + element
+                    + "></xsl:template></xsl:stylesheet>");
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+    
+    @Test
+    public void testTemplates()
+        throws Exception
+    {
+        File file = File.createTempFile("test", ".xsl");
+        
+        try
+        {
+            writeXsl(file, "b");
+            
+            assertTrue(XslCache.getTemplates(file) == XslCache
+                    .getTemplates(file));
+            
+            StringWriter out = new StringWriter();
+            
+            XslCache.newTransformer(file).transform(
+                    new StreamSource(new StringReader("<a>1</a>")),
+                    new StreamResult(out));
+            
+            assertEquals("<b>1</b>", out.toString());
+            
+            writeXsl(file, "c");
+            file.setLastModified(file.lastModified() + 2000);
+            
+            out = new StringWriter();
+            
+            XslCache.newTransformer(file).transform(
+                    new StreamSource(new StringReader("<a>2</a>")),
+                    new StreamResult(out));
+            
+            assertEquals("<c>2</c>", out.toString());
+        }
+        finally
+        {
+            XslCache.clear();
+            
+            file.delete();
+        }
+    }
+}
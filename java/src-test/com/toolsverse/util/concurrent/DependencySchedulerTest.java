@@ -0,0 +1,300 @@
+/*
+ * DependencySchedulerTest.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * DependencySchedulerTest
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class DependencySchedulerTest
+{
+    private class Handler implements DependencyHandler<String>
+    {
+        private final ParallelExecutor _executor;
+        
+        private final long _delay;
+        
+        private final List<String> _started = Collections
+                .synchronizedList(new ArrayList<String>());
+        
+        private final List<String> _finished = Collections
+                .synchronizedList(new ArrayList<String>());
+        
+        public Handler(ParallelExecutor executor, long delay)
+        {
+            _executor = executor;
+            _delay = delay;
+        }
+        
+        public boolean isBarrier(String node)
+            throws Exception
+        {
+            _started.add(node);
+            
+            return !node.startsWith("skip");
+        }
+        
+        public Future<?> start(final String node)
+            throws Exception
+        {
+            _started.add(node);
+            
+            if (_executor == null || node.startsWith("seq"))
+            {
+                _finished.add(node);
+                
+                return null;
+            }
+            
+            return _executor.addTask(new Callable<Object>()
+            {
+                public Object call()
+                    throws Exception
+                {
+                    if (node.startsWith("fail"))
+                        throw new IllegalStateException(node);
+                    
+                    Thread.sleep(node.startsWith("slow") ? _delay * 5
+                            : _delay);
+                    
+                    _finished.add(node);
+                    
+                    return null;
+                }
+            });
+        }
+    }
+    
+    @Test
+    public void testBarrier()
+        throws Exception
+    {
+        ParallelExecutor executor = new ParallelExecutor(3);
+        
+        try
+        {
+            DependencyScheduler<String> scheduler = new DependencyScheduler<String>(
+                    executor);
+            
+            scheduler.add("slow", "slow", null, false);
+            scheduler.add("a", "a", null, false);
+            scheduler.addBarrier();
+            scheduler.add("b", "b", null, false);
+            
+            Handler handler = new Handler(executor, 50);
+            
+            assertTrue(scheduler.execute(handler));
+            
+            executor.waitUntilDone();
+            
+            assertEquals(Arrays.asList("a", "slow", "b"), handler._finished);
+        }
+        finally
+        {
+            executor.terminate();
+        }
+    }
+    
+    @Test
+    public void testChain()
+        throws Exception
+    {
+        ParallelExecutor executor = new ParallelExecutor(2);
+        
+        try
+        {
+            DependencyScheduler<String> scheduler = new DependencyScheduler<String>(
+                    executor);
+            
+            // each node of the chain is started as soon as the previous one
+            // is finished, while the slow node is still running
+            scheduler.add("slow", "slow", null, false);
+            scheduler.add("a", "a", null, false);
+            scheduler.add("b", "b", Arrays.asList("a"), false);
+            scheduler.add("c", "c", Arrays.asList("b"), false);
+            
+            Handler handler = new Handler(executor, 50);
+            
+            assertTrue(scheduler.execute(handler));
+            
+            executor.waitUntilDone();
+            
+            assertEquals(Arrays.asList("a", "b", "c", "slow"),
+                    handler._finished);
+        }
+        finally
+        {
+            executor.terminate();
+        }
+    }
+    
+    @Test
+    public void testConditionalBarrier()
+        throws Exception
+    {
+        ParallelExecutor executor = new ParallelExecutor(3);
+        
+        try
+        {
+            DependencyScheduler<String> scheduler = new DependencyScheduler<String>(
+                    executor);
+            
+            scheduler.add("slow", "slow", null, false);
+            scheduler.addBarrier("skip");
+            scheduler.add("a", "a", null, false);
+            scheduler.addBarrier("wait");
+            scheduler.add("b", "b", null, false);
+            
+            Handler handler = new Handler(executor, 50);
+            
+            assertTrue(scheduler.execute(handler));
+            
+            executor.waitUntilDone();
+            
+            // the condition is checked when nodes added before are started
+            assertEquals(Arrays.asList("slow", "skip", "a", "wait", "b"),
+                    handler._started);
+            
+            // "a" doesn't wait for "slow"
+            assertEquals(Arrays.asList("a", "slow", "b"), handler._finished);
+        }
+        finally
+        {
+            executor.terminate();
+        }
+    }
+    
+    @Test
+    public void testCycle()
+        throws Exception
+    {
+        DependencyScheduler<String> scheduler = new DependencyScheduler<String>(
+                null);
+        
+        scheduler.add("a", "a", Arrays.asList("c"), false);
+        scheduler.add("b", "b", Arrays.asList("a"), false);
+        scheduler.add("c", "c", Arrays.asList("B"), false);
+        scheduler.add("d", "d", null, false);
+        
+        Handler handler = new Handler(null, 0);
+        
+        try
+        {
+            scheduler.execute(handler);
+            
+            assertTrue(false);
+        }
+        catch (Exception ex)
+        {
+            assertTrue(ex.getMessage().endsWith("a, b, c"));
+        }
+        
+        assertEquals(0, handler._started.size());
+    }
+    
+    @Test
+    public void testCriticalPath()
+        throws Exception
+    {
+        ParallelExecutor executor = new ParallelExecutor(3);
+        
+        try
+        {
+            DependencyScheduler<String> scheduler = new DependencyScheduler<String>(
+                    executor);
+            
+            // "c" waits only for "b", not for the slow node declared before it
+            scheduler.add("slow", "slow", null, false);
+            scheduler.add("c", "c", Arrays.asList("b"), false);
+            scheduler.add("b", "b", null, false);
+            scheduler.add("d", "d", Arrays.asList("slow", "c"), false);
+            
+            Handler handler = new Handler(executor, 50);
+            
+            assertTrue(scheduler.execute(handler));
+            
+            executor.waitUntilDone();
+            
+            assertEquals(Arrays.asList("b", "c", "slow", "d"),
+                    handler._finished);
+        }
+        finally
+        {
+            executor.terminate();
+        }
+    }
+    
+    @Test
+    public void testException()
+        throws Exception
+    {
+        ParallelExecutor executor = new ParallelExecutor(2);
+        
+        try
+        {
+            DependencyScheduler<String> scheduler = new DependencyScheduler<String>(
+                    executor);
+            
+            scheduler.add("fail", "fail", null, false);
+            scheduler.add("a", "a", Arrays.asList("fail"), false);
+            
+            Handler handler = new Handler(executor, 50);
+            
+            try
+            {
+                scheduler.execute(handler);
+                
+                assertTrue(false);
+            }
+            catch (Exception ex)
+            {
+                assertTrue(ex.getCause() instanceof IllegalStateException);
+            }
+            
+            assertEquals(Arrays.asList("fail"), handler._started);
+        }
+        finally
+        {
+            executor.terminate();
+        }
+    }
+    
+    @Test
+    public void testSequential()
+        throws Exception
+    {
+        DependencyScheduler<String> scheduler = new DependencyScheduler<String>(
+                null);
+        
+        scheduler.add("seq1", "seq1", Arrays.asList("seq3"), true);
+        scheduler.add("seq2", "seq2", null, true);
+        scheduler.add("seq3", "seq3", Arrays.asList("unknown", " "), false);
+        
+        Handler handler = new Handler(null, 0);
+        
+        assertTrue(scheduler.execute(handler));
+        
+        assertEquals(Arrays.asList("seq3", "seq1", "seq2"), handler._started);
+    }
+}
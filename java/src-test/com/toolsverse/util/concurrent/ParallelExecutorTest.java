@@ -48,15 +48,18 @@ public class ParallelExecutorTest
     {
         String _value;
         
-        public UnHappyTask(String value)
+        long _delay;
+        
+        public UnHappyTask(String value, long delay)
         {
             _value = value;
+            _delay = delay;
         }
         
         public String call()
             throws Exception
         {
-            Thread.sleep(100);
+            Thread.sleep(_delay);
             
             throw new Exception("Runtime exception. Value=" + _value);
         }
@@ -79,7 +82,8 @@ public class ParallelExecutorTest
             if (i < nHappyTask)
                 task = new HappyTask(String.valueOf(i));
             else
-                task = new UnHappyTask(String.valueOf(i));
+                task = new UnHappyTask(String.valueOf(i),
+                        100 + (i - nHappyTask) * 50);
             
             executor.addTask(task);
         }
@@ -103,6 +107,53 @@ public class ParallelExecutorTest
                 ("Runtime exception. Value=" + nHappyTask)) > 0);
     }
     
+    @Test
+    public void testFailFast()
+        throws Exception
+    {
+        ParallelExecutor executor = new ParallelExecutor(2);
+        Exception ex = null;
+        
+        Future<?> longTask = executor.addTask(new HappyTask("long")
+        {
+            @Override
+            public String call()
+                throws Exception
+            {
+                Thread.sleep(10000);
+                
+                return _value;
+            }
+        });
+        
+        executor.addTask(new UnHappyTask("fail", 100));
+        
+        long start = System.currentTimeMillis();
+        
+        try
+        {
+            executor.waitUntilDone();
+        }
+        catch (Exception e)
+        {
+            ex = e;
+        }
+        finally
+        {
+            executor.terminate();
+        }
+        
+        assertNotNull(ex);
+        
+        assertTrue(ex.getMessage().indexOf("Value=fail") > 0);
+        
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        
+        assertTrue(longTask.isCancelled());
+        
+        assertTrue(executor.isTerminated());
+    }
+    
     private void testHappyPath(int nThreads, int nTask)
         throws Exception
     {
@@ -174,7 +225,8 @@ public class ParallelExecutorTest
             if (i < nHappyTask)
                 task = new HappyTask(String.valueOf(i));
             else
-                task = new UnHappyTask(String.valueOf(i));
+                task = new UnHappyTask(String.valueOf(i),
+                        100 + (i - nHappyTask) * 50);
             
             executor.addTask(task, true);
         }
@@ -206,4 +258,30 @@ public class ParallelExecutorTest
         }
     }
     
+    @Test
+    public void testTaskTime()
+        throws Exception
+    {
+        ParallelExecutor executor = new ParallelExecutor(1);
+        
+        Future<?> first = executor.addTask(new HappyTask("first"));
+        Future<?> second = executor.addTask(new HappyTask("second"));
+        
+        try
+        {
+            executor.waitUntilDone();
+        }
+        finally
+        {
+            executor.terminate();
+        }
+        
+        assertTrue(executor.getTaskTime(first) >= 90);
+        assertTrue(executor.getTaskTime(second) >= 90);
+        
+        assertTrue(executor.getTaskTime(first) < 5000);
+        
+        assertTrue(executor.getTaskTime(null) == 0);
+    }
+    
 }
@@ -0,0 +1,774 @@
+/*
+ * ColumnarDataSetData.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import java.io.Serializable;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.toolsverse.etl.sql.util.SqlUtils;
+
+/**
+ * The column oriented collection of the DataSetRecords. Values are stored in
+ * the typed column vectors instead of the list of boxed values per record:
+ * integer, long and double columns use arrays of primitives plus bitmap of
+ * nulls, string columns are dictionary encoded. The type of the vector is
+ * selected using FieldDef#getSqlDataType() of the field. If value does not
+ * fit into the vector (for example value has a different class or cell has
+ * versions) vector is converted to the vector of objects.
+ * <p>
+ * DataSetRecord returned by {@link #get(int)} is a lightweight view of the
+ * row, so all changes made using this record are stored in the columns.
+ * Records passed to {@link #add(DataSetRecord)} and
+ * {@link #set(int, DataSetRecord)} are copied. {@link #set(int, DataSetRecord)}
+ * overwrites the row in place, so views returned earlier see the new values.
+ * Space used by deleted records is reclaimed only when data are cleared.
+ * 
+ * @see com.toolsverse.etl.common.DataSet#setColumnar(boolean)
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class ColumnarDataSetData extends DataSetData
+{
+    /** Serialization version. */
+    private static final long serialVersionUID = 4202603957792736238L;
+    
+    /**
+     * The column vector.
+     */
+    private abstract static class Column implements Serializable
+    {
+        /** Serialization version. */
+        private static final long serialVersionUID = 6123191237823852393L;
+        
+        /**
+         * Grows the column so it can hold given number of rows.
+         * 
+         * @param capacity the capacity
+         */
+        abstract void ensureCapacity(int capacity);
+        
+        /**
+         * Gets the value for the row.
+         * 
+         * @param slot the row
+         * @return the value
+         */
+        abstract Object get(int slot);
+        
+        /**
+         * Sets the value for the row.
+         * 
+         * @param slot the row
+         * @param value the value
+         * @return false if value cannot be stored in this column
+         */
+        abstract boolean set(int slot, Object value);
+    }
+    
+    /**
+     * The column of doubles.
+     */
+    private static class DoubleColumn extends Column
+    {
+        /** Serialization version. */
+        private static final long serialVersionUID = 8851968657291946800L;
+        
+        /** The values. */
+        private double[] _values = new double[0];
+        
+        /** The bitmap of not null values. */
+        private final BitSet _notNull = new BitSet();
+        
+        @Override
+        void ensureCapacity(int capacity)
+        {
+            if (_values.length < capacity)
+                _values = Arrays.copyOf(_values, capacity);
+        }
+        
+        @Override
+        Object get(int slot)
+        {
+            return _notNull.get(slot) ? Double.valueOf(_values[slot]) : null;
+        }
+        
+        @Override
+        boolean set(int slot, Object value)
+        {
+            if (value == null)
+                _notNull.clear(slot);
+            else if (value.getClass() == Double.class)
+            {
+                _values[slot] = ((Double)value).doubleValue();
+                _notNull.set(slot);
+            }
+            else
+                return false;
+            
+            return true;
+        }
+    }
+    
+    /**
+     * The column of integers.
+     */
+    private static class IntColumn extends Column
+    {
+        /** Serialization version. */
+        private static final long serialVersionUID = 3179959325975477107L;
+        
+        /** The values. */
+        private int[] _values = new int[0];
+        
+        /** The bitmap of not null values. */
+        private final BitSet _notNull = new BitSet();
+        
+        @Override
+        void ensureCapacity(int capacity)
+        {
+            if (_values.length < capacity)
+                _values = Arrays.copyOf(_values, capacity);
+        }
+        
+        @Override
+        Object get(int slot)
+        {
+            return _notNull.get(slot) ? Integer.valueOf(_values[slot]) : null;
+        }
+        
+        @Override
+        boolean set(int slot, Object value)
+        {
+            if (value == null)
+                _notNull.clear(slot);
+            else if (value.getClass() == Integer.class)
+            {
+                _values[slot] = ((Integer)value).intValue();
+                _notNull.set(slot);
+            }
+            else
+                return false;
+            
+            return true;
+        }
+    }
+    
+    /**
+     * The column of longs.
+     */
+    private static class LongColumn extends Column
+    {
+        /** Serialization version. */
+        private static final long serialVersionUID = 4599530124262239477L;
+        
+        /** The values. */
+        private long[] _values = new long[0];
+        
+        /** The bitmap of not null values. */
+        private final BitSet _notNull = new BitSet();
+        
+        @Override
+        void ensureCapacity(int capacity)
+        {
+            if (_values.length < capacity)
+                _values = Arrays.copyOf(_values, capacity);
+        }
+        
+        @Override
+        Object get(int slot)
+        {
+            return _notNull.get(slot) ? Long.valueOf(_values[slot]) : null;
+        }
+        
+        @Override
+        boolean set(int slot, Object value)
+        {
+            if (value == null)
+                _notNull.clear(slot);
+            else if (value.getClass() == Long.class)
+            {
+                _values[slot] = ((Long)value).longValue();
+                _notNull.set(slot);
+            }
+            else
+                return false;
+            
+            return true;
+        }
+    }
+    
+    /**
+     * The column of objects.
+     */
+    private static class ObjectColumn extends Column
+    {
+        /** Serialization version. */
+        private static final long serialVersionUID = -5005874868012038746L;
+        
+        /** The values. */
+        private Object[] _values = new Object[0];
+        
+        /**
+         * Instantiates a new column of objects.
+         */
+        ObjectColumn()
+        {
+        }
+        
+        /**
+         * Instantiates a new column of objects using values from the other
+         * column.
+         * 
+         * @param column the column
+         * @param capacity the capacity
+         */
+        ObjectColumn(Column column, int capacity)
+        {
+            ensureCapacity(capacity);
+            
+            for (int i = 0; i < capacity; i++)
+                _values[i] = column.get(i);
+        }
+        
+        @Override
+        void ensureCapacity(int capacity)
+        {
+            if (_values.length < capacity)
+                _values = Arrays.copyOf(_values, capacity);
+        }
+        
+        @Override
+        Object get(int slot)
+        {
+            return _values[slot];
+        }
+        
+        @Override
+        boolean set(int slot, Object value)
+        {
+            _values[slot] = value;
+            
+            return true;
+        }
+    }
+    
+    /**
+     * The view of the row.
+     */
+    private static class RecordView extends DataSetRecord
+    {
+        /** Serialization version. */
+        private static final long serialVersionUID = 3031698412306596438L;
+        
+        /** The data. */
+        private final ColumnarDataSetData _data;
+        
+        /** The row. */
+        private final int _slot;
+        
+        /**
+         * Instantiates a new view of the row.
+         * 
+         * @param data the data
+         * @param slot the row
+         */
+        RecordView(ColumnarDataSetData data, int slot)
+        {
+            super(null);
+            
+            _data = data;
+            _slot = slot;
+        }
+        
+        @Override
+        protected void addCell(int index, Object cell)
+        {
+            int size = size();
+            
+            if (index < 0 || index > size)
+                throw new IndexOutOfBoundsException("Index: " + index
+                        + ", Size: " + size);
+            
+            for (int col = size; col > index; col--)
+                _data.write(col, _slot, _data.read(col - 1, _slot));
+            
+            _data.write(index, _slot, cell);
+            
+            _data._sizes[_slot] = size + 1;
+        }
+        
+        /**
+         * Checks the index of the cell.
+         * 
+         * @param index the index
+         */
+        private void checkIndex(int index)
+        {
+            if (index < 0 || index >= size())
+                throw new IndexOutOfBoundsException("Index: " + index
+                        + ", Size: " + size());
+        }
+        
+        @Override
+        protected void clearCells()
+        {
+            for (int col = 0; col < size(); col++)
+                _data.write(col, _slot, null);
+            
+            _data._sizes[_slot] = 0;
+        }
+        
+        @Override
+        protected Object getCell(int index)
+        {
+            checkIndex(index);
+            
+            return _data.read(index, _slot);
+        }
+        
+        @Override
+        protected void removeCell(int index)
+        {
+            checkIndex(index);
+            
+            int size = size();
+            
+            for (int col = index; col < size - 1; col++)
+                _data.write(col, _slot, _data.read(col + 1, _slot));
+            
+            _data.write(size - 1, _slot, null);
+            
+            _data._sizes[_slot] = size - 1;
+        }
+        
+        @Override
+        protected void setCell(int index, Object cell)
+        {
+            checkIndex(index);
+            
+            _data.write(index, _slot, cell);
+        }
+        
+        @Override
+        public int size()
+        {
+            return _data._sizes[_slot];
+        }
+    }
+    
+    /**
+     * The dictionary encoded column of strings.
+     */
+    private static class StringColumn extends Column
+    {
+        /** Serialization version. */
+        private static final long serialVersionUID = -514170881607153143L;
+        
+        /** The codes. 0 is null. */
+        private int[] _codes = new int[0];
+        
+        /** The dictionary. */
+        private final List<String> _dictionary = new ArrayList<String>();
+        
+        /** The codes of the values in dictionary. */
+        private final Map<String, Integer> _lookup = new HashMap<String, Integer>();
+        
+        @Override
+        void ensureCapacity(int capacity)
+        {
+            if (_codes.length < capacity)
+                _codes = Arrays.copyOf(_codes, capacity);
+        }
+        
+        @Override
+        Object get(int slot)
+        {
+            int code = _codes[slot];
+            
+            return code > 0 ? _dictionary.get(code - 1) : null;
+        }
+        
+        @Override
+        boolean set(int slot, Object value)
+        {
+            if (value == null)
+            {
+                _codes[slot] = 0;
+                
+                return true;
+            }
+            
+            if (value.getClass() != String.class)
+                return false;
+            
+            Integer code = _lookup.get(value);
+            
+            if (code == null)
+            {
+                if (_dictionary.size() >= MAX_DICTIONARY_SIZE)
+                    return false;
+                
+                _dictionary.add((String)value);
+                
+                code = _dictionary.size();
+                
+                _lookup.put((String)value, code);
+            }
+            
+            _codes[slot] = code.intValue();
+            
+            return true;
+        }
+    }
+    
+    /** The initial number of rows. */
+    private static final int INITIAL_CAPACITY = 16;
+    
+    /** The maximum number of distinct values in the dictionary encoded column. */
+    private static final int MAX_DICTIONARY_SIZE = 65536;
+    
+    /** The data set. Used to get types of the fields. */
+    private final DataSet _dataSet;
+    
+    /** The columns. */
+    private final List<Column> _columns;
+    
+    /** The number of cells in each row. */
+    private int[] _sizes;
+    
+    /** The rows in the order of records. */
+    private int[] _order;
+    
+    /** The number of records. */
+    private int _size;
+    
+    /** The number of allocated rows. */
+    private int _slots;
+    
+    /** The capacity. */
+    private int _capacity;
+    
+    /**
+     * Instantiates a new ColumnarDataSetData.
+     * 
+     * @param dataSet the data set. Used to get types of the fields. Can be
+     *            <code>null</code>.
+     */
+    public ColumnarDataSetData(DataSet dataSet)
+    {
+        _dataSet = dataSet;
+        _columns = new ArrayList<Column>();
+        
+        init();
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.toolsverse.etl.common.DataSetData#add(com.toolsverse.etl.common.DataSetRecord
+     * )
+     */
+    @Override
+    public DataSetRecord add(DataSetRecord value)
+    {
+        add(_size, value);
+        
+        return new RecordView(this, _order[_size - 1]);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#add(int,
+     * com.toolsverse.etl.common.DataSetRecord)
+     */
+    @Override
+    public void add(int index, DataSetRecord value)
+    {
+        if (index < 0 || index > _size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + _size);
+        
+        int slot = allocate();
+        
+        copy(slot, value);
+        
+        if (_size == _order.length)
+            _order = Arrays.copyOf(_order, _order.length * 2);
+        
+        System.arraycopy(_order, index, _order, index + 1, _size - index);
+        
+        _order[index] = slot;
+        
+        _size++;
+    }
+    
+    /**
+     * Allocates new row.
+     * 
+     * @return the row
+     */
+    private int allocate()
+    {
+        if (_slots == _capacity)
+        {
+            _capacity = _capacity * 2;
+            
+            _sizes = Arrays.copyOf(_sizes, _capacity);
+            
+            for (Column column : _columns)
+                column.ensureCapacity(_capacity);
+        }
+        
+        return _slots++;
+    }
+    
+    /**
+     * Checks the index of the record.
+     * 
+     * @param index the index
+     */
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= _size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + _size);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#clear()
+     */
+    @Override
+    public void clear()
+    {
+        init();
+    }
+    
+    /**
+     * Copies values of the record into the row. Cells of the row which are
+     * not in the record are cleared.
+     * 
+     * @param slot the row
+     * @param value the record
+     */
+    private void copy(int slot, DataSetRecord value)
+    {
+        int size = value != null ? value.size() : 0;
+        
+        for (int col = 0; col < size; col++)
+            write(col, slot, value.getCell(col));
+        
+        for (int col = size; col < _sizes[slot]; col++)
+            write(col, slot, null);
+        
+        _sizes[slot] = size;
+    }
+    
+    /**
+     * Creates the column using the type of the field.
+     * 
+     * @param col the index of the column
+     * @return the column
+     */
+    private Column createColumn(int col)
+    {
+        FieldDef fieldDef = _dataSet != null && col < _dataSet.getFieldCount() ? _dataSet
+                .getFieldDef(col) : null;
+        
+        Column column;
+        
+        if (fieldDef == null)
+            column = new ObjectColumn();
+        else
+        {
+            int type = fieldDef.getSqlDataType();
+            
+            switch (type)
+            {
+                case Types.INTEGER:
+                    column = new IntColumn();
+                    break;
+                case Types.BIGINT:
+                    column = new LongColumn();
+                    break;
+                case Types.DOUBLE:
+                case Types.FLOAT:
+                    column = new DoubleColumn();
+                    break;
+                default:
+                    column = SqlUtils.isChar(type) ? new StringColumn()
+                            : new ObjectColumn();
+            }
+        }
+        
+        column.ensureCapacity(_capacity);
+        
+        return column;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#delete(int)
+     */
+    @Override
+    public DataSetRecord delete(int index)
+    {
+        checkIndex(index);
+        
+        int slot = _order[index];
+        
+        System.arraycopy(_order, index + 1, _order, index, _size - index - 1);
+        
+        _size--;
+        
+        return new RecordView(this, slot);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#get(int)
+     */
+    @Override
+    public DataSetRecord get(int index)
+    {
+        checkIndex(index);
+        
+        return new RecordView(this, _order[index]);
+    }
+    
+    /**
+     * Initializes empty storage.
+     */
+    private void init()
+    {
+        _columns.clear();
+        _sizes = new int[INITIAL_CAPACITY];
+        _order = new int[INITIAL_CAPACITY];
+        _size = 0;
+        _slots = 0;
+        _capacity = INITIAL_CAPACITY;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#isEmpty()
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        return _size == 0;
+    }
+    
+    /**
+     * Reads the cell.
+     * 
+     * @param col the column
+     * @param slot the row
+     * @return the cell
+     */
+    private Object read(int col, int slot)
+    {
+        return col < _columns.size() ? _columns.get(col).get(slot) : null;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#set(int,
+     * com.toolsverse.etl.common.DataSetRecord)
+     */
+    @Override
+    public void set(int index, DataSetRecord value)
+    {
+        checkIndex(index);
+        
+        copy(_order[index], value);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#size()
+     */
+    @Override
+    public int size()
+    {
+        return _size;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#sort(java.util.Comparator)
+     */
+    @Override
+    public void sort(final Comparator<DataSetRecord> comparator)
+    {
+        if (_size == 0 || comparator == null)
+            return;
+        
+        Integer[] order = new Integer[_size];
+        
+        for (int i = 0; i < _size; i++)
+            order[i] = _order[i];
+        
+        RecordSorter.sort(order, new Comparator<Integer>()
+        {
+            public int compare(Integer s1, Integer s2)
+            {
+                return comparator.compare(new RecordView(
+                        ColumnarDataSetData.this, s1), new RecordView(
+                        ColumnarDataSetData.this, s2));
+            }
+        });
+        
+        for (int i = 0; i < _size; i++)
+            _order[i] = order[i];
+    }
+    
+    /**
+     * Writes the cell. Converts column to the column of objects if cell cannot
+     * be stored in the typed column.
+     * 
+     * @param col the column
+     * @param slot the row
+     * @param cell the cell
+     */
+    private void write(int col, int slot, Object cell)
+    {
+        while (_columns.size() <= col)
+            _columns.add(createColumn(_columns.size()));
+        
+        Column column = _columns.get(col);
+        
+        if (!column.set(slot, cell))
+        {
+            column = new ObjectColumn(column, _capacity);
+            
+            _columns.set(col, column);
+            
+            column.set(slot, cell);
+        }
+    }
+}
@@ -94,7 +94,7 @@ public final class CommonEtlUtils
         DataSet dataSet = source.copy();
         dataSet.setFields(fields);
         
-        DataSetData data = new DataSetData();
+        DataSetData data = dataSet.createData();
         dataSet.setData(data);
         
         int rows = source.getRecordCount();
@@ -140,12 +140,12 @@ public final class CommonEtlUtils
      * @param dataSet the data set
      * @param useIndex if true use index
      * @param dataSetIndex the external index to build
-     * @param keyFields the key fields to use together with dataSetIndex
+     * @param keyBuilder the builder of the keys to use together with dataSetIndex
      * @return the record
      */
-    private static DataSetRecord findRecord(String key, DataSet dataSet,
-            boolean useIndex, Map<String, DataSetRecord> dataSetIndex,
-            Map<String, FieldDef> keyFields)
+    private static DataSetRecord findRecord(RecordKey key, DataSet dataSet,
+            boolean useIndex, Map<RecordKey, DataSetRecord> dataSetIndex,
+            RecordKeyBuilder keyBuilder)
     {
         if (useIndex)
             return dataSet.getRecord(key);
@@ -164,7 +164,7 @@ public final class CommonEtlUtils
         {
             DataSetRecord record = dataSet.getRecord(row);
             
-            String recordKey = getKey(dataSet, record, keyFields, false, false);
+            RecordKey recordKey = keyBuilder.getKey(record);
             
             if (key.equals(recordKey))
                 foundRecord = record;
@@ -217,6 +217,8 @@ public final class CommonEtlUtils
     
     /**
      * Gets the string representation of the key for the given record and map of key fields.
+     * Values are concatenated without separator so different keys can produce the same string.
+     * Use RecordKeyBuilder to create keys for the lookups.
      *
      * @param dataSet the data set
      * @param record the record
@@ -367,6 +369,33 @@ public final class CommonEtlUtils
     public static DataSet join(DataSet drivingDataSet, DataSet dataSetToJoin,
             String keys, boolean outer, String include, String exclude)
         throws Exception
+    {
+        return join(drivingDataSet, dataSetToJoin, keys, outer, include,
+                exclude, 0, null);
+    }
+    
+    /**
+     * Joins two data sets using hash join. If smaller data set has more than
+     * maxRows records the hash table is built and probed partition by
+     * partition. It limits the size of the hash table only, the data sets are
+     * not copied.
+     * 
+     * @param drivingDataSet the driving data set
+     * @param dataSetToJoin the data set to join
+     * @param keys the key fields
+     * @param outer if true perform outer join
+     * @param include the fields to include
+     * @param exclude the fields to exclude
+     * @param maxRows the maximum number of records in the hash table, 0 - no limit
+     * @param folder the folder for the partition files
+     * @return the data set
+     * @throws Exception in case of any error
+     * @see com.toolsverse.etl.common.HashJoin
+     */
+    public static DataSet join(DataSet drivingDataSet, DataSet dataSetToJoin,
+            String keys, boolean outer, String include, String exclude,
+            int maxRows, String folder)
+        throws Exception
     {
         if (drivingDataSet == null)
             return null;
@@ -391,6 +420,9 @@ public final class CommonEtlUtils
                     EtlResource.ERROR_JOINING_DATA_SET_WRONG_KEYS_IN_DRIVING
                             .getValue());
         
+        RecordKeyBuilder drivingKeyBuilder = new RecordKeyBuilder(
+                drivingDataSet, keyFields, false, true);
+        
         keyFields = getKeyFields(keys, dataSetToJoin.getFields());
         
         if (keyFields.isEmpty())
@@ -398,6 +430,9 @@ public final class CommonEtlUtils
                     EtlResource.ERROR_JOINING_DATA_SET_WRONG_KEYS_IN_JOIN
                             .getValue());
         
+        RecordKeyBuilder keyBuilder = new RecordKeyBuilder(dataSetToJoin,
+                keyFields, false, true);
+        
         Set<String> excludeFields = Utils.setSplit(exclude, ",");
         Set<String> includeFields = Utils.setSplit(include, ",");
         
@@ -408,6 +443,14 @@ public final class CommonEtlUtils
         ListHashMap<String, FieldDef> fields = getFieldsAfterIncludeExclude(
                 drivingDataSet, includeFields, excludeFields);
         
+        List<Integer> drivingFields = new ArrayList<Integer>();
+        
+        for (int col = 0; col < drivingDataSet.getFieldCount(); col++)
+            if (!isSelective
+                    || fields.containsKey(drivingDataSet.getFieldDef(col)
+                            .getName()))
+                drivingFields.add(col);
+        
         List<Integer> fieldsToAdd = new ArrayList<Integer>();
         
         for (int col = 0; col < dataSetToJoin.getFieldCount(); col++)
@@ -439,6 +482,7 @@ public final class CommonEtlUtils
         
         DataSet dataSet = new DataSet();
         
+        dataSet.copyStorageFrom(drivingDataSet);
         dataSet.setFields(fields);
         
         boolean useIndex = dataSetToJoin.getDataSetIndex() != null
@@ -448,28 +492,30 @@ public final class CommonEtlUtils
         
         int rows = drivingDataSet.getRecordCount();
         
-        int cols = drivingDataSet.getFieldCount();
-        
-        Map<String, DataSetRecord> dataSetIndex = new HashMap<String, DataSetRecord>();
+        int[] matches = useIndex ? null : new HashJoin(drivingDataSet,
+                dataSetToJoin, drivingKeyBuilder, keyBuilder, maxRows, folder)
+                .match();
         
         for (int row = 0; row < rows; row++)
         {
             DataSetRecord record = drivingDataSet.getRecord(row);
             
-            String key = getKey(drivingDataSet, record, keyFields, false, true);
+            DataSetRecord recordToJoin;
             
-            if (Utils.isNothing(key))
-                continue;
-            
-            DataSetRecord recordToJoin = findRecord(key, dataSetToJoin,
-                    useIndex, dataSetIndex, keyFields);
+            if (useIndex)
+                recordToJoin = dataSetToJoin.getRecord(drivingKeyBuilder
+                        .getKey(record));
+            else
+                recordToJoin = matches[row] >= 0 ? dataSetToJoin
+                        .getRecord(matches[row]) : null;
             
             if (recordToJoin == null && !outer)
                 continue;
             
-            DataSetRecord recordToAdd = getRecordAfterInlcudeExclude(
-                    drivingDataSet, record, cols, isSelective, includeFields,
-                    excludeFields);
+            DataSetRecord recordToAdd = new DataSetRecord();
+            
+            for (Integer col : drivingFields)
+                recordToAdd.add(record.get(col));
             
             for (Integer col : fieldsToAdd)
             {
@@ -525,6 +571,9 @@ public final class CommonEtlUtils
                     EtlResource.ERROR_MINUS_DATA_SET_WRONG_KEYS_IN_DRIVING
                             .getValue());
         
+        RecordKeyBuilder drivingKeyBuilder = new RecordKeyBuilder(
+                drivingDataSet, keyFields, false, true);
+        
         keyFields = getKeyFields(keys, dataSetToMinus.getFields());
         
         if (keyFields.isEmpty())
@@ -532,32 +581,33 @@ public final class CommonEtlUtils
                     EtlResource.ERROR_MINUS_DATA_SET_WRONG_KEYS_IN_MINUS
                             .getValue());
         
+        RecordKeyBuilder keyBuilder = new RecordKeyBuilder(dataSetToMinus,
+                keyFields, false, true);
+        
         boolean useIndex = dataSetToMinus.getDataSetIndex() != null
                 && dataSetToMinus.getDataSetIndex().size() > 0
                 && Utils.removeWhiteSpace(keys).equalsIgnoreCase(
                         Utils.removeWhiteSpace(dataSetToMinus.getKeyFields()));
         
-        Map<String, DataSetRecord> dataSetIndex = new HashMap<String, DataSetRecord>();
+        Map<RecordKey, DataSetRecord> dataSetIndex = new HashMap<RecordKey, DataSetRecord>();
         
         int count = drivingDataSet.getRecordCount();
         
         DataSet dataSet = new DataSet();
         
+        dataSet.copyStorageFrom(drivingDataSet);
         dataSet.setFields(drivingDataSet.getFields());
         
-        DataSetData data = new DataSetData();
+        DataSetData data = dataSet.createData();
         
         for (int row = 0; row < count; row++)
         {
             DataSetRecord record = drivingDataSet.getRecord(row);
             
-            String key = getKey(drivingDataSet, record, keyFields, false, true);
-            
-            if (Utils.isNothing(key))
-                continue;
+            RecordKey key = drivingKeyBuilder.getKey(record);
             
             DataSetRecord recordToMinus = findRecord(key, dataSetToMinus,
-                    useIndex, dataSetIndex, keyFields);
+                    useIndex, dataSetIndex, keyBuilder);
             
             if (recordToMinus != null)
                 continue;
@@ -571,7 +621,11 @@ public final class CommonEtlUtils
     }
     
     /**
-     * Splits the data set on multiple data set using given key field(s).
+     * Splits the data set on multiple data set using given key field(s). The
+     * name of the data set is the values of the key fields concatenated
+     * together. If different keys have the same string form, for example
+     * ("ab","c") and ("a","bc"), the suffix "_n" is added to the name, so each
+     * key gets its own data set.
      *
      * @param dataSet the data set
      * @param keys the keys
@@ -602,30 +656,46 @@ public final class CommonEtlUtils
             return map;
         }
         
+        RecordKeyBuilder keyBuilder = new RecordKeyBuilder(dataSet, keyFields,
+                false, true);
+        
+        Map<RecordKey, DataSet> dataSets = new HashMap<RecordKey, DataSet>();
+        
         int rows = dataSet.getRecordCount();
         
         for (int row = 0; row < rows; row++)
         {
             DataSetRecord record = dataSet.getRecord(row);
             
-            String key = getKey(dataSet, record, keyFields, false, true);
-            
-            if (Utils.isNothing(key))
-                continue;
+            RecordKey key = keyBuilder.getKey(record);
             
-            DataSet ds = map.get(key);
+            DataSet ds = dataSets.get(key);
             
             if (ds == null)
             {
+                String name = getKey(dataSet, record, keyFields, false, true);
+                
+                if (map.containsKey(name))
+                {
+                    int suffix = 1;
+                    
+                    while (map.containsKey(name + "_" + suffix))
+                        suffix++;
+                    
+                    name = name + "_" + suffix;
+                }
+                
                 ds = dataSet.copy();
                 
-                ds.setName(Utils.makeString(dataSet.getName()) + key);
+                ds.setName(Utils.makeString(dataSet.getName()) + name);
                 
-                DataSetData data = new DataSetData();
+                DataSetData data = ds.createData();
                 
                 ds.setData(data);
                 
-                map.put(key, ds);
+                map.put(name, ds);
+                
+                dataSets.put(key, ds);
             }
             
             ds.addRecord(record);
@@ -700,9 +770,19 @@ public final class CommonEtlUtils
                     EtlResource.ERROR_UNION_NO_KEY_FIELDS.getValue());
         
         DataSet dataSet = new DataSet();
+        dataSet.copyStorageFrom(dataSet1);
         dataSet.setFields(fields);
         
-        Set<String> dataSetIndex = new HashSet<String>();
+        RecordKeyBuilder keyBuilder1 = null;
+        RecordKeyBuilder keyBuilder2 = null;
+        
+        if (!unionAll)
+        {
+            keyBuilder1 = new RecordKeyBuilder(dataSet1, keyFields, false, true);
+            keyBuilder2 = new RecordKeyBuilder(dataSet2, keyFields, false, true);
+        }
+        
+        Set<RecordKey> dataSetIndex = new HashSet<RecordKey>();
         
         int rows = dataSet1.getRecordCount();
         int cols = dataSet1.getFieldCount();
@@ -743,10 +823,7 @@ public final class CommonEtlUtils
             
             if (!unionAll && !useIndex)
             {
-                String recordKey = getKey(dataSet1, record, keyFields, false,
-                        true);
-                
-                dataSetIndex.add(recordKey);
+                dataSetIndex.add(keyBuilder1.getKey(record));
             }
             
             dataSet.addRecord(recordToAdd);
@@ -780,8 +857,7 @@ public final class CommonEtlUtils
             
             if (!unionAll)
             {
-                String recordKey = getKey(dataSet2, record, keyFields, false,
-                        false);
+                RecordKey recordKey = keyBuilder2.getKey(record);
                 
                 if (useIndex)
                 {
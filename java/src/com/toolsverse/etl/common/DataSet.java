@@ -112,6 +112,15 @@ public class DataSet implements Serializable
     /** The encode. */
     private boolean _encode;
     
+    /** The columnar storage flag. */
+    private boolean _columnar;
+    
+    /** The maximum number of records in memory. */
+    private int _spillRows;
+    
+    /** The folder for the spilled records. */
+    private String _spillDir;
+    
     /** The driver. */
     private Driver _driver;
     
@@ -143,9 +152,10 @@ public class DataSet implements Serializable
     private String _filter;
     
     /** The data set index */
-    private Map<String, DataSetRecord> _dataSetIndex;
+    private Map<RecordKey, DataSetRecord> _dataSetIndex;
     
-    private Map<String, FieldDef> _indexFields;
+    /** The builder of the keys for the data set index */
+    private RecordKeyBuilder _indexKeyBuilder;
     
     /**
      * Instantiates a new data set.
@@ -160,6 +170,9 @@ public class DataSet implements Serializable
         _keyFields = null;
         _displayKeyField = null;
         _encode = true;
+        _columnar = false;
+        _spillRows = 0;
+        _spillDir = null;
         _driver = null;
         _tableName = null;
         _connection = null;
@@ -170,7 +183,7 @@ public class DataSet implements Serializable
         _nonCaseSensitiveFields = null;
         _condVars = null;
         _dataSetIndex = null;
-        _indexFields = null;
+        _indexKeyBuilder = null;
         _filter = null;
     }
     
@@ -217,14 +230,12 @@ public class DataSet implements Serializable
     public boolean addRecord(DataSetRecord record)
     {
         if (_data == null)
-            _data = new DataSetData();
+            _data = createData();
         
         if (!filter(record))
             return false;
         
-        _data.add(record);
-        
-        updateIndexOnAdd(record);
+        updateIndexOnAdd(_data.add(record));
         
         return true;
     }
@@ -241,7 +252,7 @@ public class DataSet implements Serializable
     public boolean addRecord(DataSetRecord record, int row)
     {
         if (_data == null)
-            _data = new DataSetData();
+            _data = createData();
         
         if (!filter(record))
             return false;
@@ -292,6 +303,9 @@ public class DataSet implements Serializable
         dataSet._keyFields = _keyFields;
         dataSet._displayKeyField = _displayKeyField;
         dataSet._encode = _encode;
+        dataSet._columnar = _columnar;
+        dataSet._spillRows = _spillRows;
+        dataSet._spillDir = _spillDir;
         dataSet._driver = _driver;
         dataSet._tableName = _tableName;
         dataSet._connection = _connection;
@@ -299,7 +313,7 @@ public class DataSet implements Serializable
         dataSet._hasLargeObj = _hasLargeObj;
         dataSet._displayFunctions = _displayFunctions;
         dataSet._dataSetIndex = _dataSetIndex;
-        _indexFields = null;
+        _indexKeyBuilder = null;
         
         return dataSet;
     }
@@ -318,7 +332,36 @@ public class DataSet implements Serializable
         _hasLargeObj = null;
         _displayFunctions = null;
         _dataSetIndex = null;
-        _indexFields = null;
+        _indexKeyBuilder = null;
+    }
+    
+    /**
+     * Copies the storage properties (columnar flag, maximum number of records
+     * in memory and folder for the spilled records) from the given data set.
+     * 
+     * @param dataSet
+     *            the data set
+     */
+    public void copyStorageFrom(DataSet dataSet)
+    {
+        _columnar = dataSet.isColumnar();
+        _spillRows = dataSet.getSpillRows();
+        _spillDir = dataSet.getSpillDir();
+    }
+    
+    /**
+     * Creates the empty storage for the data. If the maximum number of records
+     * in memory is set creates SpillableDataSetData, if data set is columnar
+     * creates ColumnarDataSetData, otherwise DataSetData.
+     * 
+     * @return the data
+     */
+    public DataSetData createData()
+    {
+        if (_spillRows > 0)
+            return new SpillableDataSetData(_spillRows, _spillDir);
+        
+        return _columnar ? new ColumnarDataSetData(this) : new DataSetData();
     }
     
     /**
@@ -691,7 +734,7 @@ public class DataSet implements Serializable
      * Gets the index
      * @return the index
      */
-    public Map<String, DataSetRecord> getDataSetIndex()
+    public Map<RecordKey, DataSetRecord> getDataSetIndex()
     {
         return _dataSetIndex;
     }
@@ -932,6 +975,33 @@ public class DataSet implements Serializable
         return FileUtils.getFullFileName(dataLocation, _name, ext, false);
     }
     
+    /**
+     * Gets the key of the record in the data set index.
+     * 
+     * @param record
+     *            the record
+     * @return the key or <code>null</code> if data set has no key fields
+     */
+    private RecordKey getIndexKey(DataSetRecord record)
+    {
+        return getIndexKeyBuilder().getKey(record);
+    }
+    
+    /**
+     * Gets the builder of the keys for the data set index.
+     * 
+     * @return the key builder
+     */
+    private RecordKeyBuilder getIndexKeyBuilder()
+    {
+        if (_indexKeyBuilder == null)
+            _indexKeyBuilder = new RecordKeyBuilder(this,
+                    CommonEtlUtils.getKeyFields(_keyFields, _fields), false,
+                    true);
+        
+        return _indexKeyBuilder;
+    }
+    
     /**
      * Gets the names of the key fields.
      * 
@@ -942,6 +1012,22 @@ public class DataSet implements Serializable
         return _keyFields;
     }
     
+    /**
+     * Gets the last added record as it is stored by the data set. Depending on
+     * the storage it can be a different instance than the one which was added,
+     * for example a view of the columnar record, so the changes must be made
+     * using this instance.
+     * 
+     * @return the last record or null if there are no records
+     */
+    public DataSetRecord getLastRecord()
+    {
+        if (_data == null || _data.size() == 0)
+            return null;
+        
+        return _data.get(_data.size() - 1);
+    }
+    
     /**
      * Gets the name.
      * 
@@ -1011,13 +1097,81 @@ public class DataSet implements Serializable
      * @param key the key
      * @return the record
      */
+    public DataSetRecord getRecord(RecordKey key)
+    {
+        if (_dataSetIndex == null || _dataSetIndex.size() == 0
+                || key == null || Utils.isNothing(_keyFields))
+            return null;
+        
+        return _dataSetIndex.get(key);
+    }
+    
+    /**
+     * Get record by the string form of the key: the values of the key fields
+     * concatenated together. For the composite key each split of the string
+     * on the values of the key fields is looked up in the index, the first
+     * found record is returned. Keys which include date fields can not be
+     * split on values, so records are compared one by one.
+     * 
+     * @param key the key
+     * @return the record
+     */
     public DataSetRecord getRecord(String key)
     {
         if (_dataSetIndex == null || _dataSetIndex.size() == 0
                 || Utils.isNothing(key) || Utils.isNothing(_keyFields))
             return null;
         
-        return _dataSetIndex.get(key);
+        Map<String, FieldDef> keyFields = CommonEtlUtils.getKeyFields(
+                _keyFields, _fields);
+        
+        if (keyFields.isEmpty())
+            return null;
+        
+        for (FieldDef field : keyFields.values())
+            if (SqlUtils.isDate(field.getSqlDataType()))
+            {
+                for (DataSetRecord record : _dataSetIndex.values())
+                    if (key.equals(CommonEtlUtils.getKey(this, record,
+                            keyFields, false, true)))
+                        return record;
+                
+                return null;
+            }
+        
+        return getRecord(key, 0, new Object[keyFields.size()]);
+    }
+    
+    /**
+     * Looks up the record for each split of the rest of the string form of the
+     * key on the values of the remaining key fields.
+     * 
+     * @param key the rest of the key
+     * @param part the index of the first remaining key field
+     * @param values the values of the key fields
+     * @return the record or null if none of the splits is found
+     */
+    private DataSetRecord getRecord(String key, int part, Object[] values)
+    {
+        int remaining = values.length - part - 1;
+        
+        for (int i = remaining == 0 ? key.length() : 1; i <= key.length()
+                - remaining; i++)
+        {
+            String value = key.substring(0, i);
+            
+            // null is concatenated as "null"
+            values[part] = "null".equals(value) ? null : value;
+            
+            DataSetRecord record = remaining == 0 ? _dataSetIndex
+                    .get(getIndexKeyBuilder().getKey(values)) : getRecord(
+                    key.substring(i), part + 1, values);
+            
+            if (record != null)
+                return record;
+        }
+        
+        return null;
     }
     
     /**
@@ -1030,6 +1184,27 @@ public class DataSet implements Serializable
         return _data != null ? _data.size() : 0;
     }
     
+    /**
+     * Gets the folder for the spilled records.
+     * 
+     * @return the folder for the spilled records
+     */
+    public String getSpillDir()
+    {
+        return _spillDir;
+    }
+    
+    /**
+     * Gets the maximum number of records in memory. 0 means that records are
+     * never spilled to disk.
+     * 
+     * @return the maximum number of records in memory
+     */
+    public int getSpillRows()
+    {
+        return _spillRows;
+    }
+    
     /**
      * Gets the table name.
      * 
@@ -1080,6 +1255,17 @@ public class DataSet implements Serializable
         return false;
     }
     
+    /**
+     * Checks if data set uses columnar storage for the data. The default value
+     * is <code>false</code>.
+     * 
+     * @return true, if data set is columnar
+     */
+    public boolean isColumnar()
+    {
+        return _columnar;
+    }
+    
     /**
      * Checks if data set is empty.
      * 
@@ -1143,7 +1329,19 @@ public class DataSet implements Serializable
     private void reset()
     {
         _hasLargeObj = null;
-        _indexFields = null;
+        _indexKeyBuilder = null;
+    }
+    
+    /**
+     * Sets the columnar storage flag. Affects only data created after this
+     * call.
+     * 
+     * @param value
+     *            the new columnar storage flag
+     */
+    public void setColumnar(boolean value)
+    {
+        _columnar = value;
     }
     
     /**
@@ -1173,7 +1371,7 @@ public class DataSet implements Serializable
      *  
      * @param value the index
      */
-    public void setDataSetIndex(Map<String, DataSetRecord> value)
+    public void setDataSetIndex(Map<RecordKey, DataSetRecord> value)
     {
         _dataSetIndex = value;
     }
@@ -1395,11 +1593,12 @@ public class DataSet implements Serializable
     public void setKeyFields(String value)
     {
         _keyFields = value;
+        _indexKeyBuilder = null;
         
         if (!Utils.isNothing(_keyFields))
         {
             if (_dataSetIndex == null)
-                _dataSetIndex = new HashMap<String, DataSetRecord>();
+                _dataSetIndex = new HashMap<RecordKey, DataSetRecord>();
             else
                 _dataSetIndex.clear();
         }
@@ -1438,11 +1637,38 @@ public class DataSet implements Serializable
     public void setRecord(DataSetRecord record, int row)
     {
         if (_data == null)
-            _data = new DataSetData();
+            _data = createData();
         
         _data.set(row, record);
     }
     
+    /**
+     * Sets the folder for the spilled records. If <code>null</code> the
+     * default temporary folder is used.
+     * 
+     * @param value
+     *            the new folder for the spilled records
+     */
+    public void setSpillDir(String value)
+    {
+        _spillDir = value;
+    }
+    
+    /**
+     * Sets the maximum number of records in memory. If set records added after
+     * this limit is reached are spilled to disk. Affects only data created
+     * after this call.
+     * 
+     * @param value
+     *            the new maximum number of records in memory
+     * 
+     * @see com.toolsverse.etl.common.SpillableDataSetData
+     */
+    public void setSpillRows(int value)
+    {
+        _spillRows = value;
+    }
+    
     /**
      * Sets the table name.
      * 
@@ -1476,7 +1702,7 @@ public class DataSet implements Serializable
                 || _data.size() == 0 || orderBy == null || orderBy.size() == 0)
             return;
         
-        _data.sort(orderBy);
+        _data.sort(new RecordComparator(orderBy, this));
     }
     
     /** Sorts data using given order by list with field names.
@@ -1509,7 +1735,7 @@ public class DataSet implements Serializable
         if (indexOrderBy.size() == 0)
             return;
         
-        _data.sort(indexOrderBy);
+        _data.sort(new RecordComparator(indexOrderBy, this));
     }
     
     /** Sorts data using given "order by" string.
@@ -1570,7 +1796,7 @@ public class DataSet implements Serializable
         if (indexOrderBy.size() == 0)
             return;
         
-        _data.sort(indexOrderBy);
+        _data.sort(new RecordComparator(indexOrderBy, this));
         
     }
     
@@ -1582,22 +1808,11 @@ public class DataSet implements Serializable
      */
     public void updateIndexOnAdd(DataSetRecord currentRow)
     {
-        if (currentRow == null || Utils.isNothing(_keyFields))
-            return;
-        
-        if (_indexFields == null)
-            _indexFields = CommonEtlUtils.getKeyFields(_keyFields, _fields);
-        
-        if (_indexFields.size() == 0)
+        if (currentRow == null || Utils.isNothing(_keyFields)
+                || getIndexKeyBuilder().isEmpty())
             return;
         
-        String key = CommonEtlUtils.getKey(this, currentRow, _indexFields,
-                false, true);
-        
-        if (Utils.isNothing(key))
-            return;
-        
-        _dataSetIndex.put(key, currentRow);
+        _dataSetIndex.put(getIndexKey(currentRow), currentRow);
     }
     
     /**
@@ -1608,22 +1823,11 @@ public class DataSet implements Serializable
      */
     public void updateIndexOnDelete(DataSetRecord currentRow)
     {
-        if (currentRow == null || Utils.isNothing(_keyFields))
-            return;
-        
-        if (_indexFields == null)
-            _indexFields = CommonEtlUtils.getKeyFields(_keyFields, _fields);
-        
-        if (_indexFields.size() == 0)
-            return;
-        
-        String key = CommonEtlUtils.getKey(this, currentRow, _indexFields,
-                false, true);
-        
-        if (Utils.isNothing(key))
+        if (currentRow == null || Utils.isNothing(_keyFields)
+                || getIndexKeyBuilder().isEmpty())
             return;
         
-        _dataSetIndex.remove(key);
+        _dataSetIndex.remove(getIndexKey(currentRow));
     }
     
 }
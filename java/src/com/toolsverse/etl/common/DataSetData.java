@@ -9,12 +9,10 @@ package com.toolsverse.etl.common;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
 import com.toolsverse.util.TypedKeyValue;
-import com.toolsverse.util.Utils;
 
 /**
  * The collection of the DataSetRecords used by DataSet to store data.
@@ -50,10 +48,13 @@ public class DataSetData implements Serializable
      * Adds the record.
      *
      * @param value the record
+     * @return the added record
      */
-    public void add(DataSetRecord value)
+    public DataSetRecord add(DataSetRecord value)
     {
         _data.add(value);
+        
+        return value;
     }
     
     /**
@@ -129,35 +130,34 @@ public class DataSetData implements Serializable
         return _data.size();
     }
     
+    /** Sorts data using given comparator. Large data is sorted in parallel.
+     *  
+     * @param comparator the comparator
+     * @see com.toolsverse.etl.common.RecordSorter
+    */
+    public void sort(Comparator<DataSetRecord> comparator)
+    {
+        if (_data.size() == 0 || comparator == null)
+            return;
+        
+        DataSetRecord[] records = _data.toArray(new DataSetRecord[_data
+                .size()]);
+        
+        RecordSorter.sort(records, comparator);
+        
+        for (int i = 0; i < records.length; i++)
+            _data.set(i, records[i]);
+    }
+    
     /** Sorts data using given order by list with field indexes.
      *  
      * @param orderBy the order by list
     */
     public void sort(final List<TypedKeyValue<Integer, SortType>> orderBy)
     {
-        if (_data.size() == 0 || orderBy == null || orderBy.size() == 0)
+        if (orderBy == null || orderBy.size() == 0)
             return;
         
-        Collections.sort(_data, new Comparator<DataSetRecord>()
-        {
-            public int compare(DataSetRecord r1, DataSetRecord r2)
-            {
-                int ret;
-                
-                for (TypedKeyValue<Integer, SortType> item : orderBy)
-                {
-                    Object v1 = r1.get(item.getKey());
-                    Object v2 = r2.get(item.getKey());
-                    
-                    ret = Utils.compareTo(v1, v2);
-                    if (ret == 0)
-                        continue;
-                    
-                    return item.getValue() == SortType.ASC ? ret : ret * -1;
-                }
-                
-                return 0;
-            }
-        });
+        sort(new RecordComparator(orderBy, null));
     }
 }
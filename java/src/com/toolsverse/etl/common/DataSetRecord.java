@@ -55,6 +55,18 @@ public class DataSetRecord implements Serializable
         _record = new ArrayList<Object>();
     }
     
+    /**
+     * Instantiates a new DataSetRecord which uses given list to store values.
+     * Subclasses which store values somewhere else pass <code>null</code>
+     * and override methods used to access cells.
+     *
+     * @param record the list of values
+     */
+    DataSetRecord(List<Object> record)
+    {
+        _record = record;
+    }
+    
     /**
      * Adds the value at the index.
      *
@@ -63,7 +75,7 @@ public class DataSetRecord implements Serializable
      */
     public void add(int index, Object value)
     {
-        _record.add(index, value);
+        addCell(index, value);
     }
     
     /**
@@ -73,7 +85,19 @@ public class DataSetRecord implements Serializable
      */
     public void add(Object value)
     {
-        _record.add(value);
+        addCell(size(), value);
+    }
+    
+    /**
+     * Adds the cell at the index. The cell can hold either value or versions
+     * of the value.
+     *
+     * @param index the index
+     * @param cell the cell
+     */
+    protected void addCell(int index, Object cell)
+    {
+        _record.add(index, cell);
     }
     
     /**
@@ -84,7 +108,7 @@ public class DataSetRecord implements Serializable
      */
     public void addVersion(int index, Object value)
     {
-        Object cellValue = _record.get(index);
+        Object cellValue = getCell(index);
         
         if (cellValue instanceof CellVersions)
         {
@@ -104,6 +128,14 @@ public class DataSetRecord implements Serializable
      * Clears.
      */
     public void clear()
+    {
+        clearCells();
+    }
+    
+    /**
+     * Removes all cells.
+     */
+    protected void clearCells()
     {
         _record.clear();
     }
@@ -119,7 +151,7 @@ public class DataSetRecord implements Serializable
     public boolean contains(int index, Object value, boolean ignoreCase,
             boolean doTrim)
     {
-        Object cellValue = _record.get(index);
+        Object cellValue = getCell(index);
         
         if (cellValue instanceof CellVersions)
         {
@@ -153,8 +185,8 @@ public class DataSetRecord implements Serializable
      */
     public void deleteCol(int col)
     {
-        if (col >= 0 && col < _record.size())
-            _record.remove(col);
+        if (col >= 0 && col < size())
+            removeCell(col);
     }
     
     /**
@@ -196,7 +228,7 @@ public class DataSetRecord implements Serializable
      */
     public Object get(int index)
     {
-        Object value = _record.get(index);
+        Object value = getCell(index);
         
         if (value instanceof CellVersions)
             return ((CellVersions)value).getValue();
@@ -204,6 +236,18 @@ public class DataSetRecord implements Serializable
         return value;
     }
     
+    /**
+     * Gets the cell at the index. The cell can hold either value or versions
+     * of the value.
+     *
+     * @param index the index
+     * @return the cell
+     */
+    protected Object getCell(int index)
+    {
+        return _record.get(index);
+    }
+    
     /**
      * Calculates the index of the version using given value.
      *  
@@ -216,7 +260,7 @@ public class DataSetRecord implements Serializable
     public int getIndexOfVersion(int index, Object value, boolean ignoreCase,
             boolean doTrim)
     {
-        Object cellValue = _record.get(index);
+        Object cellValue = getCell(index);
         
         if (cellValue instanceof CellVersions)
         {
@@ -254,7 +298,7 @@ public class DataSetRecord implements Serializable
      */
     public int getNumberOfVersions(int index)
     {
-        Object cellValue = _record.get(index);
+        Object cellValue = getCell(index);
         
         if (cellValue instanceof CellVersions)
         {
@@ -276,7 +320,7 @@ public class DataSetRecord implements Serializable
      */
     public Object getVersion(int index, int version)
     {
-        Object cellValue = _record.get(index);
+        Object cellValue = getCell(index);
         
         if (cellValue instanceof CellVersions)
         {
@@ -299,6 +343,16 @@ public class DataSetRecord implements Serializable
         
     }
     
+    /**
+     * Removes the cell at the index.
+     *
+     * @param index the index
+     */
+    protected void removeCell(int index)
+    {
+        _record.remove(index);
+    }
+    
     /**
      * Removes version of the cell
      * @param index the index of the cell
@@ -306,7 +360,7 @@ public class DataSetRecord implements Serializable
      */
     public void removeVersion(int index, int version)
     {
-        Object cellValue = _record.get(index);
+        Object cellValue = getCell(index);
         
         if (cellValue instanceof CellVersions)
         {
@@ -327,7 +381,19 @@ public class DataSetRecord implements Serializable
      */
     public void set(int index, Object value)
     {
-        _record.set(index, value);
+        setCell(index, value);
+    }
+    
+    /**
+     * Sets the cell at the index. The cell can hold either value or versions
+     * of the value.
+     *
+     * @param index the index
+     * @param cell the cell
+     */
+    protected void setCell(int index, Object cell)
+    {
+        _record.set(index, cell);
     }
     
     /**
@@ -339,7 +405,7 @@ public class DataSetRecord implements Serializable
      */
     public void setVersion(int index, int version, Object value)
     {
-        Object cellValue = _record.get(index);
+        Object cellValue = getCell(index);
         
         if (cellValue instanceof CellVersions)
         {
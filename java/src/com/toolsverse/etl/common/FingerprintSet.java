@@ -0,0 +1,546 @@
+/*
+ * FingerprintSet.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import com.toolsverse.util.Utils;
+
+/**
+ * The set of the rows used to exclude duplicated rows. Values of the row are
+ * encoded using their type and hashed into the 128-bit fingerprint. Only
+ * fingerprints are kept in memory, in the open addressing hash table of
+ * primitive longs, so the memory used by the set does not depend on the size
+ * of the values.
+ * <p>
+ * Two different rows can have the same fingerprint, but the probability is
+ * negligible. If exact verification is enabled encoded rows are also written
+ * to the spill file and when fingerprints are equal rows are compared byte by
+ * byte. Call {@link #close()} to delete the spill file.
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class FingerprintSet
+{
+    /** The initial capacity of the hash table. */
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    /** The buffer size. */
+    private static final int BUFFER_SIZE = 8 * 1024;
+    
+    /** The first constant of the hash function. */
+    private static final long C1 = 0x87c37b91114253d5L;
+    
+    /** The second constant of the hash function. */
+    private static final long C2 = 0x4cf5ad432745937fL;
+    
+    /** The null value. */
+    private static final byte NULL_TYPE = 0;
+    
+    /** The integer number. */
+    private static final byte LONG_TYPE = 1;
+    
+    /** The floating point number. */
+    private static final byte DOUBLE_TYPE = 2;
+    
+    /** The date. */
+    private static final byte DATE_TYPE = 3;
+    
+    /** The timestamp. */
+    private static final byte TIMESTAMP_TYPE = 4;
+    
+    /** The array of bytes. */
+    private static final byte BYTES_TYPE = 5;
+    
+    /** The boolean. */
+    private static final byte BOOLEAN_TYPE = 6;
+    
+    /** The any other value, encoded as a string. */
+    private static final byte STRING_TYPE = 7;
+    
+    /**
+     * The fingerprints. Each fingerprint takes two elements, empty slot is
+     * 0,0.
+     */
+    private long[] _table;
+    
+    /** The offsets of the encoded rows in the spill file. */
+    private long[] _offsets;
+    
+    /** The number of fingerprints. */
+    private int _size;
+    
+    /** The encoded row. */
+    private byte[] _buffer;
+    
+    /** The length of the encoded row. */
+    private int _length;
+    
+    /** The verify flag. */
+    private final boolean _verify;
+    
+    /** The folder for the spill file. */
+    private final String _folder;
+    
+    /** The spill file. */
+    private File _file;
+    
+    /** The output to the spill file. */
+    private OutputStream _out;
+    
+    /** The length of the spill file. */
+    private long _fileLength;
+    
+    /** The spill file opened for reading. */
+    private RandomAccessFile _in;
+    
+    /** The row read from the spill file. */
+    private byte[] _readBuffer;
+    
+    /**
+     * Instantiates a new FingerprintSet without exact verification.
+     */
+    public FingerprintSet()
+    {
+        this(false, null);
+    }
+    
+    /**
+     * Instantiates a new FingerprintSet.
+     * 
+     * @param verify
+     *            if <code>true</code> rows with equal fingerprints are compared
+     *            using the spill file
+     * @param folder
+     *            the folder for the spill file. If <code>null</code> the
+     *            default temporary folder is used
+     */
+    public FingerprintSet(boolean verify, String folder)
+    {
+        _verify = verify;
+        _folder = folder;
+        
+        _table = new long[INITIAL_CAPACITY * 2];
+        _offsets = verify ? new long[INITIAL_CAPACITY] : null;
+        _size = 0;
+        
+        _buffer = new byte[256];
+        _length = 0;
+        
+        _file = null;
+        _out = null;
+        _fileLength = 0;
+        _in = null;
+        _readBuffer = null;
+    }
+    
+    /**
+     * Adds the row to the set.
+     * 
+     * @param values
+     *            the values
+     * @param count
+     *            the number of values
+     * @return <code>true</code> if set did not already contain the row
+     * @throws IOException
+     *             in case of any error
+     */
+    public boolean add(Object[] values, int count)
+        throws IOException
+    {
+        _length = 0;
+        
+        for (int i = 0; i < count; i++)
+            encode(values[i]);
+        
+        long h1 = hash(_buffer, _length, 0);
+        long h2 = hash(_buffer, _length, h1);
+        
+        // 0,0 is the empty slot
+        if (h1 == 0 && h2 == 0)
+            h2 = 1;
+        
+        int mask = _table.length / 2 - 1;
+        int slot = (int)h1 & mask;
+        
+        while (_table[slot * 2] != 0 || _table[slot * 2 + 1] != 0)
+        {
+            if (_table[slot * 2] == h1 && _table[slot * 2 + 1] == h2
+                    && (!_verify || isSameRow(_offsets[slot])))
+                return false;
+            
+            slot = (slot + 1) & mask;
+        }
+        
+        _table[slot * 2] = h1;
+        _table[slot * 2 + 1] = h2;
+        
+        if (_verify)
+            _offsets[slot] = write();
+        
+        _size++;
+        
+        if (_size * 2 > mask + 1)
+            rehash();
+        
+        return true;
+    }
+    
+    /**
+     * Clears the set and deletes the spill file.
+     */
+    public void close()
+    {
+        _table = new long[INITIAL_CAPACITY * 2];
+        _offsets = _verify ? new long[INITIAL_CAPACITY] : null;
+        _size = 0;
+        
+        try
+        {
+            if (_out != null)
+                _out.close();
+            
+            if (_in != null)
+                _in.close();
+        }
+        // it's ok
+        catch (IOException ex)
+        {
+        }
+        
+        if (_file != null)
+            _file.delete();
+        
+        _file = null;
+        _out = null;
+        _fileLength = 0;
+        _in = null;
+    }
+    
+    /**
+     * Encodes the value and appends it to the encoded row.
+     * 
+     * @param value
+     *            the value
+     */
+    private void encode(Object value)
+    {
+        if (value == null)
+            writeByte(NULL_TYPE);
+        else if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte)
+        {
+            writeByte(LONG_TYPE);
+            writeLong(((Number)value).longValue());
+        }
+        else if (value instanceof Double || value instanceof Float)
+        {
+            writeByte(DOUBLE_TYPE);
+            writeLong(Double.doubleToLongBits(((Number)value).doubleValue()));
+        }
+        else if (value instanceof Timestamp)
+        {
+            writeByte(TIMESTAMP_TYPE);
+            writeLong(((Timestamp)value).getTime());
+            writeLong(((Timestamp)value).getNanos());
+        }
+        else if (value instanceof Date)
+        {
+            writeByte(DATE_TYPE);
+            writeLong(((Date)value).getTime());
+        }
+        else if (value instanceof byte[])
+        {
+            byte[] bytes = (byte[])value;
+            
+            writeByte(BYTES_TYPE);
+            writeLong(bytes.length);
+            
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, _buffer, _length, bytes.length);
+            _length += bytes.length;
+        }
+        else if (value instanceof Boolean)
+        {
+            writeByte(BOOLEAN_TYPE);
+            writeByte((byte)(((Boolean)value).booleanValue() ? 1 : 0));
+        }
+        else
+        {
+            String str = value.toString();
+            int len = str.length();
+            
+            writeByte(STRING_TYPE);
+            writeLong(len);
+            
+            ensureCapacity(len * 2);
+            
+            for (int i = 0; i < len; i++)
+            {
+                char c = str.charAt(i);
+                
+                _buffer[_length++] = (byte)(c >>> 8);
+                _buffer[_length++] = (byte)c;
+            }
+        }
+    }
+    
+    /**
+     * Makes sure that encoded row can grow by the given number of bytes.
+     * 
+     * @param size
+     *            the number of bytes
+     */
+    private void ensureCapacity(int size)
+    {
+        if (_length + size <= _buffer.length)
+            return;
+        
+        byte[] buffer = new byte[Math.max(_buffer.length * 2, _length + size)];
+        
+        System.arraycopy(_buffer, 0, buffer, 0, _length);
+        
+        _buffer = buffer;
+    }
+    
+    /**
+     * Mixes bits of the hash.
+     * 
+     * @param h
+     *            the hash
+     * @return the mixed hash
+     */
+    private static long fmix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        
+        return h;
+    }
+    
+    /**
+     * Reads the long from the bytes.
+     * 
+     * @param bytes
+     *            the bytes
+     * @param index
+     *            the index of the first byte
+     * @return the long
+     */
+    private static long getLong(byte[] bytes, int index)
+    {
+        return (bytes[index] & 0xffL) | (bytes[index + 1] & 0xffL) << 8
+                | (bytes[index + 2] & 0xffL) << 16
+                | (bytes[index + 3] & 0xffL) << 24
+                | (bytes[index + 4] & 0xffL) << 32
+                | (bytes[index + 5] & 0xffL) << 40
+                | (bytes[index + 6] & 0xffL) << 48
+                | (bytes[index + 7] & 0xffL) << 56;
+    }
+    
+    /**
+     * Gets the 64-bit hash of the bytes. The hash function is a variant of the
+     * MurmurHash3.
+     * 
+     * @param bytes
+     *            the bytes
+     * @param length
+     *            the number of bytes
+     * @param seed
+     *            the seed
+     * @return the hash
+     */
+    private static long hash(byte[] bytes, int length, long seed)
+    {
+        long h = seed ^ (length * C1);
+        
+        int i = 0;
+        
+        for (; i + 8 <= length; i += 8)
+        {
+            long k = getLong(bytes, i);
+            
+            k *= C1;
+            k = Long.rotateLeft(k, 31);
+            k *= C2;
+            
+            h ^= k;
+            h = Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+        }
+        
+        long k = 0;
+        
+        for (int shift = 0; i < length; i++, shift += 8)
+            k |= (bytes[i] & 0xffL) << shift;
+        
+        k *= C2;
+        k = Long.rotateLeft(k, 33);
+        k *= C1;
+        
+        h ^= k;
+        
+        return fmix(h);
+    }
+    
+    /**
+     * Compares the encoded row with the row in the spill file.
+     * 
+     * @param offset
+     *            the offset of the row in the spill file
+     * @return <code>true</code> if rows are equal
+     * @throws IOException
+     *             in case of any error
+     */
+    private boolean isSameRow(long offset)
+        throws IOException
+    {
+        _out.flush();
+        
+        if (_in == null)
+            _in = new RandomAccessFile(_file, "r");
+        
+        _in.seek(offset);
+        
+        if (_in.readInt() != _length)
+            return false;
+        
+        if (_readBuffer == null || _readBuffer.length < _length)
+            _readBuffer = new byte[_buffer.length];
+        
+        _in.readFully(_readBuffer, 0, _length);
+        
+        for (int i = 0; i < _length; i++)
+            if (_readBuffer[i] != _buffer[i])
+                return false;
+        
+        return true;
+    }
+    
+    /**
+     * Doubles the capacity of the hash table.
+     */
+    private void rehash()
+    {
+        long[] table = _table;
+        long[] offsets = _offsets;
+        
+        int capacity = table.length;
+        
+        _table = new long[capacity * 2];
+        _offsets = _verify ? new long[capacity] : null;
+        
+        int mask = capacity - 1;
+        
+        for (int old = 0; old < capacity / 2; old++)
+        {
+            long h1 = table[old * 2];
+            long h2 = table[old * 2 + 1];
+            
+            if (h1 == 0 && h2 == 0)
+                continue;
+            
+            int slot = (int)h1 & mask;
+            
+            while (_table[slot * 2] != 0 || _table[slot * 2 + 1] != 0)
+                slot = (slot + 1) & mask;
+            
+            _table[slot * 2] = h1;
+            _table[slot * 2 + 1] = h2;
+            
+            if (_verify)
+                _offsets[slot] = offsets[old];
+        }
+    }
+    
+    /**
+     * Gets the number of rows in the set.
+     * 
+     * @return the number of rows
+     */
+    public int size()
+    {
+        return _size;
+    }
+    
+    /**
+     * Writes the encoded row to the spill file.
+     * 
+     * @return the offset of the row in the spill file
+     * @throws IOException
+     *             in case of any error
+     */
+    private long write()
+        throws IOException
+    {
+        if (_out == null)
+        {
+            File folder = !Utils.isNothing(_folder) ? new File(_folder)
+                    : null;
+            
+            if (folder != null)
+                folder.mkdirs();
+            
+            _file = File.createTempFile("etl", ".unique", folder);
+            
+            _out = new BufferedOutputStream(new FileOutputStream(_file),
+                    BUFFER_SIZE);
+        }
+        
+        long offset = _fileLength;
+        
+        _out.write(_length >>> 24);
+        _out.write(_length >>> 16);
+        _out.write(_length >>> 8);
+        _out.write(_length);
+        _out.write(_buffer, 0, _length);
+        
+        _fileLength += 4 + _length;
+        
+        return offset;
+    }
+    
+    /**
+     * Appends the byte to the encoded row.
+     * 
+     * @param value
+     *            the byte
+     */
+    private void writeByte(byte value)
+    {
+        ensureCapacity(1);
+        
+        _buffer[_length++] = value;
+    }
+    
+    /**
+     * Appends the long to the encoded row.
+     * 
+     * @param value
+     *            the long
+     */
+    private void writeLong(long value)
+    {
+        ensureCapacity(8);
+        
+        for (int shift = 0; shift < 64; shift += 8)
+            _buffer[_length++] = (byte)(value >>> shift);
+    }
+}
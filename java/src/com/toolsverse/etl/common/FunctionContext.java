@@ -7,10 +7,7 @@
 
 package com.toolsverse.etl.common;
 
-import java.lang.reflect.Method;
-
 import com.toolsverse.util.Utils;
-import com.toolsverse.util.factory.ObjectFactory;
 
 /**
  * The is a parameter passed to the function. Includes information such as current record, current value, etc.  
@@ -76,8 +73,7 @@ public class FunctionContext
                 && Utils.isNothing(var.getFunctionClassName()))
             return "";
         
-        Function funct = (Function)ObjectFactory.instance().get(
-                var.getFunctionClassName(), true);
+        FunctionInvoker invoker = FunctionInvoker.getInvoker(var, getClass());
         
         boolean asConfigured = var.getScope() == Variable.EXECUTE_AS_CONFIGURED;
         boolean doExec = true;
@@ -85,24 +81,15 @@ public class FunctionContext
         switch (_scope)
         {
             case Variable.EXECUTE_BEFORE:
-                doExec = var.isScopeSet(_scope)
-                        || (asConfigured && Utils.belongsTo(
-                                funct.getBeforeFunctions(), var.getFunction()));
-                break;
             case Variable.EXECUTE_AFTER:
-                doExec = var.isScopeSet(_scope)
-                        || (asConfigured && Utils.belongsTo(
-                                funct.getAfterFunctions(), var.getFunction()));
-                break;
             case Variable.EXECUTE_RUNTIME:
                 doExec = var.isScopeSet(_scope)
-                        || (asConfigured && Utils.belongsTo(
-                                funct.getRuntimeFunctions(), var.getFunction()));
+                        || (asConfigured && invoker.belongsTo(_scope));
                 break;
         }
         
         if (doExec)
-            return (String)invoke(funct, var.getFunction());
+            return (String)invoker.invoke(this);
         else
             return "";
     }
@@ -158,31 +145,6 @@ public class FunctionContext
         return _variable;
     }
     
-    /**
-     * Invokes the function by name using reflection and returns result of the
-     * function.
-     * 
-     * @param funct
-     *            the function
-     * @param name
-     *            the name of the function
-     * 
-     * @return the object Result of the function
-     * 
-     * @throws Exception in case of any error
-     *             
-     */
-    private Object invoke(Function funct, String name)
-        throws Exception
-    {
-        Method invokeMethod = null;
-        
-        invokeMethod = funct.getClass().getMethod(name,
-                new Class[] {this.getClass()});
-        
-        return invokeMethod.invoke(funct, new Object[] {this});
-    }
-    
     /**
      * Checks if "from cursor" flag is set. There are two ways to iterate
      * through the data set row by row: a)store everything in the memory and
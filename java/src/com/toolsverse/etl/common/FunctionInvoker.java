@@ -0,0 +1,145 @@
+/*
+ * FunctionInvoker.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import java.lang.reflect.Method;
+
+import com.toolsverse.util.Utils;
+import com.toolsverse.util.factory.ObjectFactory;
+
+/**
+ * Invokes the function by name. The instance of the function, execution
+ * scopes of the function and the method are resolved once and cached in the
+ * variable for the class of the function context, so calling function for
+ * each field of each record does not require any lookups. The invoker lives
+ * as long as the variable, so functions loaded by the scenario are not held
+ * after the scenario is gone.
+ * 
+ * @see com.toolsverse.etl.common.FunctionContext#execute(Variable)
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class FunctionInvoker
+{
+    /**
+     * Gets the invoker for the function associated with the variable. Creates
+     * new invoker and caches it in the variable if needed.
+     * 
+     * @param var the variable
+     * @param contextClass the class of the function context
+     * @return the invoker
+     */
+    public static FunctionInvoker getInvoker(Variable var,
+            Class<?> contextClass)
+    {
+        FunctionInvoker invoker = var.getInvoker();
+        
+        if (invoker == null || invoker._contextClass != contextClass)
+        {
+            invoker = new FunctionInvoker((Function)ObjectFactory.instance()
+                    .get(var.getFunctionClassName(), true), var.getFunction(),
+                    contextClass);
+            
+            var.setInvoker(invoker);
+        }
+        
+        return invoker;
+    }
+    
+    /** The function. */
+    private final Function _function;
+    
+    /** The name of the function. */
+    private final String _name;
+    
+    /** The class of the function context. */
+    private final Class<?> _contextClass;
+    
+    /** The "before" flag. */
+    private final boolean _isBefore;
+    
+    /** The "after" flag. */
+    private final boolean _isAfter;
+    
+    /** The "runtime" flag. */
+    private final boolean _isRuntime;
+    
+    /** The method. Resolved on first call. */
+    private volatile Method _method;
+    
+    /**
+     * Instantiates a new FunctionInvoker.
+     * 
+     * @param function the function
+     * @param name the name of the function
+     * @param contextClass the class of the function context
+     */
+    private FunctionInvoker(Function function, String name,
+            Class<?> contextClass)
+    {
+        _function = function;
+        _name = name;
+        _contextClass = contextClass;
+        
+        _isBefore = Utils.belongsTo(function.getBeforeFunctions(), name);
+        _isAfter = Utils.belongsTo(function.getAfterFunctions(), name);
+        _isRuntime = Utils.belongsTo(function.getRuntimeFunctions(), name);
+        
+        _method = null;
+    }
+    
+    /**
+     * Checks if function belongs to the execution scope.
+     * 
+     * @param scope the execution scope
+     * @return true, if function belongs to the scope. Always true for the
+     *         scope which is not BEFORE, AFTER or RUNTIME
+     */
+    public boolean belongsTo(int scope)
+    {
+        switch (scope)
+        {
+            case Variable.EXECUTE_BEFORE:
+                return _isBefore;
+            case Variable.EXECUTE_AFTER:
+                return _isAfter;
+            case Variable.EXECUTE_RUNTIME:
+                return _isRuntime;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Invokes the function and returns result of the function.
+     * 
+     * @param context the function context
+     * @return the result of the function
+     * @throws Exception in case of any error
+     */
+    public Object invoke(FunctionContext context)
+        throws Exception
+    {
+        Method method = _method;
+        
+        if (method == null)
+        {
+            method = _function.getClass().getMethod(_name,
+                    new Class[] {_contextClass});
+            
+            method.setAccessible(true);
+            
+            _method = method;
+        }
+        
+        return method.invoke(_function, new Object[] {context});
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * HashJoin.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.toolsverse.etl.resource.EtlResource;
+import com.toolsverse.etl.util.EtlLogger;
+import com.toolsverse.util.Utils;
+import com.toolsverse.util.log.Logger;
+
+/**
+ * Finds records in the data set to join which match records in the driving
+ * data set. The hash table is built on the smaller data set and probed by the
+ * larger one. If the smaller data set has more records than allowed in the
+ * hash table both data sets are partitioned by the hash of the key and the
+ * indexes of the records are written to the temporary files, one file per
+ * partition. The partitions are joined one by one so only one partition of
+ * the hash table is in memory at the same time.
+ * <p>
+ * Only the size of the hash table is limited. The records themselves are
+ * read from the data sets, which stay where they are: in memory or, if data
+ * set is spillable, on disk.
+ * <p>
+ * If there are multiple records in the data set to join with the same key the
+ * last one wins.
+ * 
+ * @see com.toolsverse.etl.common.CommonEtlUtils#join(DataSet, DataSet, String,
+ *      boolean, String, String, int, String)
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class HashJoin
+{
+    /**
+     * The growable list of the indexes of the records.
+     */
+    private static class RowList
+    {
+        /** The indexes. */
+        private int[] _rows = new int[2];
+        
+        /** The size. */
+        private int _size = 0;
+        
+        /**
+         * Adds the index of the record.
+         * 
+         * @param row
+         *            the index of the record
+         */
+        void add(int row)
+        {
+            if (_size == _rows.length)
+                _rows = Arrays.copyOf(_rows, _size * 2);
+            
+            _rows[_size++] = row;
+        }
+    }
+    
+    /** The maximum number of partitions. */
+    private static final int MAX_PARTITIONS = 256;
+    
+    /** The size of the buffer for the partition file. */
+    private static final int BUFFER_SIZE = 8 * 1024;
+    
+    /** The driving data set. */
+    private final DataSet _drivingDataSet;
+    
+    /** The data set to join. */
+    private final DataSet _dataSetToJoin;
+    
+    /** The builder of the keys for the driving data set. */
+    private final RecordKeyBuilder _drivingKeyBuilder;
+    
+    /** The builder of the keys for the data set to join. */
+    private final RecordKeyBuilder _keyBuilder;
+    
+    /** The maximum number of records in the hash table. */
+    private final int _maxRows;
+    
+    /** The folder for the partition files. */
+    private final String _folder;
+    
+    /**
+     * Instantiates a new HashJoin.
+     * 
+     * @param drivingDataSet
+     *            the driving data set
+     * @param dataSetToJoin
+     *            the data set to join
+     * @param drivingKeyBuilder
+     *            the builder of the keys for the driving data set
+     * @param keyBuilder
+     *            the builder of the keys for the data set to join
+     * @param maxRows
+     *            the maximum number of keys in the hash table. 0 means no
+     *            limit
+     * @param folder
+     *            the folder for the partition files. If <code>null</code>
+     *            the default temporary folder is used
+     */
+    public HashJoin(DataSet drivingDataSet, DataSet dataSetToJoin,
+            RecordKeyBuilder drivingKeyBuilder, RecordKeyBuilder keyBuilder,
+            int maxRows, String folder)
+    {
+        _drivingDataSet = drivingDataSet;
+        _dataSetToJoin = dataSetToJoin;
+        _drivingKeyBuilder = drivingKeyBuilder;
+        _keyBuilder = keyBuilder;
+        _maxRows = maxRows;
+        _folder = folder;
+    }
+    
+    /**
+     * Deletes the partition files.
+     * 
+     * @param files
+     *            the files
+     */
+    private void delete(File[] files)
+    {
+        for (File file : files)
+            if (file != null)
+                file.delete();
+    }
+    
+    /**
+     * Joins the partition.
+     * 
+     * @param drivingRows
+     *            the indexes of the records in the driving data set
+     * @param drivingCount
+     *            the number of records in the driving data set
+     * @param joinRows
+     *            the indexes of the records in the data set to join
+     * @param joinCount
+     *            the number of records in the data set to join
+     * @param buildDriving
+     *            if <code>true</code> hash table is built on the driving data
+     *            set
+     * @param matches
+     *            the matches
+     */
+    private void joinPartition(int[] drivingRows, int drivingCount,
+            int[] joinRows, int joinCount, boolean buildDriving, int[] matches)
+    {
+        if (buildDriving)
+        {
+            Map<RecordKey, RowList> table = new HashMap<RecordKey, RowList>();
+            
+            for (int i = 0; i < drivingCount; i++)
+            {
+                int row = drivingRows != null ? drivingRows[i] : i;
+                
+                RecordKey key = _drivingKeyBuilder.getKey(_drivingDataSet
+                        .getRecord(row));
+                
+                RowList list = table.get(key);
+                
+                if (list == null)
+                {
+                    list = new RowList();
+                    
+                    table.put(key, list);
+                }
+                
+                list.add(row);
+            }
+            
+            for (int i = 0; i < joinCount; i++)
+            {
+                int row = joinRows != null ? joinRows[i] : i;
+                
+                RowList list = table.get(_keyBuilder.getKey(_dataSetToJoin
+                        .getRecord(row)));
+                
+                if (list != null)
+                    for (int j = 0; j < list._size; j++)
+                        matches[list._rows[j]] = row;
+            }
+        }
+        else
+        {
+            Map<RecordKey, Integer> table = new HashMap<RecordKey, Integer>();
+            
+            for (int i = 0; i < joinCount; i++)
+            {
+                int row = joinRows != null ? joinRows[i] : i;
+                
+                table.put(_keyBuilder.getKey(_dataSetToJoin.getRecord(row)),
+                        row);
+            }
+            
+            for (int i = 0; i < drivingCount; i++)
+            {
+                int row = drivingRows != null ? drivingRows[i] : i;
+                
+                Integer match = table.get(_drivingKeyBuilder
+                        .getKey(_drivingDataSet.getRecord(row)));
+                
+                if (match != null)
+                    matches[row] = match.intValue();
+            }
+        }
+    }
+    
+    /**
+     * Finds matching records.
+     * 
+     * @return the array with the index of the matching record in the data set
+     *         to join for each record in the driving data set or -1 if there
+     *         is no matching record
+     * @throws Exception
+     *             in case of any error
+     */
+    public int[] match()
+        throws Exception
+    {
+        int drivingCount = _drivingDataSet.getRecordCount();
+        int joinCount = _dataSetToJoin.getRecordCount();
+        
+        int[] matches = new int[drivingCount];
+        Arrays.fill(matches, -1);
+        
+        boolean buildDriving = drivingCount < joinCount;
+        
+        int buildCount = buildDriving ? drivingCount : joinCount;
+        
+        int partitions = _maxRows > 0 && buildCount > _maxRows ? Math.min(
+                MAX_PARTITIONS, (buildCount + _maxRows - 1) / _maxRows) : 1;
+        
+        if (partitions == 1)
+        {
+            joinPartition(null, drivingCount, null, joinCount, buildDriving,
+                    matches);
+            
+            return matches;
+        }
+        
+        Logger.log(Logger.INFO, EtlLogger.class,
+                EtlResource.HASH_JOIN_PARTITIONS_MSG.getValue() + partitions);
+        
+        File[] drivingFiles = new File[partitions];
+        File[] joinFiles = new File[partitions];
+        
+        try
+        {
+            int[] drivingCounts = partition(_drivingDataSet,
+                    _drivingKeyBuilder, drivingFiles);
+            int[] joinCounts = partition(_dataSetToJoin, _keyBuilder,
+                    joinFiles);
+            
+            for (int p = 0; p < partitions; p++)
+            {
+                int[] drivingRows = read(drivingFiles[p], drivingCounts[p]);
+                int[] joinRows = read(joinFiles[p], joinCounts[p]);
+                
+                joinPartition(drivingRows, drivingCounts[p], joinRows,
+                        joinCounts[p], buildDriving, matches);
+                
+                drivingFiles[p].delete();
+                joinFiles[p].delete();
+            }
+        }
+        finally
+        {
+            delete(drivingFiles);
+            delete(joinFiles);
+        }
+        
+        return matches;
+    }
+    
+    /**
+     * Writes indexes of the records to the partition files using hash of the
+     * key.
+     * 
+     * @param dataSet
+     *            the data set
+     * @param keyBuilder
+     *            the builder of the keys
+     * @param files
+     *            the partition files
+     * @return the number of records in each partition
+     * @throws IOException
+     *             in case of any error
+     */
+    private int[] partition(DataSet dataSet, RecordKeyBuilder keyBuilder,
+            File[] files)
+        throws IOException
+    {
+        int partitions = files.length;
+        
+        int[] counts = new int[partitions];
+        
+        DataOutputStream[] outs = new DataOutputStream[partitions];
+        
+        File folder = !Utils.isNothing(_folder) ? new File(_folder) : null;
+        
+        if (folder != null)
+            folder.mkdirs();
+        
+        try
+        {
+            for (int p = 0; p < partitions; p++)
+            {
+                files[p] = File.createTempFile("etl", ".join", folder);
+                
+                outs[p] = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(files[p]), BUFFER_SIZE));
+            }
+            
+            int rows = dataSet.getRecordCount();
+            
+            for (int row = 0; row < rows; row++)
+            {
+                RecordKey key = keyBuilder.getKey(dataSet.getRecord(row));
+                
+                int p = (key.hashCode() & Integer.MAX_VALUE) % partitions;
+                
+                outs[p].writeInt(row);
+                
+                counts[p]++;
+            }
+        }
+        finally
+        {
+            for (DataOutputStream out : outs)
+                if (out != null)
+                    out.close();
+        }
+        
+        return counts;
+    }
+    
+    /**
+     * Reads indexes of the records from the partition file.
+     * 
+     * @param file
+     *            the partition file
+     * @param count
+     *            the number of records in the partition
+     * @return the indexes of the records
+     * @throws IOException
+     *             in case of any error
+     */
+    private int[] read(File file, int count)
+        throws IOException
+    {
+        int[] rows = new int[count];
+        
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), BUFFER_SIZE));
+        
+        try
+        {
+            for (int i = 0; i < count; i++)
+                rows[i] = in.readInt();
+        }
+        finally
+        {
+            in.close();
+        }
+        
+        return rows;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * RecordComparator.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import com.toolsverse.etl.common.DataSetData.SortType;
+import com.toolsverse.etl.sql.util.SqlUtils;
+import com.toolsverse.util.TypedKeyValue;
+import com.toolsverse.util.Utils;
+
+/**
+ * Compares DataSetRecords using given order by list with field indexes. The
+ * indexes, sort directions and types of the fields are resolved once when
+ * comparator is created so the values of the most common types are compared
+ * directly. Values of the other types are compared using
+ * Utils.compareTo(Object, Object). Comparator is stateless and can be shared
+ * between threads.
+ * 
+ * @see com.toolsverse.etl.common.DataSetData#sort(Comparator)
+ * @see com.toolsverse.util.Utils#compareTo(Object, Object)
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class RecordComparator implements Comparator<DataSetRecord>
+{
+    // types of the fields
+    private static final int OTHER = 0;
+    private static final int STRING = 1;
+    private static final int NUMBER = 2;
+    private static final int DATE = 3;
+    
+    /** The indexes of the order by fields. */
+    private final int[] _indexes;
+    
+    /** The sort directions: 1 - ascending, -1 - descending. */
+    private final int[] _directions;
+    
+    /** The types of the order by fields. */
+    private final int[] _types;
+    
+    /**
+     * Instantiates a new RecordComparator.
+     * 
+     * @param orderBy the order by list with field indexes
+     * @param dataSet the data set used to get types of the fields. If
+     *            <code>null</code> all values are compared as objects
+     */
+    public RecordComparator(List<TypedKeyValue<Integer, SortType>> orderBy,
+            DataSet dataSet)
+    {
+        int size = orderBy != null ? orderBy.size() : 0;
+        
+        _indexes = new int[size];
+        _directions = new int[size];
+        _types = new int[size];
+        
+        for (int i = 0; i < size; i++)
+        {
+            TypedKeyValue<Integer, SortType> item = orderBy.get(i);
+            
+            _indexes[i] = item.getKey();
+            _directions[i] = item.getValue() == SortType.DESC ? -1 : 1;
+            
+            if (dataSet != null && _indexes[i] >= 0
+                    && _indexes[i] < dataSet.getFieldCount())
+                _types[i] = getType(dataSet.getFieldDef(_indexes[i])
+                        .getSqlDataType());
+            else
+                _types[i] = OTHER;
+        }
+    }
+    
+    /**
+     * Compares two values of the field.
+     * 
+     * @param type the type of the field
+     * @param v1 the first value
+     * @param v2 the second value
+     * @return the result of the comparison
+     */
+    private int compare(int type, Object v1, Object v2)
+    {
+        if (v1 == null || v2 == null)
+            return v1 == v2 ? 0 : (v1 == null ? -1 : 1);
+        
+        switch (type)
+        {
+            case STRING:
+                if (v1 instanceof String && v2 instanceof String)
+                    return ((String)v1).compareTo((String)v2);
+                
+                break;
+            
+            case NUMBER:
+                if (v1 instanceof Integer && v2 instanceof Integer)
+                {
+                    int i1 = ((Integer)v1).intValue();
+                    int i2 = ((Integer)v2).intValue();
+                    
+                    return i1 < i2 ? -1 : (i1 == i2 ? 0 : 1);
+                }
+                
+                if (v1 instanceof Long && v2 instanceof Long)
+                {
+                    long l1 = ((Long)v1).longValue();
+                    long l2 = ((Long)v2).longValue();
+                    
+                    return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+                }
+                
+                if (v1 instanceof BigDecimal && v2 instanceof BigDecimal)
+                    return ((BigDecimal)v1).compareTo((BigDecimal)v2);
+                
+                break;
+            
+            case DATE:
+                if (v1 instanceof Timestamp && v2 instanceof Timestamp)
+                    return ((Timestamp)v1).compareTo((Timestamp)v2);
+                
+                if (v1.getClass() == v2.getClass() && v1 instanceof Date)
+                    return ((Date)v1).compareTo((Date)v2);
+                
+                break;
+        }
+        
+        return Utils.compareTo(v1, v2);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
+     */
+    public int compare(DataSetRecord r1, DataSetRecord r2)
+    {
+        for (int i = 0; i < _indexes.length; i++)
+        {
+            int ret = compare(_types[i], r1.get(_indexes[i]),
+                    r2.get(_indexes[i]));
+            
+            if (ret != 0)
+                return ret * _directions[i];
+        }
+        
+        return 0;
+    }
+    
+    /**
+     * Gets the type of the field used by comparator.
+     * 
+     * @param sqlType the sql type of the field
+     * @return the type
+     */
+    private int getType(int sqlType)
+    {
+        if (SqlUtils.isChar(sqlType))
+            return STRING;
+        
+        if (SqlUtils.isNumber(sqlType))
+            return NUMBER;
+        
+        if (SqlUtils.isDate(sqlType))
+            return DATE;
+        
+        return OTHER;
+    }
+    
+    /**
+     * Checks if there are no order by fields.
+     * 
+     * @return true, if there are no order by fields
+     */
+    public boolean isEmpty()
+    {
+        return _indexes.length == 0;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * RecordKey.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The composite key of the DataSetRecord. Holds normalized values of the key
+ * fields and precomputed hash code. Two keys are equal if all values are
+ * equal. Use RecordKeyBuilder to create keys for the records of the data set.
+ * 
+ * @see com.toolsverse.etl.common.RecordKeyBuilder
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public final class RecordKey implements Serializable
+{
+    /** Serialization version. */
+    private static final long serialVersionUID = 586357781900300842L;
+    
+    /** The values. */
+    private final Object[] _values;
+    
+    /** The hash code. */
+    private final int _hash;
+    
+    /**
+     * Instantiates a new record key.
+     * 
+     * @param values
+     *            the values of the key fields
+     */
+    public RecordKey(Object[] values)
+    {
+        _values = values;
+        _hash = Arrays.hashCode(values);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object compareTo)
+    {
+        if (this == compareTo)
+            return true;
+        
+        if (!(compareTo instanceof RecordKey))
+            return false;
+        
+        RecordKey key = (RecordKey)compareTo;
+        
+        return _hash == key._hash && Arrays.equals(_values, key._values);
+    }
+    
+    /**
+     * Gets the value of the key field.
+     * 
+     * @param index
+     *            the index of the key field
+     * @return the value
+     */
+    public Object getValue(int index)
+    {
+        return _values[index];
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode()
+    {
+        return _hash;
+    }
+    
+    /**
+     * Gets the number of the key fields.
+     * 
+     * @return the number of the key fields
+     */
+    public int size()
+    {
+        return _values.length;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder buff = new StringBuilder();
+        
+        for (Object value : _values)
+            buff.append(value != null ? value.toString() : "null");
+        
+        return buff.toString();
+    }
+}
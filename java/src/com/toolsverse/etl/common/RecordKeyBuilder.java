@@ -0,0 +1,214 @@
+/*
+ * RecordKeyBuilder.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Creates RecordKeys for the records of the data set. Indexes of the key fields
+ * are resolved once when builder is created. Values are normalized so keys
+ * can be compared across data sets, for example when text source is joined
+ * with the database source: numbers and strings which contain plain decimal
+ * numbers are converted to the plain string without trailing zeros, so 1,
+ * 1.00, "1" and "1.0" are the same, dates to java.util.Date. Strings with
+ * leading zeros, such as "007", are not considered numbers. Strings are
+ * optionally trimmed and converted to upper case. If trim is enabled empty
+ * string is the same as null.
+ * 
+ * @see com.toolsverse.etl.common.RecordKey
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class RecordKeyBuilder
+{
+    
+    /** The plain decimal number without leading zeros. */
+    private static final Pattern NUMBER = Pattern
+            .compile("-?(0|[1-9]\\d*)(\\.\\d+)?");
+    
+    /**
+     * Normalizes the decimal number.
+     * 
+     * @param decimal
+     *            the number
+     * @return the plain string without trailing zeros
+     */
+    private static String normalize(BigDecimal decimal)
+    {
+        if (decimal.signum() == 0)
+            return "0";
+        
+        return decimal.stripTrailingZeros().toPlainString();
+    }
+    
+    /** The indexes of the key fields. */
+    private final int[] _indexes;
+    
+    /** The ignore case flag. */
+    private final boolean _ignoreCase;
+    
+    /** The trim flag. */
+    private final boolean _doTrim;
+    
+    /**
+     * Instantiates a new record key builder.
+     * 
+     * @param dataSet
+     *            the data set
+     * @param keys
+     *            the key fields
+     * @param ignoreCase
+     *            if <code>true</code> ignore char case
+     * @param doTrim
+     *            if <code>true</code> trim strings
+     */
+    public RecordKeyBuilder(DataSet dataSet, Map<String, FieldDef> keys,
+            boolean ignoreCase, boolean doTrim)
+    {
+        _indexes = new int[keys != null ? keys.size() : 0];
+        
+        if (keys != null)
+        {
+            int i = 0;
+            
+            for (FieldDef field : keys.values())
+                _indexes[i++] = dataSet.getFieldIndex(field.getName());
+        }
+        
+        _ignoreCase = ignoreCase;
+        _doTrim = doTrim;
+    }
+    
+    /**
+     * Gets the key for the record.
+     * 
+     * @param record
+     *            the record
+     * @return the key or <code>null</code> if there are no key fields
+     */
+    public RecordKey getKey(DataSetRecord record)
+    {
+        if (_indexes.length == 0)
+            return null;
+        
+        Object[] values = new Object[_indexes.length];
+        
+        for (int i = 0; i < _indexes.length; i++)
+        {
+            int index = _indexes[i];
+            
+            values[i] = record != null && index >= 0
+                    && index < record.size() ? normalize(record.get(index))
+                    : null;
+        }
+        
+        return new RecordKey(values);
+    }
+    
+    /**
+     * Gets the key for the values of the key fields.
+     * 
+     * @param values
+     *            the values in the order of the key fields
+     * @return the key or <code>null</code> if there are no key fields or
+     *         number of values is different from the number of key fields
+     */
+    public RecordKey getKey(Object[] values)
+    {
+        if (_indexes.length == 0 || values == null
+                || values.length != _indexes.length)
+            return null;
+        
+        Object[] normalized = new Object[values.length];
+        
+        for (int i = 0; i < values.length; i++)
+            normalized[i] = normalize(values[i]);
+        
+        return new RecordKey(normalized);
+    }
+    
+    /**
+     * Checks if there are no key fields.
+     * 
+     * @return true, if there are no key fields
+     */
+    public boolean isEmpty()
+    {
+        return _indexes.length == 0;
+    }
+    
+    /**
+     * Normalizes the value.
+     * 
+     * @param value
+     *            the value
+     * @return the normalized value
+     */
+    private Object normalize(Object value)
+    {
+        if (value == null)
+            return null;
+        
+        if (value instanceof String)
+        {
+            String str = (String)value;
+            
+            if (_doTrim)
+            {
+                str = str.trim();
+                
+                if (str.length() == 0)
+                    return null;
+            }
+            
+            if (NUMBER.matcher(str).matches())
+                return normalize(new BigDecimal(str));
+            
+            return _ignoreCase ? str.toUpperCase() : str;
+        }
+        
+        if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte)
+            return value.toString();
+        
+        if (value instanceof BigDecimal || value instanceof BigInteger
+                || value instanceof Double || value instanceof Float)
+        {
+            BigDecimal decimal;
+            
+            if (value instanceof BigDecimal)
+                decimal = (BigDecimal)value;
+            else if (value instanceof BigInteger)
+                decimal = new BigDecimal((BigInteger)value);
+            else
+            {
+                double d = ((Number)value).doubleValue();
+                
+                if (Double.isNaN(d) || Double.isInfinite(d))
+                    return value.toString();
+                
+                decimal = new BigDecimal(value.toString());
+            }
+            
+            return normalize(decimal);
+        }
+        
+        if (value instanceof Date)
+            return value.getClass() == Date.class ? value : new Date(
+                    ((Date)value).getTime());
+        
+        return value;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * RecordSorter.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+
+import com.toolsverse.util.concurrent.ParallelExecutor;
+
+/**
+ * Sorts arrays in memory. Large arrays are split on chunks, one chunk per
+ * available processor, chunks are sorted in parallel and merged pairwise, also
+ * in parallel. Sort is stable: equal elements keep their order.
+ * 
+ * @see com.toolsverse.etl.common.DataSetData#sort(Comparator)
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class RecordSorter
+{
+    /** The minimum number of elements sorted in parallel. */
+    public static final int PARALLEL_THRESHOLD = 50000;
+    
+    /**
+     * Merges two adjacent sorted ranges of the source array into the
+     * destination array.
+     * 
+     * @param src the source array
+     * @param dest the destination array
+     * @param from the start of the first range
+     * @param middle the end of the first range and the start of the second
+     *            range
+     * @param to the end of the second range
+     * @param comparator the comparator
+     */
+    private static <T> void merge(T[] src, T[] dest, int from, int middle,
+            int to, Comparator<? super T> comparator)
+    {
+        int i = from;
+        int j = middle;
+        
+        for (int k = from; k < to; k++)
+        {
+            if (j >= to
+                    || (i < middle && comparator.compare(src[i], src[j]) <= 0))
+                dest[k] = src[i++];
+            else
+                dest[k] = src[j++];
+        }
+    }
+    
+    /**
+     * Sorts the array.
+     * 
+     * @param array the array
+     * @param comparator the comparator
+     */
+    public static <T> void sort(T[] array, Comparator<? super T> comparator)
+    {
+        sort(array, comparator, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Sorts the array using up to given number of threads.
+     * 
+     * @param array the array
+     * @param comparator the comparator
+     * @param nThreads the number of threads
+     */
+    public static <T> void sort(final T[] array,
+            final Comparator<? super T> comparator, int nThreads)
+    {
+        int size = array.length;
+        
+        if (nThreads < 2 || size < PARALLEL_THRESHOLD)
+        {
+            Arrays.sort(array, comparator);
+            
+            return;
+        }
+        
+        int chunk = (size + nThreads - 1) / nThreads;
+        
+        ParallelExecutor executor = new ParallelExecutor(nThreads);
+        
+        try
+        {
+            for (int from = 0; from < size; from += chunk)
+            {
+                final int start = from;
+                final int end = Math.min(from + chunk, size);
+                
+                executor.addTask(new Callable<Object>()
+                {
+                    public Object call()
+                    {
+                        Arrays.sort(array, start, end, comparator);
+                        
+                        return null;
+                    }
+                });
+            }
+            
+            executor.waitUntilDone();
+            
+            T[] src = array;
+            T[] dest = Arrays.copyOf(array, size);
+            
+            for (; chunk < size; chunk *= 2)
+            {
+                for (int from = 0; from < size; from += chunk * 2)
+                {
+                    final T[] mergeSrc = src;
+                    final T[] mergeDest = dest;
+                    final int start = from;
+                    final int middle = Math.min(from + chunk, size);
+                    final int end = Math.min(from + chunk * 2, size);
+                    
+                    executor.addTask(new Callable<Object>()
+                    {
+                        public Object call()
+                        {
+                            merge(mergeSrc, mergeDest, start, middle, end,
+                                    comparator);
+                            
+                            return null;
+                        }
+                    });
+                }
+                
+                executor.waitUntilDone();
+                
+                T[] temp = src;
+                src = dest;
+                dest = temp;
+            }
+            
+            if (src != array)
+                System.arraycopy(src, 0, array, 0, size);
+        }
+        catch (RuntimeException ex)
+        {
+            throw ex;
+        }
+        catch (Exception ex)
+        {
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+        finally
+        {
+            executor.terminate();
+        }
+    }
+}
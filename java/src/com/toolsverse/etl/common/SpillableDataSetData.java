@@ -0,0 +1,1278 @@
+/*
+ * SpillableDataSetData.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.toolsverse.etl.resource.EtlResource;
+import com.toolsverse.etl.util.EtlLogger;
+import com.toolsverse.util.Utils;
+import com.toolsverse.util.log.Logger;
+
+/**
+ * The collection of the DataSetRecords which keeps in memory up to the given
+ * number of records. The rest of the records are written to the temporary
+ * file in the compact binary format and read back using memory mapped
+ * segments of the file, so sequential access to the spilled records is almost
+ * as fast as access to the records in memory.
+ * <p>
+ * Record returned by {@link #get(int)} for the spilled row is a copy which
+ * tracks changes. Changed records are written to the end of the temporary file
+ * before the next access to the data. The space occupied by the replaced and
+ * deleted records is reclaimed by compacting the temporary file when it
+ * becomes larger than twice the size of the spilled records. The temporary
+ * file is deleted when data are cleared or when there are no spilled records
+ * left.
+ * <p>
+ * If some records are spilled data are sorted using external merge sort:
+ * sorted runs of up to the maximum number of records are written to the
+ * temporary file and merged.
+ * 
+ * @see com.toolsverse.etl.common.DataSet#setSpillRows(int)
+ * @see com.toolsverse.etl.core.config.EtlConfig#getSpillRows()
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class SpillableDataSetData extends DataSetData
+{
+    /** Serialization version. */
+    private static final long serialVersionUID = -2512763497519760653L;
+    
+    /**
+     * Reads sorted run of the records from the temporary file sequentially
+     * using own buffer, so runs can be merged without remapping segments of
+     * the file.
+     */
+    private class RunReader
+    {
+        /** The offsets of the records in the runs. */
+        private final long[] _runOffsets;
+        
+        /** The lengths of the records in the runs. */
+        private final int[] _runLengths;
+        
+        /** The end of the run. */
+        private final int _to;
+        
+        /** The current position in the runs. */
+        private int _row;
+        
+        /** The current record. */
+        private DataSetRecord _record;
+        
+        /** The read buffer. */
+        private ByteBuffer _readBuffer;
+        
+        /** The offset in the file of the first byte in the read buffer. */
+        private long _readStart;
+        
+        /**
+         * Instantiates a new run reader.
+         * 
+         * @param offsets the offsets of the records in the runs
+         * @param lengths the lengths of the records in the runs
+         * @param from the start of the run
+         * @param to the end of the run
+         * @param bufferSize the size of the read buffer
+         */
+        RunReader(long[] offsets, int[] lengths, int from, int to,
+                int bufferSize)
+        {
+            _runOffsets = offsets;
+            _runLengths = lengths;
+            _to = to;
+            _row = from - 1;
+            _readBuffer = ByteBuffer.allocate(bufferSize);
+            _readBuffer.limit(0);
+            _readStart = 0;
+        }
+        
+        /**
+         * Reads the next record of the run.
+         * 
+         * @return true, if record was read, false if end of the run is reached
+         * @throws Exception in case of any error
+         */
+        boolean next()
+            throws Exception
+        {
+            if (++_row >= _to)
+            {
+                _record = null;
+                
+                return false;
+            }
+            
+            long offset = _runOffsets[_row];
+            int length = _runLengths[_row];
+            
+            if (offset < _readStart
+                    || offset + length > _readStart + _readBuffer.limit())
+            {
+                if (length > _readBuffer.capacity())
+                    _readBuffer = ByteBuffer.allocate(length);
+                
+                _readBuffer.clear();
+                _readBuffer.limit((int)Math.min(_readBuffer.capacity(),
+                        _fileLength - offset));
+                
+                while (_readBuffer.hasRemaining())
+                    if (_raf.getChannel().read(_readBuffer,
+                            offset + _readBuffer.position()) < 0)
+                        break;
+                
+                _readBuffer.flip();
+                _readStart = offset;
+            }
+            
+            ByteBuffer buffer = _readBuffer.duplicate();
+            buffer.position((int)(offset - _readStart));
+            
+            _record = decode(buffer, new DataSetRecord());
+            
+            return true;
+        }
+    }
+    
+    /**
+     * The spilled record. Changes made to the record are written back to the
+     * temporary file before the next access to the data.
+     */
+    private class SpilledRecord extends DataSetRecord
+    {
+        /** Serialization version. */
+        private static final long serialVersionUID = -1757238619958658804L;
+        
+        /** The id of the spilled row. */
+        private final int _id;
+        
+        /** The position of the row in the list of spilled records. */
+        private final int _pos;
+        
+        /** The number of modifications of the list when record was read. */
+        private final int _modCount;
+        
+        /** The "track changes" flag. */
+        private boolean _track;
+        
+        /** The "changed" flag. */
+        private boolean _changed;
+        
+        /**
+         * Instantiates a new spilled record.
+         * 
+         * @param pos the position of the row in the list of spilled records
+         */
+        SpilledRecord(int pos)
+        {
+            _id = _ids[pos];
+            _pos = pos;
+            _modCount = _spilledModCount;
+            _track = false;
+            _changed = false;
+        }
+        
+        @Override
+        protected void addCell(int index, Object cell)
+        {
+            super.addCell(index, cell);
+            
+            changed();
+        }
+        
+        @Override
+        public void addVersion(int index, Object value)
+        {
+            super.addVersion(index, value);
+            
+            changed();
+        }
+        
+        /**
+         * Registers the record as changed.
+         */
+        private void changed()
+        {
+            if (!_track || _changed)
+                return;
+            
+            _changed = true;
+            
+            _changedRecords.add(this);
+        }
+        
+        @Override
+        protected void clearCells()
+        {
+            super.clearCells();
+            
+            changed();
+        }
+        
+        @Override
+        protected void removeCell(int index)
+        {
+            super.removeCell(index);
+            
+            changed();
+        }
+        
+        @Override
+        public void removeVersion(int index, int version)
+        {
+            super.removeVersion(index, version);
+            
+            changed();
+        }
+        
+        @Override
+        protected void setCell(int index, Object cell)
+        {
+            super.setCell(index, cell);
+            
+            changed();
+        }
+        
+        @Override
+        public void setVersion(int index, int version, Object value)
+        {
+            super.setVersion(index, version, value);
+            
+            changed();
+        }
+    }
+    
+    // types of the cells
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte DECIMAL = 5;
+    private static final byte TIMESTAMP = 6;
+    private static final byte DATE = 7;
+    private static final byte TIME = 8;
+    private static final byte UTIL_DATE = 9;
+    private static final byte BOOLEAN = 10;
+    private static final byte BYTES = 11;
+    private static final byte OBJECT = 12;
+    
+    /** The size of the memory mapped segment. */
+    private static final int SEGMENT_SIZE = 8 * 1024 * 1024;
+    
+    /** The maximum number of the memory mapped segments. */
+    private static final int MAX_SEGMENTS = 16;
+    
+    /** The size of the write buffer. */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    
+    /** The minimum size of the read buffer used to merge sorted runs. */
+    private static final int MIN_MERGE_BUFFER_SIZE = 4 * 1024;
+    
+    /** The total size of the read buffers used to merge sorted runs. */
+    private static final int MERGE_MEMORY = 16 * 1024 * 1024;
+    
+    /** The initial number of the spilled records. */
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    /** The UTF-8 charset. */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    /** The maximum number of records in memory. */
+    private final int _maxRecords;
+    
+    /** The folder for the temporary file. */
+    private final String _folder;
+    
+    /** The records in memory. */
+    private final List<DataSetRecord> _memory;
+    
+    /** The changed spilled records which are not written yet. */
+    private final List<SpilledRecord> _changedRecords;
+    
+    /** The offsets of the spilled records. */
+    private long[] _offsets;
+    
+    /** The lengths of the spilled records. */
+    private int[] _lengths;
+    
+    /** The ids of the spilled records. */
+    private int[] _ids;
+    
+    /** The number of spilled records. */
+    private int _spilled;
+    
+    /** The id of the next spilled record. */
+    private int _nextId;
+    
+    /**
+     * The number of modifications which changed positions of the spilled
+     * records.
+     */
+    private int _spilledModCount;
+    
+    /** The total length of the spilled records. */
+    private long _spilledLength;
+    
+    /** The temporary file. */
+    private transient File _file;
+    
+    /** The temporary file channel. */
+    private transient RandomAccessFile _raf;
+    
+    /** The length of the temporary file including buffered bytes. */
+    private transient long _fileLength;
+    
+    /** The write buffer. */
+    private transient ByteArrayOutputStream _buffer;
+    
+    /** The encoded record. */
+    private transient ByteArrayOutputStream _row;
+    
+    /** The output stream used to encode records. */
+    private transient DataOutputStream _out;
+    
+    /** The position in the file of the first byte in the write buffer. */
+    private transient long _bufferStart;
+    
+    /** The memory mapped segments by the offsets of the segments. */
+    private transient Map<Long, MappedByteBuffer> _segments;
+    
+    /**
+     * Instantiates a new SpillableDataSetData.
+     * 
+     * @param maxRecords the maximum number of records in memory
+     * @param folder the folder for the temporary file. If <code>null</code>
+     *            the default temporary folder is used
+     */
+    public SpillableDataSetData(int maxRecords, String folder)
+    {
+        _maxRecords = Math.max(maxRecords, 1);
+        _folder = folder;
+        _memory = new ArrayList<DataSetRecord>();
+        _changedRecords = new ArrayList<SpilledRecord>();
+        
+        init();
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.toolsverse.etl.common.DataSetData#add(com.toolsverse.etl.common.DataSetRecord
+     * )
+     */
+    @Override
+    public DataSetRecord add(DataSetRecord value)
+    {
+        writeChanged();
+        
+        if (_spilled == 0 && _memory.size() < _maxRecords)
+            _memory.add(value);
+        else
+            insertSpilled(_spilled, value);
+        
+        return value;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#add(int,
+     * com.toolsverse.etl.common.DataSetRecord)
+     */
+    @Override
+    public void add(int index, DataSetRecord value)
+    {
+        if (index < 0 || index > size())
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size());
+        
+        writeChanged();
+        
+        if (index < _memory.size()
+                || (_spilled == 0 && _memory.size() < _maxRecords))
+        {
+            _memory.add(index, value);
+            
+            if (_memory.size() > _maxRecords)
+                insertSpilled(0, _memory.remove(_memory.size() - 1));
+        }
+        else
+            insertSpilled(index - _memory.size(), value);
+    }
+    
+    /**
+     * Checks the index of the record.
+     * 
+     * @param index the index
+     */
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+                    + size());
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#clear()
+     */
+    @Override
+    public void clear()
+    {
+        _memory.clear();
+        _changedRecords.clear();
+        
+        close();
+        
+        init();
+    }
+    
+    /**
+     * Closes and deletes the temporary file.
+     */
+    private void close()
+    {
+        _segments.clear();
+        
+        if (_raf != null)
+        {
+            try
+            {
+                _raf.close();
+            }
+            catch (IOException ex)
+            {
+                Logger.log(Logger.SEVERE, EtlLogger.class,
+                        EtlResource.SPILL_ERROR_MSG.getValue(), ex);
+            }
+            
+            _raf = null;
+        }
+        
+        if (_file != null)
+        {
+            _file.delete();
+            
+            _file = null;
+        }
+    }
+    
+    /**
+     * Reclaims the space occupied by the replaced and deleted records if the
+     * temporary file is larger than twice the size of the spilled records.
+     * Spilled records are copied to the new temporary file and the old one is
+     * deleted. Deletes the temporary file if there are no spilled records.
+     */
+    private void compact()
+    {
+        if (_raf == null)
+            return;
+        
+        if (_spilled == 0)
+        {
+            close();
+            
+            init();
+            
+            return;
+        }
+        
+        if (_fileLength - _spilledLength <= Math.max(_spilledLength,
+                WRITE_BUFFER_SIZE))
+            return;
+        
+        File file = _file;
+        RandomAccessFile raf = _raf;
+        
+        try
+        {
+            flush();
+            
+            _segments.clear();
+            _fileLength = 0;
+            _bufferStart = 0;
+            
+            open();
+            
+            for (int pos = 0; pos < _spilled; pos++)
+            {
+                ByteBuffer record = ByteBuffer.allocate(_lengths[pos]);
+                
+                while (record.hasRemaining())
+                    if (raf.getChannel().read(record,
+                            _offsets[pos] + record.position()) < 0)
+                        break;
+                
+                _buffer.write(record.array());
+                
+                _offsets[pos] = _fileLength;
+                _fileLength += _lengths[pos];
+                
+                if (_buffer.size() >= WRITE_BUFFER_SIZE)
+                    flush();
+            }
+        }
+        catch (Exception ex)
+        {
+            throw new IllegalStateException(
+                    EtlResource.SPILL_ERROR_MSG.getValue() + ex.getMessage(),
+                    ex);
+        }
+        finally
+        {
+            try
+            {
+                raf.close();
+            }
+            catch (IOException ex)
+            {
+                Logger.log(Logger.SEVERE, EtlLogger.class,
+                        EtlResource.SPILL_ERROR_MSG.getValue(), ex);
+            }
+            
+            file.delete();
+        }
+    }
+    
+    /**
+     * Decodes the record.
+     * 
+     * @param buffer the buffer
+     * @param record the empty record to add the cells to
+     * @return the record
+     * @throws Exception in case of any error
+     */
+    private DataSetRecord decode(ByteBuffer buffer, DataSetRecord record)
+        throws Exception
+    {
+        int size = buffer.getInt();
+        
+        for (int i = 0; i < size; i++)
+            record.addCell(i, decodeCell(buffer));
+        
+        return record;
+    }
+    
+    /**
+     * Decodes the cell.
+     * 
+     * @param buffer the buffer
+     * @return the cell
+     * @throws Exception in case of any error
+     */
+    private Object decodeCell(ByteBuffer buffer)
+        throws Exception
+    {
+        byte type = buffer.get();
+        
+        switch (type)
+        {
+            case NULL:
+                return null;
+            case STRING:
+                return new String(getBytes(buffer), UTF8);
+            case INTEGER:
+                return Integer.valueOf(buffer.getInt());
+            case LONG:
+                return Long.valueOf(buffer.getLong());
+            case DOUBLE:
+                return Double.valueOf(buffer.getDouble());
+            case DECIMAL:
+                return new BigDecimal(new String(getBytes(buffer), UTF8));
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(buffer.getLong());
+                timestamp.setNanos(buffer.getInt());
+                
+                return timestamp;
+            case DATE:
+                return new java.sql.Date(buffer.getLong());
+            case TIME:
+                return new Time(buffer.getLong());
+            case UTIL_DATE:
+                return new java.util.Date(buffer.getLong());
+            case BOOLEAN:
+                return Boolean.valueOf(buffer.get() != 0);
+            case BYTES:
+                return getBytes(buffer);
+            default:
+                ObjectInputStream in = new ObjectInputStream(
+                        new ByteArrayInputStream(getBytes(buffer)));
+                
+                try
+                {
+                    return in.readObject();
+                }
+                finally
+                {
+                    in.close();
+                }
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#delete(int)
+     */
+    @Override
+    public DataSetRecord delete(int index)
+    {
+        checkIndex(index);
+        
+        writeChanged();
+        
+        if (index < _memory.size())
+            return _memory.remove(index);
+        
+        int pos = index - _memory.size();
+        
+        DataSetRecord record = read(pos, new DataSetRecord());
+        
+        _spilledLength -= _lengths[pos];
+        
+        System.arraycopy(_offsets, pos + 1, _offsets, pos, _spilled - pos - 1);
+        System.arraycopy(_lengths, pos + 1, _lengths, pos, _spilled - pos - 1);
+        System.arraycopy(_ids, pos + 1, _ids, pos, _spilled - pos - 1);
+        
+        _spilled--;
+        _spilledModCount++;
+        
+        compact();
+        
+        return record;
+    }
+    
+    /**
+     * Encodes the cell.
+     * 
+     * @param cell the cell
+     * @throws Exception in case of any error
+     */
+    private void encodeCell(Object cell)
+        throws Exception
+    {
+        if (cell == null)
+            _out.writeByte(NULL);
+        else if (cell instanceof String)
+        {
+            _out.writeByte(STRING);
+            putBytes(((String)cell).getBytes(UTF8));
+        }
+        else if (cell.getClass() == Integer.class)
+        {
+            _out.writeByte(INTEGER);
+            _out.writeInt(((Integer)cell).intValue());
+        }
+        else if (cell.getClass() == Long.class)
+        {
+            _out.writeByte(LONG);
+            _out.writeLong(((Long)cell).longValue());
+        }
+        else if (cell.getClass() == Double.class)
+        {
+            _out.writeByte(DOUBLE);
+            _out.writeDouble(((Double)cell).doubleValue());
+        }
+        else if (cell.getClass() == BigDecimal.class)
+        {
+            _out.writeByte(DECIMAL);
+            putBytes(cell.toString().getBytes(UTF8));
+        }
+        else if (cell.getClass() == Timestamp.class)
+        {
+            _out.writeByte(TIMESTAMP);
+            _out.writeLong(((Timestamp)cell).getTime());
+            _out.writeInt(((Timestamp)cell).getNanos());
+        }
+        else if (cell.getClass() == java.sql.Date.class)
+        {
+            _out.writeByte(DATE);
+            _out.writeLong(((java.sql.Date)cell).getTime());
+        }
+        else if (cell.getClass() == Time.class)
+        {
+            _out.writeByte(TIME);
+            _out.writeLong(((Time)cell).getTime());
+        }
+        else if (cell.getClass() == java.util.Date.class)
+        {
+            _out.writeByte(UTIL_DATE);
+            _out.writeLong(((java.util.Date)cell).getTime());
+        }
+        else if (cell instanceof Boolean)
+        {
+            _out.writeByte(BOOLEAN);
+            _out.writeByte(((Boolean)cell).booleanValue() ? 1 : 0);
+        }
+        else if (cell instanceof byte[])
+        {
+            _out.writeByte(BYTES);
+            putBytes((byte[])cell);
+        }
+        else
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            
+            try
+            {
+                out.writeObject(cell);
+            }
+            finally
+            {
+                out.close();
+            }
+            
+            _out.writeByte(OBJECT);
+            putBytes(bytes.toByteArray());
+        }
+    }
+    
+    /**
+     * Flushes the write buffer to the temporary file.
+     * 
+     * @throws IOException in case of any error
+     */
+    private void flush()
+        throws IOException
+    {
+        if (_buffer.size() == 0)
+            return;
+        
+        _raf.getChannel().write(ByteBuffer.wrap(_buffer.toByteArray()),
+                _bufferStart);
+        
+        _bufferStart = _fileLength;
+        
+        _buffer.reset();
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#get(int)
+     */
+    @Override
+    public DataSetRecord get(int index)
+    {
+        checkIndex(index);
+        
+        writeChanged();
+        
+        if (index < _memory.size())
+            return _memory.get(index);
+        
+        int pos = index - _memory.size();
+        
+        SpilledRecord record = new SpilledRecord(pos);
+        
+        read(pos, record);
+        
+        record._track = true;
+        
+        return record;
+    }
+    
+    /**
+     * Reads the length prefixed array of bytes.
+     * 
+     * @param buffer the buffer
+     * @return the bytes
+     */
+    private byte[] getBytes(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getInt()];
+        
+        buffer.get(bytes);
+        
+        return bytes;
+    }
+    
+    /**
+     * Gets the number of spilled records.
+     * 
+     * @return the number of spilled records
+     */
+    public int getSpilledCount()
+    {
+        return _spilled;
+    }
+    
+    /**
+     * Initializes the empty storage.
+     */
+    private void init()
+    {
+        _offsets = new long[0];
+        _lengths = new int[0];
+        _ids = new int[0];
+        _spilled = 0;
+        _nextId = 0;
+        _spilledModCount++;
+        _spilledLength = 0;
+        _file = null;
+        _raf = null;
+        _fileLength = 0;
+        _buffer = null;
+        _row = null;
+        _out = null;
+        _bufferStart = 0;
+        _segments = new HashMap<Long, MappedByteBuffer>();
+    }
+    
+    /**
+     * Writes the record to the temporary file and inserts it into the list of
+     * spilled records.
+     * 
+     * @param pos the position in the list of the spilled records
+     * @param value the record
+     */
+    private void insertSpilled(int pos, DataSetRecord value)
+    {
+        long offset = _fileLength;
+        int length = write(value);
+        
+        if (_spilled == _offsets.length)
+        {
+            int capacity = Math.max(INITIAL_CAPACITY, _spilled * 2);
+            
+            _offsets = Arrays.copyOf(_offsets, capacity);
+            _lengths = Arrays.copyOf(_lengths, capacity);
+            _ids = Arrays.copyOf(_ids, capacity);
+        }
+        
+        if (pos < _spilled)
+        {
+            System.arraycopy(_offsets, pos, _offsets, pos + 1, _spilled - pos);
+            System.arraycopy(_lengths, pos, _lengths, pos + 1, _spilled - pos);
+            System.arraycopy(_ids, pos, _ids, pos + 1, _spilled - pos);
+            
+            _spilledModCount++;
+        }
+        
+        _offsets[pos] = offset;
+        _lengths[pos] = length;
+        _ids[pos] = _nextId++;
+        
+        _spilled++;
+        _spilledLength += length;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#isEmpty()
+     */
+    @Override
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+    
+    /**
+     * Opens the temporary file.
+     * 
+     * @throws IOException in case of any error
+     */
+    private void open()
+        throws IOException
+    {
+        File folder = !Utils.isNothing(_folder) ? new File(_folder) : null;
+        
+        if (folder != null)
+            folder.mkdirs();
+        
+        _file = File.createTempFile("etl", ".spill", folder);
+        _file.deleteOnExit();
+        
+        _raf = new RandomAccessFile(_file, "rw");
+        
+        _buffer = new ByteArrayOutputStream(WRITE_BUFFER_SIZE);
+        _row = new ByteArrayOutputStream();
+        _out = new DataOutputStream(_row);
+        
+        Logger.log(Logger.INFO, EtlLogger.class,
+                EtlResource.SPILL_MSG.getValue() + _file.getAbsolutePath());
+    }
+    
+    /**
+     * Writes the length prefixed array of bytes.
+     * 
+     * @param bytes the bytes
+     * @throws IOException in case of any error
+     */
+    private void putBytes(byte[] bytes)
+        throws IOException
+    {
+        _out.writeInt(bytes.length);
+        _out.write(bytes);
+    }
+    
+    /**
+     * Finds the position of the spilled record in the list of spilled
+     * records.
+     * 
+     * @param record the record
+     * @return the position or -1 if row was deleted or replaced
+     */
+    private int indexOf(SpilledRecord record)
+    {
+        if (record._modCount == _spilledModCount && record._pos < _spilled
+                && _ids[record._pos] == record._id)
+            return record._pos;
+        
+        for (int pos = 0; pos < _spilled; pos++)
+            if (_ids[pos] == record._id)
+                return pos;
+        
+        return -1;
+    }
+    
+    /**
+     * Reads the spilled record. The file is mapped by the segments which start
+     * at the multiples of the segment size. Mapped segments are reused until
+     * the temporary file is compacted or number of segments reaches the
+     * maximum. The segment which doesn't contain the end of the record, for
+     * example because records were written after segment was mapped, is
+     * mapped again.
+     * 
+     * @param pos the position in the list of the spilled records
+     * @param record the empty record to add the cells to
+     * @return the record
+     */
+    private DataSetRecord read(int pos, DataSetRecord record)
+    {
+        long offset = _offsets[pos];
+        int length = _lengths[pos];
+        
+        try
+        {
+            if (offset + length > _bufferStart)
+                flush();
+            
+            long start = offset - offset % SEGMENT_SIZE;
+            
+            MappedByteBuffer segment = _segments.get(start);
+            
+            if (segment == null || offset + length > start + segment.limit())
+            {
+                if (_segments.size() >= MAX_SEGMENTS)
+                    _segments.clear();
+                
+                long size = Math.min(Math.max(SEGMENT_SIZE, offset + length
+                        - start), _fileLength - start);
+                
+                segment = _raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                        start, size);
+                
+                _segments.put(start, segment);
+            }
+            
+            ByteBuffer buffer = segment.duplicate();
+            buffer.position((int)(offset - start));
+            
+            return decode(buffer, record);
+        }
+        catch (Exception ex)
+        {
+            throw new IllegalStateException(
+                    EtlResource.SPILL_ERROR_MSG.getValue() + ex.getMessage(),
+                    ex);
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#set(int,
+     * com.toolsverse.etl.common.DataSetRecord)
+     */
+    @Override
+    public void set(int index, DataSetRecord value)
+    {
+        checkIndex(index);
+        
+        writeChanged();
+        
+        if (index < _memory.size())
+            _memory.set(index, value);
+        else
+        {
+            int pos = index - _memory.size();
+            
+            _spilledLength -= _lengths[pos];
+            
+            _offsets[pos] = _fileLength;
+            _lengths[pos] = write(value);
+            _ids[pos] = _nextId++;
+            
+            _spilledLength += _lengths[pos];
+            
+            compact();
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#size()
+     */
+    @Override
+    public int size()
+    {
+        return _memory.size() + _spilled;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.common.DataSetData#sort(java.util.Comparator)
+     */
+    @Override
+    public void sort(final Comparator<DataSetRecord> comparator)
+    {
+        if (isEmpty() || comparator == null)
+            return;
+        
+        writeChanged();
+        
+        if (_spilled == 0)
+        {
+            DataSetRecord[] records = _memory
+                    .toArray(new DataSetRecord[_memory.size()]);
+            
+            RecordSorter.sort(records, comparator);
+            
+            for (int i = 0; i < records.length; i++)
+                _memory.set(i, records[i]);
+            
+            return;
+        }
+        
+        // external merge sort: sorted runs of up to max records are appended
+        // to the temporary file and then merged. Records in the runs are
+        // reused as spilled records so only records which end up in memory
+        // are decoded again. Spilled records keep their ids, so changes made
+        // to the records read before sort are not lost
+        int memorySize = _memory.size();
+        int size = size();
+        
+        long[] offsets = new long[size];
+        int[] lengths = new int[size];
+        int[] ids = new int[size];
+        
+        int runs = 0;
+        
+        for (int start = 0; start < size; start += _maxRecords, runs++)
+        {
+            DataSetRecord[] records = new DataSetRecord[Math.min(_maxRecords,
+                    size - start)];
+            
+            for (int i = 0; i < records.length; i++)
+                records[i] = get(start + i);
+            
+            RecordSorter.sort(records, comparator);
+            
+            for (int i = 0; i < records.length; i++)
+            {
+                offsets[start + i] = _fileLength;
+                lengths[start + i] = write(records[i]);
+                if (records[i] instanceof SpilledRecord)
+                    ids[start + i] = ((SpilledRecord)records[i])._id;
+                else
+                    ids[start + i] = _nextId++;
+            }
+        }
+        
+        Logger.log(Logger.INFO, EtlLogger.class,
+                EtlResource.SORT_RUNS_MSG.getValue() + runs);
+        
+        PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(runs,
+                new Comparator<RunReader>()
+                {
+                    public int compare(RunReader r1, RunReader r2)
+                    {
+                        int ret = comparator.compare(r1._record, r2._record);
+                        
+                        return ret != 0 ? ret : r1._row - r2._row;
+                    }
+                });
+        
+        int bufferSize = Math.max(MIN_MERGE_BUFFER_SIZE, Math.min(
+                WRITE_BUFFER_SIZE, MERGE_MEMORY / runs));
+        
+        try
+        {
+            flush();
+            
+            for (int start = 0; start < size; start += _maxRecords)
+            {
+                RunReader reader = new RunReader(offsets, lengths, start,
+                        Math.min(start + _maxRecords, size), bufferSize);
+                
+                if (reader.next())
+                    queue.add(reader);
+            }
+            
+            _memory.clear();
+            
+            _spilledLength = 0;
+            _spilledModCount++;
+            
+            for (int i = 0; !queue.isEmpty(); i++)
+            {
+                RunReader reader = queue.poll();
+                
+                if (i < memorySize)
+                    _memory.add(reader._record);
+                else
+                {
+                    _offsets[i - memorySize] = offsets[reader._row];
+                    _lengths[i - memorySize] = lengths[reader._row];
+                    _ids[i - memorySize] = ids[reader._row];
+                    
+                    _spilledLength += lengths[reader._row];
+                }
+                
+                if (reader.next())
+                    queue.add(reader);
+            }
+            
+            compact();
+        }
+        catch (RuntimeException ex)
+        {
+            throw ex;
+        }
+        catch (Exception ex)
+        {
+            throw new IllegalStateException(
+                    EtlResource.SPILL_ERROR_MSG.getValue() + ex.getMessage(),
+                    ex);
+        }
+    }
+    
+    /**
+     * Writes the record to the end of the temporary file.
+     * 
+     * @param value the record
+     * @return the length of the encoded record
+     */
+    private int write(DataSetRecord value)
+    {
+        try
+        {
+            if (_raf == null)
+                open();
+            
+            _row.reset();
+            
+            int size = value != null ? value.size() : 0;
+            
+            _out.writeInt(size);
+            
+            for (int i = 0; i < size; i++)
+                encodeCell(value.getCell(i));
+            
+            int length = _row.size();
+            
+            _row.writeTo(_buffer);
+            
+            _fileLength += length;
+            
+            if (_buffer.size() >= WRITE_BUFFER_SIZE)
+                flush();
+            
+            return length;
+        }
+        catch (Exception ex)
+        {
+            throw new IllegalStateException(
+                    EtlResource.SPILL_ERROR_MSG.getValue() + ex.getMessage(),
+                    ex);
+        }
+    }
+    
+    /**
+     * Writes changed spilled records to the end of the temporary file.
+     */
+    private void writeChanged()
+    {
+        if (_changedRecords.isEmpty())
+            return;
+        
+        for (SpilledRecord record : _changedRecords)
+        {
+            record._changed = false;
+            
+            int pos = indexOf(record);
+            
+            if (pos < 0)
+                continue;
+            
+            _spilledLength -= _lengths[pos];
+            
+            _offsets[pos] = _fileLength;
+            _lengths[pos] = write(record);
+            
+            _spilledLength += _lengths[pos];
+        }
+        
+        _changedRecords.clear();
+        
+        compact();
+    }
+    
+    /**
+     * Replaces this object by the DataSetData with all records in memory when
+     * serialized.
+     * 
+     * @return the data
+     */
+    private Object writeReplace()
+    {
+        writeChanged();
+        
+        DataSetData data = new DataSetData();
+        
+        for (int i = 0; i < _memory.size(); i++)
+            data.add(_memory.get(i));
+        
+        for (int pos = 0; pos < _spilled; pos++)
+            data.add(read(pos, new DataSetRecord()));
+        
+        return data;
+    }
+}
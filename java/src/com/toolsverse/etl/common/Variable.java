@@ -127,6 +127,9 @@ public class Variable implements Serializable
     /** The _declare. */
     private String _declare;
     
+    /** The cached invoker of the function. */
+    transient private FunctionInvoker _invoker;
+    
     /**
      * Instantiates a new variable.
      */
@@ -152,6 +155,7 @@ public class Variable implements Serializable
         _tolerate = false;
         _scope = EXECUTE_AS_CONFIGURED;
         _object = null;
+        _invoker = null;
         
         _lang = DEFAULT_LANG;
     }
@@ -179,6 +183,43 @@ public class Variable implements Serializable
             _attrs.remove(name);
     }
     
+    /**
+     * Creates a copy of the variable.
+     * 
+     * @return the copy of the variable
+     */
+    public Variable copy()
+    {
+        Variable var = new Variable();
+        
+        var._name = _name;
+        var._value = _value;
+        var._tableName = _tableName;
+        var._type = _type;
+        var._attrs = _attrs != null ? new HashMap<String, String>(_attrs)
+                : null;
+        var._declare = _declare;
+        
+        var._functionClassName = _functionClassName;
+        var._fieldName = _fieldName;
+        var._linkedCacheProvider = _linkedCacheProvider;
+        var._linkedVarName = _linkedVarName;
+        var._function = _function;
+        var._code = _code;
+        var._label = _label;
+        var._param = _param;
+        var._include = _include;
+        var._global = _global;
+        var._tolerate = _tolerate;
+        var._scope = _scope;
+        var._object = _object;
+        var._invoker = _invoker;
+        
+        var._lang = _lang;
+        
+        return var;
+    }
+    
     /**
      * Gets the attributes.
      * 
@@ -270,6 +311,16 @@ public class Variable implements Serializable
         return _functionClassName;
     }
     
+    /**
+     * Gets the cached invoker of the function.
+     * 
+     * @return the invoker
+     */
+    FunctionInvoker getInvoker()
+    {
+        return _invoker;
+    }
+    
     /**
      * Gets the label. Most commonly used as a field name for the sql statement.
      * 
@@ -531,6 +582,7 @@ public class Variable implements Serializable
     public void setFunction(String value)
     {
         _function = value;
+        _invoker = null;
     }
     
     /**
@@ -542,6 +594,18 @@ public class Variable implements Serializable
     public void setFunctionClassName(String value)
     {
         _functionClassName = value;
+        _invoker = null;
+    }
+    
+    /**
+     * Sets the cached invoker of the function.
+     * 
+     * @param value
+     *            the new invoker
+     */
+    void setInvoker(FunctionInvoker value)
+    {
+        _invoker = value;
     }
     
     /**
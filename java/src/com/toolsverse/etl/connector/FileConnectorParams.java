@@ -34,6 +34,18 @@ public abstract class FileConnectorParams extends DataSetConnectorParams
     /** The SPLIT BY property. */
     public static final String SPLIT_BY_PROP = "splitby";
     
+    /** The MAX OPEN FILES property. */
+    public static final String MAX_OPEN_FILES_PROP = "maxopenfiles";
+    
+    /** The SPLIT THREADS property. */
+    public static final String SPLIT_THREADS_PROP = "splitthreads";
+    
+    /** The default maximum number of files open at once when data set is split. */
+    public static final int DEFAULT_MAX_OPEN_FILES = 100;
+    
+    /** The default number of threads used to write files when data set is split. */
+    public static final int DEFAULT_SPLIT_THREADS = 5;
+    
     /** The folder. */
     private String _folder;
     
@@ -58,6 +70,15 @@ public abstract class FileConnectorParams extends DataSetConnectorParams
     /** If this property is not null DataSetConnector must split data set on multiple data set using <code>_splitBy</code> as a key. */
     private String _splitBy;
     
+    /** The maximum number of files open at once when data set is split. */
+    private int _maxOpenFiles;
+    
+    /** The number of threads used to write files when data set is split. */
+    private int _splitThreads;
+    
+    /** The append flag. */
+    private boolean _append;
+    
     /**
      * Instantiates a new FileConnectorParams.
      *
@@ -83,6 +104,10 @@ public abstract class FileConnectorParams extends DataSetConnectorParams
         _realFileName = null;
         
         _splitBy = null;
+        _maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+        _splitThreads = DEFAULT_SPLIT_THREADS;
+        
+        _append = false;
     }
     
     /*
@@ -182,6 +207,18 @@ public abstract class FileConnectorParams extends DataSetConnectorParams
                 + Utils.str2PropsStr(alias.getParams(), " ", "\"");
     }
     
+    /**
+     * Gets the maximum number of files open at once when data set is split. If
+     * connector supports appending to the file, least recently used files are
+     * closed and reopened later in the append mode.
+     *
+     * @return the maximum number of open files
+     */
+    public int getMaxOpenFiles()
+    {
+        return _maxOpenFiles;
+    }
+    
     /**
      * Gets the real file name.
      *
@@ -203,6 +240,16 @@ public abstract class FileConnectorParams extends DataSetConnectorParams
         return _splitBy;
     }
     
+    /**
+     * Gets the number of threads used to write files when data set is split.
+     *
+     * @return the number of threads
+     */
+    public int getSplitThreads()
+    {
+        return _splitThreads;
+    }
+    
     /**
      * Gets the time format.
      *
@@ -263,6 +310,27 @@ public abstract class FileConnectorParams extends DataSetConnectorParams
         setDateTimeFormat(props.get(SqlUtils.DATE_TIME_FORMAT_PROP));
     }
     
+    /**
+     * Checks if records must be appended to the existing file.
+     *
+     * @return true, if records must be appended
+     */
+    public boolean isAppend()
+    {
+        return _append;
+    }
+    
+    /**
+     * Checks if connector can append records to the existing file. Connectors
+     * which support appending must override this method.
+     *
+     * @return true, if appending is supported
+     */
+    public boolean isAppendSupported()
+    {
+        return false;
+    }
+    
     /**
      * Checks if given format string is a date format.
      *
@@ -306,6 +374,16 @@ public abstract class FileConnectorParams extends DataSetConnectorParams
         return getTimeFormat().equals(format);
     }
     
+    /**
+     * Sets the append flag. Used only if connector supports appending.
+     *
+     * @param value the new value for the append flag
+     */
+    public void setAppend(boolean value)
+    {
+        _append = value;
+    }
+    
     /**
      * Sets the date format.
      *
@@ -360,6 +438,17 @@ public abstract class FileConnectorParams extends DataSetConnectorParams
         _folder = value;
     }
     
+    /**
+     * Sets the maximum number of files open at once when data set is split.
+     *
+     * @param value the new maximum number of open files. If value <= 0 the
+     *            default is used
+     */
+    public void setMaxOpenFiles(int value)
+    {
+        _maxOpenFiles = value > 0 ? value : DEFAULT_MAX_OPEN_FILES;
+    }
+    
     /**
      * Sets the real file name.
      *
@@ -381,6 +470,17 @@ public abstract class FileConnectorParams extends DataSetConnectorParams
         _splitBy = value;
     }
     
+    /**
+     * Sets the number of threads used to write files when data set is split.
+     *
+     * @param value the new number of threads. If value <= 0 the default is
+     *            used
+     */
+    public void setSplitThreads(int value)
+    {
+        _splitThreads = value > 0 ? value : DEFAULT_SPLIT_THREADS;
+    }
+    
     /**
      * Sets the time format.
      *
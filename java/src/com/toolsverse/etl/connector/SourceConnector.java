@@ -169,12 +169,13 @@ public class SourceConnector implements
                 
                 DataSetRecord record = params.getDataSet().getRecord(index);
                 
-                dataSet.addRecord(record);
+                boolean added = dataSet.addRecord(record);
                 
                 // inline something
                 if (params.getAddRecordCallback() != null)
                     params.getAddRecordCallback().onAddRecord(dataSet, driver,
-                            record, index - 1);
+                            added ? dataSet.getLastRecord() : record,
+                            index - 1);
             }
             
         }
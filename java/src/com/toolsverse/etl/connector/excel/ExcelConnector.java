@@ -543,8 +543,8 @@ public class ExcelConnector extends BaseDataSetConnector implements
                     {
                         if (added && _params.getAddRecordCallback() != null)
                             _params.getAddRecordCallback().onAddRecord(
-                                    _dataSet, _driver, _dataSetRecord,
-                                    _index - 1);
+                                    _dataSet, _driver,
+                                    _dataSet.getLastRecord(), _index - 1);
                     }
                     catch (Exception ex)
                     {
@@ -117,6 +117,8 @@ public class ExcelConnectorParams extends FileConnectorParams
         params.setTimeFormat(getTimeFormat());
         params.setUseSelectedDataSet(useSelectedDataSet());
         params.setSplitBy(getSplitBy());
+        params.setMaxOpenFiles(getMaxOpenFiles());
+        params.setSplitThreads(getSplitThreads());
         
         return params;
     }
@@ -285,6 +287,12 @@ public class ExcelConnectorParams extends FileConnectorParams
                 storage.getString(PREFIX + USE_SELECTED_PROP), false));
         
         setSplitBy(storage.getString(PREFIX + SPLIT_BY_PROP));
+        setMaxOpenFiles(Utils.str2Int(
+                storage.getString(PREFIX + MAX_OPEN_FILES_PROP),
+                DEFAULT_MAX_OPEN_FILES));
+        setSplitThreads(Utils.str2Int(
+                storage.getString(PREFIX + SPLIT_THREADS_PROP),
+                DEFAULT_SPLIT_THREADS));
     }
     
     /**
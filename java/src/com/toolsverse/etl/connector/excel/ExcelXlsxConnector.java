@@ -463,8 +463,8 @@ public class ExcelXlsxConnector extends BaseDataSetConnector implements
                     {
                         if (added && _params.getAddRecordCallback() != null)
                             _params.getAddRecordCallback().onAddRecord(
-                                    _dataSet, _driver, _dataSetRecord,
-                                    _index - 1);
+                                    _dataSet, _driver,
+                                    _dataSet.getLastRecord(), _index - 1);
                     }
                     catch (Exception ex)
                     {
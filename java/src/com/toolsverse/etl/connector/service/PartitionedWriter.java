@@ -0,0 +1,545 @@
+/*
+ * PartitionedWriter.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.connector.service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import com.toolsverse.etl.common.CommonEtlUtils;
+import com.toolsverse.etl.common.DataSet;
+import com.toolsverse.etl.common.DataSetData;
+import com.toolsverse.etl.common.DataSetRecord;
+import com.toolsverse.etl.common.FieldDef;
+import com.toolsverse.etl.common.RecordKey;
+import com.toolsverse.etl.common.RecordKeyBuilder;
+import com.toolsverse.etl.connector.ConnectorResult;
+import com.toolsverse.etl.connector.DataSetConnector;
+import com.toolsverse.etl.connector.DataSetConnectorParams;
+import com.toolsverse.etl.connector.FileConnectorParams;
+import com.toolsverse.etl.connector.FileConnectorResource;
+import com.toolsverse.etl.driver.Driver;
+import com.toolsverse.etl.resource.EtlResource;
+import com.toolsverse.etl.util.EtlLogger;
+import com.toolsverse.util.FileUtils;
+import com.toolsverse.util.FilenameUtils;
+import com.toolsverse.util.Utils;
+import com.toolsverse.util.concurrent.ParallelExecutor;
+import com.toolsverse.util.log.Logger;
+
+/**
+ * Persists the data set split on multiple files using the "split by" field(s)
+ * as a key. Records are routed to the file for their key as they are read from
+ * the data set, so the data set is not copied. Files are written by up to
+ * {@link FileConnectorParams#getSplitThreads()} threads, each file is always
+ * written by the same thread.
+ * <p>
+ * Number of files open at once is limited by
+ * {@link FileConnectorParams#getMaxOpenFiles()}. If connector supports
+ * appending to the file the least recently used file is closed and reopened
+ * later in the append mode. Otherwise all files stay open until the data set
+ * is persisted.
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class PartitionedWriter
+{
+    /**
+     * The record routed to the partition.
+     */
+    private static class Entry
+    {
+        /** The partition. */
+        private final Partition _partition;
+        
+        /** The record. */
+        private final DataSetRecord _record;
+        
+        /**
+         * Instantiates a new Entry.
+         * 
+         * @param partition the partition
+         * @param record the record
+         */
+        Entry(Partition partition, DataSetRecord record)
+        {
+            _partition = partition;
+            _record = record;
+        }
+    }
+    
+    /**
+     * The file for one value of the key.
+     */
+    private static class Partition
+    {
+        /** The params. */
+        private final FileConnectorParams _params;
+        
+        /** The data set. */
+        private final DataSet _dataSet;
+        
+        /** The writer. */
+        private final PartitionWriter _writer;
+        
+        /** The number of persisted records. */
+        private int _rows;
+        
+        /** The open flag. */
+        private boolean _open;
+        
+        /**
+         * Instantiates a new Partition.
+         * 
+         * @param params the params
+         * @param dataSet the data set
+         * @param writer the writer
+         */
+        Partition(FileConnectorParams params, DataSet dataSet,
+                PartitionWriter writer)
+        {
+            _params = params;
+            _dataSet = dataSet;
+            _writer = writer;
+            _rows = 0;
+            _open = false;
+        }
+    }
+    
+    /**
+     * Writes records to the partitions. Used either by the separate thread, in
+     * which case records are taken from the queue, or directly by the thread
+     * which reads the data set.
+     */
+    private class PartitionWriter implements Callable<Object>
+    {
+        /** The queue. */
+        private final BlockingQueue<Entry> _queue;
+        
+        /** The open partitions, least recently used first. */
+        private final LinkedHashMap<Partition, Boolean> _openPartitions;
+        
+        /** The maximum number of open partitions. */
+        private final int _maxOpen;
+        
+        /**
+         * Instantiates a new PartitionWriter.
+         * 
+         * @param maxOpen the maximum number of open partitions
+         * @param parallel if true records are taken from the queue
+         */
+        PartitionWriter(int maxOpen, boolean parallel)
+        {
+            _queue = parallel ? new ArrayBlockingQueue<Entry>(QUEUE_SIZE)
+                    : null;
+            _openPartitions = new LinkedHashMap<Partition, Boolean>(16, 0.75f,
+                    true);
+            _maxOpen = maxOpen;
+        }
+        
+        /**
+         * Closes partitions after error. Exceptions are ignored.
+         */
+        private void abort()
+        {
+            for (Partition partition : _openPartitions.keySet())
+            {
+                try
+                {
+                    _connector.cleanUp(partition._params, partition._dataSet,
+                            _driver);
+                }
+                // it's ok
+                catch (Exception ex)
+                {
+                }
+                
+                partition._open = false;
+            }
+            
+            _openPartitions.clear();
+        }
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.util.concurrent.Callable#call()
+         */
+        public Object call()
+            throws Exception
+        {
+            try
+            {
+                Entry entry = _queue.take();
+                
+                while (entry != END_OF_DATA)
+                {
+                    write(entry._partition, entry._record);
+                    
+                    entry = _queue.take();
+                }
+                
+                closeAll();
+            }
+            catch (InterruptedException ex)
+            {
+                abort();
+            }
+            catch (Exception ex)
+            {
+                abort();
+                
+                _exception = ex;
+                
+                _queue.clear();
+            }
+            
+            return null;
+        }
+        
+        /**
+         * Closes the partition.
+         * 
+         * @param partition the partition
+         * @throws Exception in case of any error
+         */
+        private void close(Partition partition)
+            throws Exception
+        {
+            _openPartitions.remove(partition);
+            
+            partition._open = false;
+            
+            try
+            {
+                _connector.postPersist(partition._params, partition._dataSet,
+                        _driver);
+            }
+            finally
+            {
+                _connector.cleanUp(partition._params, partition._dataSet,
+                        _driver);
+            }
+        }
+        
+        /**
+         * Closes all open partitions.
+         * 
+         * @throws Exception in case of any error
+         */
+        private void closeAll()
+            throws Exception
+        {
+            while (!_openPartitions.isEmpty())
+                close(_openPartitions.keySet().iterator().next());
+        }
+        
+        /**
+         * Opens the partition. Closes the least recently used partition if
+         * there are too many open partitions.
+         * 
+         * @param partition the partition
+         * @throws Exception in case of any error
+         */
+        private void open(Partition partition)
+            throws Exception
+        {
+            if (_openPartitions.size() >= _maxOpen)
+            {
+                Iterator<Partition> eldest = _openPartitions.keySet()
+                        .iterator();
+                
+                close(eldest.next());
+            }
+            
+            partition._params.setAppend(partition._rows > 0);
+            
+            _connector.prePersist(partition._params, partition._dataSet,
+                    _driver);
+            
+            partition._open = true;
+            
+            _openPartitions.put(partition, Boolean.TRUE);
+        }
+        
+        /**
+         * Writes the record to the partition. Opens partition if needed.
+         * 
+         * @param partition the partition
+         * @param record the record
+         * @throws Exception in case of any error
+         */
+        private void write(Partition partition, DataSetRecord record)
+            throws Exception
+        {
+            if (!partition._open)
+                open(partition);
+            else
+                // marks partition as most recently used
+                _openPartitions.get(partition);
+            
+            _connector.inlinePersist(partition._params, partition._dataSet,
+                    _driver, record, partition._rows, _records);
+            
+            partition._rows++;
+        }
+    }
+    
+    /** The marker which is added to the queue when all records are routed. */
+    private static final Entry END_OF_DATA = new Entry(null, null);
+    
+    /** The capacity of the queue of each writer thread. */
+    private static final int QUEUE_SIZE = 1000;
+    
+    /** The time in milliseconds to wait for the free space in the queue. */
+    private static final long WAIT_TIMEOUT = 100;
+    
+    /** The connector. */
+    private final DataSetConnector<DataSetConnectorParams, ?> _connector;
+    
+    /** The params. */
+    private final FileConnectorParams _params;
+    
+    /** The driver. */
+    private final Driver _driver;
+    
+    /** The data set. */
+    private final DataSet _dataSet;
+    
+    /** The number of records in the data set. */
+    private int _records;
+    
+    /** The executor. */
+    private ParallelExecutor _executor;
+    
+    /** The exception in the writer thread. */
+    private volatile Exception _exception;
+    
+    /**
+     * Instantiates a new PartitionedWriter.
+     * 
+     * @param connector the connector
+     * @param params the params
+     * @param driver the driver
+     * @param dataSet the data set
+     */
+    public PartitionedWriter(
+            DataSetConnector<DataSetConnectorParams, ?> connector,
+            FileConnectorParams params, Driver driver, DataSet dataSet)
+    {
+        _connector = connector;
+        _params = params;
+        _driver = driver;
+        _dataSet = dataSet;
+        _records = 0;
+        _executor = null;
+        _exception = null;
+    }
+    
+    /**
+     * Re-throws exception in the writer thread if any.
+     * 
+     * @throws Exception the exception in the writer thread
+     */
+    private void checkException()
+        throws Exception
+    {
+        if (_exception != null)
+            throw _exception;
+    }
+    
+    /**
+     * Creates the partition for the key.
+     * 
+     * @param key the key
+     * @param writer the writer
+     * @return the partition
+     */
+    private Partition createPartition(String key, PartitionWriter writer)
+    {
+        FileConnectorParams params = (FileConnectorParams)_params.copy();
+        
+        String fileName = _params.getFileName();
+        
+        if (!Utils.isNothing(fileName))
+            params.setFileName(FileUtils.changeFileName(fileName, fileName
+                    + "_" + key));
+        
+        DataSet dataSet = _dataSet.copy();
+        
+        dataSet.setName(Utils.makeString(_dataSet.getName()) + key);
+        dataSet.setData(new DataSetData());
+        
+        return new Partition(params, dataSet, writer);
+    }
+    
+    /**
+     * Adds the record to the queue of the writer thread. Waits if queue is
+     * full.
+     * 
+     * @param writer the writer
+     * @param entry the entry
+     * @throws Exception in case of any error
+     */
+    private void put(PartitionWriter writer, Entry entry)
+        throws Exception
+    {
+        while (!writer._queue.offer(entry, WAIT_TIMEOUT, TimeUnit.MILLISECONDS))
+        {
+            checkException();
+            
+            if (_executor.isTerminated())
+                return;
+        }
+    }
+    
+    /**
+     * Persists the data set split on multiple files.
+     * 
+     * @return the connector result or <code>null</code> if data set cannot be
+     *         split, for example if it is empty or there are no "split by"
+     *         fields in the data set
+     * @throws Exception in case of any error
+     */
+    public ConnectorResult write()
+        throws Exception
+    {
+        if (_dataSet == null || _dataSet.getRecordCount() == 0
+                || _dataSet.getFieldCount() == 0
+                || Utils.isNothing(_dataSet.getName())
+                || (_params.isFileNameRequired() && Utils.isNothing(_params
+                        .getFileName())))
+            return null;
+        
+        Map<String, FieldDef> keyFields = CommonEtlUtils.getKeyFields(
+                _params.getSplitBy(), _dataSet.getFields());
+        
+        if (keyFields == null || keyFields.isEmpty())
+            return null;
+        
+        if (!_params.isSilent())
+            Logger.log(Logger.INFO, EtlLogger.class,
+                    EtlResource.PERSISTING_DATASET_MSG.getValue()
+                            + _dataSet.getName() + "...");
+        
+        int threads = _params.getSplitThreads();
+        
+        int maxOpen = _params.isAppendSupported() ? Math.max(1,
+                _params.getMaxOpenFiles() / threads) : Integer.MAX_VALUE;
+        
+        RecordKeyBuilder keyBuilder = new RecordKeyBuilder(_dataSet,
+                keyFields, false, true);
+        
+        Map<RecordKey, Partition> partitions = new HashMap<RecordKey, Partition>();
+        Map<String, Partition> names = new LinkedHashMap<String, Partition>();
+        
+        PartitionWriter[] writers = new PartitionWriter[threads];
+        
+        _records = _dataSet.getRecordCount();
+        
+        if (threads > 1)
+            _executor = new ParallelExecutor(threads);
+        
+        try
+        {
+            for (int row = 0; row < _records; row++)
+            {
+                DataSetRecord record = _dataSet.getRecord(row);
+                
+                RecordKey key = keyBuilder.getKey(record);
+                
+                Partition partition = partitions.get(key);
+                
+                if (partition == null)
+                {
+                    String name = CommonEtlUtils.getKey(_dataSet, record,
+                            keyFields, false, true);
+                    
+                    partition = names.get(name);
+                    
+                    if (partition == null)
+                    {
+                        int index = names.size() % threads;
+                        
+                        if (writers[index] == null)
+                        {
+                            writers[index] = new PartitionWriter(maxOpen,
+                                    _executor != null);
+                            
+                            if (_executor != null)
+                                _executor.addTask(writers[index]);
+                        }
+                        
+                        partition = createPartition(name, writers[index]);
+                        
+                        names.put(name, partition);
+                    }
+                    
+                    partitions.put(key, partition);
+                }
+                
+                if (_executor != null)
+                {
+                    checkException();
+                    
+                    if (_executor.isTerminated())
+                        break;
+                    
+                    put(partition._writer, new Entry(partition, record));
+                }
+                else
+                    partition._writer.write(partition, record);
+            }
+            
+            if (_executor != null)
+            {
+                for (PartitionWriter writer : writers)
+                    if (writer != null)
+                        put(writer, END_OF_DATA);
+                
+                _executor.waitUntilDone();
+                
+                checkException();
+            }
+            else
+                writers[0].closeAll();
+        }
+        catch (Exception ex)
+        {
+            if (_executor == null && writers[0] != null)
+                writers[0].abort();
+            
+            throw ex;
+        }
+        finally
+        {
+            if (_executor != null)
+                _executor.terminate();
+        }
+        
+        ConnectorResult result = new ConnectorResult();
+        
+        if (names.size() == 1)
+            result.setResult(Utils.format(FileConnectorResource.FILE_PERSISTED
+                    .getValue(), new String[] {FilenameUtils.getName(names
+                    .values().iterator().next()._params.getRealFileName())}));
+        else
+            result.setResult(Utils.format(FileConnectorResource.FILES_PERSISTED
+                    .getValue(), new String[] {String.valueOf(names.size())}));
+        
+        return result;
+    }
+}
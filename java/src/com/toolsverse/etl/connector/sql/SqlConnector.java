@@ -26,6 +26,7 @@ import com.toolsverse.etl.common.DataSet;
 import com.toolsverse.etl.common.DataSetData;
 import com.toolsverse.etl.common.DataSetRecord;
 import com.toolsverse.etl.common.FieldDef;
+import com.toolsverse.etl.common.FingerprintSet;
 import com.toolsverse.etl.connector.BaseDataSetConnector;
 import com.toolsverse.etl.connector.ConnectorResource;
 import com.toolsverse.etl.connector.ConnectorResult;
@@ -353,6 +354,8 @@ public class SqlConnector extends BaseDataSetConnector implements
                     EtlResource.POPULATING_DATASET_MSG.getValue()
                             + dataSet.getName() + "...");
         
+        FingerprintSet uniqueRecords = null;
+        
         try
         {
             ResultSetMetaData metaData = rs.getMetaData();
@@ -375,7 +378,7 @@ public class SqlConnector extends BaseDataSetConnector implements
                 fields = new ListHashMap<String, FieldDef>();
             
             ListHashMap<String, FieldDef> allFields = new ListHashMap<String, FieldDef>();
-            DataSetData data = new DataSetData();
+            DataSetData data = dataSet.createData();
             Map<String, Integer> cols = new HashMap<String, Integer>();
             
             FieldDef fieldDef = null;
@@ -385,9 +388,13 @@ public class SqlConnector extends BaseDataSetConnector implements
             DataSetRecord record;
             int colCount = metaData.getColumnCount();
             
-            Map<String, Object> values = null;
+            Object[] uniqueValues = null;
             if (params.isUnique())
-                values = new HashMap<String, Object>();
+            {
+                uniqueRecords = new FingerprintSet(params.isVerifyUnique(),
+                        dataSet.getSpillDir());
+                uniqueValues = new Object[colCount];
+            }
             
             for (int col = 1; col <= colCount; col++)
             {
@@ -503,6 +510,46 @@ public class SqlConnector extends BaseDataSetConnector implements
                 rec = new Object[fields.size()];
             }
             
+            // resolve type, name, position and default value of each column
+            // once, so nothing is looked up for each value
+            int[] types = new int[colCount];
+            String[] names = new String[colCount];
+            int[] recIndexes = new int[colCount];
+            String[] defValues = new String[colCount];
+            
+            for (int col = 0; col < colCount; col++)
+            {
+                fieldDef = allFields.get(col);
+                
+                types[col] = fieldDef.getSqlDataType();
+                names[col] = fieldDef.getName();
+                recIndexes[col] = col;
+                
+                if (params.getFieldsMapping() == null)
+                    continue;
+                
+                String mapping = params.getFieldsMapping().get(
+                        fieldDef.getName());
+                
+                names[col] = SqlUtils.getValue(mapping, 0, ";");
+                
+                if (rec == null)
+                    continue;
+                
+                if (names[col] != null && fields.containsKey(names[col]))
+                {
+                    recIndexes[col] = fields.getList().indexOf(
+                            fields.get(names[col]));
+                    
+                    String defValue = SqlUtils.getValue(mapping, 1, ";");
+                    
+                    if (!Utils.isNothing(defValue))
+                        defValues[col] = defValue;
+                }
+                else
+                    recIndexes[col] = -1;
+            }
+            
             dataSet.setFields(allFields);
             dataSet.setData(data);
             
@@ -510,6 +557,21 @@ public class SqlConnector extends BaseDataSetConnector implements
             if (params.getBeforeCallback() != null)
                 params.getBeforeCallback().onBefore(dataSet, driver);
             
+            boolean[] keys = new boolean[colCount];
+            boolean[] filters = new boolean[colCount];
+            
+            for (int col = 0; col < colCount; col++)
+            {
+                keys[col] = params.isCheckKeyField() && names[col] != null
+                        && names[col].equalsIgnoreCase(dataSet.getKeyFields());
+                
+                filters[col] = params.getFilterByField() != null
+                        && params.getFilterByFieldValue() != null
+                        && names[col] != null
+                        && names[col].equalsIgnoreCase(params
+                                .getFilterByField());
+            }
+            
             int index = 1;
             
             while (rs.next())
@@ -528,82 +590,50 @@ public class SqlConnector extends BaseDataSetConnector implements
                 
                 record = new DataSetRecord();
                 boolean skip = false;
-                String value = "";
+                int uniqueCount = 0;
                 
                 for (int col = 0; col < colCount; col++)
                 {
-                    fieldDef = allFields.get(col);
-                    
-                    String fName = fieldDef.getName();
+                    if (recIndexes[col] < 0)
+                        continue;
                     
-                    if (params.getFieldsMapping() != null)
-                        fName = SqlUtils.getValue(params.getFieldsMapping()
-                                .get(fieldDef.getName()), 0, ";");
+                    colValue = driver.getObject(rs, col, types[col]);
                     
-                    if (fields == null || fields.size() == 0
-                            || fields.containsKey(fName))
+                    if (rec != null)
                     {
-                        colValue = driver.getObject(rs, col,
-                                fieldDef.getSqlDataType());
-                        
-                        if (rec != null)
-                        {
-                            if (colValue == null)
-                            {
-                                String defValue = SqlUtils.getValue(
-                                        params.getFieldsMapping().get(
-                                                fieldDef.getName()), 1, ";");
-                                
-                                if (!Utils.isNothing(defValue))
-                                    colValue = defValue;
-                            }
-                            
-                            int recIndex = fields.getList().indexOf(
-                                    fields.get(fName));
-                            
-                            if (recIndex >= 0 && recIndex < rec.length)
-                                rec[recIndex] = colValue;
-                        }
-                        else
-                        {
-                            if (params.getAddFieldValueCallback() != null)
-                                params.getAddFieldValueCallback()
-                                        .onAddFieldValue(dataSet, driver,
-                                                record, fieldDef);
-                            
-                            addValue(colValue, record, dataSet);
-                        }
+                        if (colValue == null && defValues[col] != null)
+                            colValue = defValues[col];
                         
-                        if ((params.isCheckKeyField()
-                                && fName.equalsIgnoreCase(dataSet
-                                        .getKeyFields()) && Utils
-                                    .isNothing(colValue))
-                                || (params.getFilterByField() != null
-                                        && params.getFilterByFieldValue() != null
-                                        && fName.equalsIgnoreCase(params
-                                                .getFilterByField()) && !params
-                                        .getFilterByFieldValue().equals(
-                                                colValue)))
-                        {
-                            skip = true;
-                            break;
-                        }
+                        rec[recIndexes[col]] = colValue;
+                    }
+                    else
+                    {
+                        if (params.getAddFieldValueCallback() != null)
+                            params.getAddFieldValueCallback().onAddFieldValue(
+                                    dataSet, driver, record,
+                                    allFields.get(col));
                         
-                        if (params.isUnique())
-                            value = value + (colValue != null ? colValue : "");
+                        addValue(colValue, record, dataSet);
                     }
+                    
+                    if ((keys[col] && Utils.isNothing(colValue))
+                            || (filters[col] && !params
+                                    .getFilterByFieldValue().equals(colValue)))
+                    {
+                        skip = true;
+                        break;
+                    }
+                    
+                    if (uniqueValues != null)
+                        uniqueValues[uniqueCount++] = colValue;
                 }
                 
                 if (skip)
                     continue;
                 
-                if (params.isUnique())
-                {
-                    if (values.containsKey(value))
-                        continue;
-                    
-                    values.put(value, null);
-                }
+                if (uniqueRecords != null
+                        && !uniqueRecords.add(uniqueValues, uniqueCount))
+                    continue;
                 
                 // rearrange fields in the record
                 if (rec != null)
@@ -621,7 +651,7 @@ public class SqlConnector extends BaseDataSetConnector implements
                 // inline something
                 if (added && params.getAddRecordCallback() != null)
                     params.getAddRecordCallback().onAddRecord(dataSet, driver,
-                            record, index - 1);
+                            dataSet.getLastRecord(), index - 1);
             }
             
             if (fields != null && fields.size() > 0)
@@ -636,6 +666,9 @@ public class SqlConnector extends BaseDataSetConnector implements
         }
         finally
         {
+            if (uniqueRecords != null)
+                uniqueRecords.close();
+            
             SqlUtils.cleanUpSQLData(null, rs, this);
             
             if (params.getAfterCallback() != null)
@@ -54,6 +54,9 @@ public class SqlConnectorParams extends DataSetConnectorParams
     /** The unique flag. */
     private boolean _unique;
     
+    /** The "verify unique" flag. */
+    private boolean _verifyUnique;
+    
     /** The "check key field" flag. */
     private boolean _checkKeyField;
     
@@ -102,6 +105,7 @@ public class SqlConnectorParams extends DataSetConnectorParams
         _fieldsMapping = null;
         
         _unique = false;
+        _verifyUnique = false;
         _checkKeyField = false;
         _filterByField = null;
         _filterByFieldValue = null;
@@ -353,6 +357,20 @@ public class SqlConnectorParams extends DataSetConnectorParams
         return _unique;
     }
     
+    /**
+     * Checks if duplicated records are verified by comparing values. If false
+     * records are considered duplicated if 128-bit fingerprints of the values
+     * are equal. If true the values are also kept in the temporary file and
+     * compared when fingerprints are equal. Works together with "is unique"
+     * flag.
+     *
+     * @return true, if duplicated records are verified
+     */
+    public boolean isVerifyUnique()
+    {
+        return _verifyUnique;
+    }
+    
     /**
      * Sets the "check key field: flag.
      *
@@ -453,6 +471,16 @@ public class SqlConnectorParams extends DataSetConnectorParams
         _unique = value;
     }
     
+    /**
+     * Sets the "verify unique" flag.
+     *
+     * @param value the new value for the "verify unique" flag
+     */
+    public void setVerifyUnique(boolean value)
+    {
+        _verifyUnique = value;
+    }
+    
     /**
      * Sets the writer.
      *
@@ -7,22 +7,31 @@
 
 package com.toolsverse.etl.connector.text;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.CharArrayReader;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import com.toolsverse.config.SystemConfig;
 import com.toolsverse.etl.common.DataSet;
-import com.toolsverse.etl.common.DataSetData;
 import com.toolsverse.etl.common.DataSetRecord;
 import com.toolsverse.etl.common.FieldDef;
 import com.toolsverse.etl.connector.BaseDataSetConnector;
@@ -41,6 +50,7 @@ import com.toolsverse.resource.Resource;
 import com.toolsverse.util.FilenameUtils;
 import com.toolsverse.util.TypedKeyValue;
 import com.toolsverse.util.Utils;
+import com.toolsverse.util.concurrent.ParallelExecutor;
 import com.toolsverse.util.log.Logger;
 
 /**
@@ -54,6 +64,191 @@ import com.toolsverse.util.log.Logger;
 public class TextConnector extends BaseDataSetConnector implements
         DataSetConnector<TextConnectorParams, ConnectorResult>
 {
+    /**
+     * Reads the chunk of the file. The chunk is a range of bytes which starts
+     * at the beginning of the record and ends at the end of the record. When
+     * chunk is read it is added to the queue of the finished chunks.
+     */
+    private class ChunkReader implements Callable<Object>
+    {
+        /** The index of the chunk. */
+        private final int _chunk;
+        
+        /** The start of the chunk. */
+        private final long _start;
+        
+        /** The end of the chunk. */
+        private final long _end;
+        
+        /** The file channel. */
+        private final FileChannel _channel;
+        
+        /** The data set. */
+        private final DataSet _dataSet;
+        
+        /** The driver. */
+        private final Driver _driver;
+        
+        /** The TextConnectorParams. */
+        private final TextConnectorParams _params;
+        
+        /** The length array. */
+        private final int[] _lengthArray;
+        
+        /** The flags which define if value of the field must be decoded. */
+        private final boolean[] _encoded;
+        
+        /** The finished chunks. */
+        private final BlockingQueue<ChunkReader> _finished;
+        
+        /** The records. */
+        private List<DataSetRecord> _records;
+        
+        /** The exception. */
+        private Exception _exception;
+        
+        /**
+         * Instantiates a new ChunkReader.
+         *
+         * @param chunk the index of the chunk
+         * @param start the start of the chunk
+         * @param end the end of the chunk
+         * @param channel the file channel
+         * @param dataSet the data set
+         * @param driver the driver
+         * @param params the TextConnectorParams
+         * @param lengthArray the length array
+         * @param encoded the flags which define if value of the field must be decoded
+         * @param finished the finished chunks
+         */
+        ChunkReader(int chunk, long start, long end, FileChannel channel,
+                DataSet dataSet, Driver driver, TextConnectorParams params,
+                int[] lengthArray, boolean[] encoded,
+                BlockingQueue<ChunkReader> finished)
+        {
+            _chunk = chunk;
+            _start = start;
+            _end = end;
+            _channel = channel;
+            _dataSet = dataSet;
+            _driver = driver;
+            _params = params;
+            _lengthArray = lengthArray;
+            _encoded = encoded;
+            _finished = finished;
+            
+            _records = null;
+            _exception = null;
+        }
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.util.concurrent.Callable#call()
+         */
+        public Object call()
+            throws Exception
+        {
+            try
+            {
+                _records = read();
+            }
+            catch (Exception ex)
+            {
+                _exception = ex;
+            }
+            finally
+            {
+                _finished.add(this);
+            }
+            
+            return null;
+        }
+        
+        /**
+         * Gets the index of the chunk.
+         *
+         * @return the index of the chunk
+         */
+        int getChunk()
+        {
+            return _chunk;
+        }
+        
+        /**
+         * Gets the records.
+         *
+         * @return the records
+         * @throws Exception if chunk was not read
+         */
+        List<DataSetRecord> getRecords()
+            throws Exception
+        {
+            if (_exception != null)
+                throw _exception;
+            
+            return _records;
+        }
+        
+        /**
+         * Reads the records of the chunk.
+         *
+         * @return the records
+         * @throws Exception in case of any error
+         */
+        private List<DataSetRecord> read()
+            throws Exception
+        {
+            MappedByteBuffer buffer = _channel.map(
+                    FileChannel.MapMode.READ_ONLY, _start, _end - _start);
+            
+            CharBuffer chars = Charset.defaultCharset().newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(buffer);
+            
+            TextParser parser = new TextParser(new CharArrayReader(
+                    chars.array(), chars.arrayOffset() + chars.position(),
+                    chars.remaining()), _params.getDelimiter(),
+                    _params.getCharSeparator(), _lengthArray);
+            
+            List<DataSetRecord> records = new ArrayList<DataSetRecord>();
+            
+            boolean skip = _chunk == 0 && !_params.isFirstRowData();
+            
+            while (parser.next())
+            {
+                if (skip)
+                {
+                    skip = false;
+                    
+                    continue;
+                }
+                
+                DataSetRecord record = new DataSetRecord();
+                
+                int fCount = parser.getFieldCount();
+                
+                for (int col = 0; col < fCount; col++)
+                {
+                    Object fldValue = getValue(_dataSet, _driver, parser,
+                            _params, _dataSet.getFieldDef(col), _encoded, col);
+                    
+                    if (fldValue != null && "".equals(fldValue.toString()))
+                        fldValue = null;
+                    
+                    addValue(fldValue, record, _dataSet);
+                }
+                
+                records.add(record);
+            }
+            
+            return records;
+        }
+    }
+    
+    /** The size of the buffer used to find the end of the record. */
+    private static final int RECORD_END_BUFFER_SIZE = 4096;
     
     /*
      * (non-Javadoc)
@@ -97,6 +292,36 @@ public class TextConnector extends BaseDataSetConnector implements
         return getName();
     }
     
+    /**
+     * Gets the flags which define if value of the field must be decoded using
+     * {@link DataSet#decode(FieldDef, String, Driver, Map)}.
+     *
+     * @param dataSet the data set
+     * @return the flags for each field
+     */
+    private boolean[] getEncodedFields(DataSet dataSet)
+    {
+        int fieldCount = dataSet.getFieldCount();
+        
+        boolean[] encoded = new boolean[fieldCount];
+        
+        if (!dataSet.isEncode())
+            return encoded;
+        
+        for (int col = 0; col < fieldCount; col++)
+        {
+            FieldDef fieldDef = dataSet.getFieldDef(col);
+            
+            int type = fieldDef.getSqlDataType();
+            
+            encoded[col] = SqlUtils.isLargeObject(type)
+                    || (dataSet.isFieldEncoded(fieldDef) && SqlUtils
+                            .isChar(type));
+        }
+        
+        return encoded;
+    }
+    
     /**
      * Gets the array of lengths for each field in the fixed-length file.
      *
@@ -157,6 +382,110 @@ public class TextConnector extends BaseDataSetConnector implements
         return "Text";
     }
     
+    /**
+     * Gets the position right after the end of the record which contains given
+     * position.
+     *
+     * @param channel the file channel
+     * @param pos the position
+     * @param size the size of the file
+     * @return the end of the record
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private long getRecordEnd(FileChannel channel, long pos, long size)
+        throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_END_BUFFER_SIZE);
+        
+        while (pos < size)
+        {
+            buffer.clear();
+            
+            int read = channel.read(buffer, pos);
+            
+            if (read <= 0)
+                break;
+            
+            for (int i = 0; i < read; i++)
+                if (buffer.get(i) == '\n')
+                    return pos + i + 1;
+            
+            pos += read;
+        }
+        
+        return size;
+    }
+    
+    /**
+     * Gets the writer used to write the text. Wraps the writer set by
+     * {@link TextConnectorParams#setWriter(Writer)} if needed.
+     *
+     * @param params the TextConnectorParams
+     * @return the text writer
+     */
+    private TextWriter getTextWriter(TextConnectorParams params)
+    {
+        Writer output = params.getWriter();
+        
+        if (output instanceof TextWriter)
+            return (TextWriter)output;
+        
+        TextWriter writer = new TextWriter(output);
+        
+        params.setWriter(writer);
+        
+        return writer;
+    }
+    
+    /**
+     * Gets the type and value of the field. Quoted value is always a string.
+     * If type of the field is already detected as a date, time or date+time
+     * the same format is tried first.
+     *
+     * @param parser the parser
+     * @param col the index of the field
+     * @param value the value of the field
+     * @param fieldDef the field. Null if field is not created yet
+     * @param params the TextConnectorParams
+     * @return the type and value
+     */
+    private TypedKeyValue<Integer, Object> getTypeAndValue(TextParser parser,
+            int col, String value, FieldDef fieldDef,
+            TextConnectorParams params)
+    {
+        if (parser.isQuoted(col))
+            return new TypedKeyValue<Integer, Object>(Types.VARCHAR, value);
+        
+        return SqlUtils.getTypeAndValue(value, params.getParams(),
+                fieldDef != null ? fieldDef.getSqlDataType() : Types.NULL);
+    }
+    
+    /**
+     * Gets the value of the field using meta data.
+     *
+     * @param dataSet the data set
+     * @param driver the driver
+     * @param parser the parser
+     * @param params the TextConnectorParams
+     * @param fieldDef the field
+     * @param encoded the flags which define if value of the field must be decoded
+     * @param col the index of the field
+     * @return the value
+     * @throws Exception in case of any error
+     */
+    private Object getValue(DataSet dataSet, Driver driver, TextParser parser,
+            TextConnectorParams params, FieldDef fieldDef, boolean[] encoded,
+            int col)
+        throws Exception
+    {
+        if (col < encoded.length && encoded[col])
+            return dataSet.decode(fieldDef, parser.getString(col), driver,
+                    params.getParams());
+        
+        return parser.getValue(col, fieldDef.getSqlDataType(),
+                params.getParams());
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -232,7 +561,11 @@ public class TextConnector extends BaseDataSetConnector implements
         if (record == null)
             return;
         
-        String recordS = "";
+        TextWriter writer = getTextWriter(params);
+        
+        int[] lengthArray = params.getLengthArray();
+        String delimiter = params.getDelimiter();
+        String charSeparator = params.getCharSeparator();
         
         int colCount = dataSet.getFieldCount();
         
@@ -249,23 +582,31 @@ public class TextConnector extends BaseDataSetConnector implements
                     params.getParams());
             
             if (Utils.isNothing(value) || "null".equalsIgnoreCase(value))
-                value = "";
-            else if (fieldDef.isChar())
-                value = params.getCharSeparator() + value
-                        + params.getCharSeparator();
+                value = null;
             
-            if (params.getLengthArray() == null)
+            if (lengthArray == null)
             {
                 if (record.size() > 1 && col > 0)
-                    recordS = recordS + params.getDelimiter() + value;
+                    writer.write(delimiter);
+                
+                if (value == null)
+                    continue;
+                
+                if (fieldDef.isChar())
+                {
+                    writer.write(charSeparator);
+                    writer.writeValue(value);
+                    writer.write(charSeparator);
+                }
                 else
-                    recordS = recordS + value;
+                    writer.writeValue(value);
             }
             else
             {
-                recordS = recordS
-                        + Utils.padRight(value, params.getLengthArray()[col],
-                                true);
+                if (value != null && fieldDef.isChar())
+                    value = charSeparator + value + charSeparator;
+                
+                writer.writeValue(value, lengthArray[col]);
             }
         }
         
@@ -275,32 +616,79 @@ public class TextConnector extends BaseDataSetConnector implements
                     + EtlResource.PERSITING_RECORD.getValue() + row
                     + " out of " + records);
         
-        params.getWriter().write(recordS.replaceAll("(\\r|\\n)", ""));
-        params.getWriter().write(params.getLineSeparator());
+        writer.write(params.getLineSeparator());
+    }
+    
+    /**
+     * Checks if file can be read in parallel. File is read in parallel if it is
+     * bigger than the chunk size, more than one thread is allowed, values
+     * can be parsed using meta data and there is no char separator. Quoted
+     * values can include line breaks, so the end of the record can't be found
+     * without reading the file from the beginning.
+     *
+     * @param params the TextConnectorParams
+     * @param dataFile the data file. Null if data is read from the input stream
+     * @param hasMetadata the "has meta data" flag
+     * @return true, if file can be read in parallel
+     */
+    private boolean isParallel(TextConnectorParams params, File dataFile,
+            boolean hasMetadata)
+    {
+        return dataFile != null && hasMetadata && params.getThreads() > 1
+                && params.getAddFieldValueCallback() == null
+                && Utils.isNothing(params.getCharSeparator())
+                && dataFile.length() > params.getChunkSize();
+    }
+    
+    /**
+     * Checks if value of the field can be decoded using type of the field
+     * without detecting type of the value. String fields accept any value,
+     * integer fields accept not quoted integer numbers. Empty values are
+     * always accepted.
+     *
+     * @param parser the parser
+     * @param col the index of the field
+     * @param fieldDef the field
+     * @return true, if value can be decoded using type of the field
+     */
+    private boolean isTyped(TextParser parser, int col, FieldDef fieldDef)
+    {
+        if (parser.isEmpty(col))
+            return true;
+        
+        switch (fieldDef.getSqlDataType())
+        {
+            case Types.VARCHAR:
+                return true;
+            case Types.INTEGER:
+                return !parser.isQuoted(col) && parser.isInteger(col);
+        }
+        
+        return false;
     }
     
     /**
-     * Parses the line of text and updates current record of the data set.
+     * Parses the current record of the text and adds it to the data set.
      *
      * @param dataSet the data set
      * @param driver the driver
-     * @param line the line to parse
+     * @param parser the parser
      * @param params the TextConnectorParams
-     * @param delimiter the delimiter
      * @param index the row index
      * @param hasKey the "has key" flag
      * @param hasMetadata the "has meta data" flag
      * @param types the types
-     * @param lengthArray the length array
+     * @param encoded the flags which define if value of the field must be decoded. Used only if there is a meta data
      * @throws Exception in case of any error
      */
-    private void parseLine(DataSet dataSet, Driver driver, String line,
-            TextConnectorParams params, String delimiter, int index,
+    private void parseRecord(DataSet dataSet, Driver driver,
+            TextParser parser, TextConnectorParams params, int index,
             boolean hasKey, boolean hasMetadata, Map<Integer, Boolean> types,
-            int[] lengthArray)
+            boolean[] encoded)
         throws Exception
     {
-        Object[] values = Utils.split(line, delimiter, lengthArray);
+        if (hasMetadata && !params.isFirstRowData() && index == 1)
+            return;
         
         DataSetRecord record = new DataSetRecord();
         
@@ -309,7 +697,7 @@ public class TextConnector extends BaseDataSetConnector implements
             Logger.log(Logger.INFO, EtlLogger.class, dataSet.getName() + ": "
                     + index + EtlResource.READING_DATASET_MSG.getValue());
         
-        int fCount = values != null ? values.length : 0;
+        int fCount = parser.getFieldCount();
         FieldDef fieldDef;
         String value;
         Object fldValue;
@@ -317,31 +705,27 @@ public class TextConnector extends BaseDataSetConnector implements
         
         for (int col = 0; col < fCount; col++)
         {
-            value = Utils.makeString(values[col]);
-            
             if (hasMetadata)
             {
-                if (!params.isFirstRowData() && index == 1)
-                    return;
-                
                 fieldDef = dataSet.getFieldDef(col);
                 
-                fldValue = dataSet.decode(fieldDef,
-                        SqlUtils.getUnquotedText(params.getParams(), value),
-                        driver, params.getParams());
+                fldValue = getValue(dataSet, driver, parser, params, fieldDef,
+                        encoded, col);
             }
             else
             {
+                value = parser.getString(col);
+                
                 if (index == 1)
                 {
                     if (!params.isFirstRowData())
                     {
                         fieldDef = new FieldDef();
                         
-                        if (!Utils.isNothing(value))
+                        if (parser.isQuoted(col) || !Utils.isNothing(value))
                         {
-                            typeAndValue = SqlUtils.getTypeAndValue(value,
-                                    params.getParams());
+                            typeAndValue = getTypeAndValue(parser, col, value,
+                                    null, params);
                             
                             fieldDef.setName(typeAndValue.getValue().toString());
                         }
@@ -356,8 +740,8 @@ public class TextConnector extends BaseDataSetConnector implements
                     }
                     else
                     {
-                        typeAndValue = SqlUtils.getTypeAndValue(value,
-                                params.getParams());
+                        typeAndValue = getTypeAndValue(parser, col, value,
+                                null, params);
                         
                         fldValue = typeAndValue.getValue();
                         
@@ -387,21 +771,36 @@ public class TextConnector extends BaseDataSetConnector implements
                 {
                     fieldDef = dataSet.getFieldDef(col);
                     
-                    typeAndValue = SqlUtils.getTypeAndValue(value,
-                            params.getParams());
+                    boolean hasType = types.containsKey(col);
                     
-                    fldValue = typeAndValue.getValue();
-                    
-                    if (!Utils.isEmpty(fldValue))
+                    // types are detected, decode value using type of the field
+                    if (hasType && params.getSampleRows() > 0
+                            && dataSet.getRecordCount() >= params.getSampleRows()
+                            && isTyped(parser, col, fieldDef))
+                        fldValue = parser.getValue(col,
+                                fieldDef.getSqlDataType(), params.getParams());
+                    else
                     {
-                        fieldDef.setSqlDataType(SqlUtils.getFieldType(
-                                typeAndValue.getKey(),
-                                fieldDef.getSqlDataType(),
-                                types.containsKey(col)));
-                        fieldDef.setNativeDataType(driver.getType(new FieldDef(
-                                fieldDef.getSqlDataType(), null), null, null));
+                        typeAndValue = getTypeAndValue(parser, col, value,
+                                fieldDef, params);
+                        
+                        fldValue = typeAndValue.getValue();
                         
-                        types.put(col, true);
+                        if (!Utils.isEmpty(fldValue))
+                        {
+                            int type = SqlUtils.getFieldType(
+                                    typeAndValue.getKey(),
+                                    fieldDef.getSqlDataType(), hasType);
+                            
+                            if (!hasType || type != fieldDef.getSqlDataType())
+                            {
+                                fieldDef.setSqlDataType(type);
+                                fieldDef.setNativeDataType(driver.getType(
+                                        new FieldDef(type, null), null, null));
+                                
+                                types.put(col, true);
+                            }
+                        }
                     }
                 }
             }
@@ -429,7 +828,8 @@ public class TextConnector extends BaseDataSetConnector implements
         boolean added = dataSet.addRecord(record);
         
         if (added && params.getAddRecordCallback() != null)
-            params.getAddRecordCallback().onAddRecord(dataSet, driver, record,
+            params.getAddRecordCallback().onAddRecord(dataSet, driver,
+                    dataSet.getLastRecord(),
                     params.isFirstRowData() ? index : index - 1);
         
     }
@@ -556,8 +956,6 @@ public class TextConnector extends BaseDataSetConnector implements
         
         dataSet.clear();
         
-        String delimiter = Utils.str2Regexp(params.getDelimiter());
-        
         driver = driver != null ? driver : dataSet.getDriver();
         
         if (!params.isSilent())
@@ -626,28 +1024,39 @@ public class TextConnector extends BaseDataSetConnector implements
             boolean hasKey = !Utils.isNothing(dataSet.getKeyFields());
             
             if (dataSet.getData() == null)
-                dataSet.setData(new DataSetData());
+                dataSet.setData(dataSet.createData());
+            
+            boolean[] encoded = hasMetadata ? getEncodedFields(dataSet) : null;
             
             int index = 1;
             
             // load data
-            BufferedReader input = null;
+            Reader input = null;
             try
             {
-                if (params.getInputStream() == null)
-                    input = new BufferedReader(new FileReader(dataFile));
-                else
-                    input = new BufferedReader(new InputStreamReader(
-                            params.getInputStream()));
-                
-                String line = null;
                 try
                 {
-                    while ((line = input.readLine()) != null)
+                    if (isParallel(params, dataFile, hasMetadata))
+                        readParallel(dataSet, driver, dataFile, params,
+                                lengthArray, encoded);
+                    else
                     {
-                        parseLine(dataSet, driver, line, params, delimiter,
-                                index++, hasKey, hasMetadata, types,
-                                lengthArray);
+                        if (params.getInputStream() == null)
+                            input = new FileReader(dataFile);
+                        else
+                            input = new InputStreamReader(
+                                    params.getInputStream());
+                        
+                        TextParser parser = new TextParser(input,
+                                params.getDelimiter(),
+                                params.getCharSeparator(), lengthArray);
+                        
+                        while (parser.next())
+                        {
+                            parseRecord(dataSet, driver, parser, params,
+                                    index++, hasKey, hasMetadata, types,
+                                    encoded);
+                        }
                     }
                 }
                 catch (Exception ex)
@@ -734,14 +1143,18 @@ public class TextConnector extends BaseDataSetConnector implements
             Driver driver)
         throws Exception
     {
-        if (params.isPersistMetaData() && params.getInputStream() == null)
+        // file which was already started is reopened to add more records
+        boolean append = params.isAppend() && params.getOutputStream() == null;
+        
+        if (params.isPersistMetaData() && params.getInputStream() == null
+                && !append)
             writeMetaData(params, dataSet, driver);
         
         int[] lengthArray = getLengthArray(params, dataSet.getFieldCount());
         
         params.setLengthArray(lengthArray);
         
-        Writer output = null;
+        TextWriter output = null;
         
         if (params.getOutputStream() == null)
         {
@@ -756,21 +1169,18 @@ public class TextConnector extends BaseDataSetConnector implements
             
             File file = new File(fileName);
             
-            output = new BufferedWriter(new FileWriter(file));
+            output = new TextWriter(file, append);
             
-            if (params.getTransactionMonitor() != null)
+            if (params.getTransactionMonitor() != null && !append)
                 params.getTransactionMonitor().addFile(fileName);
         }
         else
-            output = new BufferedWriter(new OutputStreamWriter(
-                    params.getOutputStream()));
+            output = new TextWriter(params.getOutputStream());
         
         params.setWriter(output);
         
-        if (!params.isFirstRowData())
+        if (!params.isFirstRowData() && !append)
         {
-            String titleRecordS = "";
-            
             for (int col = 0; col < dataSet.getFieldCount(); col++)
             {
                 FieldDef fieldDef = dataSet.getFields().get(col);
@@ -781,26 +1191,144 @@ public class TextConnector extends BaseDataSetConnector implements
                 if (lengthArray == null)
                 {
                     if (dataSet.getFieldCount() > 1 && col > 0)
-                        titleRecordS = titleRecordS + params.getDelimiter()
-                                + fieldDef.getName();
-                    else
-                        titleRecordS = titleRecordS + fieldDef.getName();
+                        output.write(params.getDelimiter());
+                    
+                    output.writeValue(fieldDef.getName());
                 }
                 else
-                {
-                    titleRecordS = titleRecordS
-                            + Utils.padRight(fieldDef.getName(),
-                                    lengthArray[col], true);
-                }
+                    output.writeValue(fieldDef.getName(), lengthArray[col]);
             }
             
-            output.write(titleRecordS.replaceAll("(\\r|\\n)", ""));
             output.write(Utils.NEWLINE);
         }
         
         params.setPrePersistOccured(true);
     }
     
+    /**
+     * Reads the file in parallel. File is split on chunks aligned to the
+     * boundaries of the records. Chunks are memory mapped and parsed by the
+     * pool of threads. Up to 2 chunks per thread are kept in memory. Records
+     * are added to the data set in the order of chunks or, if "ordered" flag is
+     * not set, as soon as chunk is parsed.
+     *
+     * @param dataSet the data set
+     * @param driver the driver
+     * @param dataFile the data file
+     * @param params the TextConnectorParams
+     * @param lengthArray the length array
+     * @param encoded the flags which define if value of the field must be decoded
+     * @throws Exception in case of any error
+     */
+    private void readParallel(DataSet dataSet, Driver driver, File dataFile,
+            TextConnectorParams params, int[] lengthArray, boolean[] encoded)
+        throws Exception
+    {
+        int threads = params.getThreads();
+        
+        if (!params.isSilent())
+            Logger.log(Logger.INFO, EtlLogger.class, dataSet.getName() + ": "
+                    + EtlResource.PARALLEL_READ_MSG.getValue() + threads);
+        
+        BlockingQueue<ChunkReader> finished = new LinkedBlockingQueue<ChunkReader>();
+        
+        Map<Integer, ChunkReader> chunks = new HashMap<Integer, ChunkReader>();
+        
+        RandomAccessFile file = new RandomAccessFile(dataFile, "r");
+        
+        ParallelExecutor executor = new ParallelExecutor(threads);
+        
+        try
+        {
+            FileChannel channel = file.getChannel();
+            
+            long size = channel.size();
+            long start = 0;
+            int submitted = 0;
+            int consumed = 0;
+            int row = 1;
+            
+            while (true)
+            {
+                while (start < size && submitted - consumed < threads * 2)
+                {
+                    long end = getRecordEnd(channel,
+                            Math.min(start + params.getChunkSize(), size),
+                            size);
+                    
+                    executor.addTask(new ChunkReader(submitted++, start, end,
+                            channel, dataSet, driver, params, lengthArray,
+                            encoded, finished));
+                    
+                    start = end;
+                }
+                
+                if (consumed == submitted)
+                    break;
+                
+                ChunkReader chunk;
+                
+                if (params.isOrdered())
+                {
+                    chunk = chunks.remove(consumed);
+                    
+                    while (chunk == null)
+                    {
+                        ChunkReader done = finished.take();
+                        
+                        if (done.getChunk() == consumed)
+                            chunk = done;
+                        else
+                            chunks.put(done.getChunk(), done);
+                    }
+                }
+                else
+                    chunk = finished.take();
+                
+                consumed++;
+                
+                for (DataSetRecord record : chunk.getRecords())
+                {
+                    if (!params.isSilent() && params.getLogStep() > 0
+                            && (row % params.getLogStep()) == 0)
+                        Logger.log(Logger.INFO, EtlLogger.class,
+                                dataSet.getName() + ": " + row
+                                        + EtlResource.READING_DATASET_MSG
+                                                .getValue());
+                    
+                    if (params.getMaxRows() >= 0
+                            && dataSet.getRecordCount() >= params.getMaxRows())
+                    {
+                        throw new Exception(
+                                DataSetConnectorParams.MAX_ROWS_EXCEEDED_EXCEPTION);
+                    }
+                    
+                    boolean added = dataSet.addRecord(record);
+                    
+                    if (added && params.getAddRecordCallback() != null)
+                        params.getAddRecordCallback().onAddRecord(dataSet,
+                                driver, dataSet.getLastRecord(), row);
+                    
+                    row++;
+                }
+            }
+        }
+        finally
+        {
+            executor.terminate();
+            
+            try
+            {
+                file.close();
+            }
+            catch (IOException ex)
+            {
+                Logger.log(Logger.INFO, this,
+                        Resource.ERROR_GENERAL.getValue(), ex);
+            }
+        }
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -60,6 +60,21 @@ public class TextConnectorParams extends FileConnectorParams
     /** The FIRST ROW HAS DATA property. */
     public static final String FIRST_ROW_DATA_PROP = "firstrow";
     
+    /** The THREADS property. */
+    public static final String THREADS_PROP = "threads";
+    
+    /** The ORDERED property. */
+    public static final String ORDERED_PROP = "ordered";
+    
+    /** The SAMPLE ROWS property. */
+    public static final String SAMPLE_ROWS_PROP = "samplerows";
+    
+    /** The default number of rows used to detect types of the fields. */
+    public static final int DEFAULT_SAMPLE_ROWS = 1000;
+    
+    /** The default size of the chunk of the file read by each thread. */
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    
     /** The delimiter. */
     private String _delimiter;
     
@@ -84,6 +99,18 @@ public class TextConnectorParams extends FileConnectorParams
     /** The length array. */
     private int[] _lengthArray;
     
+    /** The number of threads used to read the file. */
+    private int _threads;
+    
+    /** The "ordered" flag. */
+    private boolean _ordered;
+    
+    /** The size of the chunk of the file read by each thread. */
+    private int _chunkSize;
+    
+    /** The number of rows used to detect types of the fields. */
+    private int _sampleRows;
+    
     /**
      * Instantiates a new TextConnectorParams.
      */
@@ -128,6 +155,10 @@ public class TextConnectorParams extends FileConnectorParams
         _lengthArray = null;
         _output = null;
         _lineSeparator = SYSTEM_LINE_SEPARATOR;
+        _threads = 1;
+        _ordered = true;
+        _chunkSize = DEFAULT_CHUNK_SIZE;
+        _sampleRows = DEFAULT_SAMPLE_ROWS;
     }
     
     /*
@@ -153,6 +184,12 @@ public class TextConnectorParams extends FileConnectorParams
         params.setTimeFormat(getTimeFormat());
         params.setUseSelectedDataSet(useSelectedDataSet());
         params.setSplitBy(getSplitBy());
+        params.setMaxOpenFiles(getMaxOpenFiles());
+        params.setSplitThreads(getSplitThreads());
+        params.setThreads(getThreads());
+        params.setOrdered(isOrdered());
+        params.setChunkSize(getChunkSize());
+        params.setSampleRows(getSampleRows());
         
         return params;
     }
@@ -169,6 +206,17 @@ public class TextConnectorParams extends FileConnectorParams
         return value != null ? value : "";
     }
     
+    /**
+     * Gets the size of the chunk of the file read by each thread when file is
+     * read in parallel.
+     *
+     * @return the chunk size in bytes
+     */
+    public int getChunkSize()
+    {
+        return _chunkSize;
+    }
+    
     /**
      * gets the delimiter. Some characters are allowed, some not.
      * @param delimiter the source
@@ -246,6 +294,37 @@ public class TextConnectorParams extends FileConnectorParams
             return _lineSeparator;
     }
     
+    /**
+     * Gets the number of rows used to detect types of the fields when there is
+     * no meta data. Type of each value in these rows is detected separately.
+     * After that values of the string and integer fields are decoded using the
+     * type of the field, other values are still checked and type of the field
+     * is changed if value does not fit. If number of rows is 0 or less type of
+     * each value in the file is detected. Default is
+     * {@link #DEFAULT_SAMPLE_ROWS}.
+     *
+     * @return the number of rows used to detect types of the fields
+     */
+    public int getSampleRows()
+    {
+        return _sampleRows;
+    }
+    
+    /**
+     * Gets the number of threads used to read the file. If number of threads
+     * is greater than 1 file is split on chunks which are read in parallel. If
+     * number of threads is 0 or less all available processors are used. Files
+     * are read in parallel only if meta data is available and each record is
+     * a single line of text. Default is 1.
+     *
+     * @return the number of threads
+     */
+    public int getThreads()
+    {
+        return _threads > 0 ? _threads : Runtime.getRuntime()
+                .availableProcessors();
+    }
+    
     /**
      * Gets the writer.
      *
@@ -290,6 +369,11 @@ public class TextConnectorParams extends FileConnectorParams
         setFields(props.getProperty(FIELDS_PROP));
         
         setCharSeparator(props.getProperty(SqlUtils.CHAR_SEPARATOR_PROP));
+        
+        setThreads(Utils.str2Int(props.getProperty(THREADS_PROP), 1));
+        setOrdered(Utils.str2Boolean(props.getProperty(ORDERED_PROP), true));
+        setSampleRows(Utils.str2Int(props.getProperty(SAMPLE_ROWS_PROP),
+                DEFAULT_SAMPLE_ROWS));
     }
     
     /*
@@ -320,6 +404,11 @@ public class TextConnectorParams extends FileConnectorParams
         setCharSeparator(props.get(SqlUtils.CHAR_SEPARATOR_PROP));
         
         setFields(props.get(FIELDS_PROP));
+        
+        setThreads(Utils.str2Int(props.get(THREADS_PROP), 1));
+        setOrdered(Utils.str2Boolean(props.get(ORDERED_PROP), true));
+        setSampleRows(Utils.str2Int(props.get(SAMPLE_ROWS_PROP),
+                DEFAULT_SAMPLE_ROWS));
     }
     
     /*
@@ -363,6 +452,30 @@ public class TextConnectorParams extends FileConnectorParams
                 storage.getString(PREFIX + USE_SELECTED_PROP), false));
         
         setSplitBy(storage.getString(PREFIX + SPLIT_BY_PROP));
+        setMaxOpenFiles(Utils.str2Int(
+                storage.getString(PREFIX + MAX_OPEN_FILES_PROP),
+                DEFAULT_MAX_OPEN_FILES));
+        setSplitThreads(Utils.str2Int(
+                storage.getString(PREFIX + SPLIT_THREADS_PROP),
+                DEFAULT_SPLIT_THREADS));
+        
+        setThreads(Utils.str2Int(storage.getString(PREFIX + THREADS_PROP), 1));
+        setOrdered(Utils.str2Boolean(storage.getString(PREFIX + ORDERED_PROP),
+                true));
+        setSampleRows(Utils.str2Int(
+                storage.getString(PREFIX + SAMPLE_ROWS_PROP),
+                DEFAULT_SAMPLE_ROWS));
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.connector.FileConnectorParams#isAppendSupported()
+     */
+    @Override
+    public boolean isAppendSupported()
+    {
+        return true;
     }
     
     /**
@@ -375,6 +488,17 @@ public class TextConnectorParams extends FileConnectorParams
         return _firstRowData;
     }
     
+    /**
+     * Checks if records read in parallel must be added to the data set in the
+     * same order as they are in the file. Default is true.
+     *
+     * @return true, if records must be added in order
+     */
+    public boolean isOrdered()
+    {
+        return _ordered;
+    }
+    
     /**
      * Checks if "is persist meta data" flag was set.
      *
@@ -398,6 +522,16 @@ public class TextConnectorParams extends FileConnectorParams
                 String.valueOf((value.trim().charAt(0))));
     }
     
+    /**
+     * Sets the size of the chunk of the file read by each thread.
+     *
+     * @param value the new chunk size in bytes
+     */
+    public void setChunkSize(int value)
+    {
+        _chunkSize = value > 0 ? value : DEFAULT_CHUNK_SIZE;
+    }
+    
     /**
      * Sets the delimiter.
      *
@@ -470,6 +604,16 @@ public class TextConnectorParams extends FileConnectorParams
         
     }
     
+    /**
+     * Sets the "ordered" flag.
+     *
+     * @param value the new value for the "ordered" flag
+     */
+    public void setOrdered(boolean value)
+    {
+        _ordered = value;
+    }
+    
     /**
      * Sets the "persist meta data" flag.
      *
@@ -480,6 +624,28 @@ public class TextConnectorParams extends FileConnectorParams
         _persistMetaData = value;
     }
     
+    /**
+     * Sets the number of rows used to detect types of the fields.
+     *
+     * @param value the new number of rows. 0 or less means type of each value
+     *            is detected
+     */
+    public void setSampleRows(int value)
+    {
+        _sampleRows = value;
+    }
+    
+    /**
+     * Sets the number of threads used to read the file.
+     *
+     * @param value the new number of threads. 0 or less means all available
+     *            processors
+     */
+    public void setThreads(int value)
+    {
+        _threads = value;
+    }
+    
     /**
      * Sets the writer.
      *
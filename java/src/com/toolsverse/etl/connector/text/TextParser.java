@@ -0,0 +1,593 @@
+/*
+ * TextParser.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.connector.text;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Types;
+import java.util.Map;
+
+import com.toolsverse.etl.sql.util.SqlUtils;
+
+/**
+ * Parses delimited and fixed-length text. The parser reads characters directly
+ * from the reader into its own buffer and splits them into the fields using
+ * state machine, so there is no intermediate line, array of strings or regular
+ * expression for each record. The fields of the current record are kept as
+ * slices of the reusable char buffer and converted to the values only when
+ * requested.
+ * 
+ * <p>
+ * Delimited text supports fields enclosed in char separators (quotes). Quoted
+ * field can contain delimiters and line separators. Doubled char separator
+ * inside of the quoted field is an escaped char separator. Char separator
+ * which is not followed by the delimiter or the end of line is treated as a
+ * part of the value.
+ * 
+ * <p>
+ * Fixed-length text is split using array of field lengths. Values are trimmed.
+ * 
+ * <p>
+ * Typical usage example:
+ * <p>
+ * <pre class="brush: java">
+ * TextParser parser = new TextParser(reader, &quot;,&quot;, &quot;\&quot;&quot;, null);
+ * 
+ * while (parser.next())
+ * {
+ *     for (int col = 0; col &lt; parser.getFieldCount(); col++)
+ *         record.add(parser.getValue(col, Types.INTEGER, params));
+ * }
+ * </pre>
+ * 
+ * @see com.toolsverse.etl.connector.text.TextConnector
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class TextParser
+{
+    /** The size of the read buffer. */
+    private static final int BUFFER_SIZE = 65536;
+    
+    /** The initial size of the buffer for the fields. */
+    private static final int CHARS_SIZE = 1024;
+    
+    /** The initial number of the fields. */
+    private static final int FIELDS_SIZE = 16;
+    
+    /** The state: beginning of the field. */
+    private static final int FIELD_START = 0;
+    
+    /** The state: inside of the field which is not quoted. */
+    private static final int UNQUOTED = 1;
+    
+    /** The state: inside of the quoted field. */
+    private static final int QUOTED = 2;
+    
+    /** The state: char separator inside of the quoted field. */
+    private static final int QUOTE_IN_QUOTED = 3;
+    
+    /** The reader. */
+    private final Reader _reader;
+    
+    /** The delimiter. */
+    private final char[] _delimiter;
+    
+    /** The char separator or -1 if there is no char separator. */
+    private final int _quote;
+    
+    /** The array of field lengths for the fixed-length text. */
+    private final int[] _lengthArray;
+    
+    /** The read buffer. */
+    private final char[] _buffer;
+    
+    /** The position in the read buffer. */
+    private int _pos;
+    
+    /** The number of chars in the read buffer. */
+    private int _limit;
+    
+    /** If true skip next line feed. */
+    private boolean _skipLf;
+    
+    /** The chars of the current record. */
+    private char[] _chars;
+    
+    /** The number of chars of the current record. */
+    private int _length;
+    
+    /** The start of each field. */
+    private int[] _starts;
+    
+    /** The end of each field. */
+    private int[] _ends;
+    
+    /** The "quoted" flag of each field. */
+    private boolean[] _quoted;
+    
+    /** The number of fields in the current record. */
+    private int _fieldCount;
+    
+    /**
+     * Instantiates a new TextParser.
+     * 
+     * @param reader the reader
+     * @param delimiter the delimiter
+     * @param charSeparator the char separator. Can be empty
+     * @param lengthArray the array of field lengths. If not null text is fixed
+     *            length and delimiter and char separator are ignored
+     */
+    public TextParser(Reader reader, String delimiter, String charSeparator,
+            int[] lengthArray)
+    {
+        _reader = reader;
+        
+        _delimiter = delimiter != null && delimiter.length() > 0 ? delimiter
+                .toCharArray() : SqlUtils.DEFAULT_DELIMITER.toCharArray();
+        
+        _quote = charSeparator != null && charSeparator.length() > 0 ? charSeparator
+                .charAt(0) : -1;
+        
+        _lengthArray = lengthArray != null && lengthArray.length > 0 ? lengthArray
+                : null;
+        
+        _buffer = new char[BUFFER_SIZE];
+        _pos = 0;
+        _limit = 0;
+        _skipLf = false;
+        
+        _chars = new char[CHARS_SIZE];
+        _length = 0;
+        
+        _starts = new int[FIELDS_SIZE];
+        _ends = new int[FIELDS_SIZE];
+        _quoted = new boolean[FIELDS_SIZE];
+        _fieldCount = 0;
+    }
+    
+    /**
+     * Adds the field of the current record. Removes char separators if field
+     * starts and ends with char separator.
+     * 
+     * @param start the start of the field
+     * @param end the end of the field
+     */
+    private void addField(int start, int end)
+    {
+        if (_fieldCount == _starts.length)
+        {
+            int size = _fieldCount * 2;
+            
+            int[] starts = new int[size];
+            int[] ends = new int[size];
+            boolean[] quoted = new boolean[size];
+            
+            System.arraycopy(_starts, 0, starts, 0, _fieldCount);
+            System.arraycopy(_ends, 0, ends, 0, _fieldCount);
+            System.arraycopy(_quoted, 0, quoted, 0, _fieldCount);
+            
+            _starts = starts;
+            _ends = ends;
+            _quoted = quoted;
+        }
+        
+        boolean quoted = false;
+        
+        if (_quote >= 0 && end - start >= 2 && _chars[start] == _quote
+                && _chars[end - 1] == _quote)
+        {
+            start++;
+            end--;
+            
+            quoted = true;
+        }
+        
+        _starts[_fieldCount] = start;
+        _ends[_fieldCount] = end;
+        _quoted[_fieldCount] = quoted;
+        
+        _fieldCount++;
+    }
+    
+    /**
+     * Appends char to the current record.
+     * 
+     * @param c the char
+     */
+    private void append(char c)
+    {
+        if (_length == _chars.length)
+        {
+            char[] chars = new char[_length * 2];
+            
+            System.arraycopy(_chars, 0, chars, 0, _length);
+            
+            _chars = chars;
+        }
+        
+        _chars[_length++] = c;
+    }
+    
+    /**
+     * Checks if current field ends with delimiter.
+     * 
+     * @param fieldStart the start of the current field
+     * @return true, if field ends with delimiter
+     */
+    private boolean endsWithDelimiter(int fieldStart)
+    {
+        int len = _delimiter.length;
+        
+        if (_length - fieldStart < len)
+            return false;
+        
+        for (int i = 0, pos = _length - len; i < len; i++, pos++)
+            if (_chars[pos] != _delimiter[i])
+                return false;
+        
+        return true;
+    }
+    
+    /**
+     * Reads next portion of the text into the read buffer.
+     * 
+     * @return false if end of the text has been reached
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private boolean fill()
+        throws IOException
+    {
+        int read;
+        
+        do
+        {
+            read = _reader.read(_buffer, 0, _buffer.length);
+        }
+        while (read == 0);
+        
+        if (read < 0)
+        {
+            _pos = 0;
+            _limit = 0;
+            
+            return false;
+        }
+        
+        _pos = 0;
+        _limit = read;
+        
+        return true;
+    }
+    
+    /**
+     * Gets the number of fields in the current record.
+     * 
+     * @return the number of fields
+     */
+    public int getFieldCount()
+    {
+        return _fieldCount;
+    }
+    
+    /**
+     * Gets the value of the field as a string.
+     * 
+     * @param field the index of the field
+     * @return the string
+     */
+    public String getString(int field)
+    {
+        return new String(_chars, _starts[field], _ends[field]
+                - _starts[field]);
+    }
+    
+    /**
+     * Gets the value of the field converted to the given type. Integer values
+     * are parsed directly from the buffer, other values are converted using
+     * {@link SqlUtils#storageValue2Value(int, Object, Map)}.
+     * 
+     * @param field the index of the field
+     * @param sqlType the sql type {@link java.sql.Types}
+     * @param params the parameters
+     * @return the value or null if field is empty
+     */
+    public Object getValue(int field, int sqlType, Map<String, String> params)
+    {
+        int start = _starts[field];
+        int end = _ends[field];
+        
+        if (start == end)
+            return null;
+        
+        switch (sqlType)
+        {
+            case Types.BIT:
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                if (isInteger(start, end, 9))
+                    return Integer.valueOf((int)parseLong(start, end));
+                
+                break;
+            case Types.BIGINT:
+                if (isInteger(start, end, 18))
+                    return Long.valueOf(parseLong(start, end));
+                
+                break;
+            case Types.CHAR:
+            case Types.LONGVARCHAR:
+            case SqlUtils.NCHAR:
+            case SqlUtils.NVARCHAR:
+            case SqlUtils.LONGNVARCHAR:
+            case Types.VARCHAR:
+                return getString(field);
+        }
+        
+        return SqlUtils.storageValue2Value(sqlType, getString(field), params);
+    }
+    
+    /**
+     * Checks if field is empty.
+     * 
+     * @param field the index of the field
+     * @return true, if field is empty
+     */
+    public boolean isEmpty(int field)
+    {
+        return _starts[field] == _ends[field];
+    }
+    
+    /**
+     * Checks if field is an optional sign followed by not more than 9 digits,
+     * so {@link #getValue(int, int, Map)} returns <code>Integer</code> for
+     * Types.INTEGER without conversion.
+     * 
+     * @param field the index of the field
+     * @return true, if field is an integer number
+     */
+    public boolean isInteger(int field)
+    {
+        int start = _starts[field];
+        int end = _ends[field];
+        
+        return start < end && isInteger(start, end, 9);
+    }
+    
+    /**
+     * Checks if chars are optional sign followed by not more than
+     * <code>maxDigits</code> digits.
+     * 
+     * @param start the start
+     * @param end the end
+     * @param maxDigits the max number of digits
+     * @return true, if chars represent integer number
+     */
+    private boolean isInteger(int start, int end, int maxDigits)
+    {
+        if (_chars[start] == '-' || _chars[start] == '+')
+            start++;
+        
+        if (start == end || end - start > maxDigits)
+            return false;
+        
+        for (int i = start; i < end; i++)
+            if (_chars[i] < '0' || _chars[i] > '9')
+                return false;
+        
+        return true;
+    }
+    
+    /**
+     * Checks if field was enclosed in char separators.
+     * 
+     * @param field the index of the field
+     * @return true, if field is quoted
+     */
+    public boolean isQuoted(int field)
+    {
+        return _quoted[field];
+    }
+    
+    /**
+     * Reads next record.
+     * 
+     * @return false if there are no more records
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public boolean next()
+        throws IOException
+    {
+        _length = 0;
+        _fieldCount = 0;
+        
+        if (_lengthArray != null)
+            return nextFixedLength();
+        
+        char last = _delimiter[_delimiter.length - 1];
+        int state = FIELD_START;
+        int fieldStart = 0;
+        boolean hasData = false;
+        
+        while (true)
+        {
+            if (_pos >= _limit && !fill())
+            {
+                if (!hasData)
+                    return false;
+                
+                if (state == QUOTE_IN_QUOTED)
+                    append((char)_quote);
+                
+                addField(fieldStart, _length);
+                
+                return true;
+            }
+            
+            char c = _buffer[_pos++];
+            
+            if (_skipLf)
+            {
+                _skipLf = false;
+                
+                if (c == '\n')
+                    continue;
+            }
+            
+            hasData = true;
+            
+            switch (state)
+            {
+                case QUOTED:
+                    if (c == _quote)
+                        state = QUOTE_IN_QUOTED;
+                    else
+                        append(c);
+                    
+                    continue;
+                case QUOTE_IN_QUOTED:
+                    append((char)_quote);
+                    
+                    if (c == _quote)
+                    {
+                        state = QUOTED;
+                        
+                        continue;
+                    }
+                    
+                    state = UNQUOTED;
+                    
+                    break;
+                case FIELD_START:
+                    if (c == _quote)
+                    {
+                        append(c);
+                        
+                        state = QUOTED;
+                        
+                        continue;
+                    }
+                    
+                    state = UNQUOTED;
+                    
+                    break;
+            }
+            
+            if (c == '\n' || c == '\r')
+            {
+                _skipLf = c == '\r';
+                
+                addField(fieldStart, _length);
+                
+                return true;
+            }
+            
+            append(c);
+            
+            if (c == last && endsWithDelimiter(fieldStart))
+            {
+                _length -= _delimiter.length;
+                
+                addField(fieldStart, _length);
+                
+                fieldStart = _length;
+                state = FIELD_START;
+            }
+        }
+    }
+    
+    /**
+     * Reads next line of the fixed-length text and splits it on fields.
+     * 
+     * @return false if there are no more records
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private boolean nextFixedLength()
+        throws IOException
+    {
+        boolean hasData = false;
+        
+        while (true)
+        {
+            if (_pos >= _limit && !fill())
+            {
+                if (!hasData)
+                    return false;
+                
+                break;
+            }
+            
+            char c = _buffer[_pos++];
+            
+            if (_skipLf)
+            {
+                _skipLf = false;
+                
+                if (c == '\n')
+                    continue;
+            }
+            
+            hasData = true;
+            
+            if (c == '\n' || c == '\r')
+            {
+                _skipLf = c == '\r';
+                
+                break;
+            }
+            
+            append(c);
+        }
+        
+        int pos = 0;
+        
+        for (int i = 0; i < _lengthArray.length; i++)
+        {
+            int start = Math.min(pos, _length);
+            int end = Math.min(pos + _lengthArray[i], _length);
+            
+            pos += _lengthArray[i];
+            
+            while (start < end && _chars[start] <= ' ')
+                start++;
+            
+            while (end > start && _chars[end - 1] <= ' ')
+                end--;
+            
+            addField(start, end);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Parses integer number. Chars must be validated using
+     * {@link #isInteger(int, int, int)}.
+     * 
+     * @param start the start
+     * @param end the end
+     * @return the number
+     */
+    private long parseLong(int start, int end)
+    {
+        boolean negative = _chars[start] == '-';
+        
+        if (negative || _chars[start] == '+')
+            start++;
+        
+        long value = 0;
+        
+        for (int i = start; i < end; i++)
+            value = value * 10 + (_chars[i] - '0');
+        
+        return negative ? -value : value;
+    }
+}
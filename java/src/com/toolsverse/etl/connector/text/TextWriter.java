@@ -0,0 +1,401 @@
+/*
+ * TextWriter.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.connector.text;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * The writer used to write delimited and fixed-length text. Text is collected
+ * in the reusable char buffer, encoded in large blocks and written to the
+ * channel, so there are no intermediate strings for each record and no
+ * synchronization for each write. Values are written using
+ * {@link #writeValue(String)} or {@link #writeValue(String, int)} which remove
+ * line separators from the value while copying it into the buffer.
+ * 
+ * <p>
+ * Writer can also wrap another <code>Writer</code>. In this case buffered
+ * chars are written to the wrapped writer.
+ * 
+ * @see com.toolsverse.etl.connector.text.TextConnector
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class TextWriter extends Writer
+{
+    /** The size of the char buffer. */
+    public static final int BUFFER_SIZE = 128 * 1024;
+    
+    /** The channel. */
+    private final WritableByteChannel _channel;
+    
+    /** The output stream. Null if text is not written to the stream. */
+    private final OutputStream _output;
+    
+    /** The wrapped writer. Null if text is written to the channel. */
+    private final Writer _writer;
+    
+    /** The encoder. */
+    private final CharsetEncoder _encoder;
+    
+    /** The chars. */
+    private final char[] _chars;
+    
+    /** The number of buffered chars. */
+    private int _length;
+    
+    /** The bytes. */
+    private final ByteBuffer _bytes;
+    
+    /** If true writer is closed. */
+    private boolean _closed;
+    
+    /**
+     * Instantiates a new TextWriter which writes text to the file.
+     * 
+     * @param file the file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public TextWriter(File file)
+        throws IOException
+    {
+        this(file, false);
+    }
+    
+    /**
+     * Instantiates a new TextWriter which writes text to the file.
+     * 
+     * @param file the file
+     * @param append if true text is added to the end of the file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public TextWriter(File file, boolean append)
+        throws IOException
+    {
+        this(new FileOutputStream(file, append).getChannel(), null, null);
+    }
+    
+    /**
+     * Instantiates a new TextWriter which writes text to the output stream.
+     * Output stream is closed when writer is closed.
+     * 
+     * @param output the output stream
+     */
+    public TextWriter(OutputStream output)
+    {
+        this(Channels.newChannel(output), output, null);
+    }
+    
+    /**
+     * Instantiates a new TextWriter which writes text to another writer.
+     * Wrapped writer is closed when this writer is closed.
+     * 
+     * @param writer the writer
+     */
+    public TextWriter(Writer writer)
+    {
+        this(null, null, writer);
+    }
+    
+    /**
+     * Instantiates a new TextWriter.
+     * 
+     * @param channel the channel
+     * @param output the output stream
+     * @param writer the writer
+     */
+    private TextWriter(WritableByteChannel channel, OutputStream output,
+            Writer writer)
+    {
+        _channel = channel;
+        _output = output;
+        _writer = writer;
+        
+        _chars = new char[BUFFER_SIZE];
+        _length = 0;
+        _closed = false;
+        
+        if (channel != null)
+        {
+            _encoder = Charset.defaultCharset().newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            
+            _bytes = ByteBuffer.allocate((int)(BUFFER_SIZE * _encoder
+                    .maxBytesPerChar()));
+        }
+        else
+        {
+            _encoder = null;
+            _bytes = null;
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.io.Writer#close()
+     */
+    @Override
+    public void close()
+        throws IOException
+    {
+        if (_closed)
+            return;
+        
+        _closed = true;
+        
+        try
+        {
+            flushBuffer(true);
+        }
+        finally
+        {
+            if (_writer != null)
+                _writer.close();
+            else
+                _channel.close();
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.io.Writer#flush()
+     */
+    @Override
+    public void flush()
+        throws IOException
+    {
+        flushBuffer(false);
+        
+        if (_writer != null)
+            _writer.flush();
+        else if (_output != null)
+            _output.flush();
+    }
+    
+    /**
+     * Writes buffered chars.
+     * 
+     * @param endOfInput true if there will be no more chars
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void flushBuffer(boolean endOfInput)
+        throws IOException
+    {
+        if (_writer != null)
+        {
+            _writer.write(_chars, 0, _length);
+            
+            _length = 0;
+            
+            return;
+        }
+        
+        CharBuffer in = CharBuffer.wrap(_chars, 0, _length);
+        
+        while (true)
+        {
+            CoderResult result = _encoder.encode(in, _bytes, endOfInput);
+            
+            writeBytes();
+            
+            if (result.isUnderflow())
+                break;
+            
+            if (result.isError())
+                result.throwException();
+        }
+        
+        if (endOfInput)
+        {
+            while (_encoder.flush(_bytes).isOverflow())
+                writeBytes();
+            
+            writeBytes();
+        }
+        
+        // not encoded chars, such as the first half of the surrogate pair
+        _length = in.remaining();
+        
+        if (_length > 0)
+            System.arraycopy(_chars, in.position(), _chars, 0, _length);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.io.Writer#write(char[], int, int)
+     */
+    @Override
+    public void write(char[] cbuf, int off, int len)
+        throws IOException
+    {
+        while (len > 0)
+        {
+            if (_length == _chars.length)
+                flushBuffer(false);
+            
+            int n = Math.min(len, _chars.length - _length);
+            
+            System.arraycopy(cbuf, off, _chars, _length, n);
+            
+            _length += n;
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.io.Writer#write(int)
+     */
+    @Override
+    public void write(int c)
+        throws IOException
+    {
+        if (_length == _chars.length)
+            flushBuffer(false);
+        
+        _chars[_length++] = (char)c;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.io.Writer#write(java.lang.String)
+     */
+    @Override
+    public void write(String str)
+        throws IOException
+    {
+        write(str, 0, str.length());
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.io.Writer#write(java.lang.String, int, int)
+     */
+    @Override
+    public void write(String str, int off, int len)
+        throws IOException
+    {
+        while (len > 0)
+        {
+            if (_length == _chars.length)
+                flushBuffer(false);
+            
+            int n = Math.min(len, _chars.length - _length);
+            
+            str.getChars(off, off + n, _chars, _length);
+            
+            _length += n;
+            off += n;
+            len -= n;
+        }
+    }
+    
+    /**
+     * Writes encoded bytes to the channel.
+     * 
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void writeBytes()
+        throws IOException
+    {
+        _bytes.flip();
+        
+        while (_bytes.hasRemaining())
+            _channel.write(_bytes);
+        
+        _bytes.clear();
+    }
+    
+    /**
+     * Writes the value. Removes line separators from the value.
+     * 
+     * @param value the value. Can be null
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void writeValue(String value)
+        throws IOException
+    {
+        int len = value != null ? value.length() : 0;
+        int off = 0;
+        
+        while (off < len)
+        {
+            if (_length == _chars.length)
+                flushBuffer(false);
+            
+            int n = Math.min(len - off, _chars.length - _length);
+            
+            value.getChars(off, off + n, _chars, _length);
+            
+            int end = _length + n;
+            
+            for (int i = _length; i < end; i++)
+            {
+                char c = _chars[i];
+                
+                if (c != '\r' && c != '\n')
+                    _chars[_length++] = c;
+            }
+            
+            off += n;
+        }
+    }
+    
+    /**
+     * Writes the value of the field in the fixed-length text. Removes line
+     * separators from the value. Value is truncated if it is longer than
+     * <code>length</code> or padded by spaces if it is shorter.
+     * 
+     * @param value the value. Can be null
+     * @param length the length of the field
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void writeValue(String value, int length)
+        throws IOException
+    {
+        int len = value != null ? value.length() : 0;
+        int written = 0;
+        
+        for (int i = 0; i < len && written < length; i++)
+        {
+            char c = value.charAt(i);
+            
+            if (c != '\r' && c != '\n')
+            {
+                write(c);
+                
+                written++;
+            }
+        }
+        
+        for (; written < length; written++)
+            write(' ');
+    }
+}
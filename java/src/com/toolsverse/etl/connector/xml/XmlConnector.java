@@ -7,6 +7,7 @@
 
 package com.toolsverse.etl.connector.xml;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -16,10 +17,15 @@ import java.io.OutputStream;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.ErrorListener;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
@@ -30,7 +36,6 @@ import org.xml.sax.helpers.DefaultHandler;
 
 import com.toolsverse.config.SystemConfig;
 import com.toolsverse.etl.common.DataSet;
-import com.toolsverse.etl.common.DataSetData;
 import com.toolsverse.etl.common.DataSetRecord;
 import com.toolsverse.etl.common.FieldDef;
 import com.toolsverse.etl.connector.BaseDataSetConnector;
@@ -48,10 +53,15 @@ import com.toolsverse.util.FilenameUtils;
 import com.toolsverse.util.TypedKeyValue;
 import com.toolsverse.util.Utils;
 import com.toolsverse.util.XmlUtils;
+import com.toolsverse.util.XslCache;
 import com.toolsverse.util.log.Logger;
 
 /**
  * Reads and writes xml files. Supports xsl transformations and data streaming.
+ * By default xml is written using <code>XMLStreamWriter</code> so each record
+ * goes directly to the file or output stream and memory usage does not depend
+ * on the number of records. If "streaming" flag is not set the DOM model of the
+ * whole document is created first.
  * 
  * @author Maksym Sherbinin
  * @version 2.0
@@ -240,7 +250,7 @@ public class XmlConnector extends BaseDataSetConnector implements
                 {
                     if (added && _params.getAddRecordCallback() != null)
                         _params.getAddRecordCallback().onAddRecord(_dataSet,
-                                _driver, _record, _index - 1);
+                                _driver, _dataSet.getLastRecord(), _index - 1);
                 }
                 catch (Exception ex)
                 {
@@ -324,7 +334,7 @@ public class XmlConnector extends BaseDataSetConnector implements
                 
                 // data
                 if (_dataSet.getData() == null)
-                    _dataSet.setData(new DataSetData());
+                    _dataSet.setData(_dataSet.createData());
             }
             // start of the row
             else if (DataSet.ROW.equalsIgnoreCase(nodeName)
@@ -352,6 +362,12 @@ public class XmlConnector extends BaseDataSetConnector implements
         }
     }
     
+    /** The encoding of the xml written by the xml stream writer. */
+    private static final String ENCODING = "UTF-8";
+    
+    /** The indent used by the xml stream writer. */
+    private static final String INDENT = "  ";
+    
     /*
      * (non-Javadoc)
      * 
@@ -364,6 +380,8 @@ public class XmlConnector extends BaseDataSetConnector implements
             Driver driver)
         throws Exception
     {
+        closeXmlWriter(params);
+        
         if (params.getOutputStream() != null && params.isCloseOutput())
             params.getOutputStream().close();
         
@@ -373,6 +391,40 @@ public class XmlConnector extends BaseDataSetConnector implements
         params.setCleanUpPersistOccurred(true);
     }
     
+    /**
+     * Closes the xml stream writer if it is open. Closes the output stream
+     * created by the connector or flushes the output stream passed by the
+     * caller.
+     *
+     * @param params the XmlConnectorParams
+     * @throws Exception in case of any error
+     */
+    private void closeXmlWriter(XmlConnectorParams params)
+        throws Exception
+    {
+        XMLStreamWriter writer = params.getXmlWriter();
+        OutputStream output = params.getXmlOutputStream();
+        
+        if (writer == null)
+            return;
+        
+        params.setXmlWriter(null);
+        params.setXmlOutputStream(null);
+        
+        try
+        {
+            writer.close();
+        }
+        finally
+        {
+            if (params.getOutputStream() != null
+                    && Utils.isNothing(params.getTempFileName()))
+                output.flush();
+            else
+                output.close();
+        }
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -414,6 +466,21 @@ public class XmlConnector extends BaseDataSetConnector implements
         return "XML";
     }
     
+    /**
+     * Gets the name of the file to write xml to.
+     *
+     * @param params the XmlConnectorParams
+     * @param dataSet the data set
+     * @return the file name
+     */
+    private String getPersistFileName(XmlConnectorParams params,
+            DataSet dataSet)
+    {
+        return SystemConfig.instance().getPathUsingAppFolders(
+                params.getFileName(dataSet.getOwnerName() != null ? dataSet
+                        .getOwnerName() : dataSet.getName(), ".xml", true));
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -461,8 +528,13 @@ public class XmlConnector extends BaseDataSetConnector implements
         if (record == null)
             return;
         
-        Node node = params.getXml().addFieldUnder(params.getCurrentNode(),
-                DataSet.ROW);
+        XMLStreamWriter writer = params.getXmlWriter();
+        
+        Node node = writer == null ? params.getXml().addFieldUnder(
+                params.getCurrentNode(), DataSet.ROW) : null;
+        
+        if (writer != null)
+            writeStartElement(writer, DataSet.ROW, 2);
         
         int colCount = dataSet.getFieldCount();
         
@@ -478,9 +550,22 @@ public class XmlConnector extends BaseDataSetConnector implements
             String value = dataSet.encode(field, fieldValue, driver,
                     params.getParams());
             
-            params.getXml().addFieldUnder(node, DataSet.VALUE, value);
+            if (writer != null)
+            {
+                writeStartElement(writer, DataSet.VALUE, 3);
+                
+                if (value != null)
+                    writer.writeCharacters(value);
+                
+                writer.writeEndElement();
+            }
+            else
+                params.getXml().addFieldUnder(node, DataSet.VALUE, value);
         }
         
+        if (writer != null)
+            writeEndElement(writer, 2);
+        
         if (row >= 0 && records >= 0 && !params.isSilent()
                 && params.getLogStep() > 0 && (row % params.getLogStep()) == 0)
             Logger.log(Logger.INFO, EtlLogger.class, dataSet.getName() + ": "
@@ -626,6 +711,7 @@ public class XmlConnector extends BaseDataSetConnector implements
         
         File file = null;
         String fileName = null;
+        String xslFileName = null;
         
         if (params.getInputStream() == null)
         {
@@ -635,60 +721,47 @@ public class XmlConnector extends BaseDataSetConnector implements
                                     .getOwnerName() : dataSet.getName(),
                             ".xml", true));
             
-            String xslFileName = SystemConfig
-                    .instance()
-                    .getPathUsingAppFolders(params.getXslFromFileName(fileName));
+            xslFileName = SystemConfig.instance().getPathUsingAppFolders(
+                    params.getXslFromFileName(fileName));
             
-            if (!Utils.isNothing(xslFileName))
-            {
-                String tempFileName = transform(fileName, null, xslFileName);
-                
-                if (!Utils.isNothing(tempFileName))
-                {
-                    params.setTempFileName(tempFileName);
-                    
-                    file = new File(tempFileName);
-                }
-            }
-            else
-                file = new File(fileName);
-        }
-        else
-        {
-            String xslFileName = SystemConfig.instance()
-                    .getPathUsingAppFolders(params.getXslFromFileName(null));
+            file = new File(fileName);
             
-            if (!Utils.isNothing(xslFileName))
-            {
-                String tempFileName = transform(params.getInputStream(), null,
-                        xslFileName);
-                
-                if (!Utils.isNothing(tempFileName))
-                {
-                    params.setTempFileName(tempFileName);
-                    
-                    params.getInputStream().close();
-                    
-                    params.setInputStream(new FileInputStream(tempFileName));
-                }
-            }
+            if (!Utils.isNothing(xslFileName) && !file.exists())
+                throw new Exception(
+                        ConnectorResource.TRANSFORMATION_ERROR_NO_SOURCE
+                                .getValue());
         }
+        else
+            xslFileName = SystemConfig.instance().getPathUsingAppFolders(
+                    params.getXslFromFileName(null));
         
         try
         {
             if (params.getInputStream() != null
                     || (file != null && file.exists()))
             {
-                SAXParserFactory factory = SAXParserFactory.newInstance();
-                SAXParser saxParser = factory.newSAXParser();
+                XmlDataSetHandler handler = new XmlDataSetHandler(params,
+                        dataSet, driver);
                 
-                if (params.getInputStream() == null)
-                    saxParser.parse(file, new XmlDataSetHandler(params,
-                            dataSet, driver));
+                if (!Utils.isNothing(xslFileName))
+                {
+                    // the output of the transformation goes directly to the
+                    // handler, there is no temporary file
+                    Source source = params.getInputStream() == null ? new StreamSource(
+                            file) : new StreamSource(params.getInputStream());
+                    
+                    transform(new SAXResult(handler), source, xslFileName);
+                }
                 else
-                    saxParser.parse(params.getInputStream(),
-                            new XmlDataSetHandler(params, dataSet, driver));
-                
+                {
+                    SAXParserFactory factory = SAXParserFactory.newInstance();
+                    SAXParser saxParser = factory.newSAXParser();
+                    
+                    if (params.getInputStream() == null)
+                        saxParser.parse(file, handler);
+                    else
+                        saxParser.parse(params.getInputStream(), handler);
+                }
             }
             else
                 dataSet.setData(null);
@@ -705,11 +778,6 @@ public class XmlConnector extends BaseDataSetConnector implements
             
             if (params.getAfterCallback() != null)
                 params.getAfterCallback().onAfter(dataSet, driver);
-            
-            if (!Utils.isNothing(params.getTempFileName()))
-            {
-                FileUtils.deleteFile(params.getTempFileName());
-            }
         }
         
         ConnectorResult connectorResult = new ConnectorResult();
@@ -735,17 +803,57 @@ public class XmlConnector extends BaseDataSetConnector implements
     {
         String fileName = null;
         
-        if (params.getXml() != null)
+        if (params.getXmlWriter() != null)
+        {
+            XMLStreamWriter writer = params.getXmlWriter();
+            
+            // data
+            writeEndElement(writer, 1);
+            // dataset
+            writeEndElement(writer, 0);
+            writer.writeCharacters("\n");
+            writer.writeEndDocument();
+            
+            closeXmlWriter(params);
+            
+            String tempFileName = params.getTempFileName();
+            
+            if (params.getOutputStream() == null)
+            {
+                fileName = getPersistFileName(params, dataSet);
+                
+                if (!Utils.isNothing(tempFileName))
+                    transform(
+                            tempFileName,
+                            fileName,
+                            SystemConfig.instance().getPathUsingAppFolders(
+                                    params.getXslToFileName(fileName)));
+                
+                params.setRealFileName(fileName);
+            }
+            else if (!Utils.isNothing(tempFileName))
+            {
+                InputStream inputStream = new FileInputStream(tempFileName);
+                
+                try
+                {
+                    transform(inputStream, params.getOutputStream(),
+                            SystemConfig.instance().getPathUsingAppFolders(
+                                    params.getXslToFileName(null)));
+                }
+                finally
+                {
+                    inputStream.close();
+                }
+            }
+        }
+        else if (params.getXml() != null)
         {
             
             if (params.getOutputStream() == null)
             {
                 
-                fileName = SystemConfig.instance().getPathUsingAppFolders(
-                        params.getFileName(
-                                dataSet.getOwnerName() != null ? dataSet
-                                        .getOwnerName() : dataSet.getName(),
-                                ".xml", true));
+                fileName = getPersistFileName(params, dataSet);
                 
                 if (!Utils.isNothing(params.getXslToFileName(fileName)))
                 {
@@ -808,13 +916,58 @@ public class XmlConnector extends BaseDataSetConnector implements
             Driver driver)
         throws Exception
     {
-        XmlUtils xml = new XmlUtils(DataSet.DATA_SET, null);
-        Node rootNode = writeMetaData(dataSet, xml);
-        
-        Node currentNode = xml.addFieldUnder(rootNode, DataSet.DATA);
-        
-        params.setXml(xml);
-        params.setCurrentNode(currentNode);
+        if (params.isStreaming())
+        {
+            params.setTempFileName(null);
+            
+            String xslTo;
+            String outputFileName;
+            
+            if (params.getOutputStream() == null)
+            {
+                outputFileName = getPersistFileName(params, dataSet);
+                
+                xslTo = params.getXslToFileName(outputFileName);
+            }
+            else
+            {
+                outputFileName = null;
+                
+                xslTo = params.getXslToFileName(null);
+            }
+            
+            if (!Utils.isNothing(xslTo))
+            {
+                // xml is transformed in postPersist
+                outputFileName = FileUtils.getUnixFolderName(FilenameUtils
+                        .getFullPath(outputFileName != null ? outputFileName
+                                : SystemConfig.instance()
+                                        .getPathUsingAppFolders(xslTo)))
+                        + Utils.getUUIDName() + ".xml";
+                
+                params.setTempFileName(outputFileName);
+            }
+            
+            OutputStream output = new BufferedOutputStream(
+                    outputFileName != null ? new FileOutputStream(
+                            outputFileName) : params.getOutputStream());
+            
+            params.setXmlOutputStream(output);
+            params.setXmlWriter(XMLOutputFactory.newInstance()
+                    .createXMLStreamWriter(output, ENCODING));
+            
+            writeMetaData(dataSet, params.getXmlWriter());
+        }
+        else
+        {
+            XmlUtils xml = new XmlUtils(DataSet.DATA_SET, null);
+            Node rootNode = writeMetaData(dataSet, xml);
+            
+            Node currentNode = xml.addFieldUnder(rootNode, DataSet.DATA);
+            
+            params.setXml(xml);
+            params.setCurrentNode(currentNode);
+        }
         
         params.setPrePersistOccured(true);
     }
@@ -847,7 +1000,7 @@ public class XmlConnector extends BaseDataSetConnector implements
         
         try
         {
-            transform(ost, new StreamSource(xml), new StreamSource(xsltFile));
+            transform(ost, new StreamSource(xml), xsltFile);
         }
         finally
         {
@@ -858,6 +1011,30 @@ public class XmlConnector extends BaseDataSetConnector implements
         return outputFileName;
     }
     
+    /**
+     * Transforms given xmlSource which must be formatted as xml using the xsl
+     * style sheet. Style sheet is compiled once and cached.
+     *
+     * @param out the output stream
+     * @param xmlSource the xml
+     * @param xsltFile the xsl style sheet file
+     * @throws Exception in case of any error
+     */
+    public void transform(OutputStream out, Source xmlSource, File xsltFile)
+        throws Exception
+    {
+        try
+        {
+            XslCache.newTransformer(xsltFile).transform(xmlSource,
+                    new StreamResult(out));
+        }
+        finally
+        {
+            if (out != null)
+                out.close();
+        }
+    }
+    
     /**
      * Transforms given xmlSource which must be formatted as xml using the xsltSource.
      *
@@ -916,11 +1093,144 @@ public class XmlConnector extends BaseDataSetConnector implements
                     ConnectorResource.TRANSFORMATION_ERROR_NO_XSL.getValue());
         
         transform(new FileOutputStream(outputFileName), new StreamSource(
-                xmlFile), new StreamSource(xsltFile));
+                xmlFile), xsltFile);
         
         return outputFileName;
     }
     
+    /**
+     * Transforms given xmlSource which must be formatted as xml using the xsl
+     * style sheet and sends the output to the result, for example to the SAX
+     * handler.
+     *
+     * @param result the result
+     * @param xmlSource the xml
+     * @param xsltFileName the xslt file name
+     * @throws Exception in case of any error
+     */
+    private void transform(Result result, Source xmlSource,
+            String xsltFileName)
+        throws Exception
+    {
+        File xsltFile = new File(xsltFileName);
+        
+        if (!xsltFile.exists())
+            throw new Exception(
+                    ConnectorResource.TRANSFORMATION_ERROR_NO_XSL.getValue());
+        
+        Transformer trans = XslCache.newTransformer(xsltFile);
+        
+        // errors thrown by the handler, such as "max rows exceeded", are
+        // rethrown without being reported
+        trans.setErrorListener(new ErrorListener()
+        {
+            public void error(TransformerException ex)
+                throws TransformerException
+            {
+                throw ex;
+            }
+            
+            public void fatalError(TransformerException ex)
+                throws TransformerException
+            {
+                throw ex;
+            }
+            
+            public void warning(TransformerException ex)
+                throws TransformerException
+            {
+            }
+        });
+        
+        trans.transform(xmlSource, result);
+    }
+    
+    /**
+     * Writes the end tag using the xml stream writer. Starts new line and
+     * writes indent first.
+     *
+     * @param writer the xml stream writer
+     * @param level the level of the element
+     * @throws Exception in case of any error
+     */
+    private void writeEndElement(XMLStreamWriter writer, int level)
+        throws Exception
+    {
+        writeIndent(writer, level);
+        
+        writer.writeEndElement();
+    }
+    
+    /**
+     * Starts new line and writes indent using the xml stream writer.
+     *
+     * @param writer the xml stream writer
+     * @param level the level of the indent
+     * @throws Exception in case of any error
+     */
+    private void writeIndent(XMLStreamWriter writer, int level)
+        throws Exception
+    {
+        writer.writeCharacters("\n");
+        
+        for (int i = 0; i < level; i++)
+            writer.writeCharacters(INDENT);
+    }
+    
+    /**
+     * Writes the start of the document, name, meta data and the start of the
+     * data using the xml stream writer.
+     *
+     * @param dataSet the data set
+     * @param writer the xml stream writer
+     * @throws Exception in case of any error
+     */
+    private void writeMetaData(DataSet dataSet, XMLStreamWriter writer)
+        throws Exception
+    {
+        writer.writeStartDocument(ENCODING, "1.0");
+        writer.writeCharacters("\n");
+        writer.writeStartElement(DataSet.DATA_SET);
+        
+        writeStartElement(writer, DataSet.NAME, 1);
+        writer.writeCharacters(Utils.makeString(dataSet.getName()));
+        writer.writeEndElement();
+        
+        writeStartElement(writer, DataSet.META_DATA, 1);
+        
+        int fields = dataSet.getFieldCount();
+        
+        // metadata
+        for (int col = 0; col < fields; col++)
+        {
+            FieldDef fieldDef = dataSet.getFieldDef(col);
+            
+            if (!fieldDef.isVisible())
+                continue;
+            
+            writeIndent(writer, 2);
+            
+            writer.writeEmptyElement(DataSet.COL);
+            writer.writeAttribute(DataSet.TYPE_NAME, fieldDef.getName());
+            writer.writeAttribute(DataSet.TYPE_ATTR,
+                    String.valueOf(fieldDef.getSqlDataType()));
+            
+            writer.writeAttribute(DataSet.NATIVE_TYPE_ATTR, Utils
+                    .makeString(fieldDef.getNativeDataType()));
+            
+            writer.writeAttribute(DataSet.NULLABLE_ATTR,
+                    Boolean.toString(fieldDef.isNullable()));
+            
+            if (dataSet.isFieldEncoded(fieldDef))
+                writer.writeAttribute(DataSet.ENCODE_ATTR,
+                        Boolean.TRUE.toString());
+        }
+        
+        writeEndElement(writer, 1);
+        
+        writeStartElement(writer, DataSet.DATA, 1);
+    }
+    
     /**
      * Writes meta data.
      *
@@ -1027,4 +1337,22 @@ public class XmlConnector extends BaseDataSetConnector implements
         
     }
     
+    /**
+     * Starts new line, writes indent and the start tag using the xml stream
+     * writer.
+     *
+     * @param writer the xml stream writer
+     * @param name the name of the element
+     * @param level the level of the element
+     * @throws Exception in case of any error
+     */
+    private void writeStartElement(XMLStreamWriter writer, String name,
+            int level)
+        throws Exception
+    {
+        writeIndent(writer, level);
+        
+        writer.writeStartElement(name);
+    }
+    
 }
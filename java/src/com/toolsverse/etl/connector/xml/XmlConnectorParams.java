@@ -7,9 +7,12 @@
 
 package com.toolsverse.etl.connector.xml;
 
+import java.io.OutputStream;
 import java.util.Map;
 import java.util.Properties;
 
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Node;
 
 import com.toolsverse.cache.CacheProvider;
@@ -47,6 +50,9 @@ public class XmlConnectorParams extends FileConnectorParams
     /** The XSL "TO" FILE NAME property. */
     public static final String XSL_TO_FILE_NAME_PROP = "xslto";
     
+    /** The STREAMING property. */
+    public static final String STREAMING_PROP = "streaming";
+    
     /** The DOM xml model. */
     private XmlUtils _xml;
     
@@ -65,6 +71,15 @@ public class XmlConnectorParams extends FileConnectorParams
     /** The temporary file name used during xsl transformation. */
     private String _tempFileName;
     
+    /** The "streaming" flag. */
+    private boolean _streaming;
+    
+    /** The xml stream writer. */
+    private XMLStreamWriter _xmlWriter;
+    
+    /** The output stream used by xml stream writer. */
+    private OutputStream _xmlOutputStream;
+    
     /**
      * Instantiates a new XmlConnectorParams.
      */
@@ -91,6 +106,9 @@ public class XmlConnectorParams extends FileConnectorParams
         _xslToFileName = null;
         _currentNode = null;
         _tempFileName = null;
+        _streaming = true;
+        _xmlWriter = null;
+        _xmlOutputStream = null;
         
     }
     
@@ -110,12 +128,15 @@ public class XmlConnectorParams extends FileConnectorParams
         params.setXslFileName(_xslFileName);
         params.setXslFromFileName(_xslFromFileName);
         params.setXslToFileName(_xslToFileName);
+        params.setStreaming(_streaming);
         
         params.setDateFormat(getDateFormat());
         params.setDateTimeFormat(getDateTimeFormat());
         params.setTimeFormat(getTimeFormat());
         params.setUseSelectedDataSet(useSelectedDataSet());
         params.setSplitBy(getSplitBy());
+        params.setMaxOpenFiles(getMaxOpenFiles());
+        params.setSplitThreads(getSplitThreads());
         
         return params;
     }
@@ -150,6 +171,26 @@ public class XmlConnectorParams extends FileConnectorParams
         return _xml;
     }
     
+    /**
+     * Gets the output stream used by xml stream writer.
+     *
+     * @return the output stream
+     */
+    public OutputStream getXmlOutputStream()
+    {
+        return _xmlOutputStream;
+    }
+    
+    /**
+     * Gets the xml stream writer.
+     *
+     * @return the xml stream writer
+     */
+    public XMLStreamWriter getXmlWriter()
+    {
+        return _xmlWriter;
+    }
+    
     /**
      * Gets the xsl file name.
      *
@@ -222,6 +263,8 @@ public class XmlConnectorParams extends FileConnectorParams
                 props.getProperty(XSL_FROM_FILE_NAME_PROP)));
         setXslToFileName(SystemConfig.instance().getPathUsingAppFolders(
                 props.getProperty(XSL_TO_FILE_NAME_PROP)));
+        
+        setStreaming(Utils.str2Boolean(props.getProperty(STREAMING_PROP), true));
     }
     
     /*
@@ -243,6 +286,8 @@ public class XmlConnectorParams extends FileConnectorParams
                 props.get(XSL_FROM_FILE_NAME_PROP)));
         setXslToFileName(SystemConfig.instance().getPathUsingAppFolders(
                 props.get(XSL_TO_FILE_NAME_PROP)));
+        
+        setStreaming(Utils.str2Boolean(props.get(STREAMING_PROP), true));
     }
     
     /*
@@ -275,10 +320,31 @@ public class XmlConnectorParams extends FileConnectorParams
         setXslToFileName(SystemConfig.instance().getPathUsingAppFolders(
                 storage.getString(PREFIX + XSL_TO_FILE_NAME_PROP)));
         
+        setStreaming(Utils.str2Boolean(
+                storage.getString(PREFIX + STREAMING_PROP), true));
+        
         setUseSelectedDataSet(Utils.str2Boolean(
                 storage.getString(PREFIX + USE_SELECTED_PROP), false));
         
         setSplitBy(storage.getString(PREFIX + SPLIT_BY_PROP));
+        setMaxOpenFiles(Utils.str2Int(
+                storage.getString(PREFIX + MAX_OPEN_FILES_PROP),
+                DEFAULT_MAX_OPEN_FILES));
+        setSplitThreads(Utils.str2Int(
+                storage.getString(PREFIX + SPLIT_THREADS_PROP),
+                DEFAULT_SPLIT_THREADS));
+    }
+    
+    /**
+     * Checks if "streaming" flag is set. If it is set xml is written directly
+     * to the file or output stream record by record, otherwise the whole
+     * document is created as DOM model first.
+     *
+     * @return true, if "streaming" flag is set
+     */
+    public boolean isStreaming()
+    {
+        return _streaming;
     }
     
     /**
@@ -291,6 +357,16 @@ public class XmlConnectorParams extends FileConnectorParams
         _currentNode = value;
     }
     
+    /**
+     * Sets the "streaming" flag.
+     *
+     * @param value the new value for the "streaming" flag
+     */
+    public void setStreaming(boolean value)
+    {
+        _streaming = value;
+    }
+    
     /**
      * Sets the temporary file name.
      *
@@ -311,6 +387,26 @@ public class XmlConnectorParams extends FileConnectorParams
         _xml = value;
     }
     
+    /**
+     * Sets the output stream used by xml stream writer.
+     *
+     * @param value the new output stream
+     */
+    public void setXmlOutputStream(OutputStream value)
+    {
+        _xmlOutputStream = value;
+    }
+    
+    /**
+     * Sets the xml stream writer.
+     *
+     * @param value the new xml stream writer
+     */
+    public void setXmlWriter(XMLStreamWriter value)
+    {
+        _xmlWriter = value;
+    }
+    
     /**
      * Sets the xsl file name.
      *
@@ -28,11 +28,14 @@ import com.toolsverse.etl.common.MergeHandler;
 import com.toolsverse.etl.common.OnException;
 import com.toolsverse.etl.common.Variable;
 import com.toolsverse.etl.core.config.EtlConfig;
+import com.toolsverse.etl.core.engine.BatchLoader;
+import com.toolsverse.etl.core.engine.CheckpointBatchLoader;
 import com.toolsverse.etl.core.engine.CodeGen;
 import com.toolsverse.etl.core.engine.Destination;
 import com.toolsverse.etl.core.engine.EtlFactory;
 import com.toolsverse.etl.core.engine.EtlUnit;
 import com.toolsverse.etl.core.engine.LoadFunctionContext;
+import com.toolsverse.etl.core.engine.ParallelBatchLoader;
 import com.toolsverse.etl.core.engine.Scenario;
 import com.toolsverse.etl.core.engine.TaskExecutor;
 import com.toolsverse.etl.core.engine.TaskResult;
@@ -118,6 +121,18 @@ public class DefaultCodeGen implements CodeGen, MergeHandler
     /** The status. */
     private int _status;
     
+    /**
+     * The destinations to load using batches and the indexes of the assembled
+     * scripts they are executed before.
+     */
+    private final List<TypedKeyValue<Destination, Integer>> _batchDestinations;
+    
+    /**
+     * The "new script required" flag. Set when batch destination is added so
+     * the code generated after it goes to the next assembled script.
+     */
+    private boolean _newScriptRequired;
+    
     /**
      * Instantiates a new default code generator.
      */
@@ -140,6 +155,55 @@ public class DefaultCodeGen implements CodeGen, MergeHandler
         _unit = null;
         _assembledScripts = new ArrayList<TypedKeyValue<String, Integer>>();
         _status = CREATED_STATUS;
+        _batchDestinations = new ArrayList<TypedKeyValue<Destination, Integer>>();
+        _newScriptRequired = false;
+    }
+    
+    /**
+     * Adds the sql to the assembled scripts.
+     * 
+     * @param driver
+     *            the driver
+     * @param sql
+     *            the sql
+     */
+    private void addAssembledScript(Driver driver, String sql)
+    {
+        if (_newScriptRequired)
+        {
+            _assembledScripts.add(new TypedKeyValue<String, Integer>("", 0));
+            
+            _newScriptRequired = false;
+        }
+        
+        Utils.splitLines(_assembledScripts, sql, driver.getLinesLimit(), "\n");
+    }
+    
+    /**
+     * Adds the destination to load using batches. The batch is executed in the
+     * same order as the destination was added relatively to the generated
+     * code: before the assembled script which contains the code generated
+     * after the destination.
+     * 
+     * @param destination
+     *            the destination
+     */
+    private void addBatchDestination(Destination destination)
+    {
+        for (TypedKeyValue<Destination, Integer> batch : _batchDestinations)
+            if (batch.getKey() == destination)
+                return;
+        
+        int size = _assembledScripts.size();
+        
+        if (size > 0
+                && Utils.isNothing(_assembledScripts.get(size - 1).getKey()))
+            size--;
+        else if (size > 0)
+            _newScriptRequired = true;
+        
+        _batchDestinations.add(new TypedKeyValue<Destination, Integer>(
+                destination, size));
     }
     
     /**
@@ -444,6 +508,8 @@ public class DefaultCodeGen implements CodeGen, MergeHandler
             
             for (int i = 0; i < _assembledScripts.size(); i++)
             {
+                executeBatch(config, scenario, driver, conn, silent, i, i);
+                
                 String sName = getScriptName(scenario.getScriptName()) + "_"
                         + String.valueOf(config.getNewAtomicLong());
                 
@@ -517,6 +583,9 @@ public class DefaultCodeGen implements CodeGen, MergeHandler
                             scenario, conn, silent);
             }
             
+            executeBatch(config, scenario, driver, conn, silent,
+                    _assembledScripts.size(), Integer.MAX_VALUE);
+            
             if (scenario.isCommitEachBlock())
                 conn.commit();
         }
@@ -537,6 +606,107 @@ public class DefaultCodeGen implements CodeGen, MergeHandler
         }
     }
     
+    /**
+     * Loads destinations which support batch mode using parameterized prepared
+     * statements and jdbc batches. In the "stream" mode batch loader is kept
+     * by the destination between records and executed by the loader when
+     * extract is finished. Only the destinations added before the assembled
+     * scripts with indexes in the given range are loaded.
+     * 
+     * @param config
+     *            the etl config
+     * @param scenario
+     *            the scenario
+     * @param driver
+     *            the driver
+     * @param conn
+     *            the connection
+     * @param silent
+     *            the silent. If true all logging except for errors is disabled.
+     * @param from
+     *            the index of the first assembled script, inclusive
+     * @param to
+     *            the index of the last assembled script, inclusive
+     * @throws Exception
+     *             in case of any error
+     */
+    private void executeBatch(EtlConfig config, Scenario scenario,
+            Driver driver, Connection conn, boolean silent, int from, int to)
+        throws Exception
+    {
+        for (TypedKeyValue<Destination, Integer> batch : _batchDestinations)
+        {
+            if (batch.getValue() < from || batch.getValue() > to)
+                continue;
+            
+            Destination destination = batch.getKey();
+            
+            DataSet dataSet = destination.getDataSet();
+            
+            int rCount = dataSet != null ? dataSet.getRecordCount() : 0;
+            
+            if (rCount == 0)
+                continue;
+            
+            BatchLoader batchLoader = destination.getBatchLoader();
+            
+            boolean isStream = batchLoader != null || destination.isStream();
+            
+            if (batchLoader == null)
+            {
+                if (destination.getCheckpoint() != null)
+                    batchLoader = new CheckpointBatchLoader(destination,
+                            driver, conn, destination.getCheckpoint());
+                else if (destination.getLoadConnections() != null
+                        && destination.getLoadConnections().size() > 1)
+                    batchLoader = new ParallelBatchLoader(destination, driver,
+                            destination.getLoadConnections());
+                else
+                    batchLoader = new BatchLoader(destination, driver, conn);
+                
+                if (isStream)
+                    destination.setBatchLoader(batchLoader);
+            }
+            
+            TaskExecutor taskExecutor = new TaskExecutor();
+            
+            try
+            {
+                for (int i = 0; i < rCount; i++)
+                {
+                    if (!silent && config.getLogStep() > 0
+                            && (i % config.getLogStep()) == 0)
+                        Logger.log(
+                                Logger.INFO,
+                                EtlLogger.class,
+                                EtlResource.DEST_LINE_MSG.getValue()
+                                        + destination.getName() + " "
+                                        + String.valueOf(i + 1) + " out of "
+                                        + rCount);
+                    
+                    TaskResult taskResult = taskExecutor.executeInlineTasks(
+                            config, destination, scenario, i);
+                    
+                    // the same as for the generated sql: record is skipped
+                    if (taskResult != null
+                            && (taskResult.getResult() == TaskResult.TaskResultCode.REJECT || taskResult
+                                    .getResult() == TaskResult.TaskResultCode.STOP))
+                        continue;
+                    
+                    batchLoader.addRecord(dataSet.getRecord(i));
+                }
+                
+                if (!isStream)
+                    batchLoader.flush();
+            }
+            finally
+            {
+                if (!isStream)
+                    batchLoader.close();
+            }
+        }
+    }
+    
     /**
      * Executes callable statement.
      * 
@@ -999,8 +1169,7 @@ public class DefaultCodeGen implements CodeGen, MergeHandler
                 + getAutoSql(config, destination, currentRow, context) + "\n"
                 + cursorEndSql + dropTableSql;
         
-        Utils.splitLines(_assembledScripts, sql.trim(), driver.getLinesLimit(),
-                "\n");
+        addAssembledScript(driver, sql.trim());
         
         return sql;
     }
@@ -1376,8 +1545,7 @@ public class DefaultCodeGen implements CodeGen, MergeHandler
         
         if (!destination.isProcOrFunc())
         {
-            Utils.splitLines(_assembledScripts, sql.trim(),
-                    driver.getLinesLimit(), "\n");
+            addAssembledScript(driver, sql.trim());
         }
         
         return sql;
@@ -2016,7 +2184,11 @@ public class DefaultCodeGen implements CodeGen, MergeHandler
         // auto sql
         else
         {
-            if (isFromCursor)
+            if (BatchLoader.isBatchSupported(destination))
+            {
+                addBatchDestination(destination);
+            }
+            else if (isFromCursor)
                 getAutoSql(config, destination, null, isFromCursor, scenario, 0);
             else
                 for (int i = 0; i < rCount; i++)
@@ -2057,6 +2229,8 @@ public class DefaultCodeGen implements CodeGen, MergeHandler
         _scriptsToCleanUpBefore = null;
         _unit = null;
         _assembledScripts.clear();
+        _batchDestinations.clear();
+        _newScriptRequired = false;
         _status = CREATED_STATUS;
     }
     
@@ -162,6 +162,12 @@ public class EtlConfig implements CacheProvider<String, Object>, ObjectStorage,
     /** The CACHE. */
     public static final String CACHE = "cache";
     
+    /** The SPILL_ROWS. */
+    public static final String SPILL_ROWS = "spill.rows";
+    
+    /** The SPILL_DIR. */
+    public static final String SPILL_DIR = "spill.dir";
+    
     /** The CONNECTIONS. */
     public static final String CONNECTIONS = "connections";
     
@@ -322,6 +328,9 @@ public class EtlConfig implements CacheProvider<String, Object>, ObjectStorage,
     /** The DEFAULT_LOG_STEP. */
     public static final int DEFAULT_LOG_STEP = 0;
     
+    /** The DEFAULT_SPILL_ROWS. 0 means that data sets are never spilled. */
+    public static final int DEFAULT_SPILL_ROWS = 0;
+    
     /** The DEFAULT DRIVER CLASS NAME. */
     public static final String DEFAULT_DRIVER = "com.toolsverse.etl.driver.GenericJdbcDriver";
     
@@ -427,6 +436,12 @@ public class EtlConfig implements CacheProvider<String, Object>, ObjectStorage,
     /** The automic long. Used to get unique ident names. */
     private AtomicLong _atomicLong;
     
+    /** The maximum number of records of the data set in memory. */
+    private int _spillRows;
+    
+    /** The folder for the spilled records. */
+    private String _spillDir;
+    
     /**
      * Instantiates a new etl config.
      */
@@ -441,6 +456,8 @@ public class EtlConfig implements CacheProvider<String, Object>, ObjectStorage,
         _connectionFactoryClassName = DEFAULT_CONNECTION_FACTORY_CLASS;
         _cacheClassName = DEFAULT_CACHE_CLASS;
         _logStep = DEFAULT_LOG_STEP;
+        _spillRows = DEFAULT_SPILL_ROWS;
+        _spillDir = null;
         _aliases = null;
         _execute = null;
         _parallelScenarious = 0;
@@ -849,6 +866,39 @@ public class EtlConfig implements CacheProvider<String, Object>, ObjectStorage,
         return _scenarioPath;
     }
     
+    /**
+     * Gets the folder for the records of the data sets spilled to disk. If
+     * <code>null</code> the default temporary folder is used.
+     * 
+     * @return the folder for the spilled records
+     */
+    public String getSpillDir()
+    {
+        return _spillDir;
+    }
+    
+    /**
+     * Gets the maximum number of records of the extracted data set kept in
+     * memory. The rest of the records are spilled to disk. The default value
+     * is 0 which means data sets are never spilled.
+     * 
+     * <p>
+     * <b>Example</b> of the spill properties defined in the configuration
+     * file:</br> <blockquote>
+     * <dt>{@code <properties>}</dd> </br>
+     * <dd>{@code <spill.rows>1000000</spill.rows>}</dd> </br>
+     * <dd>{@code <spill.dir>/tmp/etl</spill.dir>}</dd> </br>
+     * <dt>{@code </properties>}</dt> </blockquote>
+     * 
+     * @return the maximum number of records in memory
+     * 
+     * @see com.toolsverse.etl.common.SpillableDataSetData
+     */
+    public int getSpillRows()
+    {
+        return _spillRows;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -1041,6 +1091,12 @@ public class EtlConfig implements CacheProvider<String, Object>, ObjectStorage,
                                 propsNode, CONNECTION_FACTORY);
                     else if (CACHE.equals(name))
                         _cacheClassName = xml.getNodeValue(propsNode, CACHE);
+                    else if (SPILL_ROWS.equals(name))
+                        setSpillRows(Utils.str2Int(
+                                xml.getNodeValue(propsNode, SPILL_ROWS),
+                                DEFAULT_SPILL_ROWS));
+                    else if (SPILL_DIR.equals(name))
+                        setSpillDir(xml.getNodeValue(propsNode, SPILL_DIR));
                     else
                         setValue(name, xml.getValueOf(name));
                 }
@@ -1519,6 +1575,29 @@ public class EtlConfig implements CacheProvider<String, Object>, ObjectStorage,
         _scenarioPath = value;
     }
     
+    /**
+     * Sets the folder for the records of the data sets spilled to disk.
+     * 
+     * @param value
+     *            the new folder for the spilled records
+     */
+    public void setSpillDir(String value)
+    {
+        _spillDir = value;
+    }
+    
+    /**
+     * Sets the maximum number of records of the extracted data set kept in
+     * memory. 0 means data sets are never spilled.
+     * 
+     * @param value
+     *            the new maximum number of records in memory
+     */
+    public void setSpillRows(int value)
+    {
+        _spillRows = value;
+    }
+    
     /*
      * (non-Javadoc)
      * 
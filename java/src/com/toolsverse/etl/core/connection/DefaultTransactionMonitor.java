@@ -7,7 +7,10 @@
 
 package com.toolsverse.etl.core.connection;
 
+import java.io.File;
 import java.sql.Connection;
+import java.util.Hashtable;
+import java.util.Map;
 import java.util.Vector;
 
 import com.toolsverse.etl.common.Alias;
@@ -35,6 +38,12 @@ public class DefaultTransactionMonitor implements TransactionMonitor
     /** The files. */
     private Vector<String> _files;
     
+    /** The checkpoint files. */
+    private Vector<String> _checkpoints;
+    
+    /** The pending files mapped to the files they replace. */
+    private Hashtable<String, String> _pendingFiles;
+    
     /** The connection factory. */
     private EtlConnectionFactory _connectionFactory;
     
@@ -46,6 +55,8 @@ public class DefaultTransactionMonitor implements TransactionMonitor
         _connectionFactory = null;
         _connections = new Vector<Connection>();
         _files = new Vector<String>();
+        _checkpoints = new Vector<String>();
+        _pendingFiles = new Hashtable<String, String>();
     }
     
     /**
@@ -59,6 +70,25 @@ public class DefaultTransactionMonitor implements TransactionMonitor
         
         _connections = new Vector<Connection>();
         _files = new Vector<String>();
+        _checkpoints = new Vector<String>();
+        _pendingFiles = new Hashtable<String, String>();
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.toolsverse.etl.sql.connection.TransactionMonitor#addCheckpoint(java
+     * .lang.String)
+     */
+    public boolean addCheckpoint(String name)
+    {
+        if (Utils.isNothing(name) || _checkpoints.contains(name))
+            return false;
+        
+        _checkpoints.add(name);
+        
+        return true;
     }
     
     /*
@@ -95,6 +125,23 @@ public class DefaultTransactionMonitor implements TransactionMonitor
         return true;
     }
     
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.toolsverse.etl.sql.connection.TransactionMonitor#addPendingFile(java
+     * .lang.String, java.lang.String)
+     */
+    public boolean addPendingFile(String name, String pendingName)
+    {
+        if (Utils.isNothing(name) || Utils.isNothing(pendingName))
+            return false;
+        
+        _pendingFiles.put(pendingName, name);
+        
+        return true;
+    }
+    
     /**
      * Cleans up.
      */
@@ -102,6 +149,8 @@ public class DefaultTransactionMonitor implements TransactionMonitor
     {
         _connections.clear();
         _files.clear();
+        _checkpoints.clear();
+        _pendingFiles.clear();
     }
     
     /*
@@ -114,26 +163,42 @@ public class DefaultTransactionMonitor implements TransactionMonitor
     {
         try
         {
-            if (_connections.size() == 0)
-                return;
-            
-            Alias alias = null;
-            
-            Logger.log(Logger.INFO, EtlLogger.class,
-                    EtlResource.COMMIT_MSG.getValue());
-            
-            for (Connection con : _connections)
+            if (_connections.size() > 0)
             {
-                if (_connectionFactory != null)
-                    alias = (Alias)_connectionFactory.getConnectionParams(con);
-                else
-                    alias = null;
+                Alias alias = null;
                 
-                if (alias == null || alias.isLocalCommit())
+                Logger.log(Logger.INFO, EtlLogger.class,
+                        EtlResource.COMMIT_MSG.getValue());
+                
+                for (Connection con : _connections)
                 {
-                    con.commit();
+                    if (_connectionFactory != null)
+                        alias = (Alias)_connectionFactory
+                                .getConnectionParams(con);
+                    else
+                        alias = null;
+                    
+                    if (alias == null || alias.isLocalCommit())
+                    {
+                        con.commit();
+                    }
                 }
             }
+            
+            // transaction is completed, nothing to resume
+            for (String fName : _checkpoints)
+                FileUtils.deleteFile(fName);
+            
+            for (Map.Entry<String, String> entry : _pendingFiles.entrySet())
+            {
+                FileUtils.deleteFile(entry.getValue());
+                
+                if (!new File(entry.getKey()).renameTo(new File(entry
+                        .getValue())))
+                    Logger.log(Logger.SEVERE, EtlLogger.class,
+                            EtlResource.PENDING_FILE_ERROR_MSG.getValue()
+                                    + entry.getKey());
+            }
         }
         finally
         {
@@ -157,6 +222,9 @@ public class DefaultTransactionMonitor implements TransactionMonitor
             for (String fName : _files)
                 FileUtils.deleteFile(fName);
             
+            for (String fName : _pendingFiles.keySet())
+                FileUtils.deleteFile(fName);
+            
             if (_connections.size() == 0)
                 return;
             
@@ -93,8 +93,8 @@ public class EtlConnectionFactoryImpl implements EtlConnectionFactory
      * (java.sql.Connection, com.toolsverse.etl.common.ConnectionParams,
      * java.lang.String, java.lang.String)
      */
-    public Connection addConnection(Connection con, ConnectionParams params,
-            String name, String defName)
+    public synchronized Connection addConnection(Connection con,
+            ConnectionParams params, String name, String defName)
         throws Exception
     {
         if (Utils.isNothing(name) && Utils.isNothing(defName))
@@ -137,7 +137,7 @@ public class EtlConnectionFactoryImpl implements EtlConnectionFactory
      * .toolsverse.etl.common.ConnectionParams)
      */
     @SuppressWarnings("unchecked")
-    public Connection getConnection(ConnectionParams params)
+    public synchronized Connection getConnection(ConnectionParams params)
         throws Exception
     {
         if (params == null || !params.isDbConnection())
@@ -161,7 +161,7 @@ public class EtlConnectionFactoryImpl implements EtlConnectionFactory
      * com.toolsverse.etl.core.connection.EtlConnectionFactory#getConnection
      * (java.lang.String)
      */
-    public Connection getConnection(String name)
+    public synchronized Connection getConnection(String name)
     {
         if (_connections == null || Utils.isNothing(name))
             return null;
@@ -176,7 +176,7 @@ public class EtlConnectionFactoryImpl implements EtlConnectionFactory
      * com.toolsverse.etl.core.connection.EtlConnectionFactory#getConnectionParams
      * (java.sql.Connection)
      */
-    public ConnectionParams getConnectionParams(Connection conn)
+    public synchronized ConnectionParams getConnectionParams(Connection conn)
     {
         if (_aliasConnections == null)
             return null;
@@ -218,7 +218,7 @@ public class EtlConnectionFactoryImpl implements EtlConnectionFactory
      * com.toolsverse.etl.sql.connection.ConnectionFactory#releaseConnection
      * (java.sql.Connection)
      */
-    public void releaseConnection(Connection con)
+    public synchronized void releaseConnection(Connection con)
     {
         if (con != null)
             try
@@ -243,7 +243,11 @@ public class EtlConnectionFactoryImpl implements EtlConnectionFactory
                 {
                     _aliasConnections.remove(con);
                     
-                    _aliases.remove(params.getName());
+                    // connections which are not named, for example used
+                    // to extract partitions of the source, don't own alias
+                    if (_connections != null
+                            && _connections.containsValue(con))
+                        _aliases.remove(params.getName());
                 }
             }
             catch (Exception e)
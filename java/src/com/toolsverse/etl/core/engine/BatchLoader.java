@@ -0,0 +1,831 @@
+/*
+ * BatchLoader.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.toolsverse.etl.common.DataSet;
+import com.toolsverse.etl.common.DataSetRecord;
+import com.toolsverse.etl.common.FieldDef;
+import com.toolsverse.etl.common.MergeHandler;
+import com.toolsverse.etl.common.OnException;
+import com.toolsverse.etl.common.Variable;
+import com.toolsverse.etl.driver.Driver;
+import com.toolsverse.etl.resource.EtlResource;
+import com.toolsverse.etl.sql.util.SqlUtils;
+import com.toolsverse.etl.util.EtlLogger;
+import com.toolsverse.util.TypedKeyValue;
+import com.toolsverse.util.Utils;
+import com.toolsverse.util.log.Logger;
+
+/**
+ * Loads records into the destination table using parameterized prepared
+ * statement and jdbc batches instead of the generated sql script. The
+ * statement is prepared once per destination, values are bound using
+ * {@link com.toolsverse.etl.driver.Driver#setObject(PreparedStatement, Object, int, int)}
+ * and batch is executed when number of added records reaches
+ * {@link com.toolsverse.etl.core.engine.Destination#getBatchSize()}. When batch
+ * fails records are re-executed one by one so "on exception" handlers
+ * configured for the destination work the same way as for the non batch load.
+ * Merge executes batch of updates and inserts records which were not updated.
+ * If driver doesn't report number of updated records, records of the batch are
+ * inserted only if they don't exist and the following updates are executed one
+ * by one.
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class BatchLoader implements MergeHandler
+{
+    /**
+     * Checks if destination can be loaded using batches. Only destinations
+     * with auto generated sql, no conditions and no variables which require
+     * code execution can be loaded in batch mode.
+     * 
+     * @param destination
+     *            the destination
+     * @return true, if destination can be loaded using batches
+     */
+    public static boolean isBatchSupported(Destination destination)
+    {
+        if (destination == null || !destination.isBatch()
+                || destination.getDataSet() == null
+                || !Utils.isNothing(destination.getSql())
+                || !Utils.isNothing(destination.getCondition())
+                || !Utils.isNothing(destination.getCursorTableName())
+                || !Utils.isNothing(destination.getCursorSql()))
+            return false;
+        
+        if (destination.getVariables() != null)
+            for (int i = 0; i < destination.getVariables().size(); i++)
+            {
+                Variable var = destination.getVariables().get(i);
+                
+                if (!Utils.isNothing(var.getFunction())
+                        || !Utils.isNothing(var.getCode())
+                        || !Utils.isNothing(var.getValue()))
+                    return false;
+            }
+        
+        return true;
+    }
+    
+    /** The destination. */
+    private final Destination _destination;
+    
+    /** The driver. */
+    private final Driver _driver;
+    
+    /** The connection. */
+    private final Connection _conn;
+    
+    /** The buffered records. */
+    private final List<Object[]> _records;
+    
+    /** The row numbers of the buffered records. */
+    private final List<Long> _rows;
+    
+    /** The data set columns to load. */
+    private int[] _columns;
+    
+    /** The field names. */
+    private List<String> _names;
+    
+    /** The field types. */
+    private int[] _types;
+    
+    /** The sql. */
+    private String _sql;
+    
+    /** The parameters of the sql. */
+    private int[] _params;
+    
+    /** The statement. */
+    private PreparedStatement _statement;
+    
+    /** The insert sql. Used by merge. */
+    private String _insertSql;
+    
+    /** The parameters of the insert sql. */
+    private int[] _insertParams;
+    
+    /** The insert statement. Used by merge. */
+    private PreparedStatement _insertStatement;
+    
+    /** The sql which counts existing records with the same key. Used by merge. */
+    private String _existsSql;
+    
+    /** The parameters of the sql which counts existing records. */
+    private int[] _existsParams;
+    
+    /** The statement which counts existing records. Used by merge. */
+    private PreparedStatement _existsStatement;
+    
+    /** The "driver doesn't report number of updated records" flag. */
+    private boolean _noUpdateCounts;
+    
+    /** The current record. Used by merge handler. */
+    private Object[] _current;
+    
+    /** The "supports batch updates" flag. */
+    private boolean _supportsBatch;
+    
+    /** The number of added records. */
+    private long _rowCount;
+    
+    /**
+     * Instantiates a new BatchLoader.
+     * 
+     * @param destination
+     *            the destination
+     * @param driver
+     *            the driver
+     * @param conn
+     *            the connection
+     */
+    public BatchLoader(Destination destination, Driver driver, Connection conn)
+    {
+        _destination = destination;
+        _driver = driver;
+        _conn = conn;
+        _records = new ArrayList<Object[]>();
+        _rows = new ArrayList<Long>();
+        _columns = null;
+        _names = null;
+        _types = null;
+        _sql = null;
+        _params = null;
+        _statement = null;
+        _insertSql = null;
+        _insertParams = null;
+        _insertStatement = null;
+        _existsSql = null;
+        _existsParams = null;
+        _existsStatement = null;
+        _noUpdateCounts = false;
+        _current = null;
+        _supportsBatch = true;
+        _rowCount = 0;
+    }
+    
+    /**
+     * Adds the record to the batch. Executes batch when number of added records
+     * reaches batch size.
+     * 
+     * @param record
+     *            the record
+     * @throws Exception
+     *             in case of any error
+     */
+    public void addRecord(DataSetRecord record)
+        throws Exception
+    {
+        addRecord(record, _rowCount);
+    }
+    
+    /**
+     * Adds the record with the given row number to the batch. Used when
+     * records of the destination are split between multiple batch loaders.
+     * 
+     * @param record
+     *            the record
+     * @param row
+     *            the row number
+     * @throws Exception
+     *             in case of any error
+     */
+    void addRecord(DataSetRecord record, long row)
+        throws Exception
+    {
+        if (record == null)
+            return;
+        
+        if (_columns == null)
+            init();
+        
+        DataSet dataSet = _destination.getDataSet();
+        
+        Object[] values = new Object[_columns.length];
+        
+        for (int i = 0; i < _columns.length; i++)
+            values[i] = dataSet.getFieldValue(record, _columns[i]);
+        
+        _records.add(values);
+        _rows.add(row);
+        _rowCount++;
+        
+        if (_records.size() >= _destination.getBatchSize())
+            flush();
+    }
+    
+    /**
+     * Closes prepared statements and discards records which were not executed.
+     */
+    public void close()
+    {
+        SqlUtils.cleanUpSQLData(_statement, null, this);
+        SqlUtils.cleanUpSQLData(_insertStatement, null, this);
+        SqlUtils.cleanUpSQLData(_existsStatement, null, this);
+        
+        _statement = null;
+        _insertStatement = null;
+        _existsStatement = null;
+        _records.clear();
+        _rows.clear();
+        _current = null;
+    }
+    
+    /**
+     * Executes batch. If batch fails re-executes failed records one by one.
+     * 
+     * @param statement
+     *            the prepared statement
+     * @param sql
+     *            the sql
+     * @param params
+     *            the parameters
+     * @param records
+     *            the records
+     * @param rows
+     *            the row numbers
+     * @param isBatch
+     *            if false records are executed one by one
+     * @return the update counts, one per record
+     * @throws Exception
+     *             in case of any error
+     */
+    private int[] execute(PreparedStatement statement, String sql,
+            int[] params, List<Object[]> records, List<Long> rows,
+            boolean isBatch)
+        throws Exception
+    {
+        int size = records.size();
+        int[] counts = new int[size];
+        
+        if (!_supportsBatch || !isBatch)
+        {
+            for (int i = 0; i < size; i++)
+                counts[i] = executeSingle(statement, sql, params,
+                        records.get(i), rows.get(i));
+            
+            return counts;
+        }
+        
+        List<Integer> batched = new ArrayList<Integer>(size);
+        
+        for (int i = 0; i < size; i++)
+        {
+            try
+            {
+                setParams(statement, params, records.get(i));
+                
+                statement.addBatch();
+                
+                batched.add(i);
+            }
+            catch (Exception ex)
+            {
+                handleException(sql, ex, records.get(i), rows.get(i));
+                
+                counts[i] = Statement.EXECUTE_FAILED;
+            }
+        }
+        
+        if (batched.size() == 0)
+            return counts;
+        
+        Savepoint svp = _destination.isSavePoint() ? SqlUtils
+                .getSavepoint(_conn) : null;
+        
+        int[] batchCounts = null;
+        
+        try
+        {
+            batchCounts = statement.executeBatch();
+        }
+        catch (BatchUpdateException ex)
+        {
+            Logger.log(Logger.INFO, EtlLogger.class,
+                    EtlResource.BATCH_FAILED_MSG.getValue()
+                            + _destination.getName());
+            
+            try
+            {
+                statement.clearBatch();
+            }
+            catch (Exception e)
+            {
+                Logger.log(Logger.INFO, EtlLogger.class, e.getMessage());
+            }
+            
+            if (svp != null)
+            {
+                _conn.rollback(svp);
+                
+                batchCounts = null;
+            }
+            else
+                batchCounts = ex.getUpdateCounts();
+            
+            for (int i = 0; i < batched.size(); i++)
+            {
+                int index = batched.get(i);
+                
+                if (batchCounts != null && i < batchCounts.length
+                        && batchCounts[i] != Statement.EXECUTE_FAILED)
+                    counts[index] = batchCounts[i];
+                else
+                    counts[index] = executeSingle(statement, sql, params,
+                            records.get(index), rows.get(index));
+            }
+            
+            return counts;
+        }
+        
+        for (int i = 0; i < batched.size(); i++)
+            counts[batched.get(i)] = batchCounts != null
+                    && i < batchCounts.length ? batchCounts[i]
+                    : Statement.SUCCESS_NO_INFO;
+        
+        return counts;
+    }
+    
+    /**
+     * Executes sql for the single record.
+     * 
+     * @param statement
+     *            the prepared statement
+     * @param sql
+     *            the sql
+     * @param params
+     *            the parameters
+     * @param record
+     *            the record
+     * @param row
+     *            the row number
+     * @return the update count or Statement.EXECUTE_FAILED if exception was
+     *         handled
+     * @throws Exception
+     *             in case of any error
+     */
+    private int executeSingle(PreparedStatement statement, String sql,
+            int[] params, Object[] record, long row)
+        throws Exception
+    {
+        Savepoint svp = null;
+        
+        try
+        {
+            setParams(statement, params, record);
+            
+            if (_destination.isSavePoint())
+                svp = SqlUtils.getSavepoint(_conn);
+            
+            return statement.executeUpdate();
+        }
+        catch (Exception ex)
+        {
+            if (svp != null)
+                _conn.rollback(svp);
+            
+            handleException(sql, ex, record, row);
+            
+            return Statement.EXECUTE_FAILED;
+        }
+    }
+    
+    /**
+     * Counts existing records with the same key as the given record.
+     * 
+     * @param record
+     *            the record
+     * @param row
+     *            the row number
+     * @return the number of records or Statement.EXECUTE_FAILED if exception
+     *         was handled
+     * @throws Exception
+     *             in case of any error
+     */
+    private int exists(Object[] record, long row)
+        throws Exception
+    {
+        ResultSet rs = null;
+        
+        try
+        {
+            if (_existsStatement == null)
+                _existsStatement = _conn.prepareStatement(_existsSql);
+            
+            setParams(_existsStatement, _existsParams, record);
+            
+            rs = _existsStatement.executeQuery();
+            
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+        catch (Exception ex)
+        {
+            handleException(_existsSql, ex, record, row);
+            
+            return Statement.EXECUTE_FAILED;
+        }
+        finally
+        {
+            SqlUtils.cleanUpSQLData(null, rs, this);
+        }
+    }
+    
+    /**
+     * Executes all buffered records.
+     * 
+     * @throws Exception
+     *             in case of any error
+     */
+    public void flush()
+        throws Exception
+    {
+        if (_records.size() == 0)
+            return;
+        
+        try
+        {
+            if (_statement == null)
+                _statement = _conn.prepareStatement(_sql);
+            
+            int[] counts = execute(_statement, _sql, _params, _records, _rows,
+                    _insertSql == null || !_noUpdateCounts);
+            
+            if (_insertSql == null)
+                return;
+            
+            // merge: insert records which were not updated
+            List<Object[]> records = new ArrayList<Object[]>();
+            List<Long> rows = new ArrayList<Long>();
+            
+            for (int i = 0; i < counts.length; i++)
+            {
+                int count = counts[i];
+                
+                // the record is already updated, so the update is not
+                // executed again. The record is inserted if it doesn't exist.
+                if (count == Statement.SUCCESS_NO_INFO)
+                {
+                    if (!_noUpdateCounts)
+                    {
+                        _noUpdateCounts = true;
+                        
+                        Logger.log(Logger.INFO, EtlLogger.class,
+                                EtlResource.BATCH_NO_UPDATE_COUNT_MSG
+                                        .getValue() + _destination.getName());
+                    }
+                    
+                    count = exists(_records.get(i), _rows.get(i));
+                }
+                
+                if (count == 0)
+                {
+                    records.add(_records.get(i));
+                    rows.add(_rows.get(i));
+                }
+            }
+            
+            if (records.size() == 0)
+                return;
+            
+            if (_insertStatement == null)
+                _insertStatement = _conn.prepareStatement(_insertSql);
+            
+            execute(_insertStatement, _insertSql, _insertParams, records, rows,
+                    true);
+        }
+        finally
+        {
+            _records.clear();
+            _rows.clear();
+            _current = null;
+        }
+    }
+    
+    /**
+     * Gets the sql which counts records with the same key.
+     * 
+     * @param key
+     *            the key field(s)
+     * @param params
+     *            the parameters. Indexes of the key fields in the order of
+     *            parameters of the sql.
+     * @return the sql
+     */
+    private String getExistsSql(String key, List<Integer> params)
+    {
+        String tableName = _driver.getTableName(_destination.getObjectName());
+        
+        String[] keyFields = key != null ? key.split(",") : null;
+        
+        StringBuilder sql = new StringBuilder("select count(*) from ").append(
+                SqlUtils.name2RightCase(_driver, tableName)).append(" where ");
+        
+        for (int i = 0; i < _names.size(); i++)
+            if (Utils.belongsTo(keyFields, _names.get(i)))
+            {
+                if (params.size() > 0)
+                    sql.append(" and ");
+                
+                sql.append(_names.get(i)).append("=?");
+                
+                params.add(i);
+            }
+        
+        return sql.toString();
+    }
+    
+    /**
+     * Gets the number of added records.
+     * 
+     * @return the number of added records
+     */
+    public long getRowCount()
+    {
+        return _rowCount;
+    }
+    
+    /**
+     * Gets the parameterized sql for the given load action.
+     * 
+     * @param action
+     *            the load action
+     * @param key
+     *            the key field(s)
+     * @param params
+     *            the parameters. Indexes of the fields in the order of
+     *            parameters of the sql.
+     * @return the sql
+     */
+    private String getSql(String action, String key, List<Integer> params)
+    {
+        String tableName = _driver.getTableName(_destination.getObjectName());
+        
+        List<String> values = new ArrayList<String>();
+        
+        for (int i = 0; i < _names.size(); i++)
+            values.add("?");
+        
+        TypedKeyValue<List<String>, List<String>> fieldsAndValues = new TypedKeyValue<List<String>, List<String>>(
+                _names, values);
+        
+        String sql;
+        
+        if (Destination.LOAD_UPDATE.equalsIgnoreCase(action))
+            sql = _driver.getUpdateStatement(fieldsAndValues, tableName, key);
+        else if (Destination.LOAD_DELETE.equalsIgnoreCase(action))
+            sql = _driver.getDeleteStatement(fieldsAndValues, tableName, key);
+        else
+            sql = _driver.getInsertStatement(fieldsAndValues, tableName);
+        
+        if (Utils.isNothing(sql))
+            return null;
+        
+        String[] keyFields = key != null ? key.split(",") : null;
+        
+        if (!Destination.LOAD_DELETE.equalsIgnoreCase(action))
+            for (int i = 0; i < _names.size(); i++)
+                if (Destination.LOAD_INSERT.equalsIgnoreCase(action)
+                        || !Utils.belongsTo(keyFields, _names.get(i)))
+                    params.add(i);
+        
+        if (!Destination.LOAD_INSERT.equalsIgnoreCase(action))
+            for (int i = 0; i < _names.size(); i++)
+                if (Utils.belongsTo(keyFields, _names.get(i)))
+                    params.add(i);
+        
+        sql = sql.trim();
+        
+        if (!Utils.isNothing(_driver.getDelimiter()))
+            sql = Utils.truncEnd(sql, _driver.getDelimiter()).trim();
+        
+        return sql;
+    }
+    
+    /**
+     * Handles the exception using "on exception" handler of the destination.
+     * 
+     * @param sql
+     *            the sql
+     * @param ex
+     *            the exception
+     * @param record
+     *            the record
+     * @param row
+     *            the row number
+     * @throws Exception
+     *             if exception was not handled
+     */
+    private void handleException(String sql, Exception ex, Object[] record,
+            long row)
+        throws Exception
+    {
+        _current = record;
+        
+        try
+        {
+            int action;
+            
+            // destination can be shared by multiple batch loaders
+            synchronized (_destination)
+            {
+                action = _destination.handleException(_conn, sql, ex, row,
+                        this);
+            }
+            
+            if (action != OnException.ON_EXCEPTION_CONTINUE
+                    && action != OnException.ON_EXCEPTION_MERGE
+                    && action != OnException.ON_EXCEPTION_IGNORE)
+                throw ex;
+        }
+        finally
+        {
+            _current = null;
+        }
+    }
+    
+    /**
+     * Initializes fields, types and sql using first added record.
+     * 
+     * @throws Exception
+     *             in case of any error
+     */
+    private void init()
+        throws Exception
+    {
+        DataSet dataSet = _destination.getDataSet();
+        
+        List<Integer> columns = new ArrayList<Integer>();
+        _names = new ArrayList<String>();
+        
+        int count = dataSet.getFieldCount();
+        
+        for (int i = 0; i < count; i++)
+        {
+            FieldDef fieldDef = dataSet.getFieldDef(i);
+            
+            String fieldName = fieldDef.getName();
+            
+            Variable var = _destination.getVariable(fieldName);
+            
+            if (var != null && !var.isInclude())
+                continue;
+            
+            if (var != null && !Utils.isNothing(var.getLabel()))
+                fieldName = var.getLabel();
+            
+            if (_destination.getMetaData() != null
+                    && _destination.getMetaData().size() > 0
+                    && !_destination.getMetaData().containsKey(fieldName))
+                continue;
+            
+            columns.add(i);
+            _names.add(fieldName);
+        }
+        
+        _columns = new int[columns.size()];
+        _types = new int[columns.size()];
+        
+        for (int i = 0; i < _columns.length; i++)
+        {
+            _columns[i] = columns.get(i);
+            _types[i] = dataSet.getFieldDef(_columns[i]).getSqlDataType();
+        }
+        
+        String action = _destination.getLoadAction();
+        String key = _destination.getLoadKey();
+        
+        List<Integer> params = new ArrayList<Integer>();
+        
+        if (Destination.LOAD_MERGE.equalsIgnoreCase(action))
+        {
+            _sql = getSql(Destination.LOAD_UPDATE, key, params);
+            
+            List<Integer> insertParams = new ArrayList<Integer>();
+            
+            _insertSql = getSql(Destination.LOAD_INSERT, null, insertParams);
+            _insertParams = toArray(insertParams);
+            
+            List<Integer> existsParams = new ArrayList<Integer>();
+            
+            _existsSql = getExistsSql(key, existsParams);
+            _existsParams = toArray(existsParams);
+        }
+        else
+            _sql = getSql(
+                    Destination.LOAD_UPDATE.equalsIgnoreCase(action)
+                            || Destination.LOAD_DELETE.equalsIgnoreCase(action) ? action
+                            : Destination.LOAD_INSERT, key, params);
+        
+        if (Utils.isNothing(_sql))
+            throw new Exception(EtlResource.BATCH_NO_KEY_MSG.getValue()
+                    + _destination.getName());
+        
+        _params = toArray(params);
+        
+        try
+        {
+            _supportsBatch = _conn.getMetaData().supportsBatchUpdates();
+        }
+        catch (Exception ex)
+        {
+            _supportsBatch = false;
+        }
+        
+        Logger.log(Logger.INFO, EtlLogger.class,
+                EtlResource.BATCH_LOAD_MSG.getValue() + _destination.getName());
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.toolsverse.etl.common.MergeHandler#onMerge(com.toolsverse.etl.common
+     * .OnException, java.sql.Connection, java.lang.String, java.lang.String,
+     * long)
+     */
+    public void onMerge(OnException onException, Connection conn, String sql,
+            String keyField, long row)
+        throws Exception
+    {
+        if (_current == null)
+            throw new Exception(EtlResource.MERGE_EXCEPTION_MSG.getValue());
+        
+        List<Integer> params = new ArrayList<Integer>();
+        
+        sql = getSql(Destination.LOAD_UPDATE, keyField, params);
+        
+        if (Utils.isNothing(sql))
+            throw new Exception(EtlResource.MERGE_EXCEPTION_MSG.getValue());
+        
+        PreparedStatement preparedStatement = null;
+        
+        try
+        {
+            preparedStatement = conn.prepareStatement(sql);
+            
+            setParams(preparedStatement, toArray(params), _current);
+            
+            preparedStatement.executeUpdate();
+        }
+        finally
+        {
+            SqlUtils.cleanUpSQLData(preparedStatement, null, this);
+        }
+    }
+    
+    /**
+     * Binds values of the record to the parameters of the prepared statement.
+     * 
+     * @param statement
+     *            the prepared statement
+     * @param params
+     *            the parameters
+     * @param record
+     *            the record
+     * @throws Exception
+     *             in case of any error
+     */
+    private void setParams(PreparedStatement statement, int[] params,
+            Object[] record)
+        throws Exception
+    {
+        for (int i = 0; i < params.length; i++)
+            _driver.setObject(statement, record[params[i]], i + 1,
+                    _types[params[i]]);
+    }
+    
+    /**
+     * Converts list of integers to array.
+     * 
+     * @param list
+     *            the list
+     * @return the array
+     */
+    private int[] toArray(List<Integer> list)
+    {
+        int[] array = new int[list.size()];
+        
+        for (int i = 0; i < array.length; i++)
+            array[i] = list.get(i);
+        
+        return array;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Checkpoint.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Date;
+
+import com.toolsverse.config.SystemConfig;
+import com.toolsverse.etl.resource.EtlResource;
+import com.toolsverse.util.FileUtils;
+import com.toolsverse.util.Utils;
+
+/**
+ * The position of the periodically committed load of the destination. The
+ * position is the number of records of the destination which were added to
+ * the load and committed. Checkpoint is saved to the file in the data folder
+ * after each commit, so if etl process fails it can be resumed by skipping
+ * already committed records. Records must be extracted in the same order when
+ * load is resumed.
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class Checkpoint implements Serializable
+{
+    
+    /** Serialization version. */
+    private static final long serialVersionUID = -858948710637610247L;
+    
+    /** The extension of the checkpoint file. */
+    private static final String CHECKPOINT_EXT = ".checkpoint";
+    
+    /** The extension of the temporary file used to save checkpoint. */
+    private static final String TEMP_EXT = ".tmp";
+    
+    /**
+     * Gets the name of the checkpoint file for the destination.
+     * 
+     * @param scenario
+     *            the scenario
+     * @param destination
+     *            the destination
+     * @return the file name
+     */
+    public static String getFileName(Scenario scenario, Destination destination)
+    {
+        String name = (!Utils.isNothing(scenario.getName()) ? scenario
+                .getName() + "_" : "")
+                + destination.getName();
+        
+        return FileUtils.getFullFileName(SystemConfig.instance()
+                .getDataFolderName(), name.replaceAll("[^\\w\\-\\.]", "_"),
+                CHECKPOINT_EXT, true);
+    }
+    
+    /**
+     * Loads the checkpoint from the file.
+     * 
+     * @param fileName
+     *            the file name
+     * @return the checkpoint or null if file doesn't exist
+     * @throws Exception
+     *             in case of any error
+     */
+    public static Checkpoint load(String fileName)
+        throws Exception
+    {
+        Object object = FileUtils.readObject(fileName);
+        
+        // process failed while checkpoint was being saved
+        if (object == null)
+        {
+            object = FileUtils.readObject(fileName + TEMP_EXT);
+            
+            if (object != null)
+                new File(fileName + TEMP_EXT).renameTo(new File(fileName));
+        }
+        
+        if (!(object instanceof Checkpoint))
+            return null;
+        
+        Checkpoint checkpoint = (Checkpoint)object;
+        
+        checkpoint._fileName = fileName;
+        
+        return checkpoint;
+    }
+    
+    /** The number of committed records. */
+    private long _position;
+    
+    /** The time of the last commit. */
+    private Date _committed;
+    
+    /** The file name. */
+    transient private String _fileName;
+    
+    /**
+     * Instantiates a new checkpoint.
+     * 
+     * @param fileName
+     *            the file name
+     */
+    public Checkpoint(String fileName)
+    {
+        _position = 0;
+        _committed = null;
+        _fileName = fileName;
+    }
+    
+    /**
+     * Deletes the checkpoint file.
+     */
+    public void delete()
+    {
+        FileUtils.deleteFile(_fileName);
+        FileUtils.deleteFile(_fileName + TEMP_EXT);
+    }
+    
+    /**
+     * Gets the time of the last commit.
+     * 
+     * @return the time of the last commit or null if nothing was committed
+     */
+    public Date getCommitted()
+    {
+        return _committed;
+    }
+    
+    /**
+     * Gets the file name.
+     * 
+     * @return the file name
+     */
+    public String getFileName()
+    {
+        return _fileName;
+    }
+    
+    /**
+     * Gets the number of committed records.
+     * 
+     * @return the number of committed records
+     */
+    public long getPosition()
+    {
+        return _position;
+    }
+    
+    /**
+     * Sets the number of committed records and saves checkpoint to the file.
+     * Checkpoint is written to the temporary file first, so the file always
+     * contains either the previous or the new checkpoint.
+     * 
+     * @param position
+     *            the number of committed records
+     * @throws Exception
+     *             in case of any error
+     */
+    public void save(long position)
+        throws Exception
+    {
+        _position = position;
+        _committed = new Date();
+        
+        String tempFileName = _fileName + TEMP_EXT;
+        
+        FileUtils.writeObject(tempFileName, this);
+        
+        FileUtils.deleteFile(_fileName);
+        
+        if (!new File(tempFileName).renameTo(new File(_fileName)))
+            throw new Exception(EtlResource.CHECKPOINT_ERROR_MSG.getValue()
+                    + _fileName);
+    }
+}
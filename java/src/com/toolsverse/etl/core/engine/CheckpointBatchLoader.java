@@ -0,0 +1,176 @@
+/*
+ * CheckpointBatchLoader.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import java.sql.Connection;
+
+import com.toolsverse.etl.common.DataSetRecord;
+import com.toolsverse.etl.driver.Driver;
+import com.toolsverse.etl.resource.EtlResource;
+import com.toolsverse.etl.util.EtlLogger;
+import com.toolsverse.util.log.Logger;
+
+/**
+ * Loads records into the destination and commits changes every
+ * {@link Destination#getCommitRows()} records or
+ * {@link Destination#getCommitInterval()} seconds, whatever comes first. The
+ * time is checked when batch is executed. After each commit the number of
+ * committed records is saved to the {@link Checkpoint}. If load is resumed
+ * from the checkpoint already committed records are skipped. Records which
+ * were loaded after the last commit are committed or rolled back by the
+ * transaction monitor together with the rest of the etl process.
+ * <p>
+ * The commit and the checkpoint are not atomic: the checkpoint is saved to the
+ * file after the transaction is committed. If process fails in between,
+ * records committed after the previous checkpoint are loaded again when load
+ * is resumed, so the destination should be loaded using merge or the table
+ * should have a unique key. The commit also commits all other changes made
+ * using the same connection, which are not skipped when load is resumed, so
+ * the destination which shares connection with other destinations is never
+ * loaded using checkpoints.
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class CheckpointBatchLoader extends BatchLoader
+{
+    
+    /** The destination. */
+    private final Destination _destination;
+    
+    /** The connection. */
+    private final Connection _conn;
+    
+    /** The checkpoint. */
+    private final Checkpoint _checkpoint;
+    
+    /** The number of records committed before load was resumed. */
+    private final long _skip;
+    
+    /** The number of added records, including skipped. */
+    private long _position;
+    
+    /** The number of records committed so far. */
+    private long _committed;
+    
+    /** The time of the last commit in milliseconds. */
+    private long _lastCommit;
+    
+    /**
+     * Instantiates a new CheckpointBatchLoader.
+     * 
+     * @param destination
+     *            the destination
+     * @param driver
+     *            the driver
+     * @param conn
+     *            the connection
+     * @param checkpoint
+     *            the checkpoint
+     */
+    public CheckpointBatchLoader(Destination destination, Driver driver,
+            Connection conn, Checkpoint checkpoint)
+    {
+        super(destination, driver, conn);
+        
+        _destination = destination;
+        _conn = conn;
+        _checkpoint = checkpoint;
+        _skip = checkpoint.getPosition();
+        _position = 0;
+        _committed = _skip;
+        _lastCommit = System.currentTimeMillis();
+        
+        if (_skip > 0)
+            Logger.log(Logger.INFO, EtlLogger.class,
+                    EtlResource.RESUME_LOAD_MSG.getValue() + _skip);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.toolsverse.etl.core.engine.BatchLoader#addRecord(com.toolsverse.etl
+     * .common.DataSetRecord)
+     */
+    @Override
+    public void addRecord(DataSetRecord record)
+        throws Exception
+    {
+        if (record == null)
+            return;
+        
+        _position++;
+        
+        // already committed
+        if (_position <= _skip)
+            return;
+        
+        super.addRecord(record);
+    }
+    
+    /**
+     * Commits changes and saves the checkpoint. The checkpoint is saved only
+     * when commit succeeds, so it never points past the committed records, but
+     * it can point before them if saving fails.
+     * 
+     * @throws Exception
+     *             in case of any error
+     */
+    private void commit()
+        throws Exception
+    {
+        if (!_conn.getAutoCommit())
+            _conn.commit();
+        
+        _checkpoint.save(_position);
+        
+        _committed = _position;
+        _lastCommit = System.currentTimeMillis();
+        
+        Logger.log(Logger.INFO, EtlLogger.class,
+                EtlResource.CHECKPOINT_MSG.getValue() + _position);
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.core.engine.BatchLoader#flush()
+     */
+    @Override
+    public void flush()
+        throws Exception
+    {
+        super.flush();
+        
+        if (isCommitTime())
+            commit();
+    }
+    
+    /**
+     * Checks if number of records or time after which changes are committed
+     * is reached.
+     * 
+     * @return true, if changes must be committed
+     */
+    private boolean isCommitTime()
+    {
+        if (_position <= _committed)
+            return false;
+        
+        if (_destination.getCommitRows() > 0
+                && _position - _committed >= _destination.getCommitRows())
+            return true;
+        
+        return _destination.getCommitInterval() > 0
+                && System.currentTimeMillis() - _lastCommit >= _destination
+                        .getCommitInterval() * 1000L;
+    }
+}
@@ -10,6 +10,7 @@ package com.toolsverse.etl.core.engine;
 import java.sql.Connection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -144,6 +145,12 @@ public class Destination extends OnException implements Block,
     /** The DELETE action. */
     public static final String LOAD_DELETE = "delete";
     
+    /** The default number of records in the JDBC batch. */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    
+    /** The default capacity of the queue between extract and load in the "pipeline" mode. */
+    public static final int DEFAULT_PIPELINE_SIZE = 10000;
+    
     /** The LOAD_ACTIONS. */
     public static final Set<String> LOAD_ACTIONS = new HashSet<String>();
     static
@@ -277,6 +284,39 @@ public class Destination extends OnException implements Block,
     /** The metadata. */
     private Map<String, FieldDef> _metadata;
     
+    /** The "batch" flag. */
+    private boolean _batch;
+    
+    /** The batch size. */
+    private int _batchSize;
+    
+    /** The batch loader. */
+    transient private BatchLoader _batchLoader;
+    
+    /** The "pipeline" flag. */
+    private boolean _pipeline;
+    
+    /** The capacity of the queue between extract and load. */
+    private int _pipelineSize;
+    
+    /** The number of threads used to load data in the "batch" mode. */
+    private int _loadThreads;
+    
+    /** The connections used by the load threads. */
+    transient private List<Connection> _loadConnections;
+    
+    /** The names of the destinations this destination depends on. */
+    private String _dependsOn;
+    
+    /** The number of rows after which changes are committed. */
+    private int _commitRows;
+    
+    /** The time in seconds after which changes are committed. */
+    private int _commitInterval;
+    
+    /** The checkpoint of the periodically committed load. */
+    transient private Checkpoint _checkpoint;
+    
     /**
      * Instantiates a new destination.
      */
@@ -328,6 +368,22 @@ public class Destination extends OnException implements Block,
         
         _loadAction = LOAD_INSERT;
         _loadKey = null;
+        
+        _batch = false;
+        _batchSize = DEFAULT_BATCH_SIZE;
+        _batchLoader = null;
+        
+        _pipeline = false;
+        _pipelineSize = DEFAULT_PIPELINE_SIZE;
+        
+        _loadThreads = 1;
+        _loadConnections = null;
+        
+        _dependsOn = null;
+        
+        _commitRows = 0;
+        _commitInterval = 0;
+        _checkpoint = null;
     }
     
     /**
@@ -345,6 +401,28 @@ public class Destination extends OnException implements Block,
         return _after;
     }
     
+    /**
+     * Gets the batch loader currently used to load data into the destination.
+     * Only set when destination is loaded in the "batch" mode.
+     * 
+     * @return the batch loader
+     */
+    public BatchLoader getBatchLoader()
+    {
+        return _batchLoader;
+    }
+    
+    /**
+     * Gets the maximum number of records in the JDBC batch. Used only if
+     * "batch" mode is enabled.
+     * 
+     * @return the batch size
+     */
+    public int getBatchSize()
+    {
+        return _batchSize;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -366,6 +444,40 @@ public class Destination extends OnException implements Block,
         return _cache;
     }
     
+    /**
+     * Gets the checkpoint of the periodically committed load. Set by the
+     * loader when destination is loaded.
+     * 
+     * @return the checkpoint or null if changes are not committed
+     *         periodically
+     */
+    public Checkpoint getCheckpoint()
+    {
+        return _checkpoint;
+    }
+    
+    /**
+     * Gets the time in seconds after which changes made by the "batch" load
+     * are committed and checkpoint is saved.
+     * 
+     * @return the time in seconds, 0 if not set
+     */
+    public int getCommitInterval()
+    {
+        return _commitInterval;
+    }
+    
+    /**
+     * Gets the number of rows after which changes made by the "batch" load
+     * are committed and checkpoint is saved.
+     * 
+     * @return the number of rows, 0 if not set
+     */
+    public int getCommitRows()
+    {
+        return _commitRows;
+    }
+    
     /**
      * Gets the condition string, usually sql, executed before the code for the
      * destination. The simplest example would be "if" condition:
@@ -516,6 +628,18 @@ public class Destination extends OnException implements Block,
                 : EtlConfig.DEST_CONNECTION_NAME;
     }
     
+    /**
+     * Gets the comma separated names of the destinations this destination
+     * depends on. Destination is loaded as soon as all destinations it depends
+     * on are loaded.
+     * 
+     * @return the names of the destinations
+     */
+    public String getDependsOn()
+    {
+        return _dependsOn;
+    }
+    
     /**
      * Gets the class name of the driver. Driver is used to generate database
      * specific SQL.
@@ -568,6 +692,17 @@ public class Destination extends OnException implements Block,
         return _loadAction;
     }
     
+    /**
+     * Gets the connections used by the load threads, one per thread. Only set
+     * while destination is loaded by multiple threads.
+     * 
+     * @return the connections
+     */
+    public List<Connection> getLoadConnections()
+    {
+        return _loadConnections;
+    }
+    
     /**
      * Gets the load key.
      *
@@ -578,6 +713,18 @@ public class Destination extends OnException implements Block,
         return _loadKey;
     }
     
+    /**
+     * Gets the number of threads used to load data in the "batch" mode. Each
+     * thread uses its own connection and its own batch. Records with the same
+     * key are always loaded by the same thread. Default is 1.
+     * 
+     * @return the number of load threads
+     */
+    public int getLoadThreads()
+    {
+        return _loadThreads;
+    }
+    
     /**
      * Gets the meta data.
      *
@@ -655,6 +802,17 @@ public class Destination extends OnException implements Block,
         return value.intValue();
     }
     
+    /**
+     * Gets the maximum number of records waiting in the queue between extract
+     * and load. Used only if "pipeline" mode is enabled.
+     * 
+     * @return the capacity of the queue
+     */
+    public int getPipelineSize()
+    {
+        return _pipelineSize;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -778,6 +936,28 @@ public class Destination extends OnException implements Block,
         return _variables;
     }
     
+    /**
+     * Checks if data should be loaded using parameterized prepared statement
+     * and JDBC batches instead of the generated sql script.
+     * 
+     * @return true, if "batch" mode is enabled
+     */
+    public boolean isBatch()
+    {
+        return _batch;
+    }
+    
+    /**
+     * Checks if changes made by the "batch" load are committed periodically.
+     * 
+     * @return true, if number of rows or time after which changes are
+     *         committed is set
+     */
+    public boolean isCheckpoint()
+    {
+        return _commitRows > 0 || _commitInterval > 0;
+    }
+    
     /**
      * Checks if indexes need to be created from the source when creating a table.
      *
@@ -838,6 +1018,19 @@ public class Destination extends OnException implements Block,
         return _parallel;
     }
     
+    /**
+     * Checks if "pipeline" mode is enabled. In this mode records streamed from
+     * the source are added to the bounded queue and loaded by the separate
+     * thread so reading and writing are executed at the same time. Used only
+     * together with "stream" mode.
+     * 
+     * @return true, if "pipeline" mode is enabled
+     */
+    public boolean isPipeline()
+    {
+        return _pipeline;
+    }
+    
     /**
      * Checks if is destination is a stored procedure or function.
      * 
@@ -900,6 +1093,40 @@ public class Destination extends OnException implements Block,
         _after = value;
     }
     
+    /**
+     * Sets the "batch" flag. If true the data will be loaded using
+     * parameterized prepared statement and JDBC batches.
+     * 
+     * @param value
+     *            the new "batch" flag
+     */
+    public void setBatch(boolean value)
+    {
+        _batch = value;
+    }
+    
+    /**
+     * Sets the batch loader currently used to load data into the destination.
+     * 
+     * @param value
+     *            the new batch loader
+     */
+    public void setBatchLoader(BatchLoader value)
+    {
+        _batchLoader = value;
+    }
+    
+    /**
+     * Sets the maximum number of records in the JDBC batch.
+     * 
+     * @param value
+     *            the new batch size
+     */
+    public void setBatchSize(int value)
+    {
+        _batchSize = value > 0 ? value : DEFAULT_BATCH_SIZE;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -924,6 +1151,41 @@ public class Destination extends OnException implements Block,
         _cache = value;
     }
     
+    /**
+     * Sets the checkpoint of the periodically committed load.
+     * 
+     * @param value
+     *            the new checkpoint
+     */
+    public void setCheckpoint(Checkpoint value)
+    {
+        _checkpoint = value;
+    }
+    
+    /**
+     * Sets the time in seconds after which changes made by the "batch" load
+     * are committed and checkpoint is saved.
+     * 
+     * @param value
+     *            the new time in seconds
+     */
+    public void setCommitInterval(int value)
+    {
+        _commitInterval = value > 0 ? value : 0;
+    }
+    
+    /**
+     * Sets the number of rows after which changes made by the "batch" load
+     * are committed and checkpoint is saved.
+     * 
+     * @param value
+     *            the new number of rows
+     */
+    public void setCommitRows(int value)
+    {
+        _commitRows = value > 0 ? value : 0;
+    }
+    
     /**
      * Sets the condition, usually sql, executed before the code for the
      * destination.
@@ -1123,6 +1385,18 @@ public class Destination extends OnException implements Block,
         _dataWriterParams = value;
     }
     
+    /**
+     * Sets the comma separated names of the destinations this destination
+     * depends on.
+     * 
+     * @param value
+     *            the value
+     */
+    public void setDependsOn(String value)
+    {
+        _dependsOn = value;
+    }
+    
     /**
      * Sets the class name of the driver. Driver is used to generate database
      * specific SQL.
@@ -1249,6 +1523,17 @@ public class Destination extends OnException implements Block,
             _loadAction = action;
     }
     
+    /**
+     * Sets the connections used by the load threads.
+     * 
+     * @param value
+     *            the new connections
+     */
+    public void setLoadConnections(List<Connection> value)
+    {
+        _loadConnections = value;
+    }
+    
     /**
      * Sets the load key.
      *
@@ -1259,6 +1544,18 @@ public class Destination extends OnException implements Block,
         _loadKey = value;
     }
     
+    /**
+     * Sets the number of threads used to load data in the "batch" mode.
+     * 
+     * @param value
+     *            the new number of load threads. If value <= 0 a single
+     *            thread is used
+     */
+    public void setLoadThreads(int value)
+    {
+        _loadThreads = value > 0 ? value : 1;
+    }
+    
     /**
      * Sets the meta data.
      *
@@ -1377,6 +1674,29 @@ public class Destination extends OnException implements Block,
         _parallel = value;
     }
     
+    /**
+     * Sets the "pipeline" flag.
+     * 
+     * @param value
+     *            the new value for the "pipeline" flag
+     */
+    public void setPipeline(boolean value)
+    {
+        _pipeline = value;
+    }
+    
+    /**
+     * Sets the maximum number of records waiting in the queue between extract
+     * and load.
+     * 
+     * @param value
+     *            the new capacity of the queue
+     */
+    public void setPipelineSize(int value)
+    {
+        _pipelineSize = value > 0 ? value : DEFAULT_PIPELINE_SIZE;
+    }
+    
     /*
      * (non-Javadoc)
      * 
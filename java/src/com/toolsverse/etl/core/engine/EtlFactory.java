@@ -203,6 +203,12 @@ public class EtlFactory
     /** The SOURCE_PARALLEL. */
     public static final String SOURCE_PARALLEL = "parallel";
     
+    /** The SOURCE_DEPENDS_ON. */
+    public static final String SOURCE_DEPENDS_ON = "dependson";
+    
+    /** The SOURCE_COLUMNAR. */
+    public static final String SOURCE_COLUMNAR = "columnar";
+    
     /** The SOURCE_CONNECTION_NAME. */
     public static final String SOURCE_CONNECTION_NAME = "connection";
     
@@ -227,6 +233,33 @@ public class EtlFactory
     /** The SOURCE_KEY_FIELD. */
     public static final String SOURCE_KEY_FIELD = "keyfield";
     
+    /** The SOURCE_FETCH_SIZE. */
+    public static final String SOURCE_FETCH_SIZE = "fetchsize";
+    
+    /** The SOURCE_FORWARD_ONLY. */
+    public static final String SOURCE_FORWARD_ONLY = "forwardonly";
+    
+    /** The SOURCE_READ_ONLY. */
+    public static final String SOURCE_READ_ONLY = "readonly";
+    
+    /** The SOURCE_PARTITION_BY. */
+    public static final String SOURCE_PARTITION_BY = "partitionby";
+    
+    /** The SOURCE_PARTITIONS. */
+    public static final String SOURCE_PARTITIONS = "partitions";
+    
+    /** The SOURCE_PARTITION_RANGES. */
+    public static final String SOURCE_PARTITION_RANGES = "partitionranges";
+    
+    /** The SOURCE_WATERMARK. */
+    public static final String SOURCE_WATERMARK = "watermark";
+    
+    /** The SOURCE_WATERMARK_VAR. */
+    public static final String SOURCE_WATERMARK_VAR = "watermarkvar";
+    
+    /** The SOURCE_WATERMARK_OVERLAP. */
+    public static final String SOURCE_WATERMARK_OVERLAP = "watermarkoverlap";
+    
     /** The VARIABLES. */
     public static final String VARIABLES = "variables";
     
@@ -251,6 +284,9 @@ public class EtlFactory
     /** The DEST_PARALLEL. */
     public static final String DEST_PARALLEL = "parallel";
     
+    /** The DEST_DEPENDS_ON. */
+    public static final String DEST_DEPENDS_ON = "dependson";
+    
     /** The TABLE_NAME. */
     public static final String TABLE_NAME = "tablename";
     
@@ -266,6 +302,27 @@ public class EtlFactory
     /** The LOAD_KEY. */
     public static final String LOAD_KEY = "key";
     
+    /** The LOAD_BATCH. */
+    public static final String LOAD_BATCH = "batch";
+    
+    /** The LOAD_BATCH_SIZE. */
+    public static final String LOAD_BATCH_SIZE = "batchsize";
+    
+    /** The LOAD_PIPELINE. */
+    public static final String LOAD_PIPELINE = "pipeline";
+    
+    /** The LOAD_PIPELINE_SIZE. */
+    public static final String LOAD_PIPELINE_SIZE = "pipelinesize";
+    
+    /** The LOAD_THREADS. */
+    public static final String LOAD_THREADS = "loadthreads";
+    
+    /** The LOAD_COMMIT_ROWS. */
+    public static final String LOAD_COMMIT_ROWS = "commitrows";
+    
+    /** The LOAD_COMMIT_INTERVAL. */
+    public static final String LOAD_COMMIT_INTERVAL = "commitinterval";
+    
     /** The DEST_THEN. */
     public static final String DEST_THEN = "then";
     
@@ -993,6 +1050,10 @@ public class EtlFactory
             if (destination.isParallel())
                 scenario.setParallelDests(scenario.getParallelDests() + 1);
             
+            // dependencies
+            destination.setDependsOn(xml.getStringAttribute(node,
+                    DEST_DEPENDS_ON));
+            
             // source name
             value = xml.getNodeValue(node, DEST_SOURCE_NAME);
             if (Utils.isNothing(value))
@@ -1085,6 +1146,36 @@ public class EtlFactory
                 
                 destination.setStream(isStream != null ? isStream : false);
                 
+                // batch
+                Boolean isBatch = xml.getBooleanAttribute(loadNode, LOAD_BATCH);
+                
+                destination.setBatch(isBatch != null ? isBatch : false);
+                
+                destination.setBatchSize(Utils.str2Int(
+                        xml.getStringAttribute(loadNode, LOAD_BATCH_SIZE),
+                        Destination.DEFAULT_BATCH_SIZE));
+                
+                // pipeline
+                Boolean isPipeline = xml.getBooleanAttribute(loadNode,
+                        LOAD_PIPELINE);
+                
+                destination.setPipeline(isPipeline != null ? isPipeline
+                        : false);
+                
+                destination.setPipelineSize(Utils.str2Int(
+                        xml.getStringAttribute(loadNode, LOAD_PIPELINE_SIZE),
+                        Destination.DEFAULT_PIPELINE_SIZE));
+                
+                // load threads
+                destination.setLoadThreads(Utils.str2Int(
+                        xml.getStringAttribute(loadNode, LOAD_THREADS), 1));
+                
+                // periodic commit
+                destination.setCommitRows(Utils.str2Int(
+                        xml.getStringAttribute(loadNode, LOAD_COMMIT_ROWS), 0));
+                destination.setCommitInterval(Utils.str2Int(xml
+                        .getStringAttribute(loadNode, LOAD_COMMIT_INTERVAL), 0));
+                
                 // key
                 String key = xml.getStringAttribute(loadNode, LOAD_KEY);
                 
@@ -2058,6 +2149,16 @@ public class EtlFactory
             if (source.isParallel())
                 scenario.setParallelSources(scenario.getParallelSources() + 1);
             
+            // dependencies
+            source.setDependsOn(xml.getStringAttribute(node, SOURCE_DEPENDS_ON));
+            
+            // columnar
+            Boolean sColumnar = xml.getBooleanAttribute(node, SOURCE_COLUMNAR);
+            if (sColumnar != null)
+                source.setColumnar(sColumnar.booleanValue());
+            else
+                source.setColumnar(false);
+            
             // object name
             value = xml.getNodeValue(node, OBJECT_NAME);
             if (Utils.isNothing(value))
@@ -2127,6 +2228,43 @@ public class EtlFactory
                     source.setKeyName(null);
                 }
                 
+                // fetch size and cursor hints
+                source.setFetchSize(Utils.str2Int(
+                        xml.getStringAttribute(extractNode, SOURCE_FETCH_SIZE),
+                        Source.DEFAULT_FETCH_SIZE));
+                
+                Boolean forwardOnly = xml.getBooleanAttribute(extractNode,
+                        SOURCE_FORWARD_ONLY);
+                
+                source.setForwardOnly(forwardOnly != null ? forwardOnly : true);
+                
+                Boolean readOnly = xml.getBooleanAttribute(extractNode,
+                        SOURCE_READ_ONLY);
+                
+                source.setReadOnly(readOnly != null ? readOnly : true);
+                
+                // partitioned extract
+                source.setPartitionBy(xml.getStringAttribute(extractNode,
+                        SOURCE_PARTITION_BY));
+                
+                source.setPartitions(Utils.str2Int(
+                        xml.getStringAttribute(extractNode, SOURCE_PARTITIONS),
+                        0));
+                
+                source.setPartitionRanges(xml.getStringAttribute(extractNode,
+                        SOURCE_PARTITION_RANGES));
+                
+                // incremental extract
+                source.setWatermark(xml.getStringAttribute(extractNode,
+                        SOURCE_WATERMARK));
+                
+                source.setWatermarkVar(xml.getStringAttribute(extractNode,
+                        SOURCE_WATERMARK_VAR));
+                
+                source.setWatermarkOverlap(Utils.str2Long(xml
+                        .getStringAttribute(extractNode,
+                                SOURCE_WATERMARK_OVERLAP), 0));
+                
                 // data writer
                 Node writerNode = xml.getFirstNodeNamed(extractNode,
                         SOURCE_WRITER);
@@ -10,15 +10,17 @@ package com.toolsverse.etl.core.engine;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import com.toolsverse.etl.common.Alias;
 import com.toolsverse.etl.common.DataSet;
 import com.toolsverse.etl.common.DataSetData;
 import com.toolsverse.etl.common.DataSetRecord;
-import com.toolsverse.etl.common.FieldDef;
 import com.toolsverse.etl.common.OnException;
 import com.toolsverse.etl.common.Variable;
 import com.toolsverse.etl.connector.AddRecordCallback;
@@ -40,6 +42,8 @@ import com.toolsverse.etl.util.EtlLogger;
 import com.toolsverse.util.FileUtils;
 import com.toolsverse.util.ListHashMap;
 import com.toolsverse.util.Utils;
+import com.toolsverse.util.concurrent.DependencyHandler;
+import com.toolsverse.util.concurrent.DependencyScheduler;
 import com.toolsverse.util.concurrent.ParallelExecutor;
 import com.toolsverse.util.factory.ObjectFactory;
 import com.toolsverse.util.log.Logger;
@@ -55,6 +59,71 @@ import com.toolsverse.util.log.Logger;
 public class Extractor
 {
     
+    /**
+     * Extracts the source scheduled by the {@link DependencyScheduler}.
+     */
+    private class ExtractHandler implements DependencyHandler<Source>
+    {
+        
+        /** The etl config. */
+        private final EtlConfig _config;
+        
+        /** The scenario. */
+        private final Scenario _scenario;
+        
+        /** The executor. */
+        private final ParallelExecutor _executor;
+        
+        /**
+         * Instantiates a new extract handler.
+         * 
+         * @param config
+         *            the etl config
+         * @param scenario
+         *            the scenario
+         * @param executor
+         *            the executor
+         */
+        public ExtractHandler(EtlConfig config, Scenario scenario,
+                ParallelExecutor executor)
+        {
+            _config = config;
+            _scenario = scenario;
+            _executor = executor;
+        }
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * com.toolsverse.util.concurrent.DependencyHandler#isBarrier(java.lang
+         * .Object)
+         */
+        public boolean isBarrier(Source source)
+            throws Exception
+        {
+            return EtlUtils.checkCondition(_config, source.getName(),
+                    _scenario.getVariables(), source);
+        }
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * com.toolsverse.util.concurrent.DependencyHandler#start(java.lang.
+         * Object)
+         */
+        public Future<?> start(Source source)
+            throws Exception
+        {
+            if (!EtlUtils.checkCondition(_config, source.getName(),
+                    _scenario.getVariables(), source))
+                return null;
+            
+            return justExtract(_config, _scenario, source, _executor);
+        }
+    }
+    
     /**
      * The Class ExtractorBeforeCallback.
      */
@@ -132,6 +201,12 @@ public class Extractor
         /** The data writer params. */
         DataSetConnectorParams _writerParams;
         
+        /** The watermark. */
+        Watermark _watermark;
+        
+        /** The index of the watermark column. */
+        Integer _watermarkIndex;
+        
         /**
          * Instantiates a new extractor callback.
          * 
@@ -153,13 +228,16 @@ public class Extractor
          *            the data writer
          * @param writerParams
          *            the data writer params
+         * @param watermark
+         *            the watermark of the incrementally extracted source. Can
+         *            be null.
          */
         public ExtractorCallback(TaskExecutor taskExecutor,
                 boolean inlineTasksExist, EtlConfig config, Source source,
                 Scenario scenario, Destination destination,
                 AddRecordCallback loader,
                 DataSetConnector<DataSetConnectorParams, ?> writer,
-                DataSetConnectorParams writerParams)
+                DataSetConnectorParams writerParams, Watermark watermark)
         {
             _taskExecutor = taskExecutor;
             _inlineTasksExist = inlineTasksExist;
@@ -170,6 +248,8 @@ public class Extractor
             _loader = loader;
             _writer = writer;
             _writerParams = writerParams;
+            _watermark = watermark;
+            _watermarkIndex = null;
         }
         
         /*
@@ -205,6 +285,25 @@ public class Extractor
                 }
             }
             
+            if (_watermark != null && record != null)
+            {
+                if (_watermarkIndex == null)
+                {
+                    _watermarkIndex = dataSet.getFields().indexOf(
+                            dataSet.getNonCaseSensitiveFields().get(
+                                    _source.getWatermark()));
+                    
+                    if (_watermarkIndex < 0)
+                        throw new Exception(
+                                EtlResource.WATERMARK_NO_COLUMN_MSG.getValue()
+                                        + _source.getWatermark()
+                                        + ", source: " + _source.getName());
+                }
+                
+                _watermark.add(dataSet.getFieldValue(record, _watermarkIndex),
+                        dataSet.getFieldDef(_watermarkIndex).getSqlDataType());
+            }
+            
             if (_writer != null)
                 _writer.inlinePersist(_writerParams, dataSet,
                         dataSet.getDriver(), record, -1, -1);
@@ -212,14 +311,10 @@ public class Extractor
             if (_source.isEmpty() || _loader != null)
             {
                 DataSetData data = dataSet.getData();
-                ListHashMap<String, FieldDef> fields = dataSet.getFields();
+                
                 if (_loader != null)
-                {
-                    _destination.getDataSet().setData(data);
-                    _destination.getDataSet().setFields(fields);
-                    
                     _loader.onAddRecord(dataSet, driver, record, index);
-                }
+                
                 if (data != null)
                     data.clear();
             }
@@ -360,16 +455,39 @@ public class Extractor
         
         try
         {
+            // sources are extracted as soon as sources they depend on are
+            // extracted, stubs wait for all sources declared before them.
+            // Conditions are checked when source or stub is reached
+            DependencyScheduler<Source> scheduler = new DependencyScheduler<Source>(
+                    executor);
+            
             for (int i = 0; i < scenario.getSources().size(); i++)
             {
                 Source source = scenario.getSources().get(i);
                 
+                if (!source.isEnabled())
+                    continue;
+                
+                if (source.isStub())
+                {
+                    if (executor != null)
+                        scheduler.addBarrier(source);
+                    
+                    continue;
+                }
+                
                 Destination dest = scenario.getDestinationBySource(source);
                 
-                if (!doExtract(executor, config, scenario, source,
-                        !isStream(scenario, dest)))
-                    return;
+                if (isStream(scenario, dest))
+                    continue;
+                
+                scheduler.add(source.getName(), source,
+                        scenario.getDependsOn(source), !source.isParallel());
             }
+            
+            if (!scheduler.execute(new ExtractHandler(config, scenario,
+                    executor)))
+                return;
         }
         finally
         {
@@ -428,6 +546,54 @@ public class Extractor
         }
     }
     
+    /**
+     * Extracts partitions of the source in parallel. The first partition is
+     * extracted using connection of the source, all other partitions use new
+     * connections created for the same alias, which are released when extract
+     * is finished.
+     * 
+     * @param config
+     *            the etl config
+     * @param source
+     *            the source
+     * @param alias
+     *            the alias
+     * @param sqls
+     *            the sql for each partition
+     * @param bindVars
+     *            the bind variables
+     * @param params
+     *            the reader params
+     * @param dataSet
+     *            the data set
+     * @throws Exception
+     *             in case of any error
+     */
+    private void extractPartitions(EtlConfig config, Source source,
+            Alias alias, List<String> sqls, Map<String, Object> bindVars,
+            SqlConnectorParams params, DataSet dataSet)
+        throws Exception
+    {
+        List<Connection> connections = new ArrayList<Connection>();
+        connections.add(source.getConnection());
+        
+        try
+        {
+            for (int i = 1; i < sqls.size(); i++)
+                connections.add(config.getConnectionFactory().getConnection(
+                        alias));
+            
+            new PartitionedExtract(source, sqls, bindVars).populate(params,
+                    dataSet, dataSet.getDriver(), connections);
+        }
+        finally
+        {
+            for (int i = 1; i < connections.size(); i++)
+                config.getConnectionFactory().releaseConnection(
+                        connections.get(i));
+        }
+    }
+    
     /**
      * Extracts data to the data set from the source.
      * 
@@ -454,21 +620,28 @@ public class Extractor
         PreparedStatement statement = null;
         ResultSet rs = null;
         DataSet dataSet = null;
+        List<String> partitionSqls = null;
         String driverName = !Utils.isNothing(source.getDriverClassName()) ? source
                 .getDriverClassName() : scenario.getDriverClassName();
         String sql = source.getSql();
         ListHashMap<String, Variable> variables = scenario.getVariables();
         Map<String, Object> bindVars = new HashMap<String, Object>();
+        Watermark watermark = getWatermark(scenario, source);
         
         Alias alias = (Alias)config.getConnectionFactory().getConnectionParams(
                 source.getConnectionName());
         
         EtlFactory etlFactory = new EtlFactory();
         
+        Driver driver = etlFactory.getDriver(driverName, null, null);
+        
         try
         {
             if (!Utils.isNothing(sql) && source.getConnection() != null)
             {
+                if (watermark != null)
+                    variables = getVariables(variables, source, watermark);
+                
                 sql = EtlUtils.mergeSqlWithVars(config, sql, source.getUsing(),
                         variables, bindVars);
                 
@@ -478,9 +651,46 @@ public class Extractor
                     FileUtils.saveTextFile(EtlUtils.getSqlFileName("s_"
                             + source.getName(), -1), sql);
                 
+                // split on partitions which are extracted in parallel. If
+                // range of values of the partition column cannot be
+                // calculated the error, if any, is handled when source is
+                // extracted using single cursor
+                if (alias != null && alias.isDbConnection()
+                        && Utils.isNothing(source.getLinkedSourceName())
+                        && driver.supportsParallelExtract())
+                    try
+                    {
+                        partitionSqls = PartitionedExtract.getPartitionSqls(
+                                source, source.getConnection(), sql, bindVars);
+                    }
+                    catch (Exception ex)
+                    {
+                        Logger.log(Logger.INFO, EtlLogger.class,
+                                EtlResource.PARTITIONS_ERROR_MSG.getValue()
+                                        + source.getName(), ex);
+                    }
+            }
+            
+            if (!Utils.isNothing(sql) && source.getConnection() != null
+                    && partitionSqls == null)
+            {
                 try
                 {
-                    statement = source.getConnection().prepareStatement(sql);
+                    statement = source.getConnection().prepareStatement(
+                            sql,
+                            source.isForwardOnly() ? ResultSet.TYPE_FORWARD_ONLY
+                                    : ResultSet.TYPE_SCROLL_INSENSITIVE,
+                            source.isReadOnly() ? ResultSet.CONCUR_READ_ONLY
+                                    : ResultSet.CONCUR_UPDATABLE);
+                    
+                    try
+                    {
+                        statement.setFetchSize(source.getFetchSize());
+                    }
+                    // fetch size is just a hint. It's ok
+                    catch (Exception ex)
+                    {
+                    }
                 }
                 catch (Exception ex)
                 {
@@ -517,8 +727,11 @@ public class Extractor
             dataSet = new DataSet();
             dataSet.setName(source.getName());
             dataSet.setEncode(source.isEncoded());
+            dataSet.setColumnar(source.isColumnar());
+            dataSet.setSpillRows(config.getSpillRows());
+            dataSet.setSpillDir(config.getSpillDir());
             dataSet.setKeyFields(source.getKeyFields());
-            dataSet.setDriver(etlFactory.getDriver(driverName, null, null));
+            dataSet.setDriver(driver);
             
             source.setDataSet(dataSet);
             
@@ -579,7 +792,8 @@ public class Extractor
             
             ExtractorCallback extractorCallback = new ExtractorCallback(
                     taskExecutor, inlineTasksExist, config, source, scenario,
-                    destination, addRecordCallback, writer, writerParams);
+                    destination, addRecordCallback, writer, writerParams,
+                    watermark);
             
             ExtractorBeforeCallback extractorBeforeCallback = new ExtractorBeforeCallback(
                     writer, writerParams);
@@ -623,7 +837,12 @@ public class Extractor
             
             try
             {
-                reader.populate(readerParams, dataSet, dataSet.getDriver());
+                if (partitionSqls != null
+                        && readerParams instanceof SqlConnectorParams)
+                    extractPartitions(config, source, alias, partitionSqls,
+                            bindVars, (SqlConnectorParams)readerParams, dataSet);
+                else
+                    reader.populate(readerParams, dataSet, dataSet.getDriver());
                 
                 if (writer != null)
                     writer.postPersist(writerParams, dataSet,
@@ -640,6 +859,18 @@ public class Extractor
             
             dataSet = taskResult != null && taskResult.getDataSet() != null ? taskResult
                     .getDataSet() : dataSet;
+            
+            // new watermark is committed together with the etl process
+            if (watermark != null && _transactionMonitor != null
+                    && watermark.save())
+            {
+                _transactionMonitor.addPendingFile(watermark.getFileName(),
+                        watermark.getPendingFileName());
+                
+                Logger.log(Logger.INFO, EtlLogger.class,
+                        EtlResource.WATERMARK_SAVED_MSG.getValue()
+                                + watermark.getNewValue());
+            }
         }
         finally
         {
@@ -708,6 +939,86 @@ public class Extractor
         return connector;
     }
     
+    /**
+     * Gets the variables used to extract the source incrementally: the
+     * variables of the scenario and the watermark variable. The value of the
+     * watermark variable is the last committed watermark minus overlap or, if
+     * source was never extracted incrementally, the value declared in the
+     * scenario. The watermark variable is a copy of the declared variable, so
+     * variables of the scenario are not modified and sources extracted in
+     * parallel don't affect each other.
+     * 
+     * @param variables
+     *            the variables of the scenario
+     * @param source
+     *            the source
+     * @param watermark
+     *            the watermark
+     * @return the variables
+     * @throws Exception
+     *             if watermark variable is not declared in the scenario
+     */
+    private ListHashMap<String, Variable> getVariables(
+            ListHashMap<String, Variable> variables, Source source,
+            Watermark watermark)
+        throws Exception
+    {
+        String name = source.getWatermarkVar();
+        String value = watermark.getVarValue(source.getWatermarkOverlap());
+        
+        ListHashMap<String, Variable> vars = new ListHashMap<String, Variable>();
+        Variable watermarkVar = null;
+        
+        if (variables != null)
+            for (Variable var : variables.getList())
+            {
+                if (name.equalsIgnoreCase(var.getName()))
+                    watermarkVar = var;
+                else
+                    vars.put(var.getName(), var);
+            }
+        
+        if (watermarkVar == null)
+            throw new Exception(EtlResource.WATERMARK_NO_VAR_MSG.getValue()
+                    + name + ", source: " + source.getName());
+        
+        if (value != null)
+        {
+            watermarkVar = watermarkVar.copy();
+            watermarkVar.setValue(value);
+        }
+        
+        if (value != null)
+            Logger.log(Logger.INFO, EtlLogger.class,
+                    EtlResource.WATERMARK_MSG.getValue() + source.getName()
+                            + ", watermark: " + value);
+        
+        vars.put(watermarkVar.getName(), watermarkVar);
+        
+        return vars;
+    }
+    
+    /**
+     * Gets the last committed watermark of the source.
+     * 
+     * @param scenario
+     *            the scenario
+     * @param source
+     *            the source
+     * @return the watermark or null if source is not extracted incrementally
+     * @throws Exception
+     *             in case of any error
+     */
+    private Watermark getWatermark(Scenario scenario, Source source)
+        throws Exception
+    {
+        if (Utils.isNothing(source.getWatermark())
+                || Utils.isNothing(source.getSql()))
+            return null;
+        
+        return Watermark.load(Watermark.getFileName(scenario, source));
+    }
+    
     /**
      * Gets the data writer using given class name.
      * 
@@ -755,10 +1066,12 @@ public class Extractor
      *            the source
      * @param parallelExecutor
      *            the parallel executor
+     * @return the future if source is extracted in its own thread, otherwise
+     *         null
      * @throws Exception
      *             in case of any error
      */
-    private void justExtract(EtlConfig config, Scenario scenario,
+    private Future<?> justExtract(EtlConfig config, Scenario scenario,
             Source source, ParallelExecutor parallelExecutor)
         throws Exception
     {
@@ -769,6 +1082,8 @@ public class Extractor
                             + "...");
             
             extract(config, scenario, source, null, null);
+            
+            return null;
         }
         else
         {
@@ -776,8 +1091,8 @@ public class Extractor
                     EtlResource.ADDING_THREAD_FOR_EXTRACTING_MSG.getValue()
                             + source.getName() + "...");
             
-            parallelExecutor.addTask(new ParallelExtract(config, scenario,
-                    source));
+            return parallelExecutor.addTask(new ParallelExtract(config,
+                    scenario, source));
         }
         
     }
@@ -16,6 +16,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import com.toolsverse.etl.common.Alias;
 import com.toolsverse.etl.common.ConnectionParams;
@@ -40,6 +41,8 @@ import com.toolsverse.ext.loader.SharedUnitLoader;
 import com.toolsverse.ext.loader.UnitLoader;
 import com.toolsverse.util.ClassUtils;
 import com.toolsverse.util.Utils;
+import com.toolsverse.util.concurrent.DependencyHandler;
+import com.toolsverse.util.concurrent.DependencyScheduler;
 import com.toolsverse.util.concurrent.ParallelExecutor;
 import com.toolsverse.util.factory.ObjectFactory;
 import com.toolsverse.util.log.Logger;
@@ -54,6 +57,146 @@ import com.toolsverse.util.log.Logger;
 
 public class Loader
 {
+    /**
+     * Loads the destination scheduled by the {@link DependencyScheduler}.
+     */
+    private class LoadHandler implements DependencyHandler<Destination>
+    {
+        
+        /** The etl config. */
+        private final EtlConfig _config;
+        
+        /** The scenario. */
+        private final Scenario _scenario;
+        
+        /** The load index. */
+        private final int _loadIndex;
+        
+        /** The etl unit. */
+        private final EtlUnit _unit;
+        
+        /** The driver. */
+        private final Driver _driver;
+        
+        /** The connection. */
+        private final Connection _conn;
+        
+        /** The clean up connection. */
+        private final Connection _cleanUpConn;
+        
+        /** The code generator. */
+        private final CodeGen _codeGen;
+        
+        /** The extractor. */
+        private final Extractor _extractor;
+        
+        /** The executor. */
+        private final ParallelExecutor _executor;
+        
+        /** If true code generated for destinations must be assembled. */
+        private boolean _needToAssemble;
+        
+        /**
+         * Instantiates a new load handler.
+         * 
+         * @param config
+         *            the etl config
+         * @param scenario
+         *            the scenario
+         * @param loadIndex
+         *            the load index
+         * @param unit
+         *            the etl unit
+         * @param driver
+         *            the driver
+         * @param conn
+         *            the connection
+         * @param cleanUpConn
+         *            the clean up connection
+         * @param codeGen
+         *            the code generator
+         * @param extractor
+         *            the extractor
+         * @param executor
+         *            the executor
+         */
+        public LoadHandler(EtlConfig config, Scenario scenario, int loadIndex,
+                EtlUnit unit, Driver driver, Connection conn,
+                Connection cleanUpConn, CodeGen codeGen, Extractor extractor,
+                ParallelExecutor executor)
+        {
+            _config = config;
+            _scenario = scenario;
+            _loadIndex = loadIndex;
+            _unit = unit;
+            _driver = driver;
+            _conn = conn;
+            _cleanUpConn = cleanUpConn;
+            _codeGen = codeGen;
+            _extractor = extractor;
+            _executor = executor;
+            _needToAssemble = false;
+        }
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * com.toolsverse.util.concurrent.DependencyHandler#isBarrier(java.lang
+         * .Object)
+         */
+        public boolean isBarrier(Destination destination)
+            throws Exception
+        {
+            return EtlUtils.checkCondition(_config, destination.getName(),
+                    _scenario.getVariables(), destination);
+        }
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * com.toolsverse.util.concurrent.DependencyHandler#start(java.lang.
+         * Object)
+         */
+        public Future<?> start(Destination destination)
+            throws Exception
+        {
+            if (!EtlUtils.checkCondition(_config, destination.getName(),
+                    _scenario.getVariables(), destination))
+                return null;
+            
+            boolean isSingle = isSingle(_config, _driver, _scenario,
+                    destination);
+            
+            _needToAssemble = _needToAssemble || !isSingle;
+            
+            if ((isStream(destination, _scenario) || isSingle)
+                    && _codeGen.getStatus() == CodeGen.PREPARED_STATUS)
+            {
+                try
+                {
+                    _codeGen.assembleCode(_config, _scenario, _driver,
+                            _loadIndex, false);
+                    
+                    _codeGen.execute(_config, _scenario, _driver, false,
+                            _conn, _cleanUpConn, null);
+                    
+                }
+                finally
+                {
+                    _codeGen.reset();
+                    
+                    _codeGen.setUnit(_unit);
+                }
+            }
+            
+            return loadDestination(_executor, destination, _config, _scenario,
+                    _driver, _extractor, isSingle, _conn,
+                    (isSingle) ? Loader.this : null, _codeGen);
+        }
+    }
+    
     /**
      * The Class LoaderCallback.
      */
@@ -115,6 +258,9 @@ public class Loader
                 DataSetRecord record, int index)
             throws Exception
         {
+            _destination.getDataSet().setData(dataSet.getData());
+            _destination.getDataSet().setFields(dataSet.getFields());
+            
             prepareAndExecute(_config, _scenario, _destination, _writer,
                     _writerParams, record == null, true, _parentCodeGen);
         }
@@ -268,6 +414,9 @@ public class Loader
     /** This suffix is added to the connection name to get a clean up connection name. */
     private static final String CLEAN_UP_CONN = "cleanupconnection";
     
+    /** This suffix is added to the connection name to get a name of the connection used by the load thread. */
+    private static final String LOAD_CONN = "loadconnection";
+    
     /** The transaction monitor. */
     private final TransactionMonitor _transactionMonitor;
     
@@ -456,6 +605,140 @@ public class Loader
         }
     }
     
+    /**
+     * Gets the checkpoint of the destination which is committed periodically.
+     * If scenario is resumed the last saved checkpoint is used, otherwise the
+     * stale checkpoint is deleted and load starts from the beginning. The
+     * checkpoint is added to the transaction monitor, so it is deleted when
+     * etl process is successfully committed. The destination which shares
+     * connection with other destinations is not committed periodically: the
+     * commit would also commit changes made by other destinations, which are
+     * not skipped when load is resumed.
+     * 
+     * @param config
+     *            the etl config
+     * @param scenario
+     *            the scenario
+     * @param destination
+     *            the destination
+     * @param conn
+     *            the connection
+     * @return the checkpoint or null if destination is not committed
+     *         periodically
+     * @throws Exception
+     *             in case of any error
+     */
+    private Checkpoint getCheckpoint(EtlConfig config, Scenario scenario,
+            Destination destination, Connection conn)
+        throws Exception
+    {
+        if (!destination.isBatch() || !destination.isCheckpoint()
+                || conn == null)
+            return null;
+        
+        if (scenario.getDestinations() != null)
+            for (Destination other : scenario.getDestinations().getList())
+                if (other != destination
+                        && config.getConnectionFactory().getConnection(
+                                other.getDefaultConnectionName()) == conn)
+                {
+                    Logger.log(Logger.INFO, EtlLogger.class,
+                            EtlResource.CHECKPOINT_SHARED_CONN_MSG.getValue()
+                                    + destination.getName());
+                    
+                    return null;
+                }
+        
+        String fileName = Checkpoint.getFileName(scenario, destination);
+        
+        Checkpoint checkpoint = scenario.isAttrSet(Scenario.RESUME_ATTR) ? Checkpoint
+                .load(fileName) : null;
+        
+        if (checkpoint == null)
+        {
+            checkpoint = new Checkpoint(fileName);
+            
+            checkpoint.delete();
+        }
+        
+        if (_transactionMonitor != null)
+            _transactionMonitor.addCheckpoint(fileName);
+        
+        return checkpoint;
+    }
+    
+    /**
+     * Gets the connections used to load destination by multiple threads. The
+     * first connection is the connection of the destination. Other connections
+     * are created once for each thread of the destination, kept by the
+     * connection factory until etl process is finished and added to the
+     * transaction monitor, so all of them are committed or rolled back
+     * together.
+     * 
+     * @param config
+     *            the etl config
+     * @param destination
+     *            the destination
+     * @param driver
+     *            the driver
+     * @param conn
+     *            the connection
+     * @return the connections or null if destination is loaded by the single
+     *         thread
+     * @throws Exception
+     *             in case of any error
+     */
+    private List<Connection> getLoadConnections(EtlConfig config,
+            Destination destination, Driver driver, Connection conn)
+        throws Exception
+    {
+        if (destination.getLoadThreads() <= 1 || !destination.isBatch()
+                || destination.getCheckpoint() != null
+                || conn == null || driver == null
+                || !driver.supportsParallelLoad())
+            return null;
+        
+        ConnectionParams connectionParams = config.getConnectionFactory()
+                .getConnectionParams(conn);
+        
+        if (connectionParams == null)
+            return null;
+        
+        List<Connection> connections = new ArrayList<Connection>();
+        connections.add(conn);
+        
+        for (int i = 1; i < destination.getLoadThreads(); i++)
+        {
+            String name = connectionParams.getName() + LOAD_CONN
+                    + destination.getName() + i;
+            
+            Connection loadConn = config.getConnectionFactory().getConnection(
+                    name);
+            
+            if (loadConn == null)
+            {
+                ConnectionParams loadAlias = connectionParams.copy(name);
+                
+                loadConn = config.getConnectionFactory().getConnection(
+                        loadAlias);
+                
+                config.getConnectionFactory().addConnection(loadConn,
+                        loadAlias, name, null);
+            }
+            
+            boolean isNewConnection = true;
+            
+            if (_transactionMonitor != null)
+                isNewConnection = _transactionMonitor.addConnection(loadConn);
+            
+            executeStartTransactionSql(loadConn, driver, isNewConnection);
+            
+            connections.add(loadConn);
+        }
+        
+        return connections;
+    }
+    
     /**
      * Gets the data reader.
      * 
@@ -493,6 +776,43 @@ public class Loader
         return connector;
     }
     
+    /**
+     * Checks if the destination is loaded using the connection of its source.
+     * The connection can not be used by the reader and loader threads at the
+     * same time, so such destination is not loaded using pipeline.
+     * 
+     * @param config
+     *            the etl config
+     * @param destination
+     *            the destination
+     * @param conn
+     *            the connection of the destination
+     * @return true, if destination shares connection with the source
+     * @throws Exception
+     *             in case of any error
+     */
+    private boolean isSharedConnection(EtlConfig config,
+            Destination destination, Connection conn)
+        throws Exception
+    {
+        Connection sourceConn = config.getConnectionFactory().getConnection(
+                destination.getSource().getConnectionName());
+        
+        if (sourceConn == null)
+            return false;
+        
+        boolean isShared = sourceConn == conn
+                || (destination.getLoadConnections() != null && destination
+                        .getLoadConnections().contains(sourceConn));
+        
+        if (isShared)
+            Logger.log(Logger.INFO, EtlLogger.class,
+                    EtlResource.PIPELINE_SHARED_CONN_MSG.getValue()
+                            + destination.getName());
+        
+        return isShared;
+    }
+    
     /**
      * Checks if data set can be reused from the source.
      * 
@@ -527,7 +847,7 @@ public class Loader
     {
         return Destination.SCOPE_SINGLE
                 .equalsIgnoreCase(destination.getScope())
-                || destination.isStream();
+                || destination.isStream() || destination.isBatch();
     }
     
     /**
@@ -743,6 +1063,12 @@ public class Loader
         {
             setDataSet(dataSet, destination, driver, conn);
             
+            destination.setCheckpoint(getCheckpoint(config, scenario,
+                    destination, conn));
+            
+            destination.setLoadConnections(getLoadConnections(config,
+                    destination, driver, conn));
+            
             TaskResult taskResult = taskExecutor.executePreTasks(config,
                     destination, scenario, dataSet);
             
@@ -790,22 +1116,48 @@ public class Loader
                 
                 destination.setDataSet(dataSet);
                 
+                StreamPipeline pipeline = null;
+                
                 try
                 {
-                    LoaderCallback loaderCallback = new LoaderCallback(config,
-                            scenario, destination, dataWriter, writerParams,
-                            codeGen);
+                    AddRecordCallback loaderCallback = new LoaderCallback(
+                            config, scenario, destination, dataWriter,
+                            writerParams, codeGen);
+                    
+                    if (destination.isPipeline()
+                            && !isSharedConnection(config, destination, conn))
+                    {
+                        pipeline = new StreamPipeline(destination,
+                                loaderCallback);
+                        
+                        loaderCallback = pipeline;
+                    }
                     
                     extractor.extract(config, scenario,
                             destination.getSource(), destination,
                             loaderCallback);
                     
+                    if (pipeline != null)
+                        pipeline.finish();
+                    
+                    if (destination.getBatchLoader() != null)
+                        destination.getBatchLoader().flush();
+                    
                     if (dataWriter != null)
                         dataWriter.postPersist(writerParams, dataSet, driver);
                     
                 }
                 finally
                 {
+                    if (pipeline != null)
+                        pipeline.terminate();
+                    
+                    if (destination.getBatchLoader() != null)
+                    {
+                        destination.getBatchLoader().close();
+                        destination.setBatchLoader(null);
+                    }
+                    
                     if (dataWriter != null)
                         dataWriter.cleanUp(writerParams, dataSet, driver);
                 }
@@ -928,6 +1280,10 @@ public class Loader
                         dataSet);
             if (destination.getCache() != null)
                 destination.getCache().clear();
+            
+            destination.setLoadConnections(null);
+            
+            destination.setCheckpoint(null);
         }
     }
     
@@ -956,10 +1312,12 @@ public class Loader
      *            the loader
      * @param codeGen
      *            the code generator
+     * @return the future if destination is loaded in its own thread,
+     *         otherwise null
      * @throws Exception
      *             in case of any error
      */
-    private void loadDestination(ParallelExecutor executor,
+    private Future<?> loadDestination(ParallelExecutor executor,
             Destination destination, EtlConfig config, Scenario scenario,
             Driver driver, Extractor extractor, boolean isSingle,
             Connection conn, Loader loader, CodeGen codeGen)
@@ -967,16 +1325,21 @@ public class Loader
     {
         if (!destination.isParallel() || executor == null || driver == null
                 || !driver.supportsParallelLoad())
+        {
             loadDestination(destination, config, scenario, driver, extractor,
                     isSingle, conn, loader, codeGen);
+            
+            return null;
+        }
         else
         {
             Logger.log(Logger.INFO, EtlLogger.class,
                     EtlResource.ADDING_THREAD_FOR_LOADING_MSG.getValue()
                             + destination.getName() + "...");
             
-            executor.addTask(new ParallellLoad(destination, config, scenario,
-                    driver, extractor, isSingle, conn, loader, codeGen));
+            return executor.addTask(new ParallellLoad(destination, config,
+                    scenario, driver, extractor, isSingle, conn, loader,
+                    codeGen));
         }
     }
     
@@ -1004,8 +1367,6 @@ public class Loader
         if (dests == null)
             return;
         
-        Destination destination = null;
-        
         CodeGen codeGen = (CodeGen)ObjectFactory.instance().get(
                 scenario.getCodeGenClass());
         
@@ -1095,64 +1456,42 @@ public class Loader
         Logger.log(Logger.INFO, EtlLogger.class,
                 EtlResource.PREPARING_SQL_SCRIPT_MSG.getValue());
         
-        boolean needToAssebble = false;
+        LoadHandler handler = new LoadHandler(config, scenario, loadIndex,
+                unit, driver, conn, cleanUpConn, codeGen, extractor, executor);
         
         try
         {
+            // destinations are loaded as soon as destinations they depend on
+            // are loaded, "wait" destinations wait for all destinations
+            // declared before them. Conditions are checked when destination
+            // is reached
+            DependencyScheduler<Destination> scheduler = new DependencyScheduler<Destination>(
+                    executor);
+            
             for (int i = 0; i < dests.size(); i++)
             {
-                destination = dests.get(i);
+                Destination destination = dests.get(i);
                 
-                if (!destination.isEnabled()
-                        || !EtlUtils.checkCondition(config,
-                                destination.getName(), scenario.getVariables(),
-                                destination))
+                if (!destination.isEnabled())
                     continue;
                 
-                if (executor != null)
+                if (executor != null
+                        && Destination.WAIT_TYPE.equalsIgnoreCase(destination
+                                .getType()))
                 {
-                    if (executor.isTerminated())
-                        return;
+                    scheduler.addBarrier(destination);
                     
-                    // wait
-                    if (Destination.WAIT_TYPE.equalsIgnoreCase(destination
-                            .getType()))
-                    {
-                        executor.waitUntilDone();
-                        
-                        continue;
-                    }
-                }
-                
-                boolean isSingle = isSingle(config, driver, scenario,
-                        destination);
-                
-                needToAssebble = needToAssebble || !isSingle;
-                
-                if ((isStream(destination, scenario) || isSingle)
-                        && codeGen.getStatus() == CodeGen.PREPARED_STATUS)
-                {
-                    try
-                    {
-                        codeGen.assembleCode(config, scenario, driver,
-                                loadIndex, false);
-                        
-                        codeGen.execute(config, scenario, driver, false, conn,
-                                cleanUpConn, null);
-                        
-                    }
-                    finally
-                    {
-                        codeGen.reset();
-                        
-                        codeGen.setUnit(unit);
-                    }
+                    continue;
                 }
                 
-                loadDestination(executor, destination, config, scenario,
-                        driver, extractor, isSingle, conn, (isSingle) ? this
-                                : null, codeGen);
+                scheduler.add(destination.getName(), destination,
+                        scenario.getDependsOn(destination),
+                        !destination.isParallel() || driver == null
+                                || !driver.supportsParallelLoad());
             }
+            
+            if (!scheduler.execute(handler))
+                return;
         }
         catch (Exception ex)
         {
@@ -1180,7 +1519,7 @@ public class Loader
         
         try
         {
-            if (needToAssebble
+            if (handler._needToAssemble
                     && codeGen.getStatus() == CodeGen.PREPARED_STATUS)
             {
                 codeGen.assembleCode(config, scenario, driver, loadIndex, false);
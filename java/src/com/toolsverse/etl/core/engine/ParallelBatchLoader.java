@@ -0,0 +1,394 @@
+/*
+ * ParallelBatchLoader.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import com.toolsverse.etl.common.DataSet;
+import com.toolsverse.etl.common.DataSetRecord;
+import com.toolsverse.etl.driver.Driver;
+import com.toolsverse.etl.resource.EtlResource;
+import com.toolsverse.etl.util.EtlLogger;
+import com.toolsverse.util.Utils;
+import com.toolsverse.util.concurrent.ParallelExecutor;
+import com.toolsverse.util.log.Logger;
+
+/**
+ * Loads records of the single destination using multiple threads. Each thread
+ * has its own connection and its own {@link BatchLoader}. If destination has a
+ * load key records are partitioned by the hash of the key, so all records with
+ * the same key are loaded by the same thread in the order they were added,
+ * otherwise records are distributed between threads in round robin order.
+ * Connections are expected to be registered in the transaction monitor, so
+ * all threads are committed or rolled back together when etl process is
+ * finished. Any exception in the load thread stops the load and is re-thrown
+ * in the thread which adds records.
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class ParallelBatchLoader extends BatchLoader
+{
+    
+    /**
+     * The record and its row number.
+     */
+    private static class Entry
+    {
+        
+        /** The record. */
+        private final DataSetRecord _record;
+        
+        /** The row number. */
+        private final long _row;
+        
+        /**
+         * Instantiates a new entry.
+         * 
+         * @param record
+         *            the record
+         * @param row
+         *            the row number
+         */
+        public Entry(DataSetRecord record, long row)
+        {
+            _record = record;
+            _row = row;
+        }
+    }
+    
+    /**
+     * The load thread.
+     */
+    private class LoadWriter implements Callable<Object>
+    {
+        
+        /** The batch loader. */
+        private final BatchLoader _loader;
+        
+        /** The queue. */
+        private final BlockingQueue<Entry> _queue;
+        
+        /**
+         * Instantiates a new load writer.
+         * 
+         * @param loader
+         *            the batch loader
+         */
+        public LoadWriter(BatchLoader loader)
+        {
+            _loader = loader;
+            _queue = new ArrayBlockingQueue<Entry>(
+                    _destination.getBatchSize() * 2);
+        }
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.util.concurrent.Callable#call()
+         */
+        public Object call()
+            throws Exception
+        {
+            try
+            {
+                Entry entry = _queue.take();
+                
+                while (entry != END_OF_LOAD)
+                {
+                    _loader.addRecord(entry._record, entry._row);
+                    
+                    entry = _queue.take();
+                }
+                
+                _loader.flush();
+            }
+            catch (InterruptedException ex)
+            {
+                return null;
+            }
+            catch (Exception ex)
+            {
+                _exception = ex;
+                
+                _queue.clear();
+            }
+            
+            return null;
+        }
+    }
+    
+    /** The marker which is added to the queues when load is finished. */
+    private static final Entry END_OF_LOAD = new Entry(null, -1);
+    
+    /** The time in milliseconds to wait for the free space in the queue. */
+    private static final long WAIT_TIMEOUT = 100;
+    
+    /** The destination. */
+    private final Destination _destination;
+    
+    /** The batch loaders, one per connection. */
+    private final List<BatchLoader> _loaders;
+    
+    /** The load threads. */
+    private final List<LoadWriter> _writers;
+    
+    /** The executor. */
+    private ParallelExecutor _executor;
+    
+    /** The indexes of the key fields. */
+    private int[] _keys;
+    
+    /** The number of added records. */
+    private long _rowCount;
+    
+    /** The exception in the load thread. */
+    private volatile Exception _exception;
+    
+    /**
+     * Instantiates a new ParallelBatchLoader.
+     * 
+     * @param destination
+     *            the destination
+     * @param driver
+     *            the driver
+     * @param connections
+     *            the connections, one per load thread
+     */
+    public ParallelBatchLoader(Destination destination, Driver driver,
+            List<Connection> connections)
+    {
+        super(destination, driver, connections.get(0));
+        
+        _destination = destination;
+        _loaders = new ArrayList<BatchLoader>();
+        _writers = new ArrayList<LoadWriter>();
+        _executor = null;
+        _keys = null;
+        _rowCount = 0;
+        _exception = null;
+        
+        for (Connection conn : connections)
+            _loaders.add(new BatchLoader(destination, driver, conn));
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.toolsverse.etl.core.engine.BatchLoader#addRecord(com.toolsverse.etl
+     * .common.DataSetRecord)
+     */
+    @Override
+    public void addRecord(DataSetRecord record)
+        throws Exception
+    {
+        checkException();
+        
+        if (record == null)
+            return;
+        
+        if (_executor == null)
+            start();
+        
+        put(_writers.get(getWriterIndex(record)), new Entry(record,
+                _rowCount++));
+    }
+    
+    /**
+     * Re-throws exception in the load thread if any.
+     * 
+     * @throws Exception
+     *             the exception in the load thread
+     */
+    private void checkException()
+        throws Exception
+    {
+        if (_exception != null)
+            throw _exception;
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.core.engine.BatchLoader#close()
+     */
+    @Override
+    public void close()
+    {
+        stop();
+        
+        for (BatchLoader loader : _loaders)
+            loader.close();
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.core.engine.BatchLoader#flush()
+     */
+    @Override
+    public void flush()
+        throws Exception
+    {
+        if (_executor == null)
+        {
+            checkException();
+            
+            return;
+        }
+        
+        try
+        {
+            for (LoadWriter writer : _writers)
+                put(writer, END_OF_LOAD);
+            
+            _executor.waitUntilDone();
+            
+            checkException();
+        }
+        finally
+        {
+            stop();
+        }
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.core.engine.BatchLoader#getRowCount()
+     */
+    @Override
+    public long getRowCount()
+    {
+        return _rowCount;
+    }
+    
+    /**
+     * Gets the index of the load thread for the record. Uses hash of the
+     * values of the key fields if destination has a key, otherwise round
+     * robin.
+     * 
+     * @param record
+     *            the record
+     * @return the index of the load thread
+     */
+    private int getWriterIndex(DataSetRecord record)
+    {
+        if (_keys == null)
+            _keys = getKeys();
+        
+        if (_keys.length == 0)
+            return (int)(_rowCount % _writers.size());
+        
+        DataSet dataSet = _destination.getDataSet();
+        
+        int hash = 0;
+        
+        for (int key : _keys)
+        {
+            Object value = dataSet.getFieldValue(record, key);
+            
+            hash = 31 * hash + (value != null ? value.hashCode() : 0);
+        }
+        
+        return (hash & Integer.MAX_VALUE) % _writers.size();
+    }
+    
+    /**
+     * Gets the indexes of the key fields of the destination.
+     * 
+     * @return the indexes of the key fields or empty array if destination
+     *         doesn't have a key or key field is not found
+     */
+    private int[] getKeys()
+    {
+        String key = _destination.getLoadKey();
+        DataSet dataSet = _destination.getDataSet();
+        
+        if (Utils.isNothing(key) || dataSet == null)
+            return new int[0];
+        
+        String[] keyFields = key.split(",");
+        
+        int[] keys = new int[keyFields.length];
+        
+        for (int i = 0; i < keyFields.length; i++)
+        {
+            keys[i] = dataSet.getFieldIndex(keyFields[i].trim());
+            
+            if (keys[i] < 0)
+                return new int[0];
+        }
+        
+        return keys;
+    }
+    
+    /**
+     * Adds the record to the queue of the load thread. Waits if queue is full.
+     * 
+     * @param writer
+     *            the load thread
+     * @param entry
+     *            the record
+     * @throws Exception
+     *             in case of any error
+     */
+    private void put(LoadWriter writer, Entry entry)
+        throws Exception
+    {
+        while (!writer._queue.offer(entry, WAIT_TIMEOUT, TimeUnit.MILLISECONDS))
+        {
+            checkException();
+            
+            if (_executor.isTerminated())
+                return;
+        }
+    }
+    
+    /**
+     * Starts load threads.
+     */
+    private void start()
+    {
+        Logger.log(Logger.INFO, EtlLogger.class,
+                EtlResource.PARALLEL_LOAD_MSG.getValue() + _loaders.size());
+        
+        _executor = new ParallelExecutor(_loaders.size());
+        
+        for (BatchLoader loader : _loaders)
+        {
+            LoadWriter writer = new LoadWriter(loader);
+            
+            _writers.add(writer);
+            
+            _executor.addTask(writer);
+        }
+    }
+    
+    /**
+     * Stops load threads.
+     */
+    private void stop()
+    {
+        if (_executor != null)
+            _executor.terminate();
+        
+        _executor = null;
+        
+        _writers.clear();
+    }
+}
@@ -0,0 +1,719 @@
+/*
+ * PartitionedExtract.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import com.toolsverse.etl.common.DataSet;
+import com.toolsverse.etl.common.DataSetData;
+import com.toolsverse.etl.common.DataSetRecord;
+import com.toolsverse.etl.common.FieldDef;
+import com.toolsverse.etl.common.OnException;
+import com.toolsverse.etl.connector.AddRecordCallback;
+import com.toolsverse.etl.connector.BeforeCallback;
+import com.toolsverse.etl.connector.sql.SqlConnector;
+import com.toolsverse.etl.connector.sql.SqlConnectorParams;
+import com.toolsverse.etl.driver.Driver;
+import com.toolsverse.etl.resource.EtlResource;
+import com.toolsverse.etl.sql.util.SqlUtils;
+import com.toolsverse.etl.util.EtlLogger;
+import com.toolsverse.util.ListHashMap;
+import com.toolsverse.util.Utils;
+import com.toolsverse.util.concurrent.ParallelExecutor;
+import com.toolsverse.util.log.Logger;
+
+/**
+ * Extracts the single source using multiple connections at the same time. The
+ * sql of the source is split on ranges of values of the partition column, sql
+ * for each range is executed and read in its own thread using its own
+ * connection, and records from all partitions are merged into one data set by
+ * the calling thread, so inline tasks, data writer and loader are still called
+ * from one thread. Records from different partitions are interleaved, so the
+ * order of records is not preserved. Exceptions when sql of the partition is
+ * prepared or executed are handled by the {@link Source#handleException}
+ * the same way as for the source extracted using single cursor: ignored
+ * partition is empty. Any other exception in the partition thread stops the
+ * extract and is re-thrown in the calling thread.
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class PartitionedExtract
+{
+    
+    /**
+     * The partition thread.
+     */
+    private class PartitionReader implements Callable<Object>,
+            AddRecordCallback, BeforeCallback
+    {
+        
+        /** The connection. */
+        private final Connection _connection;
+        
+        /** The sql. */
+        private final String _sql;
+        
+        /**
+         * Instantiates a new partition reader.
+         * 
+         * @param connection
+         *            the connection
+         * @param sql
+         *            the sql
+         */
+        public PartitionReader(Connection connection, String sql)
+        {
+            _connection = connection;
+            _sql = sql;
+        }
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.util.concurrent.Callable#call()
+         */
+        public Object call()
+            throws Exception
+        {
+            PreparedStatement statement = null;
+            ResultSet rs = null;
+            
+            try
+            {
+                try
+                {
+                    statement = _connection.prepareStatement(
+                            _sql,
+                            _source.isForwardOnly() ? ResultSet.TYPE_FORWARD_ONLY
+                                    : ResultSet.TYPE_SCROLL_INSENSITIVE,
+                            _source.isReadOnly() ? ResultSet.CONCUR_READ_ONLY
+                                    : ResultSet.CONCUR_UPDATABLE);
+                    
+                    try
+                    {
+                        statement.setFetchSize(_source.getFetchSize());
+                    }
+                    // fetch size is just a hint. It's ok
+                    catch (Exception ex)
+                    {
+                    }
+                }
+                catch (Exception ex)
+                {
+                    int action = _source.handleException(_connection, _sql,
+                            ex, -1, null);
+                    
+                    if (action != OnException.ON_PARSE_EXCEPTION)
+                        throw ex;
+                    else
+                        return null;
+                }
+                
+                setBindVars(statement, _bindVars);
+                
+                try
+                {
+                    rs = statement.executeQuery();
+                }
+                catch (Exception ex)
+                {
+                    int action = _source.handleException(_connection, _sql,
+                            ex, -1, null);
+                    
+                    if (action == OnException.ON_EXCEPTION_RAISE)
+                        throw ex;
+                    else
+                        return null;
+                }
+                
+                DataSet dataSet = new DataSet();
+                dataSet.setName(_dataSet.getName());
+                dataSet.setEncode(_dataSet.isEncode());
+                dataSet.setSpillDir(_dataSet.getSpillDir());
+                dataSet.setKeyFields(_dataSet.getKeyFields());
+                dataSet.setDriver(_driver);
+                
+                SqlConnectorParams params = new SqlConnectorParams();
+                params.setResultSet(rs);
+                params.setSilent(true);
+                params.setCheckKeyField(_params.isCheckKeyField());
+                params.setFilterByField(_params.getFilterByField());
+                params.setFilterByFieldValue(_params.getFilterByFieldValue());
+                params.setUnique(_params.isUnique());
+                params.setVerifyUnique(_params.isVerifyUnique());
+                params.setBeforeCallback(this);
+                params.setAddRecordCallback(this);
+                
+                new SqlConnector().populate(params, dataSet, _driver);
+            }
+            catch (InterruptedException ex)
+            {
+                return null;
+            }
+            catch (Exception ex)
+            {
+                if (!_stopped)
+                    _exception = ex;
+            }
+            finally
+            {
+                SqlUtils.cleanUpSQLData(statement, rs, this);
+                
+                put(END_OF_PARTITION);
+            }
+            
+            return null;
+        }
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * com.toolsverse.etl.connector.AddRecordCallback#onAddRecord(com.toolsverse
+         * .etl.common.DataSet, com.toolsverse.etl.driver.Driver,
+         * com.toolsverse.etl.common.DataSetRecord, int)
+         */
+        public void onAddRecord(DataSet dataSet, Driver driver,
+                DataSetRecord record, int index)
+            throws Exception
+        {
+            if (record == null)
+                return;
+            
+            DataSetData data = dataSet.getData();
+            
+            if (data != null)
+                data.clear();
+            
+            if (!put(record))
+                throw new InterruptedException();
+        }
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * com.toolsverse.etl.connector.BeforeCallback#onBefore(com.toolsverse
+         * .etl.common.DataSet, com.toolsverse.etl.driver.Driver)
+         */
+        public void onBefore(DataSet dataSet, Driver driver)
+            throws Exception
+        {
+            synchronized (PartitionedExtract.this)
+            {
+                if (_fields == null)
+                    _fields = dataSet.getFields();
+            }
+        }
+    }
+    
+    /** The marker which is added to the queue when partition is extracted. */
+    private static final DataSetRecord END_OF_PARTITION = new DataSetRecord();
+    
+    /** The alias of the sql of the source in the sql of the partition. */
+    private static final String PARTITION_ALIAS = "etl_partition";
+    
+    /** The delimiter of the partition ranges. */
+    private static final String RANGES_DELIMITER = ";";
+    
+    /** The max number of records waiting to be added to the data set. */
+    private static final int QUEUE_SIZE = 10000;
+    
+    /** The time in milliseconds to wait for the queue. */
+    private static final long WAIT_TIMEOUT = 100;
+    
+    /** The source. */
+    private final Source _source;
+    
+    /** The sql for each partition. */
+    private final List<String> _sqls;
+    
+    /** The bind variables. */
+    private final Map<String, Object> _bindVars;
+    
+    /** The queue. */
+    private final BlockingQueue<DataSetRecord> _queue;
+    
+    /** The executor. */
+    private ParallelExecutor _executor;
+    
+    /** The params. */
+    private SqlConnectorParams _params;
+    
+    /** The data set. */
+    private DataSet _dataSet;
+    
+    /** The driver. */
+    private Driver _driver;
+    
+    /** The fields of the first partition which returned meta data. */
+    private ListHashMap<String, FieldDef> _fields;
+    
+    /** The exception in the partition thread. */
+    private volatile Exception _exception;
+    
+    /** The stopped flag. */
+    private volatile boolean _stopped;
+    
+    /**
+     * Instantiates a new PartitionedExtract.
+     * 
+     * @param source
+     *            the source
+     * @param sqls
+     *            the sql for each partition
+     * @param bindVars
+     *            the bind variables
+     */
+    public PartitionedExtract(Source source, List<String> sqls,
+            Map<String, Object> bindVars)
+    {
+        _source = source;
+        _sqls = sqls;
+        _bindVars = bindVars;
+        _queue = new ArrayBlockingQueue<DataSetRecord>(QUEUE_SIZE);
+        _executor = null;
+        _params = null;
+        _dataSet = null;
+        _driver = null;
+        _fields = null;
+        _exception = null;
+        _stopped = false;
+    }
+    
+    /**
+     * Re-throws exception in the partition thread if any.
+     * 
+     * @throws Exception
+     *             the exception in the partition thread
+     */
+    private void checkException()
+        throws Exception
+    {
+        if (_exception != null)
+            throw _exception;
+    }
+    
+    /**
+     * Gets the boundaries between partitions from the ';' delimited list of
+     * sql literals.
+     * 
+     * @param ranges
+     *            the partition ranges
+     * @return the boundaries
+     */
+    public static List<String> getBounds(String ranges)
+    {
+        List<String> bounds = new ArrayList<String>();
+        
+        if (Utils.isNothing(ranges))
+            return bounds;
+        
+        for (String bound : ranges.split(RANGES_DELIMITER))
+        {
+            if (!Utils.isNothing(bound))
+                bounds.add(bound.trim());
+        }
+        
+        return bounds;
+    }
+    
+    /**
+     * Splits the range between minimum and maximum values of the numeric
+     * partition column on the given number of partitions of the same width.
+     * If both values are integers boundaries are integers as well.
+     * 
+     * @param min
+     *            the minimum value
+     * @param max
+     *            the maximum value
+     * @param partitions
+     *            the number of partitions
+     * @return the boundaries between partitions. Empty if values are not
+     *         numbers or range cannot be split
+     */
+    public static List<String> getBounds(Object min, Object max, int partitions)
+    {
+        List<String> bounds = new ArrayList<String>();
+        
+        if (partitions <= 1 || !(min instanceof Number)
+                || !(max instanceof Number))
+            return bounds;
+        
+        BigDecimal low;
+        BigDecimal high;
+        
+        try
+        {
+            low = new BigDecimal(min.toString());
+            high = new BigDecimal(max.toString());
+        }
+        // NaN or infinity. It's ok
+        catch (Exception ex)
+        {
+            return bounds;
+        }
+        
+        boolean integer = isInteger(min) && isInteger(max);
+        
+        BigDecimal width = high.subtract(low).divide(
+                BigDecimal.valueOf(partitions), MathContext.DECIMAL64);
+        
+        BigDecimal last = low;
+        
+        for (int i = 1; i < partitions; i++)
+        {
+            BigDecimal bound = low.add(width.multiply(BigDecimal.valueOf(i)));
+            
+            if (integer)
+                bound = bound.setScale(0, RoundingMode.CEILING);
+            
+            if (bound.compareTo(last) <= 0 || bound.compareTo(high) > 0)
+                continue;
+            
+            bounds.add(bound.toPlainString());
+            
+            last = bound;
+        }
+        
+        return bounds;
+    }
+    
+    /**
+     * Gets the sql for each partition of the source. Returns null if source is
+     * not partitioned or cannot be split. If the number of partitions is set
+     * executes sql to get minimum and maximum values of the partition column.
+     * 
+     * @param source
+     *            the source
+     * @param connection
+     *            the connection
+     * @param sql
+     *            the sql of the source with merged variables
+     * @param bindVars
+     *            the bind variables
+     * @return the list of sql statements, one for each partition
+     * @throws Exception
+     *             in case of any error
+     */
+    public static List<String> getPartitionSqls(Source source,
+            Connection connection, String sql, Map<String, Object> bindVars)
+        throws Exception
+    {
+        String column = source.getPartitionBy();
+        
+        if (Utils.isNothing(column) || Utils.isNothing(sql))
+            return null;
+        
+        List<String> bounds = null;
+        
+        if (!Utils.isNothing(source.getPartitionRanges()))
+            bounds = getBounds(source.getPartitionRanges());
+        else if (source.getPartitions() > 1)
+        {
+            PreparedStatement statement = null;
+            ResultSet rs = null;
+            
+            try
+            {
+                statement = connection.prepareStatement("select min(" + column
+                        + "), max(" + column + ") from (" + sql + ") "
+                        + PARTITION_ALIAS);
+                
+                setBindVars(statement, bindVars);
+                
+                rs = statement.executeQuery();
+                
+                if (rs.next())
+                    bounds = getBounds(rs.getObject(1), rs.getObject(2),
+                            source.getPartitions());
+            }
+            finally
+            {
+                SqlUtils.cleanUpSQLData(statement, rs, source);
+            }
+        }
+        
+        if (bounds == null || bounds.size() == 0)
+            return null;
+        
+        return getPartitionSqls(sql, column, bounds);
+    }
+    
+    /**
+     * Wraps the sql into the sql for each range of values of the partition
+     * column. First partition also includes nulls, last partition includes
+     * everything above the last boundary.
+     * 
+     * @param sql
+     *            the sql
+     * @param column
+     *            the partition column
+     * @param bounds
+     *            the boundaries between partitions
+     * @return the list of sql statements, one for each partition
+     */
+    public static List<String> getPartitionSqls(String sql, String column,
+            List<String> bounds)
+    {
+        List<String> sqls = new ArrayList<String>();
+        
+        String select = "select * from (" + sql + ") " + PARTITION_ALIAS
+                + " where ";
+        
+        sqls.add(select + column + " < " + bounds.get(0) + " or " + column
+                + " is null");
+        
+        for (int i = 1; i < bounds.size(); i++)
+            sqls.add(select + column + " >= " + bounds.get(i - 1) + " and "
+                    + column + " < " + bounds.get(i));
+        
+        sqls.add(select + column + " >= " + bounds.get(bounds.size() - 1));
+        
+        return sqls;
+    }
+    
+    /**
+     * Checks if value of the column is an integer number.
+     * 
+     * @param value
+     *            the value
+     * @return true, if value is an integer number
+     */
+    private static boolean isInteger(Object value)
+    {
+        return value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte
+                || value instanceof BigInteger
+                || (value instanceof BigDecimal && ((BigDecimal)value).scale() <= 0);
+    }
+    
+    /**
+     * Sets fields of the data set and calls before callback.
+     * 
+     * @param data
+     *            the data
+     * @throws Exception
+     *             in case of any error
+     */
+    private synchronized void onBefore(DataSetData data)
+        throws Exception
+    {
+        _dataSet.setFields(_fields);
+        _dataSet.setData(data);
+        
+        if (_params.getBeforeCallback() != null)
+            _params.getBeforeCallback().onBefore(_dataSet, _driver);
+    }
+    
+    /**
+     * Extracts all partitions in parallel and adds records to the data set.
+     * Calls before and add record callbacks of the params the same way as
+     * {@link SqlConnector#populate(SqlConnectorParams, DataSet, Driver)}
+     * does. The key field, filter and unique settings of the params are
+     * applied to each partition. Since partitions don't overlap, records are
+     * unique across partitions if partition column is extracted.
+     * 
+     * @param params
+     *            the params
+     * @param dataSet
+     *            the data set
+     * @param driver
+     *            the driver
+     * @param connections
+     *            the connection for each partition
+     * @throws Exception
+     *             in case of any error
+     */
+    public void populate(SqlConnectorParams params, DataSet dataSet,
+            Driver driver, List<Connection> connections)
+        throws Exception
+    {
+        _params = params;
+        _dataSet = dataSet;
+        _driver = driver;
+        
+        dataSet.clear();
+        
+        Logger.log(Logger.INFO, EtlLogger.class,
+                EtlResource.PARTITIONED_EXTRACT_MSG.getValue() + _sqls.size());
+        
+        _executor = new ParallelExecutor(_sqls.size());
+        
+        try
+        {
+            for (int i = 0; i < _sqls.size(); i++)
+                _executor.addTask(new PartitionReader(connections.get(i),
+                        _sqls.get(i)));
+            
+            DataSetData data = dataSet.createData();
+            boolean before = false;
+            int done = 0;
+            int index = 1;
+            
+            while (done < _sqls.size())
+            {
+                DataSetRecord record = take();
+                
+                if (record == END_OF_PARTITION)
+                {
+                    done++;
+                    
+                    continue;
+                }
+                
+                if (!before)
+                {
+                    onBefore(data);
+                    
+                    before = true;
+                }
+                
+                if (!params.isSilent() && params.getLogStep() > 0
+                        && (index % params.getLogStep()) == 0)
+                    Logger.log(
+                            Logger.INFO,
+                            EtlLogger.class,
+                            dataSet.getName()
+                                    + ": "
+                                    + index
+                                    + EtlResource.READING_DATASET_MSG
+                                            .getValue());
+                index++;
+                
+                if (params.getMaxRows() >= 0
+                        && data.size() >= params.getMaxRows())
+                {
+                    break;
+                }
+                
+                boolean added = dataSet.addRecord(record);
+                
+                if (added && params.getAddRecordCallback() != null)
+                    params.getAddRecordCallback().onAddRecord(dataSet, driver,
+                            dataSet.getLastRecord(), index - 1);
+            }
+            
+            checkException();
+            
+            if (!before && _fields != null)
+                onBefore(data);
+            
+            if (dataSet.getFieldCount() > 0 && dataSet.getRecordCount() == 0
+                    && params.getAddRecordCallback() != null)
+            {
+                params.getAddRecordCallback().onAddRecord(dataSet, driver,
+                        null, 0);
+            }
+        }
+        finally
+        {
+            // partition threads are not interrupted because some jdbc
+            // drivers close connection of the interrupted thread
+            _stopped = true;
+            
+            try
+            {
+                _executor.waitUntilDone();
+            }
+            finally
+            {
+                _executor.terminate();
+            }
+            
+            _queue.clear();
+            
+            if (params.getAfterCallback() != null)
+                params.getAfterCallback().onAfter(dataSet, driver);
+        }
+    }
+    
+    /**
+     * Adds the record to the queue. Waits if queue is full.
+     * 
+     * @param record
+     *            the record
+     * @return false if extract was stopped
+     * @throws Exception
+     *             in case of any error
+     */
+    private boolean put(DataSetRecord record)
+        throws Exception
+    {
+        while (!_stopped)
+        {
+            if (_queue.offer(record, WAIT_TIMEOUT, TimeUnit.MILLISECONDS))
+                return true;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Sets the bind variables.
+     * 
+     * @param statement
+     *            the statement
+     * @param bindVars
+     *            the bind variables
+     * @throws Exception
+     *             in case of any error
+     */
+    private static void setBindVars(PreparedStatement statement,
+            Map<String, Object> bindVars)
+        throws Exception
+    {
+        if (bindVars == null)
+            return;
+        
+        for (int i = 0; i < bindVars.size(); i++)
+        {
+            String bindVar = (String)bindVars.get(String.valueOf(i));
+            
+            SqlUtils.setBindVar(statement, bindVar, i + 1);
+        }
+    }
+    
+    /**
+     * Takes the next record from the queue. Waits if queue is empty.
+     * 
+     * @return the record
+     * @throws Exception
+     *             in case of any error
+     */
+    private DataSetRecord take()
+        throws Exception
+    {
+        DataSetRecord record = null;
+        
+        while (record == null)
+        {
+            checkException();
+            
+            record = _queue.poll(WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        
+        return record;
+    }
+}
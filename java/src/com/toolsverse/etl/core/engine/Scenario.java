@@ -8,6 +8,8 @@
 package com.toolsverse.etl.core.engine;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,6 +17,7 @@ import java.util.Map;
 import com.toolsverse.etl.common.ConditionalExecution;
 import com.toolsverse.etl.common.Variable;
 import com.toolsverse.etl.core.config.EtlConfig;
+import com.toolsverse.etl.core.task.common.Join;
 import com.toolsverse.util.ListHashMap;
 import com.toolsverse.util.Utils;
 
@@ -64,6 +67,9 @@ public class Scenario extends ConditionalExecution implements Serializable
     /** The Constant NO_TEMP_TABLES_ATTR. */
     public static final String NO_TEMP_TABLES_ATTR = "notemp";
     
+    /** The Constant RESUME_ATTR. If set the periodically committed loads are resumed from the last checkpoint. */
+    public static final String RESUME_ATTR = "resume";
+    
     /** The name. */
     private String _name;
     
@@ -228,6 +234,32 @@ public class Scenario extends ConditionalExecution implements Serializable
         _ready = false;
     }
     
+    /**
+     * Adds names of the sources joined by the tasks.
+     *
+     * @param tasks the tasks
+     * @param names the names of the sources
+     */
+    private void addJoinedSources(ListHashMap<String, Task> tasks,
+            List<String> names)
+    {
+        if (tasks == null)
+            return;
+        
+        for (int i = 0; i < tasks.size(); i++)
+        {
+            Task task = tasks.get(i);
+            
+            if (!Join.class.getName().equals(task.getClassName()))
+                continue;
+            
+            Variable var = task.getVariable(Join.JOIN_VAR);
+            
+            if (var != null && !Utils.isNothing(var.getValue()))
+                names.add(var.getValue());
+        }
+    }
+    
     /**
      * Adds the parallel inner scenario.
      */
@@ -361,6 +393,48 @@ public class Scenario extends ConditionalExecution implements Serializable
         return _defaultFunctionClass;
     }
     
+    /**
+     * Gets the names of the destinations the destination depends on.
+     *
+     * @param destination the destination
+     * @return the names of the destinations
+     */
+    public List<String> getDependsOn(Destination destination)
+    {
+        List<String> names = new ArrayList<String>();
+        
+        if (!Utils.isNothing(destination.getDependsOn()))
+            names.addAll(Arrays.asList(destination.getDependsOn().split(",")));
+        
+        return names;
+    }
+    
+    /**
+     * Gets the names of the sources the source depends on. In addition to the
+     * explicitly declared dependencies the source depends on the linked source
+     * and on the sources joined by its tasks.
+     *
+     * @param source the source
+     * @return the names of the sources
+     */
+    public List<String> getDependsOn(Source source)
+    {
+        List<String> names = new ArrayList<String>();
+        
+        if (!Utils.isNothing(source.getDependsOn()))
+            names.addAll(Arrays.asList(source.getDependsOn().split(",")));
+        
+        if (!Utils.isNothing(source.getLinkedSourceName()))
+            names.add(source.getLinkedSourceName());
+        
+        addJoinedSources(source.getBeforeEtlTasks(), names);
+        addJoinedSources(source.getTasks(), names);
+        addJoinedSources(source.getInlineTasks(), names);
+        addJoinedSources(source.getPostTasks(), names);
+        
+        return names;
+    }
+    
     /**
      * Gets the description.
      *
@@ -47,6 +47,8 @@ import com.toolsverse.util.Utils;
 
 public class Source extends OnException implements Block
 {
+    /** The default number of rows fetched from the database at once. */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
     
     /** The name. */
     private String _name;
@@ -102,6 +104,9 @@ public class Source extends OnException implements Block
     /** The parallel flag. */
     private boolean _parallel;
     
+    /** The columnar flag. */
+    private boolean _columnar;
+    
     /** The mandatory flag. */
     private boolean _mandatory;
     
@@ -138,6 +143,36 @@ public class Source extends OnException implements Block
     /** The linked source name. */
     private String _source;
     
+    /** The fetch size. */
+    private int _fetchSize;
+    
+    /** The forward only flag. */
+    private boolean _forwardOnly;
+    
+    /** The read only flag. */
+    private boolean _readOnly;
+    
+    /** The partition column. */
+    private String _partitionBy;
+    
+    /** The number of partitions. */
+    private int _partitions;
+    
+    /** The partition ranges. */
+    private String _partitionRanges;
+    
+    /** The names of the sources this source depends on. */
+    private String _dependsOn;
+    
+    /** The watermark column. */
+    private String _watermark;
+    
+    /** The name of the watermark variable. */
+    private String _watermarkVar;
+    
+    /** The watermark overlap. */
+    private long _watermarkOverlap;
+    
     /**
      * Instantiates a new source.
      */
@@ -163,6 +198,7 @@ public class Source extends OnException implements Block
         _encode = true;
         _enabled = true;
         _parallel = false;
+        _columnar = false;
         _mandatory = false;
         _dataWriterClassName = null;
         _dataReaderClassName = null;
@@ -179,6 +215,20 @@ public class Source extends OnException implements Block
         _onPopulateDataSet = Scenario.ON_ACTION_PARENT;
         
         _source = null;
+        
+        _fetchSize = DEFAULT_FETCH_SIZE;
+        _forwardOnly = true;
+        _readOnly = true;
+        
+        _partitionBy = null;
+        _partitions = 0;
+        _partitionRanges = null;
+        
+        _dependsOn = null;
+        
+        _watermark = null;
+        _watermarkVar = null;
+        _watermarkOverlap = 0;
     }
     
     /**
@@ -283,6 +333,17 @@ public class Source extends OnException implements Block
                 : EtlConfig.SOURCE_CONNECTION_NAME;
     }
     
+    /**
+     * Gets the comma separated names of the sources this source depends on.
+     * Source is extracted as soon as all sources it depends on are extracted.
+     *
+     * @return the names of the sources
+     */
+    public String getDependsOn()
+    {
+        return _dependsOn;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -293,6 +354,17 @@ public class Source extends OnException implements Block
         return _driverClassName;
     }
     
+    /**
+     * Gets the number of rows fetched from the database at once when source
+     * is extracted using sql. Passed to the driver as a hint.
+     * 
+     * @return the fetch size
+     */
+    public int getFetchSize()
+    {
+        return _fetchSize;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -414,6 +486,44 @@ public class Source extends OnException implements Block
         return value.intValue();
     }
     
+    /**
+     * Gets the partition column. If partition column is set and either number
+     * of partitions or partition ranges are set the sql is split on ranges of
+     * values of this column and each range is extracted in parallel using
+     * its own connection.
+     * 
+     * @return the partition column
+     */
+    public String getPartitionBy()
+    {
+        return _partitionBy;
+    }
+    
+    /**
+     * Gets the partition ranges: the ';' delimited list of sql literals which
+     * are used as boundaries between partitions, for example "100;200" or
+     * "'2012-01-01';'2012-07-01'". When set the number of partitions is
+     * ignored.
+     * 
+     * @return the partition ranges
+     */
+    public String getPartitionRanges()
+    {
+        return _partitionRanges;
+    }
+    
+    /**
+     * Gets the number of partitions. The boundaries between partitions are
+     * calculated from the minimum and maximum value of the numeric partition
+     * column.
+     * 
+     * @return the number of partitions
+     */
+    public int getPartitions()
+    {
+        return _partitions;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -487,6 +597,47 @@ public class Source extends OnException implements Block
         return _variables;
     }
     
+    /**
+     * Gets the watermark column. If watermark column is set the source is
+     * extracted incrementally: the highest value of the column extracted by
+     * the committed etl process is saved and used as a value of the watermark
+     * variable next time source is extracted. Values of the column must be
+     * monotonically increasing timestamps or numeric keys.
+     * 
+     * @return the watermark column
+     */
+    public String getWatermark()
+    {
+        return _watermark;
+    }
+    
+    /**
+     * Gets the watermark overlap: the number of seconds for the timestamp
+     * watermark or the number of keys for the numeric watermark which is
+     * subtracted from the saved watermark, so the rows which arrived late are
+     * extracted again.
+     * 
+     * @return the watermark overlap
+     */
+    public long getWatermarkOverlap()
+    {
+        return _watermarkOverlap;
+    }
+    
+    /**
+     * Gets the name of the watermark variable used in the sql, for example
+     * "select * from orders where updated > {updated}". If not set the name of
+     * the watermark column is used. The variable should be declared in the
+     * scenario with the value used when there is no saved watermark yet and
+     * added to the "using", so it is passed as a bind variable.
+     * 
+     * @return the name of the watermark variable
+     */
+    public String getWatermarkVar()
+    {
+        return !Utils.isNothing(_watermarkVar) ? _watermarkVar : _watermark;
+    }
+    
     /**
      * Increments usage counter.
      */
@@ -495,6 +646,18 @@ public class Source extends OnException implements Block
         _usageCounter++;
     }
     
+    /**
+     * Checks if extracted data set uses columnar storage.
+     * 
+     * @return true, if extracted data set uses columnar storage
+     * 
+     * @see com.toolsverse.etl.common.ColumnarDataSetData
+     */
+    public boolean isColumnar()
+    {
+        return _columnar;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -525,6 +688,17 @@ public class Source extends OnException implements Block
         return _encode;
     }
     
+    /**
+     * Checks if the result set of the extract sql can be scrolled forward
+     * only. Default is true.
+     * 
+     * @return true, if is forward only
+     */
+    public boolean isForwardOnly()
+    {
+        return _forwardOnly;
+    }
+    
     /**
      * Checks if source is independent. Independent source is not linked to any destination.
      *
@@ -555,6 +729,17 @@ public class Source extends OnException implements Block
         return _parallel;
     }
     
+    /**
+     * Checks if the result set of the extract sql is read only. Default is
+     * true.
+     * 
+     * @return true, if is read only
+     */
+    public boolean isReadOnly()
+    {
+        return _readOnly;
+    }
+    
     /**
      * Checks if source is a stub. If source doesn't have sql or any tasks and there is no linked data reader it is a "stub" source. 
      * If multiple sources are configured to extract in parallel the "stub" can be used as a "gate" - all parallel tasks must be finished 
@@ -591,6 +776,17 @@ public class Source extends OnException implements Block
         _beforeEtlTasks = value;
     }
     
+    /**
+     * Sets the columnar flag. If <code>true</code> extracted data set stores
+     * data in the typed column vectors instead of the list of records.
+     * 
+     * @param value the new columnar flag
+     */
+    public void setColumnar(boolean value)
+    {
+        _columnar = value;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -676,6 +872,16 @@ public class Source extends OnException implements Block
         _dataWriterParams = value;
     }
     
+    /**
+     * Sets the comma separated names of the sources this source depends on.
+     *
+     * @param value the value
+     */
+    public void setDependsOn(String value)
+    {
+        _dependsOn = value;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -707,6 +913,27 @@ public class Source extends OnException implements Block
         _encode = value;
     }
     
+    /**
+     * Sets the number of rows fetched from the database at once.
+     * 
+     * @param value the new fetch size. If value <= 0 the default fetch size
+     *            is used
+     */
+    public void setFetchSize(int value)
+    {
+        _fetchSize = value > 0 ? value : DEFAULT_FETCH_SIZE;
+    }
+    
+    /**
+     * Sets the forward only flag.
+     * 
+     * @param value the new forward only flag
+     */
+    public void setForwardOnly(boolean value)
+    {
+        _forwardOnly = value;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -873,6 +1100,36 @@ public class Source extends OnException implements Block
         _parallel = value;
     }
     
+    /**
+     * Sets the partition column.
+     * 
+     * @param value the new partition column
+     */
+    public void setPartitionBy(String value)
+    {
+        _partitionBy = value;
+    }
+    
+    /**
+     * Sets the partition ranges.
+     * 
+     * @param value the new partition ranges
+     */
+    public void setPartitionRanges(String value)
+    {
+        _partitionRanges = value;
+    }
+    
+    /**
+     * Sets the number of partitions.
+     * 
+     * @param value the new number of partitions
+     */
+    public void setPartitions(int value)
+    {
+        _partitions = value;
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -885,6 +1142,16 @@ public class Source extends OnException implements Block
         _postTasks = value;
     }
     
+    /**
+     * Sets the read only flag.
+     * 
+     * @param value the new read only flag
+     */
+    public void setReadOnly(boolean value)
+    {
+        _readOnly = value;
+    }
+    
     /**
      * Sets the sql.
      *
@@ -928,4 +1195,34 @@ public class Source extends OnException implements Block
     {
         _variables = value;
     }
+    
+    /**
+     * Sets the watermark column.
+     * 
+     * @param value the new watermark column
+     */
+    public void setWatermark(String value)
+    {
+        _watermark = value;
+    }
+    
+    /**
+     * Sets the watermark overlap. Negative values are ignored.
+     * 
+     * @param value the new watermark overlap
+     */
+    public void setWatermarkOverlap(long value)
+    {
+        _watermarkOverlap = value > 0 ? value : 0;
+    }
+    
+    /**
+     * Sets the name of the watermark variable.
+     * 
+     * @param value the new name of the watermark variable
+     */
+    public void setWatermarkVar(String value)
+    {
+        _watermarkVar = value;
+    }
 }
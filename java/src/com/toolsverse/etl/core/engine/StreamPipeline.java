@@ -0,0 +1,273 @@
+/*
+ * StreamPipeline.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import com.toolsverse.etl.common.DataSet;
+import com.toolsverse.etl.common.DataSetData;
+import com.toolsverse.etl.common.DataSetRecord;
+import com.toolsverse.etl.connector.AddRecordCallback;
+import com.toolsverse.etl.driver.Driver;
+import com.toolsverse.etl.resource.EtlResource;
+import com.toolsverse.etl.util.EtlLogger;
+import com.toolsverse.util.concurrent.ParallelExecutor;
+import com.toolsverse.util.log.Logger;
+
+/**
+ * Decouples extract and load for the destination in the "stream" mode. Records
+ * streamed from the source are added to the bounded queue by the reader thread
+ * and loaded by the separate loader thread in micro batches, so reading from
+ * the source and writing to the destination are executed at the same time.
+ * When queue is full the reader waits until loader catches up.
+ * <p>
+ * The loader thread executes inline tasks and generates the load code in the
+ * same order as records were extracted. If destination is loaded using
+ * batches and {@link Destination#getLoadThreads()} is greater than 1 the
+ * micro batches are written by the multiple threads, each using its own
+ * connection, see {@link ParallelBatchLoader}. In this case the order is
+ * preserved only for the records with the same load key. The destination
+ * which shares connection with its source is not loaded using pipeline.
+ * <p>
+ * Exceptions while loading the record are handled by the destination
+ * according to its "on exception" settings. Any exception which is not
+ * handled stops the pipeline and is re-thrown in the reader thread, so it is
+ * propagated to the etl process.
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class StreamPipeline implements AddRecordCallback
+{
+    
+    /**
+     * The loader thread.
+     */
+    private class PipelineLoader implements Callable<Object>
+    {
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.util.concurrent.Callable#call()
+         */
+        public Object call()
+            throws Exception
+        {
+            List<DataSetRecord> records = new ArrayList<DataSetRecord>();
+            boolean done = false;
+            int index = 0;
+            
+            try
+            {
+                while (!done && !_executor.isTerminated())
+                {
+                    records.clear();
+                    
+                    records.add(_queue.take());
+                    
+                    _queue.drainTo(records, _destination.getBatchSize() - 1);
+                    
+                    if (records.get(records.size() - 1) == END_OF_STREAM)
+                    {
+                        records.remove(records.size() - 1);
+                        
+                        done = true;
+                    }
+                    
+                    if (records.size() == 0)
+                        continue;
+                    
+                    DataSetData data = new DataSetData();
+                    
+                    for (DataSetRecord record : records)
+                        data.add(record);
+                    
+                    DataSet dataSet = new DataSet();
+                    dataSet.setFields(_dataSet.getFields());
+                    dataSet.setData(data);
+                    
+                    _loader.onAddRecord(dataSet, _driver, records.get(0), index);
+                    
+                    index += records.size();
+                    
+                    data.clear();
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                return null;
+            }
+            catch (Exception ex)
+            {
+                _exception = ex;
+                
+                _queue.clear();
+            }
+            
+            return null;
+        }
+    }
+    
+    /** The marker which is added to the queue when extract is finished. */
+    private static final DataSetRecord END_OF_STREAM = new DataSetRecord();
+    
+    /** The time in milliseconds to wait for the free space in the queue. */
+    private static final long WAIT_TIMEOUT = 100;
+    
+    /** The destination. */
+    private final Destination _destination;
+    
+    /** The callback which loads records into the destination. */
+    private final AddRecordCallback _loader;
+    
+    /** The queue. */
+    private final BlockingQueue<DataSetRecord> _queue;
+    
+    /** The executor. */
+    private ParallelExecutor _executor;
+    
+    /** The source data set. */
+    private DataSet _dataSet;
+    
+    /** The driver. */
+    private Driver _driver;
+    
+    /** The exception in the loader thread. */
+    private volatile Exception _exception;
+    
+    /**
+     * Instantiates a new StreamPipeline.
+     * 
+     * @param destination
+     *            the destination
+     * @param loader
+     *            the callback which loads records into the destination
+     */
+    public StreamPipeline(Destination destination, AddRecordCallback loader)
+    {
+        _destination = destination;
+        _loader = loader;
+        _queue = new ArrayBlockingQueue<DataSetRecord>(
+                destination.getPipelineSize());
+        _executor = null;
+        _dataSet = null;
+        _driver = null;
+        _exception = null;
+    }
+    
+    /**
+     * Re-throws exception in the loader thread if any.
+     * 
+     * @throws Exception
+     *             the exception in the loader thread
+     */
+    private void checkException()
+        throws Exception
+    {
+        if (_exception != null)
+            throw _exception;
+    }
+    
+    /**
+     * Waits until all records in the queue are loaded. Must be called when
+     * extract is finished.
+     * 
+     * @throws Exception
+     *             in case of any error
+     */
+    public void finish()
+        throws Exception
+    {
+        if (_executor == null)
+            return;
+        
+        put(END_OF_STREAM);
+        
+        _executor.waitUntilDone();
+        
+        checkException();
+    }
+    
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.toolsverse.etl.connector.AddRecordCallback#onAddRecord(com.toolsverse
+     * .etl.common.DataSet, com.toolsverse.etl.driver.Driver,
+     * com.toolsverse.etl.common.DataSetRecord, int)
+     */
+    public void onAddRecord(DataSet dataSet, Driver driver,
+            DataSetRecord record, int index)
+        throws Exception
+    {
+        checkException();
+        
+        if (record == null)
+        {
+            if (_executor == null)
+                _loader.onAddRecord(dataSet, driver, record, index);
+            
+            return;
+        }
+        
+        if (_executor == null)
+        {
+            _dataSet = dataSet;
+            _driver = driver;
+            
+            Logger.log(Logger.INFO, EtlLogger.class,
+                    EtlResource.PIPELINE_LOAD_MSG.getValue()
+                            + _destination.getName());
+            
+            _executor = new ParallelExecutor(1);
+            
+            _executor.addTask(new PipelineLoader());
+        }
+        
+        put(record);
+    }
+    
+    /**
+     * Adds the record to the queue. Waits if queue is full.
+     * 
+     * @param record
+     *            the record
+     * @throws Exception
+     *             in case of any error
+     */
+    private void put(DataSetRecord record)
+        throws Exception
+    {
+        while (!_queue.offer(record, WAIT_TIMEOUT, TimeUnit.MILLISECONDS))
+        {
+            checkException();
+            
+            if (_executor.isTerminated())
+                return;
+        }
+    }
+    
+    /**
+     * Stops the loader thread and releases resources.
+     */
+    public void terminate()
+    {
+        if (_executor != null)
+            _executor.terminate();
+        
+        _queue.clear();
+    }
+}
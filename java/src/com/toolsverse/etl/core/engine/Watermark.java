@@ -0,0 +1,369 @@
+/*
+ * Watermark.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.etl.core.engine;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import com.toolsverse.config.SystemConfig;
+import com.toolsverse.etl.resource.EtlResource;
+import com.toolsverse.etl.sql.util.SqlUtils;
+import com.toolsverse.util.FileUtils;
+import com.toolsverse.util.Utils;
+
+/**
+ * The high-water mark of the incrementally extracted source: the highest value
+ * of the watermark column extracted so far. The watermark is either timestamp
+ * or numeric key. It is saved to the file in the data folder, first to the
+ * pending file which replaces the watermark file only when etl process is
+ * committed, so the rows extracted by the failed etl process are extracted
+ * again next time.
+ * 
+ * @see com.toolsverse.etl.core.engine.Source#getWatermark()
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class Watermark implements Serializable
+{
+    
+    /** Serialization version. */
+    private static final long serialVersionUID = -1004409969761265523L;
+    
+    /** The extension of the watermark file. */
+    private static final String WATERMARK_EXT = ".watermark";
+    
+    /** The extension of the pending watermark file. */
+    private static final String PENDING_EXT = ".pending";
+    
+    /**
+     * The format of the timestamp watermark passed to the sql. Milliseconds are
+     * truncated, so the watermark can only move back.
+     */
+    private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    
+    /**
+     * Compares watermarks. Watermarks of different types, for example when
+     * type of the watermark column was changed since last commit, cannot be
+     * compared.
+     * 
+     * @param value
+     *            the value
+     * @param other
+     *            the other value
+     * @return the result of comparison
+     * @throws Exception
+     *             if watermarks cannot be compared
+     */
+    private static int compare(Object value, Object other)
+        throws Exception
+    {
+        if (value instanceof Date && other instanceof Date)
+            return ((Date)value).compareTo((Date)other);
+        
+        if (value instanceof BigDecimal && other instanceof BigDecimal)
+            return ((BigDecimal)value).compareTo((BigDecimal)other);
+        
+        throw new Exception(EtlResource.WATERMARK_TYPE_MSG.getValue() + value
+                + ", " + other);
+    }
+    
+    /**
+     * Gets the name of the watermark file for the source.
+     * 
+     * @param scenario
+     *            the scenario
+     * @param source
+     *            the source
+     * @return the file name
+     */
+    public static String getFileName(Scenario scenario, Source source)
+    {
+        String name = (!Utils.isNothing(scenario.getName()) ? scenario
+                .getName() + "_" : "")
+                + source.getName();
+        
+        return FileUtils.getFullFileName(SystemConfig.instance()
+                .getDataFolderName(), name.replaceAll("[^\\w\\-\\.]", "_"),
+                WATERMARK_EXT, true);
+    }
+    
+    /**
+     * Loads the last committed watermark from the file.
+     * 
+     * @param fileName
+     *            the file name
+     * @return the watermark. If file doesn't exist the value of the watermark
+     *         is null.
+     * @throws Exception
+     *             in case of any error
+     */
+    public static Watermark load(String fileName)
+        throws Exception
+    {
+        Object object = FileUtils.readObject(fileName);
+        
+        Watermark watermark = object instanceof Watermark ? (Watermark)object
+                : new Watermark(null);
+        
+        watermark._fileName = fileName;
+        
+        return watermark;
+    }
+    
+    /**
+     * Converts value to the timestamp watermark. The string must be in the
+     * JDBC timestamp or date escape format.
+     * 
+     * @param value
+     *            the value
+     * @return the watermark
+     * @throws Exception
+     *             if value cannot be converted to the date
+     */
+    private static Date toDate(Object value)
+        throws Exception
+    {
+        if (value instanceof Date)
+            return new Date(((Date)value).getTime());
+        
+        if (value instanceof String)
+        {
+            String text = ((String)value).trim();
+            
+            try
+            {
+                return new Date(Timestamp.valueOf(text).getTime());
+            }
+            catch (IllegalArgumentException ex)
+            {
+            }
+            
+            try
+            {
+                return new Date(java.sql.Date.valueOf(text).getTime());
+            }
+            catch (IllegalArgumentException ex)
+            {
+            }
+        }
+        
+        throw new Exception(EtlResource.WATERMARK_TYPE_MSG.getValue() + value);
+    }
+    
+    /**
+     * Converts value to the numeric watermark.
+     * 
+     * @param value
+     *            the value
+     * @return the watermark
+     * @throws Exception
+     *             if value cannot be converted to the number
+     */
+    private static BigDecimal toNumber(Object value)
+        throws Exception
+    {
+        try
+        {
+            if (value instanceof Number)
+                return new BigDecimal(value.toString());
+            
+            if (value instanceof String)
+                return new BigDecimal(((String)value).trim());
+        }
+        catch (NumberFormatException ex)
+        {
+        }
+        
+        throw new Exception(EtlResource.WATERMARK_TYPE_MSG.getValue() + value);
+    }
+    
+    /**
+     * Converts value of the watermark column to the watermark using the type
+     * of the column. If column is neither date nor number, for example
+     * timestamp stored as string, value is converted to the type of the given
+     * watermark, or to the type of the value itself if there is no watermark
+     * yet.
+     * 
+     * @param value
+     *            the value of the watermark column
+     * @param sqlType
+     *            the sql type of the watermark column
+     * @param watermark
+     *            the existing watermark. Can be null.
+     * @return the watermark: either date or BigDecimal. Null if value is null.
+     * @throws Exception
+     *             if value cannot be converted
+     */
+    private static Object toWatermark(Object value, int sqlType,
+            Object watermark)
+        throws Exception
+    {
+        if (value == null
+                || (value instanceof String && Utils.isNothing((String)value)))
+            return null;
+        
+        boolean isDate;
+        
+        if (SqlUtils.isDate(sqlType))
+            isDate = true;
+        else if (SqlUtils.isNumber(sqlType))
+            isDate = false;
+        else if (watermark != null)
+            isDate = watermark instanceof Date;
+        else
+            isDate = value instanceof Date
+                    || (!(value instanceof Number) && !Utils.isNumber(value
+                            .toString().trim()));
+        
+        return isDate ? toDate(value) : toNumber(value);
+    }
+    
+    /** The last committed watermark. */
+    private Object _value;
+    
+    /** The highest extracted value. */
+    transient private Object _max;
+    
+    /** The file name. */
+    transient private String _fileName;
+    
+    /**
+     * Instantiates a new watermark.
+     * 
+     * @param fileName
+     *            the file name
+     */
+    public Watermark(String fileName)
+    {
+        _value = null;
+        _max = null;
+        _fileName = fileName;
+    }
+    
+    /**
+     * Adds the extracted value of the watermark column.
+     * 
+     * @param value
+     *            the value of the watermark column
+     * @param sqlType
+     *            the sql type of the watermark column
+     * @throws Exception
+     *             if value cannot be converted to the watermark or compared
+     *             with the extracted values
+     */
+    public synchronized void add(Object value, int sqlType)
+        throws Exception
+    {
+        value = toWatermark(value, sqlType, _max != null ? _max : _value);
+        
+        if (value != null && (_max == null || compare(value, _max) > 0))
+            _max = value;
+    }
+    
+    /**
+     * Gets the file name.
+     * 
+     * @return the file name
+     */
+    public String getFileName()
+    {
+        return _fileName;
+    }
+    
+    /**
+     * Gets the new watermark: the highest of the last committed and extracted
+     * values.
+     * 
+     * @return the new watermark
+     * @throws Exception
+     *             if the extracted values cannot be compared with the last
+     *             committed watermark
+     */
+    public synchronized Object getNewValue()
+        throws Exception
+    {
+        if (_max == null)
+            return _value;
+        
+        return _value == null || compare(_max, _value) > 0 ? _max : _value;
+    }
+    
+    /**
+     * Gets the pending file name.
+     * 
+     * @return the pending file name
+     */
+    public String getPendingFileName()
+    {
+        return _fileName + PENDING_EXT;
+    }
+    
+    /**
+     * Gets the last committed watermark.
+     * 
+     * @return the last committed watermark: either date or BigDecimal. Null if
+     *         source was never extracted incrementally.
+     */
+    public Object getValue()
+    {
+        return _value;
+    }
+    
+    /**
+     * Gets the value of the watermark variable: the last committed watermark
+     * minus overlap.
+     * 
+     * @param overlap
+     *            the number of seconds for timestamp or number of keys for
+     *            numeric watermark
+     * @return the value of the variable or null if there is no committed
+     *         watermark
+     */
+    public String getVarValue(long overlap)
+    {
+        if (_value instanceof Date)
+            return new SimpleDateFormat(DATE_FORMAT).format(new Date(
+                    ((Date)_value).getTime() - overlap * 1000L));
+        
+        if (_value instanceof BigDecimal)
+            return ((BigDecimal)_value).subtract(BigDecimal.valueOf(overlap))
+                    .toPlainString();
+        
+        return null;
+    }
+    
+    /**
+     * Saves the new watermark to the pending file if watermark has moved.
+     * 
+     * @return true, if pending file was written
+     * @throws Exception
+     *             in case of any error, including the extracted values which
+     *             cannot be compared with the last committed watermark
+     */
+    public boolean save()
+        throws Exception
+    {
+        Object value = getNewValue();
+        
+        if (value == null || (_value != null && compare(value, _value) <= 0))
+            return false;
+        
+        Watermark watermark = new Watermark(_fileName);
+        watermark._value = value;
+        
+        FileUtils.writeObject(getPendingFileName(), watermark);
+        
+        return true;
+    }
+}
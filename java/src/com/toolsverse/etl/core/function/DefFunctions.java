@@ -23,7 +23,7 @@ import com.toolsverse.etl.core.engine.Destination;
 import com.toolsverse.etl.core.engine.LoadFunctionContext;
 import com.toolsverse.etl.driver.Driver;
 import com.toolsverse.util.ListHashMap;
-import com.toolsverse.util.Script;
+import com.toolsverse.util.ScriptCache;
 import com.toolsverse.util.Utils;
 
 /**
@@ -480,12 +480,7 @@ public class DefFunctions implements Function
                 Object fieldValue = dataSet
                         .getFieldValue(currentRow, fieldName);
                 
-                Script script = new Script();
-                
-                script.compile(context.getConfig(), context.getDestination()
-                        .getName() + var.getName(), code, var.getLang());
-                
-                Bindings bindings = script.getBindings(context.getConfig(),
+                Bindings bindings = ScriptCache.getBindings(code,
                         var.getLang());
                 
                 bindings.put("fieldValue", fieldValue);
@@ -496,9 +491,7 @@ public class DefFunctions implements Function
                 bindings.put("destination", context.getDestination());
                 bindings.put("row", context.getRow());
                 
-                Object ret = script.eval(context.getConfig(), bindings, context
-                        .getDestination().getName() + var.getName(),
-                        var.getLang());
+                Object ret = ScriptCache.eval(code, var.getLang(), bindings);
                 
                 if (ret != null)
                     return assignVar(context, ret.toString());
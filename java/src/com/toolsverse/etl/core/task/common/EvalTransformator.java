@@ -17,7 +17,7 @@ import com.toolsverse.etl.core.config.EtlConfig;
 import com.toolsverse.etl.core.engine.OnTask;
 import com.toolsverse.etl.core.engine.Task;
 import com.toolsverse.etl.core.engine.TaskResult;
-import com.toolsverse.util.Script;
+import com.toolsverse.util.ScriptCache;
 
 /**
  * This is a {@link Task#INLINE} task which evaluates expression in one of the supported script languages (for example JavaScript) and sets value 
@@ -98,10 +98,7 @@ public class EvalTransformator implements OnTask
             value = record.get(fieldIndex);
         }
         
-        Script script = new Script();
-        
-        script.compile(task, task.getName(), code, lang);
-        Bindings bindings = script.getBindings(task, lang);
+        Bindings bindings = ScriptCache.getBindings(code, lang);
         
         bindings.put("fieldValue", value);
         bindings.put("variable", var);
@@ -112,7 +109,7 @@ public class EvalTransformator implements OnTask
         bindings.put("fieldDef", fieldDef);
         bindings.put("fieldIndex", fieldIndex);
         
-        value = script.eval(task, bindings, task.getName(), lang);
+        value = ScriptCache.eval(code, lang, bindings);
         
         if (fieldIndex >= 0)
         {
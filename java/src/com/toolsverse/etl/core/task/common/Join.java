@@ -43,6 +43,13 @@ public class Join implements OnTask
     /** OUTER */
     public static final String OUTER = "outer";
     
+    /**
+     * The maximum number of keys in the hash table. If the smaller data set
+     * has more records the join is performed partition by partition. 0
+     * (default) means no limit.
+     */
+    public static final String MAX_HASH_ROWS_VAR = "HASHROWS";
+    
     /*
      * (non-Javadoc)
      * 
@@ -113,8 +120,12 @@ public class Join implements OnTask
             isOuter = true;
         }
         
+        int maxRows = task.getVariable(MAX_HASH_ROWS_VAR) != null ? Utils
+                .str2Int(task.getVariable(MAX_HASH_ROWS_VAR).getValue(), 0)
+                : 0;
+        
         dataSet = CommonEtlUtils.join(dataSet, source.getDataSet(), keys,
-                isOuter, include, exclude);
+                isOuter, include, exclude, maxRows, config.getSpillDir());
         
         return new TaskResult(dataSet);
     }
@@ -154,6 +165,7 @@ public class Join implements OnTask
         EtlUtils.addVar(task.getVariables(), EtlConfig.KEYS_VAR, "", false);
         EtlUtils.addVar(task.getVariables(), EtlConfig.EXCLUDE_VAR, "", false);
         EtlUtils.addVar(task.getVariables(), EtlConfig.INCLUDE_VAR, "", false);
+        EtlUtils.addVar(task.getVariables(), MAX_HASH_ROWS_VAR, "0", false);
     }
     
     /*
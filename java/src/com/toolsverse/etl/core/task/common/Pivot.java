@@ -21,6 +21,8 @@ import com.toolsverse.etl.common.CommonEtlUtils;
 import com.toolsverse.etl.common.DataSet;
 import com.toolsverse.etl.common.DataSetRecord;
 import com.toolsverse.etl.common.FieldDef;
+import com.toolsverse.etl.common.RecordKey;
+import com.toolsverse.etl.common.RecordKeyBuilder;
 import com.toolsverse.etl.common.Variable;
 import com.toolsverse.etl.core.config.EtlConfig;
 import com.toolsverse.etl.core.engine.OnTask;
@@ -236,7 +238,10 @@ public class Pivot implements OnTask
         
         FieldDef leadingField = fields.get(leading);
         
-        Map<String, TypedKeyValue<Integer, Integer>> recs = new HashMap<String, TypedKeyValue<Integer, Integer>>();
+        Map<RecordKey, TypedKeyValue<Integer, Integer>> recs = new HashMap<RecordKey, TypedKeyValue<Integer, Integer>>();
+        
+        RecordKeyBuilder keyBuilder = new RecordKeyBuilder(dataSet, keys,
+                ignoreCase, doTrim);
         
         int row = 0;
         
@@ -244,8 +249,7 @@ public class Pivot implements OnTask
         {
             DataSetRecord record = dataSet.getRecord(row);
             
-            String key = CommonEtlUtils.getKey(dataSet, record, keys,
-                    ignoreCase, doTrim);
+            RecordKey key = keyBuilder.getKey(record);
             
             Integer index = null;
             
@@ -253,7 +257,7 @@ public class Pivot implements OnTask
             
             Integer groupCount = 1;
             
-            if (!Utils.isNothing(key))
+            if (key != null)
             {
                 TypedKeyValue<Integer, Integer> keyValue = recs.get(key);
                 
@@ -271,7 +275,7 @@ public class Pivot implements OnTask
                 calculate(script, record, groupRecord, groupCount,
                         calculatedFields, fields);
             
-            if (Utils.isNothing(key))
+            if (key == null)
             {
                 row++;
                 
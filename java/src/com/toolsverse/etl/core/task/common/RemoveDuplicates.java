@@ -8,13 +8,13 @@
 package com.toolsverse.etl.core.task.common;
 
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import com.toolsverse.etl.common.CommonEtlUtils;
 import com.toolsverse.etl.common.DataSet;
 import com.toolsverse.etl.common.DataSetRecord;
-import com.toolsverse.etl.common.FieldDef;
+import com.toolsverse.etl.common.RecordKey;
+import com.toolsverse.etl.common.RecordKeyBuilder;
 import com.toolsverse.etl.common.Variable;
 import com.toolsverse.etl.core.config.EtlConfig;
 import com.toolsverse.etl.core.engine.OnTask;
@@ -72,37 +72,36 @@ public class RemoveDuplicates implements OnTask
         
         Variable keyVar = task.getVariable(EtlConfig.KEYS_VAR);
         
-        @SuppressWarnings("unchecked")
-        Map<String, FieldDef> keys = (Map<String, FieldDef>)keyVar.getObject();
+        RecordKeyBuilder keyBuilder = (RecordKeyBuilder)keyVar.getObject();
         
-        if (keys == null)
+        if (keyBuilder == null)
         {
-            keys = CommonEtlUtils.getKeyFields(
-                    task.getVariable(EtlConfig.KEYS_VAR).getValue(),
-                    dataSet.getFields());
+            boolean ignoreCase = Utils.str2Boolean(
+                    task.getVariable(EtlConfig.IGNORE_CASE_VAR).getValue(),
+                    true);
+            boolean doTrim = Utils.str2Boolean(
+                    task.getVariable(EtlConfig.TRIM_VAR).getValue(), true);
+            
+            keyBuilder = new RecordKeyBuilder(dataSet,
+                    CommonEtlUtils.getKeyFields(keyVar.getValue(),
+                            dataSet.getFields()), ignoreCase, doTrim);
             
-            keyVar.setObject(keys);
+            keyVar.setObject(keyBuilder);
         }
         
-        boolean ignoreCase = Utils.str2Boolean(
-                task.getVariable(EtlConfig.IGNORE_CASE_VAR).getValue(), true);
-        boolean doTrim = Utils.str2Boolean(task.getVariable(EtlConfig.TRIM_VAR)
-                .getValue(), true);
-        
         @SuppressWarnings("unchecked")
-        Set<String> storedKyes = (Set<String>)task.getValue("storedKyes");
+        Set<RecordKey> storedKyes = (Set<RecordKey>)task.getValue("storedKyes");
         
         if (storedKyes == null)
         {
-            storedKyes = new HashSet<String>();
+            storedKyes = new HashSet<RecordKey>();
             
             task.setValue("storedKyes", storedKyes);
         }
         
-        String key = CommonEtlUtils.getKey(dataSet, record, keys, ignoreCase,
-                doTrim);
+        RecordKey key = keyBuilder.getKey(record);
         
-        if (Utils.isNothing(key))
+        if (key == null)
         {
             return TaskResult.CONTINUE;
         }
@@ -128,11 +127,13 @@ public class RemoveDuplicates implements OnTask
         throws Exception
     {
         @SuppressWarnings("unchecked")
-        Set<String> storedKyes = (Set<String>)task.getValue("storedKyes");
+        Set<RecordKey> storedKyes = (Set<RecordKey>)task.getValue("storedKyes");
         
         if (storedKyes != null)
             storedKyes.clear();
         
+        task.getVariable(EtlConfig.KEYS_VAR).setObject(null);
+        
         return new TaskResult(dataSet);
     }
     
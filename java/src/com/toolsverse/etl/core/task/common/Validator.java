@@ -17,7 +17,7 @@ import com.toolsverse.etl.core.config.EtlConfig;
 import com.toolsverse.etl.core.engine.OnTask;
 import com.toolsverse.etl.core.engine.Task;
 import com.toolsverse.etl.core.engine.TaskResult;
-import com.toolsverse.util.Script;
+import com.toolsverse.util.ScriptCache;
 import com.toolsverse.util.Utils;
 
 /**
@@ -71,11 +71,13 @@ public class Validator implements OnTask
         if (dataSet == null || dataSet.getRecordCount() <= 0)
             return null;
         
-        Script script = (Script)task.getValue(task.getName() + "script");
-        if (script == null)
+        Variable var = task.getVariable(CODE_VAR_NAME);
+        
+        String code = var != null ? var.getValue() : null;
+        if (Utils.isNothing(code))
             return TaskResult.CONTINUE;
         
-        Variable var = task.getVariable(LANG_VAR_NAME);
+        var = task.getVariable(LANG_VAR_NAME);
         String lang = (var == null || var.getValue() == null) ? "JavaScript"
                 : var.getValue();
         
@@ -96,7 +98,7 @@ public class Validator implements OnTask
             value = record.get(fieldIndex);
         }
         
-        Bindings bindings = script.getBindings(task, lang);
+        Bindings bindings = ScriptCache.getBindings(code, lang);
         
         bindings.put("fieldValue", value);
         bindings.put("variable", var);
@@ -107,7 +109,7 @@ public class Validator implements OnTask
         bindings.put("fieldDef", fieldDef);
         bindings.put("fieldIndex", fieldIndex);
         
-        value = script.eval(task, bindings, task.getName(), lang);
+        value = ScriptCache.eval(code, lang, bindings);
         
         if (value instanceof TaskResult)
             return (TaskResult)value;
@@ -163,11 +165,7 @@ public class Validator implements OnTask
             String lang = (var == null || var.getValue() == null) ? "JavaScript"
                     : var.getValue();
             
-            Script script = new Script();
-            
-            task.setValue(task.getName() + "script", script);
-            
-            script.compile(task, task.getName(), code, lang);
+            ScriptCache.getCompiledScript(code, lang);
         }
     }
     
@@ -12,10 +12,7 @@ import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.util.Properties;
 
-import javax.xml.transform.Result;
 import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
@@ -31,6 +28,7 @@ import com.toolsverse.etl.core.engine.TaskResult;
 import com.toolsverse.etl.core.util.EtlUtils;
 import com.toolsverse.util.FileUtils;
 import com.toolsverse.util.Utils;
+import com.toolsverse.util.XslCache;
 
 /**
  * This is a {@link Task#PRE} and {@link Task#POST} task which performs xsl transformation on given file. 
@@ -213,27 +211,22 @@ public class XslTransormTask implements OnTask
     }
     
     /**
-     * Transforms given output stream into input stream using xsl style sheet defined by <code>xsltSource</code>.
+     * Transforms given output stream into input stream using xsl style sheet defined by <code>xsltFile</code>.
+     * Style sheet is compiled once and cached.
      *
      * @param out the out
      * @param inputSource the input source
-     * @param xsltSource the xslt source
+     * @param xsltFile the xslt file
      * @throws Exception in case of any error
      */
     private void transform(OutputStream out, Source inputSource,
-            Source xsltSource)
+            File xsltFile)
         throws Exception
     {
         try
         {
-            Result result = new StreamResult(out);
-            
-            // create an instance of TransformerFactory
-            TransformerFactory transFact = TransformerFactory.newInstance();
-            
-            Transformer trans = transFact.newTransformer(xsltSource);
-            
-            trans.transform(inputSource, result);
+            XslCache.newTransformer(xsltFile).transform(inputSource,
+                    new StreamResult(out));
         }
         finally
         {
@@ -266,7 +259,7 @@ public class XslTransormTask implements OnTask
                     ConnectorResource.TRANSFORMATION_ERROR_NO_XSL.getValue());
         
         transform(new FileOutputStream(destFileName), new StreamSource(
-                sourceFile), new StreamSource(xsltFile));
+                sourceFile), xsltFile);
     }
     
 }
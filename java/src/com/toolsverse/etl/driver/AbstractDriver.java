@@ -7,6 +7,7 @@
 
 package com.toolsverse.etl.driver;
 
+import java.sql.PreparedStatement;
 import java.sql.Types;
 import java.util.HashSet;
 import java.util.List;
@@ -549,6 +550,24 @@ public abstract class AbstractDriver implements Driver
         _caseSensitive = value;
     }
     
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.driver.Driver#setObject(java.sql.PreparedStatement,
+     * java.lang.Object, int, int)
+     */
+    public void setObject(PreparedStatement pstmt, Object value, int pos,
+            int fieldType)
+        throws Exception
+    {
+        if (SqlUtils.isBlob(fieldType))
+            setBlob(pstmt, value, pos);
+        else if (SqlUtils.isClob(fieldType))
+            setClob(pstmt, value, pos);
+        else
+            SqlUtils.setValue(pstmt, value, fieldType, pos);
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -819,6 +819,26 @@ public interface Driver extends ExtensionModule, Serializable
     void setBlob(PreparedStatement pstmt, Object value, int pos)
         throws Exception;
     
+    /**
+     * Sets the value of the parameter in the prepared statement. Used when
+     * data are loaded using parameterized sql instead of the sql with
+     * literals.
+     * 
+     * @param pstmt
+     *            the prepared statement
+     * @param value
+     *            the value
+     * @param pos
+     *            the position of the parameter
+     * @param fieldType
+     *            the field type {@link java.sql.Types}
+     * @throws Exception
+     *             in case of any error
+     */
+    void setObject(PreparedStatement pstmt, Object value, int pos,
+            int fieldType)
+        throws Exception;
+    
     /**
      * Sets the case sensitive attribute.
      * 
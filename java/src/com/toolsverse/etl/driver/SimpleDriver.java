@@ -1164,6 +1164,22 @@ public abstract class SimpleDriver extends AbstractDriver
         _overrideMaxVarcharSize = value;
     }
     
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.toolsverse.etl.driver.Driver#setObject(java.sql.PreparedStatement,
+     * java.lang.Object, int, int)
+     */
+    public void setObject(PreparedStatement pstmt, Object value, int pos,
+            int fieldType)
+        throws Exception
+    {
+        if (_parent != null)
+            _parent.setObject(pstmt, value, pos, fieldType);
+        else
+            super.setObject(pstmt, value, pos, fieldType);
+    }
+    
     /*
      * (non-Javadoc)
      * 
@@ -86,6 +86,30 @@ public enum EtlResource
     PREPARING_SQL_FOR_DESTINATION_MSG("Preparing SQL script for the destination "),
     ASSEMPBLING_SCRIPT_MSG("Assembling script..."),
     MERGE_EXCEPTION_MSG("Exception during merge "),
+    BATCH_LOAD_MSG("Loading destination using batches: "),
+    BATCH_FAILED_MSG("Batch failed, executing records one by one for the destination "),
+    BATCH_NO_KEY_MSG("Key field(s) are not defined for the batch load of the destination "),
+    BATCH_NO_UPDATE_COUNT_MSG("Driver doesn't report number of updated records, merge updates are executed one by one for the destination "),
+    PIPELINE_LOAD_MSG("Loading destination using pipeline: "),
+    PIPELINE_SHARED_CONN_MSG("Destination shares connection with the source and is loaded without pipeline: "),
+    PARALLEL_LOAD_MSG("Loading destination in parallel, number of threads: "),
+    CHECKPOINT_MSG("Checkpoint committed, number of records: "),
+    CHECKPOINT_ERROR_MSG("Error saving checkpoint: "),
+    CHECKPOINT_SHARED_CONN_MSG("Destination shares connection with other destinations and is loaded without checkpoints: "),
+    RESUME_LOAD_MSG("Resuming load from the checkpoint, number of skipped records: "),
+    PENDING_FILE_ERROR_MSG("Error committing pending file: "),
+    WATERMARK_MSG("Extracting source incrementally: "),
+    WATERMARK_SAVED_MSG("New watermark will be saved when etl process is committed: "),
+    WATERMARK_NO_COLUMN_MSG("Watermark column is not found: "),
+    WATERMARK_NO_VAR_MSG("Watermark variable is not declared in the scenario: "),
+    WATERMARK_TYPE_MSG("Value of the watermark column cannot be compared with the watermark: "),
+    SPILL_MSG("Spilling data set records to the file: "),
+    SPILL_ERROR_MSG("Error accessing spilled data set records: "),
+    HASH_JOIN_PARTITIONS_MSG("Partitioning join on disk, number of partitions: "),
+    SORT_RUNS_MSG("Sorting spilled data set records, number of sorted runs: "),
+    PARALLEL_READ_MSG("Reading file in parallel, number of threads: "),
+    PARTITIONED_EXTRACT_MSG("Extracting source in parallel, number of partitions: "),
+    PARTITIONS_ERROR_MSG("Cannot split source on partitions, extracting using single cursor: "),
     DEST_LINE_MSG("Destination "),
     LOG_FILE_DOESNT_EXIST_STR(" log file doesn't exist or syntax error."),
     PLEASE_CHECK_BAD_FILE("Please check "),
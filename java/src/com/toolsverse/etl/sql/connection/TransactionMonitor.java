@@ -22,6 +22,16 @@ import com.toolsverse.etl.core.connection.EtlConnectionFactory;
 public interface TransactionMonitor
 {
     
+    /**
+     * Adds the checkpoint file. Checkpoint is needed only to resume the failed
+     * transaction, so the file is deleted when transaction is committed and
+     * kept when it is rolled back.
+     *
+     * @param name the file name
+     * @return true, if successful
+     */
+    boolean addCheckpoint(String name);
+    
     /**
      * Adds the connection.
      *
@@ -38,6 +48,18 @@ public interface TransactionMonitor
      */
     boolean addFile(String name);
     
+    /**
+     * Adds the pending file. The pending file is written during transaction
+     * but must not replace the file until transaction is committed, so it is
+     * renamed to the file when transaction is committed and deleted when it
+     * is rolled back.
+     *
+     * @param name the file name
+     * @param pendingName the pending file name
+     * @return true, if successful
+     */
+    boolean addPendingFile(String name, String pendingName);
+    
     /**
      * Commits transaction.
      *
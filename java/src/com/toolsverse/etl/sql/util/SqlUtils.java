@@ -45,6 +45,7 @@ import com.toolsverse.etl.parser.GenericSqlParser;
 import com.toolsverse.etl.parser.SqlParser;
 import com.toolsverse.etl.resource.EtlResource;
 import com.toolsverse.resource.Resource;
+import com.toolsverse.util.DateFormatCache;
 import com.toolsverse.util.DateUtil;
 import com.toolsverse.util.ListHashMap;
 import com.toolsverse.util.TypedKeyValue;
@@ -1340,6 +1341,43 @@ public final class SqlUtils
         }
     }
     
+    /**
+     * Parses the whole text as the date of the given type using format from
+     * the parameters. Unlike {@link #str2Date(String, Map)} the text which has
+     * anything after the date is not accepted, so the type of the value can be
+     * detected by trying several formats one by one.
+     * 
+     * @param text
+     *            the text
+     * @param params
+     *            the parameters
+     * @param type
+     *            the type {@link java.sql.Types}: DATE, TIME or TIMESTAMP
+     * @return the date or null if the whole text cannot be parsed
+     */
+    private static Date getDate(String text, Map<String, String> params,
+            int type)
+    {
+        String format;
+        
+        switch (type)
+        {
+            case Types.TIME:
+                format = Utils.getParamFromMap(TIME_FORMAT_PROP, params,
+                        DataSet.DATA_SET_TIME_FORMAT);
+                break;
+            case Types.DATE:
+                format = Utils.getParamFromMap(DATE_FORMAT_PROP, params,
+                        DataSet.DATA_SET_DATE_TIME_FORMAT);
+                break;
+            default:
+                format = Utils.getParamFromMap(DATE_TIME_FORMAT_PROP, params,
+                        DataSet.DATA_SET_DATE_TIME_FORMAT);
+        }
+        
+        return DateFormatCache.parseWhole(text, format);
+    }
+    
     /**
      * Gets the field definition.
      * 
@@ -1809,6 +1847,29 @@ public final class SqlUtils
      */
     public static TypedKeyValue<Integer, Object> getTypeAndValue(String text,
             Map<String, String> params)
+    {
+        return getTypeAndValue(text, params, Types.NULL);
+    }
+    
+    /**
+     * Gets the type (key) and value (value). If text is not a number tries to
+     * parse it as a date+time, time and date. The <code>dateType</code> is the
+     * type detected for the previous values of the same column. If it is
+     * Types.TIMESTAMP, Types.TIME or Types.DATE the corresponding format is
+     * tried first, so once format of the column is detected other formats
+     * are not tried for each value.
+     * 
+     * @param text
+     *            the text
+     * @param params
+     *            the parameters
+     * @param dateType
+     *            the type detected for the previous values of the column
+     *            {@link java.sql.Types}
+     * @return the type and value
+     */
+    public static TypedKeyValue<Integer, Object> getTypeAndValue(String text,
+            Map<String, String> params, int dateType)
     {
         if (text == null || text.length() == 0)
             return new TypedKeyValue<Integer, Object>(Types.VARCHAR, null);
@@ -1836,17 +1897,36 @@ public final class SqlUtils
         }
         else
         {
-            Date date = str2DateTime(text, params);
+            Date date = null;
+            
+            switch (dateType)
+            {
+                case Types.TIME:
+                    date = getDate(text, params, Types.TIME);
+                    break;
+                case Types.DATE:
+                    date = getDate(text, params, Types.DATE);
+                    break;
+                default:
+                    dateType = Types.TIMESTAMP;
+                    date = getDate(text, params, Types.TIMESTAMP);
+            }
+            
+            if (date != null)
+                return new TypedKeyValue<Integer, Object>(dateType, date);
+            
+            if (dateType != Types.TIMESTAMP)
+                date = getDate(text, params, Types.TIMESTAMP);
             
             if (date != null)
                 return new TypedKeyValue<Integer, Object>(Types.TIMESTAMP, date);
-            else
-                date = str2Time(text, params);
+            else if (dateType != Types.TIME)
+                date = getDate(text, params, Types.TIME);
             
             if (date != null)
                 return new TypedKeyValue<Integer, Object>(Types.TIME, date);
-            else
-                date = str2Date(text, params);
+            else if (dateType != Types.DATE)
+                date = getDate(text, params, Types.DATE);
             
             if (date != null)
                 return new TypedKeyValue<Integer, Object>(Types.DATE, date);
@@ -2846,8 +2926,7 @@ public final class SqlUtils
                         new java.sql.Time(((Date)bindVar).getTime()));
                 return;
             case Types.TIMESTAMP:
-                statement.setTimestamp(index, new java.sql.Timestamp(
-                        ((Date)bindVar).getTime()));
+                statement.setTimestamp(index, toTimestamp((Date)bindVar));
                 return;
             default:
                 statement.setString(index, (String)bindVar);
@@ -2980,6 +3059,79 @@ public final class SqlUtils
             pstmt.setString(pos, value.toString());
     }
     
+    /**
+     * Sets the value of the parameter in the prepared statement. Converts
+     * value if needed using <code>fieldType</code>.
+     * 
+     * @param pstmt
+     *            the prepared statement
+     * @param value
+     *            the value
+     * @param fieldType
+     *            the field type {@link java.sql.Types}
+     * @param pos
+     *            the position of the parameter
+     * @throws Exception
+     *             in case of any error
+     */
+    public static void setValue(PreparedStatement pstmt, Object value,
+            int fieldType, int pos)
+        throws Exception
+    {
+        if (isBlob(fieldType))
+        {
+            setBlob(pstmt, value, pos);
+            
+            return;
+        }
+        
+        if (isClob(fieldType))
+        {
+            setClob(pstmt, value, pos);
+            
+            return;
+        }
+        
+        if (value == null
+                || (!isChar(fieldType) && value instanceof String && Utils
+                        .isNothing((String)value)))
+        {
+            pstmt.setNull(pos, fieldType);
+            
+            return;
+        }
+        
+        if (value instanceof String)
+        {
+            if (isNumber(fieldType) && fieldType != Types.BIT)
+                pstmt.setBigDecimal(pos, new BigDecimal(((String)value).trim()));
+            else if (isDate(fieldType))
+                setBindVar(pstmt, (String)value, fieldType, pos);
+            else
+                pstmt.setString(pos, (String)value);
+            
+            return;
+        }
+        
+        if (value instanceof Date)
+        {
+            switch (fieldType)
+            {
+                case Types.DATE:
+                    pstmt.setDate(pos, new java.sql.Date(((Date)value).getTime()));
+                    return;
+                case Types.TIME:
+                    pstmt.setTime(pos, new java.sql.Time(((Date)value).getTime()));
+                    return;
+                default:
+                    pstmt.setTimestamp(pos, toTimestamp((Date)value));
+                    return;
+            }
+        }
+        
+        pstmt.setObject(pos, value);
+    }
+    
     /**
      * Converts field value.
      * 
@@ -3130,6 +3282,22 @@ public final class SqlUtils
                 DataSet.DATA_SET_TIME_FORMAT);
     }
     
+    /**
+     * Converts date to the timestamp. Timestamp is returned as is, so
+     * nanoseconds are not lost.
+     * 
+     * @param value
+     *            the date
+     * @return the timestamp
+     */
+    private static java.sql.Timestamp toTimestamp(Date value)
+    {
+        if (value instanceof java.sql.Timestamp)
+            return (java.sql.Timestamp)value;
+        
+        return new java.sql.Timestamp(value.getTime());
+    }
+    
     /**
      * Convrerts field value to the display value. Display value used in the
      * grid.
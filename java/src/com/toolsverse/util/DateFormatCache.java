@@ -0,0 +1,236 @@
+/*
+ * DateFormatCache.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.util;
+
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the date formats used to parse and format dates. The
+ * <code>SimpleDateFormat</code> is not thread safe and expensive to create, so
+ * formats are created once for each pattern and cached for each thread.
+ * Lenient and strict formats are cached separately. Cached formats are never
+ * returned to the caller, so they can not be modified.
+ * <p>
+ * {@link #parse(String, String)} and {@link #parseWhole(String, String)} do
+ * not throw exceptions. Before parsing they check if the text can be a date at
+ * all: if the pattern starts with the numeric field the text must start with
+ * the digit. This check is used to quickly reject text which is not a date,
+ * for example when type of the value is detected by trying several date
+ * formats one by one.
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public final class DateFormatCache
+{
+    /**
+     * The map which keeps up to {@link DateFormatCache#MAX_FORMATS} most
+     * recently used formats.
+     */
+    private static class LruMap extends LinkedHashMap<String, SimpleDateFormat>
+    {
+        /** Serialization version. */
+        private static final long serialVersionUID = 4396281093867179492L;
+        
+        /**
+         * Instantiates a new LruMap.
+         */
+        LruMap()
+        {
+            super(16, 0.75f, true);
+        }
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+         */
+        @Override
+        protected boolean removeEldestEntry(
+                Map.Entry<String, SimpleDateFormat> eldest)
+        {
+            return size() > MAX_FORMATS;
+        }
+    }
+    
+    /** The maximum number of cached formats for each thread. */
+    public static final int MAX_FORMATS = 64;
+    
+    /** The pattern letters of the numeric fields. */
+    private static final String NUMERIC_FIELDS = "yMdHhkKmsSDFwWu";
+    
+    /** The lenient formats. */
+    private static final ThreadLocal<Map<String, SimpleDateFormat>> LENIENT_FORMATS = new ThreadLocal<Map<String, SimpleDateFormat>>()
+    {
+        @Override
+        protected Map<String, SimpleDateFormat> initialValue()
+        {
+            return new LruMap();
+        }
+    };
+    
+    /** The strict formats. */
+    private static final ThreadLocal<Map<String, SimpleDateFormat>> STRICT_FORMATS = new ThreadLocal<Map<String, SimpleDateFormat>>()
+    {
+        @Override
+        protected Map<String, SimpleDateFormat> initialValue()
+        {
+            return new LruMap();
+        }
+    };
+    
+    /**
+     * Clears the cache of the formats for the current thread.
+     */
+    public static void clear()
+    {
+        LENIENT_FORMATS.get().clear();
+        STRICT_FORMATS.get().clear();
+    }
+    
+    /**
+     * Formats the date using pattern.
+     * 
+     * @param date the date
+     * @param pattern the pattern
+     * @return the formatted date or "" if date is null
+     */
+    public static String format(Date date, String pattern)
+    {
+        return date != null ? getFormat(pattern, true).format(date) : "";
+    }
+    
+    /**
+     * Returns the format for the pattern. Format is cached for the current
+     * thread so it must not be modified, shared with other threads or kept
+     * after use.
+     * 
+     * @param pattern the pattern
+     * @param lenient if true the format is lenient
+     * @return the format
+     */
+    private static SimpleDateFormat getFormat(String pattern, boolean lenient)
+    {
+        Map<String, SimpleDateFormat> formats = lenient ? LENIENT_FORMATS
+                .get() : STRICT_FORMATS.get();
+        
+        SimpleDateFormat format = formats.get(pattern);
+        
+        if (format == null)
+        {
+            format = new SimpleDateFormat(pattern);
+            format.setLenient(lenient);
+            
+            formats.put(pattern, format);
+        }
+        
+        return format;
+    }
+    
+    /**
+     * Checks if text can be parsed using pattern. Returns false if pattern
+     * starts with the numeric field and text, after leading whitespace, does
+     * not start with the digit or minus sign. Returns true otherwise, so text
+     * still can fail to parse.
+     * 
+     * @param text the text
+     * @param pattern the pattern
+     * @return false if text cannot be parsed using pattern
+     */
+    public static boolean isPossibleDate(String text, String pattern)
+    {
+        if (Utils.isNothing(text) || Utils.isNothing(pattern))
+            return false;
+        
+        if (NUMERIC_FIELDS.indexOf(pattern.charAt(0)) < 0)
+            return true;
+        
+        // MMM and longer is the name of the month
+        if (pattern.startsWith("MMM"))
+            return true;
+        
+        int len = text.length();
+        
+        for (int i = 0; i < len; i++)
+        {
+            char c = text.charAt(i);
+            
+            if (!Character.isWhitespace(c))
+                return (c >= '0' && c <= '9') || c == '-';
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Parses the beginning of the text using lenient format. The rest of the
+     * text is ignored, the same way as by
+     * <code>SimpleDateFormat.parse(String)</code>.
+     * 
+     * @param text the text
+     * @param pattern the pattern
+     * @return the date or null if text cannot be parsed
+     */
+    public static Date parse(String text, String pattern)
+    {
+        if (!isPossibleDate(text, pattern))
+            return null;
+        
+        return getFormat(pattern, true).parse(text, new ParsePosition(0));
+    }
+    
+    /**
+     * Parses the beginning of the text using strict format, so invalid dates
+     * such as February 31 are not accepted.
+     * 
+     * @param text the text
+     * @param pattern the pattern
+     * @return the date
+     * @throws ParseException if text cannot be parsed
+     */
+    public static Date parseStrict(String text, String pattern)
+        throws ParseException
+    {
+        return getFormat(pattern, false).parse(text);
+    }
+    
+    /**
+     * Parses the text using lenient format. The whole text must be parsed, so
+     * for example date+time is not accepted by the date only format. Used to
+     * check if text is a date of the given format.
+     * 
+     * @param text the text
+     * @param pattern the pattern
+     * @return the date or null if the whole text cannot be parsed
+     */
+    public static Date parseWhole(String text, String pattern)
+    {
+        if (!isPossibleDate(text, pattern))
+            return null;
+        
+        ParsePosition pos = new ParsePosition(0);
+        
+        Date date = getFormat(pattern, true).parse(text, pos);
+        
+        return pos.getIndex() == text.length() ? date : null;
+    }
+    
+    /**
+     * Instantiates a new DateFormatCache.
+     */
+    private DateFormatCache()
+    {
+    }
+}
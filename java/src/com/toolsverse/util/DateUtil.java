@@ -502,10 +502,8 @@ public final class DateUtil
     public static Date parse(String dateString, String dateFormat)
         throws ParseException
     {
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat(dateFormat);
-        simpleDateFormat.setLenient(false); // Don't automatically convert
-                                            // invalid date.
-        return simpleDateFormat.parse(dateString);
+        // Don't automatically convert invalid date.
+        return DateFormatCache.parseStrict(dateString, dateFormat);
     }
     
     /**
@@ -15,10 +15,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.script.Bindings;
-import javax.script.Compilable;
 import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
 /**
@@ -254,7 +252,8 @@ public class Script implements ObjectStorage, Serializable
     }
     
     /**
-     * Compiles script if it is possible.
+     * Compiles script if it is possible. Compiled scripts are shared using
+     * {@link ScriptCache}, so the same code is compiled only once.
      * 
      * @param objectStorage the storage for the compiled scripts
      * @param name the name of the script
@@ -281,20 +280,16 @@ public class Script implements ObjectStorage, Serializable
             
             if (engine == null)
             {
-                ScriptEngineManager manager = new ScriptEngineManager();
-                
-                engine = manager.getEngineByName(lang);
+                engine = ScriptCache.getEngine(lang);
                 
                 objectStorage.setValue(ScriptEngine.class.getName() + lang,
                         engine);
             }
             
-            if (engine instanceof Compilable)
+            script = ScriptCache.getCompiledScript(code, lang);
+            
+            if (script != null)
             {
-                Compilable compilingEngine = (Compilable)engine;
-                
-                script = compilingEngine.compile(code);
-                
                 objectStorage.setValue(name, script);
                 
                 return true;
@@ -0,0 +1,316 @@
+/*
+ * ScriptCache.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+/**
+ * Process wide cache of the script engines and compiled scripts. Scripts are
+ * compiled once and cached using language and text of the script as a key, so
+ * the same code used by different tasks, scenarios and threads is compiled
+ * only once. Cache keeps up to {@link #MAX_SCRIPTS} most recently used
+ * scripts. If script engine is not thread safe engines and compiled scripts
+ * are cached for each thread.
+ * <p>
+ * Bindings returned by {@link #getBindings(String, String)} are reused by the
+ * same thread and cleared after each {@link #eval(String, String, Bindings)}.
+ * Bindings which still have variables declared by the script after being
+ * cleared are not reused, so values never leak from one evaluation to another.
+ * 
+ * <p>
+ * Typical usage example:
+ * <p>
+ * <pre class="brush: java">
+ * Bindings bindings = ScriptCache.getBindings(code, lang);
+ * 
+ * bindings.put(&quot;currentRow&quot;, record);
+ * 
+ * Object value = ScriptCache.eval(code, lang, bindings);
+ * </pre>
+ * 
+ * @see com.toolsverse.util.Script
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public final class ScriptCache
+{
+    /**
+     * The map which keeps up to {@link ScriptCache#MAX_SCRIPTS} most recently
+     * used entries.
+     */
+    private static class LruMap<V> extends LinkedHashMap<String, V>
+    {
+        /** Serialization version. */
+        private static final long serialVersionUID = -7369687519137745215L;
+        
+        /**
+         * Instantiates a new LruMap.
+         */
+        LruMap()
+        {
+            super(16, 0.75f, true);
+        }
+        
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, V> eldest)
+        {
+            return size() > MAX_SCRIPTS;
+        }
+    }
+    
+    /** The maximum number of cached compiled scripts. */
+    public static final int MAX_SCRIPTS = 512;
+    
+    /** The name of the script engine parameter which defines threading. */
+    private static final String THREADING = "THREADING";
+    
+    /** The thread safe engines. */
+    private static final Map<String, ScriptEngine> ENGINES = new ConcurrentHashMap<String, ScriptEngine>();
+    
+    /** The compiled scripts created by thread safe engines. */
+    private static final Map<String, CompiledScript> SCRIPTS = Collections
+            .synchronizedMap(new LruMap<CompiledScript>());
+    
+    /** The engines which are not thread safe. */
+    private static final ThreadLocal<Map<String, ScriptEngine>> THREAD_ENGINES = new ThreadLocal<Map<String, ScriptEngine>>()
+    {
+        @Override
+        protected Map<String, ScriptEngine> initialValue()
+        {
+            return new HashMap<String, ScriptEngine>();
+        }
+    };
+    
+    /** The compiled scripts created by engines which are not thread safe. */
+    private static final ThreadLocal<Map<String, CompiledScript>> THREAD_SCRIPTS = new ThreadLocal<Map<String, CompiledScript>>()
+    {
+        @Override
+        protected Map<String, CompiledScript> initialValue()
+        {
+            return new LruMap<CompiledScript>();
+        }
+    };
+    
+    /** The bindings reused by the thread. */
+    private static final ThreadLocal<Map<String, Bindings>> THREAD_BINDINGS = new ThreadLocal<Map<String, Bindings>>()
+    {
+        @Override
+        protected Map<String, Bindings> initialValue()
+        {
+            return new LruMap<Bindings>();
+        }
+    };
+    
+    /**
+     * Clears the cache of the compiled scripts.
+     */
+    public static void clear()
+    {
+        SCRIPTS.clear();
+        THREAD_SCRIPTS.get().clear();
+        THREAD_BINDINGS.get().clear();
+    }
+    
+    /**
+     * Evaluates script using compiled script if script engine supports
+     * compilation. Clears bindings when done.
+     * 
+     * @param code the script
+     * @param lang the script language name
+     * @param bindings the bindings
+     * @return the object returned by evaluated script
+     * @throws ScriptException in case of any error
+     */
+    public static Object eval(String code, String lang, Bindings bindings)
+        throws ScriptException
+    {
+        try
+        {
+            CompiledScript script = getCompiledScript(code, lang);
+            
+            if (script != null)
+                return script.eval(bindings);
+            
+            return getEngine(lang).eval(code, bindings);
+        }
+        finally
+        {
+            if (bindings != null)
+            {
+                bindings.clear();
+                
+                // some engines keep variables declared by the script, such
+                // bindings cannot be reused
+                if (!bindings.isEmpty())
+                {
+                    Map<String, Bindings> bindingsMap = THREAD_BINDINGS.get();
+                    
+                    String key = getKey(code, lang);
+                    
+                    if (bindingsMap.get(key) == bindings)
+                        bindingsMap.remove(key);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns empty bindings for the script. Bindings are reused by the thread
+     * so they must not be kept after script is evaluated.
+     * 
+     * @param code the script
+     * @param lang the script language name
+     * @return the bindings or <code>null</code> if there is no engine for the
+     *         language
+     */
+    public static Bindings getBindings(String code, String lang)
+    {
+        String key = getKey(code, lang);
+        
+        Map<String, Bindings> bindingsMap = THREAD_BINDINGS.get();
+        
+        Bindings bindings = bindingsMap.get(key);
+        
+        if (bindings == null)
+        {
+            ScriptEngine engine = getEngine(lang);
+            
+            if (engine == null)
+                return null;
+            
+            bindings = engine.createBindings();
+            
+            bindingsMap.put(key, bindings);
+        }
+        else
+            bindings.clear();
+        
+        return bindings;
+    }
+    
+    /**
+     * Returns compiled script. Compiles script and puts it in the cache if
+     * needed.
+     * 
+     * @param code the script
+     * @param lang the script language name
+     * @return the compiled script or <code>null</code> if script engine does
+     *         not support compilation
+     * @throws ScriptException in case of any error
+     */
+    public static CompiledScript getCompiledScript(String code, String lang)
+        throws ScriptException
+    {
+        ScriptEngine engine = getEngine(lang);
+        
+        if (!(engine instanceof Compilable))
+            return null;
+        
+        String key = getKey(code, lang);
+        
+        Map<String, CompiledScript> scripts = isThreadSafe(engine) ? SCRIPTS
+                : THREAD_SCRIPTS.get();
+        
+        CompiledScript script = scripts.get(key);
+        
+        if (script == null)
+        {
+            script = ((Compilable)engine).compile(code);
+            
+            scripts.put(key, script);
+        }
+        
+        return script;
+    }
+    
+    /**
+     * Returns script engine for the language.
+     * 
+     * @param lang the script language name
+     * @return the script engine or <code>null</code> if there is no engine for
+     *         the language
+     */
+    public static ScriptEngine getEngine(String lang)
+    {
+        if (lang == null)
+            return null;
+        
+        ScriptEngine engine = ENGINES.get(lang);
+        
+        if (engine != null)
+            return engine;
+        
+        Map<String, ScriptEngine> threadEngines = THREAD_ENGINES.get();
+        
+        engine = threadEngines.get(lang);
+        
+        if (engine != null)
+            return engine;
+        
+        engine = new ScriptEngineManager().getEngineByName(lang);
+        
+        if (engine == null)
+            return null;
+        
+        if (isThreadSafe(engine))
+            ENGINES.put(lang, engine);
+        else
+            threadEngines.put(lang, engine);
+        
+        return engine;
+    }
+    
+    /**
+     * Gets the key of the script.
+     * 
+     * @param code the script
+     * @param lang the script language name
+     * @return the key
+     */
+    private static String getKey(String code, String lang)
+    {
+        return lang + "\n" + code;
+    }
+    
+    /**
+     * Checks if script engine is thread safe.
+     * 
+     * @param engine the script engine
+     * @return true, if engine is thread safe
+     */
+    private static boolean isThreadSafe(ScriptEngine engine)
+    {
+        return engine.getFactory().getParameter(THREADING) != null;
+    }
+    
+    /**
+     * Instantiates a new ScriptCache.
+     */
+    private ScriptCache()
+    {
+    }
+}
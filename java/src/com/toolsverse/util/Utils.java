@@ -23,9 +23,7 @@ import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -95,9 +93,6 @@ public final class Utils
     /** Whitespace regular expression. */
     public static final String WHITESPACE = " \n\r\f\t";
     
-    /** class for formatting and parsing dates in a locale-sensitive manner. */
-    private static final SimpleDateFormat simpleDateFormat = new SimpleDateFormat();
-    
     /** OS dependent 'end of the line' character. */
     public final static String NEWLINE = new String(
             System.getProperty("line.separator"));
@@ -557,15 +552,7 @@ public final class Utils
      */
     public static String date2Str(Date date, String format)
     {
-        synchronized (simpleDateFormat)
-        {
-            if (simpleDateFormat.getCalendar().getTimeZone() == null)
-                simpleDateFormat.getCalendar()
-                        .setTimeZone(getDefaultTimeZone());
-            
-            simpleDateFormat.applyPattern(format);
-            return date != null ? simpleDateFormat.format(date) : "";
-        }
+        return DateFormatCache.format(date, format);
     }
     
     /**
@@ -2598,15 +2585,9 @@ public final class Utils
         if (str == null)
             return def;
         
-        try
-        {
-            DateFormat formatter = new SimpleDateFormat(format);
-            return formatter.parse(str);
-        }
-        catch (ParseException ex)
-        {
-            return def;
-        }
+        Date date = DateFormatCache.parse(str, format);
+        
+        return date != null ? date : def;
     }
     
     /**
@@ -2628,24 +2609,15 @@ public final class Utils
         if (isNothing(input))
             return null;
         
-        SimpleDateFormat formater = null;
-        
         for (String format : formats)
-            try
-            {
-                formater = new SimpleDateFormat(format);
-                
-                Date date = formater.parse(input);
-                
-                if (date == null || !date2Str(date, format).equals(input))
-                    continue;
-                
-                return date;
-            }
-            catch (ParseException ex)
-            {
+        {
+            Date date = DateFormatCache.parse(input, format);
+            
+            if (date == null || !date2Str(date, format).equals(input))
                 continue;
-            }
+            
+            return date;
+        }
         
         return null;
     }
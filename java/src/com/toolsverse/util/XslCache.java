@@ -0,0 +1,124 @@
+/*
+ * XslCache.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Process wide cache of the compiled xsl style sheets. Style sheet is parsed
+ * and compiled once and cached using the path and the modification time of the
+ * file as a key, so the same style sheet used by different connectors, tasks
+ * and iterations of the scenario is compiled only once. If file was modified
+ * the style sheet is compiled again.
+ * <p>
+ * Compiled style sheets are thread safe. Each call of
+ * {@link #newTransformer(File)} returns new <code>Transformer</code> which
+ * must be used by one thread only.
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public final class XslCache
+{
+    /**
+     * The compiled style sheet and the modification time of the file.
+     */
+    private static class Entry
+    {
+        /** The modification time of the file. */
+        private final long _lastModified;
+        
+        /** The compiled style sheet. */
+        private final Templates _templates;
+        
+        /**
+         * Instantiates a new Entry.
+         * 
+         * @param lastModified the modification time of the file
+         * @param templates the compiled style sheet
+         */
+        Entry(long lastModified, Templates templates)
+        {
+            _lastModified = lastModified;
+            _templates = templates;
+        }
+    }
+    
+    /** The compiled style sheets. */
+    private static final Map<String, Entry> TEMPLATES = new ConcurrentHashMap<String, Entry>();
+    
+    /**
+     * Clears the cache of the compiled style sheets.
+     */
+    public static void clear()
+    {
+        TEMPLATES.clear();
+    }
+    
+    /**
+     * Returns compiled style sheet. Compiles style sheet and puts it in the
+     * cache if needed.
+     * 
+     * @param xsltFile the xsl file
+     * @return the compiled style sheet
+     * @throws IOException Signals that an I/O exception has occurred.
+     * @throws TransformerConfigurationException if style sheet cannot be
+     *             compiled
+     */
+    public static Templates getTemplates(File xsltFile)
+        throws IOException, TransformerConfigurationException
+    {
+        String key = xsltFile.getCanonicalPath();
+        long lastModified = xsltFile.lastModified();
+        
+        Entry entry = TEMPLATES.get(key);
+        
+        if (entry == null || entry._lastModified != lastModified)
+        {
+            entry = new Entry(lastModified, TransformerFactory.newInstance()
+                    .newTemplates(new StreamSource(xsltFile)));
+            
+            TEMPLATES.put(key, entry);
+        }
+        
+        return entry._templates;
+    }
+    
+    /**
+     * Returns new transformer created using compiled style sheet.
+     * 
+     * @param xsltFile the xsl file
+     * @return the transformer
+     * @throws IOException Signals that an I/O exception has occurred.
+     * @throws TransformerConfigurationException if style sheet cannot be
+     *             compiled
+     */
+    public static Transformer newTransformer(File xsltFile)
+        throws IOException, TransformerConfigurationException
+    {
+        return getTemplates(xsltFile).newTransformer();
+    }
+    
+    /**
+     * Instantiates a new XslCache.
+     */
+    private XslCache()
+    {
+    }
+}
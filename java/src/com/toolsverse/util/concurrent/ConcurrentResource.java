@@ -34,6 +34,8 @@ public enum ConcurrentResource
     
     CANNOT_AQUIRE_LOCK("Cannot aquire file lock."),
     
+    ERROR_CYCLIC_DEPENDENCY("Cyclic dependency between: "),
+    
     // messages
     FINISHED_MESSAGE("You request is finished. You can now close dialog."),
     
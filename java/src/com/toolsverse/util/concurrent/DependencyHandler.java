@@ -0,0 +1,48 @@
+/*
+ * DependencyHandler.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.util.concurrent;
+
+import java.util.concurrent.Future;
+
+/**
+ * Starts the node scheduled by the {@link DependencyScheduler}. The node can be executed in the calling thread, in
+ * this case it is considered finished as soon as handler returns, or added to the {@link ParallelExecutor} of the
+ * scheduler, in this case it is considered finished when the returned future is done. The executor reports the
+ * finished future to the scheduler, so nodes which depend on it are started without delay.
+ * 
+ * @see com.toolsverse.util.concurrent.DependencyScheduler
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public interface DependencyHandler<T>
+{
+    
+    /**
+     * Starts the node.
+     * 
+     * @param node the node
+     * @return the future if node is executed asynchronously, or null if it is already finished
+     * @throws Exception in case of any error
+     */
+    Future<?> start(T node)
+        throws Exception;
+    
+    /**
+     * Checks if the node added using {@link DependencyScheduler#addBarrier(Object)} is the barrier. Called once, when
+     * all nodes added before it are started, so the condition is checked in the order nodes were added.
+     * 
+     * @param node the node
+     * @return true if nodes added after it must wait for all nodes added before it, false if node must be skipped
+     * @throws Exception in case of any error
+     */
+    boolean isBarrier(T node)
+        throws Exception;
+}
@@ -0,0 +1,458 @@
+/*
+ * DependencyScheduler.java
+ * 
+ * Copyright 2010-2012 Toolsverse. All rights reserved. Toolsverse
+ * PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ */
+
+package com.toolsverse.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.toolsverse.util.Utils;
+
+/**
+ * Schedules execution of the nodes of the dependency graph. Each node can depend on other nodes by name and is started
+ * as soon as all nodes it depends on are finished, so the total execution time is defined by the longest chain of
+ * dependencies and not by the order in which nodes were added. Nodes which are ready at the same time are started in
+ * the order they were added.
+ * 
+ * <p>
+ * For the compatibility with the positional scheduling two kinds of implicit dependencies are supported. The sequential
+ * node depends on the previous sequential node. The barrier depends on all nodes added before it and all nodes added
+ * after it depend on the barrier. The conditional barrier is checked by {@link DependencyHandler#isBarrier(Object)}
+ * when all nodes added before it are started, if it is not the barrier it is skipped.
+ * 
+ * <p>
+ * Dependencies on the unknown names are ignored. Cyclic dependencies are reported before any node is started.
+ * 
+ * <p>
+ * Typical usage example:
+ * <p><pre class="brush: java">
+ * DependencyScheduler&lt;Source&gt; scheduler = new DependencyScheduler&lt;Source&gt;(executor);
+ * 
+ * for (Source source : sources)
+ * {
+ *      scheduler.add(source.getName(), source, source.getDependsOn(), !source.isParallel());
+ * }
+ * 
+ * scheduler.execute(handler);
+ * 
+ * executor.waitUntilDone();
+ * </pre>
+ * 
+ * @see com.toolsverse.util.concurrent.DependencyHandler
+ * 
+ * @author Maksym Sherbinin
+ * @version 2.0
+ * @since 2.0
+ */
+
+public class DependencyScheduler<T>
+{
+    
+    /**
+     * The node of the dependency graph.
+     */
+    private static class Node<T>
+    {
+        
+        /** The name. */
+        private final String _name;
+        
+        /** The value. Null for the unconditional barrier. */
+        private final T _value;
+        
+        /** The "is barrier" flag. */
+        private final boolean _isBarrier;
+        
+        /** The "condition of the barrier is checked" flag. */
+        private boolean _isChecked;
+        
+        /** The names of the nodes this node depends on. */
+        private final List<String> _dependsOnNames;
+        
+        /** The indexes of the nodes this node depends on. */
+        private final Set<Integer> _dependsOn;
+        
+        /**
+         * Instantiates a new node.
+         * 
+         * @param name the name
+         * @param value the value
+         * @param isBarrier the "is barrier" flag
+         */
+        public Node(String name, T value, boolean isBarrier)
+        {
+            _name = name;
+            _value = value;
+            _isBarrier = isBarrier;
+            _isChecked = !isBarrier || value == null;
+            _dependsOnNames = new ArrayList<String>();
+            _dependsOn = new LinkedHashSet<Integer>();
+        }
+    }
+    
+    /** The executor. */
+    private final ParallelExecutor _executor;
+    
+    /** The nodes in the order they were added. */
+    private final List<Node<T>> _nodes;
+    
+    /** The index of the last sequential node. */
+    private int _lastSequential;
+    
+    /** The index of the last barrier. */
+    private int _lastBarrier;
+    
+    /**
+     * Instantiates a new dependency scheduler.
+     * 
+     * @param executor the executor used to run nodes asynchronously. Can be null.
+     */
+    public DependencyScheduler(ParallelExecutor executor)
+    {
+        _executor = executor;
+        _nodes = new ArrayList<Node<T>>();
+        _lastSequential = -1;
+        _lastBarrier = -1;
+    }
+    
+    /**
+     * Adds the node.
+     * 
+     * @param name the name of the node. Names are not case sensitive.
+     * @param value the value passed to the {@link DependencyHandler}
+     * @param dependsOn the names of the nodes this node depends on. Can be null.
+     * @param isSequential if true node depends on the previous sequential node
+     */
+    public void add(String name, T value, Collection<String> dependsOn,
+            boolean isSequential)
+    {
+        Node<T> node = new Node<T>(name, value, false);
+        
+        if (dependsOn != null)
+            for (String dependsOnName : dependsOn)
+                if (!Utils.isNothing(dependsOnName))
+                    node._dependsOnNames.add(dependsOnName.trim());
+        
+        if (_lastBarrier >= 0)
+            node._dependsOn.add(_lastBarrier);
+        
+        if (isSequential)
+        {
+            if (_lastSequential >= 0)
+                node._dependsOn.add(_lastSequential);
+            
+            _lastSequential = _nodes.size();
+        }
+        
+        _nodes.add(node);
+    }
+    
+    /**
+     * Adds the barrier. The barrier depends on all nodes added before it and all nodes added after it depend on the
+     * barrier.
+     */
+    public void addBarrier()
+    {
+        addBarrier(null);
+    }
+    
+    /**
+     * Adds the conditional barrier. The barrier depends on all nodes added before it and all nodes added after it
+     * depend on the barrier. When all nodes added before it are started {@link DependencyHandler#isBarrier(Object)}
+     * is called and if it returns false the barrier doesn't wait for anything.
+     * 
+     * @param value the value passed to the {@link DependencyHandler}. If null the barrier is unconditional.
+     */
+    public void addBarrier(T value)
+    {
+        Node<T> node = new Node<T>(null, value, true);
+        
+        for (int i = 0; i < _nodes.size(); i++)
+            node._dependsOn.add(i);
+        
+        _lastBarrier = _nodes.size();
+        
+        _nodes.add(node);
+    }
+    
+    /**
+     * Checks that there are no cyclic dependencies.
+     * 
+     * @throws Exception if there is a cycle
+     */
+    private void checkCycles()
+        throws Exception
+    {
+        int size = _nodes.size();
+        
+        int[] counts = new int[size];
+        List<List<Integer>> dependents = new ArrayList<List<Integer>>(size);
+        
+        for (int i = 0; i < size; i++)
+            dependents.add(new ArrayList<Integer>());
+        
+        for (int i = 0; i < size; i++)
+        {
+            counts[i] = _nodes.get(i)._dependsOn.size();
+            
+            for (int index : _nodes.get(i)._dependsOn)
+                dependents.get(index).add(i);
+        }
+        
+        LinkedList<Integer> ready = new LinkedList<Integer>();
+        
+        for (int i = 0; i < size; i++)
+            if (counts[i] == 0)
+                ready.add(i);
+        
+        int visited = 0;
+        
+        while (!ready.isEmpty())
+        {
+            int index = ready.removeFirst();
+            
+            visited++;
+            
+            for (int dependent : dependents.get(index))
+                if (--counts[dependent] == 0)
+                    ready.add(dependent);
+        }
+        
+        if (visited == size)
+            return;
+        
+        StringBuilder names = new StringBuilder();
+        
+        for (int i = 0; i < size; i++)
+            if (counts[i] > 0 && _nodes.get(i)._name != null)
+                names.append(names.length() > 0 ? ", " : "").append(
+                        _nodes.get(i)._name);
+        
+        throw new Exception(ConcurrentResource.ERROR_CYCLIC_DEPENDENCY
+                .getValue() + names);
+    }
+    
+    /**
+     * Starts all nodes, each as soon as nodes it depends on are finished. Returns when the last node is started. Nodes
+     * which are still running must be waited for using {@link ParallelExecutor#waitUntilDone()}.
+     * 
+     * @param handler the handler which starts the node
+     * @return false if execution was terminated, otherwise true
+     * @throws Exception in case of any error or if there is a cyclic dependency
+     */
+    public boolean execute(DependencyHandler<T> handler)
+        throws Exception
+    {
+        resolve();
+        
+        checkCycles();
+        
+        boolean[] done = new boolean[_nodes.size()];
+        
+        List<Integer> pending = new LinkedList<Integer>();
+        
+        for (int i = 0; i < _nodes.size(); i++)
+            pending.add(i);
+        
+        Map<Future<?>, Integer> running = new LinkedHashMap<Future<?>, Integer>();
+        
+        // finished nodes are reported by the executor as soon as they are done
+        BlockingQueue<Future<?>> finished = null;
+        
+        if (_executor != null)
+        {
+            finished = new LinkedBlockingQueue<Future<?>>();
+            
+            _executor.addCompletionQueue(finished);
+        }
+        
+        try
+        {
+            while (!pending.isEmpty())
+            {
+                if (isTerminated())
+                    return false;
+                
+                Integer index = getReady(pending, done, handler);
+                
+                if (index == null)
+                {
+                    if (running.isEmpty())
+                        break;
+                    
+                    waitForAny(running, done, finished);
+                    
+                    continue;
+                }
+                
+                pending.remove(index);
+                
+                Node<T> node = _nodes.get(index);
+                
+                Future<?> future = !node._isBarrier ? handler
+                        .start(node._value) : null;
+                
+                if (future == null)
+                    done[index] = true;
+                else
+                    running.put(future, index);
+            }
+        }
+        finally
+        {
+            if (_executor != null)
+                _executor.removeCompletionQueue(finished);
+        }
+        
+        return !isTerminated();
+    }
+    
+    /**
+     * Gets the first pending node which is ready to start.
+     * 
+     * @param pending the pending nodes in the order they were added
+     * @param done the finished nodes
+     * @param handler the handler which checks conditional barriers
+     * @return the index of the node or null if none of the pending nodes is ready
+     * @throws Exception in case of any error
+     */
+    private Integer getReady(List<Integer> pending, boolean[] done,
+            DependencyHandler<T> handler)
+        throws Exception
+    {
+        for (Integer index : pending)
+        {
+            Node<T> node = _nodes.get(index);
+            
+            if (!node._isChecked)
+            {
+                // not all nodes added before the barrier are started
+                if (index.intValue() != pending.get(0).intValue())
+                    continue;
+                
+                node._isChecked = true;
+                
+                // nodes added before the previous barrier are finished, so
+                // nodes which depend on this one only wait for the nodes they
+                // depend on themselves
+                if (!handler.isBarrier(node._value))
+                    node._dependsOn.clear();
+            }
+            
+            boolean isReady = true;
+            
+            for (int dependsOn : node._dependsOn)
+                if (!done[dependsOn])
+                {
+                    isReady = false;
+                    
+                    break;
+                }
+            
+            if (isReady)
+                return index;
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Checks if execution was terminated.
+     * 
+     * @return true, if it is terminated
+     */
+    private boolean isTerminated()
+    {
+        return _executor != null && _executor.isTerminated();
+    }
+    
+    /**
+     * Resolves names of the nodes each node depends on.
+     */
+    private void resolve()
+    {
+        Map<String, List<Integer>> names = new HashMap<String, List<Integer>>();
+        
+        for (int i = 0; i < _nodes.size(); i++)
+        {
+            String name = _nodes.get(i)._name;
+            
+            if (Utils.isNothing(name))
+                continue;
+            
+            name = name.toUpperCase();
+            
+            List<Integer> indexes = names.get(name);
+            
+            if (indexes == null)
+            {
+                indexes = new ArrayList<Integer>();
+                
+                names.put(name, indexes);
+            }
+            
+            indexes.add(i);
+        }
+        
+        for (int i = 0; i < _nodes.size(); i++)
+        {
+            Node<T> node = _nodes.get(i);
+            
+            for (String name : node._dependsOnNames)
+            {
+                List<Integer> indexes = names.get(name.toUpperCase());
+                
+                if (indexes != null)
+                    for (int index : indexes)
+                        if (index != i)
+                            node._dependsOn.add(index);
+            }
+        }
+    }
+    
+    /**
+     * Waits until any of the running nodes is finished. Re-throws exception if node failed.
+     * 
+     * @param running the running nodes
+     * @param done the finished nodes
+     * @param finished the queue to which executor reports finished tasks. Null if there is no executor.
+     * @throws Exception in case of any error
+     */
+    private void waitForAny(Map<Future<?>, Integer> running, boolean[] done,
+            BlockingQueue<Future<?>> finished)
+        throws Exception
+    {
+        while (!running.isEmpty() && !isTerminated())
+        {
+            Future<?> future = finished != null ? finished.take() : running
+                    .keySet().iterator().next();
+            
+            Integer index = running.remove(future);
+            
+            // the task which is not a node
+            if (index == null)
+                continue;
+            
+            if (!future.isCancelled())
+                future.get();
+            
+            done[index] = true;
+            
+            return;
+        }
+    }
+}
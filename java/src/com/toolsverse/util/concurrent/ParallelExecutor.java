@@ -10,13 +10,16 @@ package com.toolsverse.util.concurrent;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
-
-import com.toolsverse.util.TypedKeyValue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The purpose of this class is to coordinate execution of the multiple tasks in the separate threads. 
@@ -25,6 +28,11 @@ import com.toolsverse.util.TypedKeyValue;
  * the java.util.concurrent package. 
  * 
  * <p>
+ * Finished tasks are reported to the waiting thread as soon as they complete. If task fails and its exception
+ * is not ignored all outstanding tasks are cancelled and exception is rethrown. Execution time of each task
+ * is available using {@link #getTaskTime(Future)}.
+ * 
+ * <p>
  * Typical usage example:
  * <p><pre class="brush: java">
  * ParallelExecutor executor = new ParallelExecutor(maxNumberOfThreads);
@@ -55,6 +63,65 @@ import com.toolsverse.util.TypedKeyValue;
 
 public class ParallelExecutor
 {
+    /**
+     * The task which records its execution time and reports itself to the
+     * queue of the finished tasks when it is completed, failed or cancelled.
+     */
+    private class TaskFuture extends FutureTask<Object>
+    {
+        /** The ignore exception flag. */
+        private final boolean _ignoreException;
+        
+        /** The time when task started, in nanoseconds. */
+        private volatile long _started;
+        
+        /** The time when task finished, in nanoseconds. */
+        private volatile long _finished;
+        
+        /**
+         * Instantiates a new task future.
+         *
+         * @param task the task
+         * @param ignoreException the ignore exception flag
+         */
+        @SuppressWarnings("unchecked")
+        TaskFuture(Callable<?> task, boolean ignoreException)
+        {
+            super((Callable<Object>)task);
+            
+            _ignoreException = ignoreException;
+            _started = 0;
+            _finished = 0;
+        }
+        
+        /* (non-Javadoc)
+         * @see java.util.concurrent.FutureTask#done()
+         */
+        @Override
+        protected void done()
+        {
+            _finished = System.nanoTime();
+            
+            _finishedTasks.add(this);
+            
+            for (BlockingQueue<Future<?>> queue : _completionQueues)
+                queue.add(this);
+        }
+        
+        /* (non-Javadoc)
+         * @see java.util.concurrent.FutureTask#run()
+         */
+        @Override
+        public void run()
+        {
+            _started = System.nanoTime();
+            
+            super.run();
+        }
+    }
+    
+    /** The interval used to check if execution was terminated while waiting, in milliseconds. */
+    private static final long WAIT_INTERVAL = 1000;
     
     /** The thread pool. */
     private ExecutorService _threadPool;
@@ -62,8 +129,17 @@ public class ParallelExecutor
     /** If true execution was terminated. */
     private volatile boolean _isTerminated;
     
-    /** Results for each task. */
-    private List<TypedKeyValue<Future<?>, Boolean>> _futures;
+    /** All tasks. */
+    private List<TaskFuture> _futures;
+    
+    /** The finished tasks which have not been checked yet. */
+    private BlockingQueue<TaskFuture> _finishedTasks;
+    
+    /** The number of checked finished tasks. */
+    private int _checked;
+    
+    /** The queues to which finished tasks are reported in addition to the queue of the executor. */
+    private final List<BlockingQueue<Future<?>>> _completionQueues;
     
     /**
      * Instantiates a new parallel executor.
@@ -72,7 +148,13 @@ public class ParallelExecutor
      */
     public ParallelExecutor(ExecutorService threadPool)
     {
-        _futures = new Vector<TypedKeyValue<Future<?>, Boolean>>();
+        _futures = new Vector<TaskFuture>();
+        
+        _finishedTasks = new LinkedBlockingQueue<TaskFuture>();
+        
+        _checked = 0;
+        
+        _completionQueues = new CopyOnWriteArrayList<BlockingQueue<Future<?>>>();
         
         _isTerminated = false;
         
@@ -86,11 +168,19 @@ public class ParallelExecutor
      */
     public ParallelExecutor(int nThreads)
     {
-        _futures = new Vector<TypedKeyValue<Future<?>, Boolean>>();
-        
-        _isTerminated = false;
-        
-        _threadPool = Executors.newFixedThreadPool(nThreads);
+        this(Executors.newFixedThreadPool(nThreads));
+    }
+    
+    /**
+     * Adds the queue to which each task is added as soon as it is finished, failed or cancelled. Allows to wait for
+     * the tasks without consuming them from the queue used by {@link #waitUntilDone()}. Only tasks finished after
+     * the queue is added are reported.
+     *
+     * @param queue the queue
+     */
+    public void addCompletionQueue(BlockingQueue<Future<?>> queue)
+    {
+        _completionQueues.add(queue);
     }
     
     /**
@@ -117,28 +207,51 @@ public class ParallelExecutor
     {
         if (!_isTerminated)
         {
-            Future<?> future = null;
+            TaskFuture future = new TaskFuture(task, ignoreException);
+            
+            _futures.add(future);
             
             try
             {
-                future = _threadPool.submit(task);
+                _threadPool.execute(future);
             }
             catch (RejectedExecutionException ex)
             {
                 _isTerminated = true;
                 
+                _futures.remove(future);
+                
                 return null;
             }
             
-            _futures.add(new TypedKeyValue<Future<?>, Boolean>(future,
-                    ignoreException));
-            
             return future;
         }
         
         return null;
     }
     
+    /**
+     * Cancels all tasks which are not finished yet.
+     */
+    private void cancel()
+    {
+        for (TaskFuture future : getFutures())
+            future.cancel(true);
+    }
+    
+    /**
+     * Gets the copy of the list of all tasks.
+     *
+     * @return the tasks
+     */
+    private List<TaskFuture> getFutures()
+    {
+        synchronized (_futures)
+        {
+            return new ArrayList<TaskFuture>(_futures);
+        }
+    }
+    
     /**
      * Gets the results for each task.
      *
@@ -148,38 +261,35 @@ public class ParallelExecutor
     {
         List<Future<?>> list = new ArrayList<Future<?>>(_futures.size());
         
-        for (TypedKeyValue<Future<?>, Boolean> keyValue : _futures)
-            list.add(keyValue.getKey());
+        for (TaskFuture future : getFutures())
+            list.add(future);
         
         return list;
     }
     
     /**
-     * Checks if any of the tasks are still running.
+     * Gets the execution time of the task in milliseconds. For the running task returns time elapsed since task
+     * started.
      *
-     * @return true, if any of the tasks are still running
-     * @throws Exception in case of any error
+     * @param future the future returned by {@link #addTask(Callable, boolean)}
+     * @return the execution time or 0 if task has not been started 
      */
-    private boolean isRunning()
-        throws Exception
+    public long getTaskTime(Future<?> future)
     {
-        for (TypedKeyValue<Future<?>, Boolean> keyValue : _futures)
-        {
-            Future<?> future = keyValue.getKey();
-            boolean ignoreException = keyValue.getValue();
-            boolean isCancelled = future.isCancelled();
-            boolean isDone = future.isDone();
-            
-            if ((isDone || isCancelled) && !ignoreException)
-                future.get();
-            
-            if (!isDone && !isCancelled)
-            {
-                return true;
-            }
-        }
+        if (!(future instanceof TaskFuture))
+            return 0;
+        
+        TaskFuture taskFuture = (TaskFuture)future;
+        
+        long started = taskFuture._started;
+        
+        if (started == 0)
+            return 0;
         
-        return false;
+        long finished = taskFuture._finished;
+        
+        return TimeUnit.NANOSECONDS.toMillis((finished != 0 ? finished
+                : System.nanoTime()) - started);
     }
     
     /**
@@ -192,6 +302,16 @@ public class ParallelExecutor
         return _isTerminated;
     }
     
+    /**
+     * Removes the queue added using {@link #addCompletionQueue(BlockingQueue)}.
+     *
+     * @param queue the queue
+     */
+    public void removeCompletionQueue(BlockingQueue<Future<?>> queue)
+    {
+        _completionQueues.remove(queue);
+    }
+    
     /**
      * Terminates execution of all active tasks. When execution is terminated all tasks must gracefully shutdown itself. 
      */
@@ -200,10 +320,13 @@ public class ParallelExecutor
         _isTerminated = true;
         
         _threadPool.shutdownNow();
+        
+        cancel();
     }
     
     /**
-     * Waits until all tasks are finished or execution is terminated.
+     * Waits until all tasks are finished or execution is terminated. Returns as soon as the last task is finished.
+     * If any task fails and its exception is not ignored cancels all outstanding tasks and rethrows exception.
      *
      * @throws Exception in case of any error
      */
@@ -212,12 +335,26 @@ public class ParallelExecutor
     {
         try
         {
-            while (!_isTerminated && isRunning())
-                Thread.sleep(100);
+            while (!_isTerminated && _checked < _futures.size())
+            {
+                TaskFuture future = _finishedTasks.poll(WAIT_INTERVAL,
+                        TimeUnit.MILLISECONDS);
+                
+                if (future == null)
+                    continue;
+                
+                _checked++;
+                
+                if (!future._ignoreException && !future.isCancelled())
+                    future.get();
+            }
         }
         catch (Exception ex)
         {
             _isTerminated = true;
+            
+            cancel();
+            
             throw ex;
         }
     }